@@ -20,7 +20,7 @@
 package org.openremote.agent.protocol;
 
 import org.apache.camel.ProducerTemplate;
-import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.seda.SedaEndpoint;
 import org.openremote.container.concurrent.GlobalLock;
 import org.openremote.container.message.MessageBrokerContext;
 import org.openremote.container.message.MessageBrokerService;
@@ -39,50 +39,80 @@ import org.openremote.model.syslog.SyslogCategory;
 import org.openremote.model.util.Pair;
 import org.openremote.model.value.MetaItemType;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
+import static java.util.logging.Level.FINEST;
 import static org.openremote.container.concurrent.GlobalLock.withLock;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.model.protocol.ProtocolUtil.hasDynamicWriteValue;
 import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
 
 /**
  * Thread-safe base implementation for protocols.
  * <p>
- * Subclasses should use the {@link GlobalLock#withLock} and {@link GlobalLock#withLockReturning} methods
- * to guard critical sections when modifying shared state:
+ * Each protocol instance has its own lock; subclasses should use the {@link #withProtocolLock} and {@link
+ * #withProtocolLockReturning} methods to guard critical sections when modifying shared state:
  * <blockquote><pre>{@code
- * withLock(getProtocolName(), () -> {
+ * withProtocolLock(getProtocolName(), () -> {
  *     // Critical section
  * });
  * }</pre></blockquote>
  * <blockquote><pre>{@code
- * return withLockReturning(() -> {
+ * return withProtocolLockReturning(getProtocolName(), () -> {
  *     // Critical section
  *     return ...;
  * });
  * }</pre></blockquote>
  * <p>
- * All <code>abstract</code> methods are always called within lock scope. An implementation can rely on this lock
- * and safely modify internal, protocol-specific shared state. However, if a protocol implementation schedules
- * an asynchronous task, this task must obtain the lock to call any protocol operations.
+ * All <code>abstract</code> methods are always called within the protocol lock scope. An implementation can rely on
+ * this lock and safely modify internal, protocol-specific shared state. However, if a protocol implementation
+ * schedules an asynchronous task, this task must obtain the protocol lock to call any protocol operations.
+ * <p>
+ * Starting, stopping and (un)linking attributes additionally happen within the {@link GlobalLock} but attribute writes
+ * ({@link #doLinkedAttributeWrite}) don't, so a slow device doesn't hold up asset processing and rules. The protocol
+ * lock is always obtained first so waiting for a slow device never holds the {@link GlobalLock}; callers must
+ * therefore never call these whilst holding the {@link GlobalLock}.
+ * <p>
+ * Attribute writes are dispatched from the {@link #ACTUATOR_TOPIC} to the {@link ActuatorInbox} of the target protocol
+ * instance and handled in order on the {@link Container#EXECUTOR_ACTUATOR} pool.
+ * <p>
+ * Sensor updates pass through a {@link SensorIngress} which holds them back (coalescing them where the agent link
+ * allows) whilst the {@link #SENSOR_QUEUE} is close to full and calls {@link #onSensorBackpressure} when too many are
+ * pending.
  */
 public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends AgentLink<?>> implements Protocol<T> {
 
     private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, AbstractProtocol.class);
-    protected final Map<AttributeRef, Attribute<?>> linkedAttributes = new HashMap<>();
-    protected final Set<AttributeRef> dynamicAttributes = new HashSet<>();
+    public static final String PROTOCOL_SENSOR_UPDATES_PENDING_MAX = "PROTOCOL_SENSOR_UPDATES_PENDING_MAX";
+    public static final int PROTOCOL_SENSOR_UPDATES_PENDING_MAX_DEFAULT = 10000;
+    public static final String PROTOCOL_ACTUATOR_INBOX_SIZE = "PROTOCOL_ACTUATOR_INBOX_SIZE";
+    public static final int PROTOCOL_ACTUATOR_INBOX_SIZE_DEFAULT = 1000;
+    /**
+     * Sensor updates are held back by the {@link SensorIngress} once the {@link #SENSOR_QUEUE} has this many messages.
+     */
+    public static final int SENSOR_QUEUE_SIZE_THRESHOLD = 20000;
+    protected final Map<AttributeRef, Attribute<?>> linkedAttributes = new ConcurrentHashMap<>();
+    protected final Set<AttributeRef> dynamicAttributes = ConcurrentHashMap.newKeySet();
+    protected final ReentrantLock protocolLock = new ReentrantLock();
     protected MessageBrokerContext messageBrokerContext;
     protected ProducerTemplate producerTemplate;
     protected TimerService timerService;
     protected ScheduledExecutorService executorService;
+    /**
+     * For per attribute delayed/periodic tasks (polling, replay etc.) which can be numerous.
+     */
+    protected ScheduledExecutorService periodicExecutorService;
     protected ProtocolAssetService assetService;
     protected ProtocolPredictedAssetService predictedAssetService;
+    protected SensorIngress sensorIngress;
+    protected ActuatorInbox actuatorInbox;
     protected T agent;
 
     public AbstractProtocol(T agent) {
@@ -92,60 +122,52 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
     @Override
     public void start(Container container) throws Exception {
         timerService = container.getService(TimerService.class);
-        executorService = container.getExecutorService();
+        executorService = container.getExecutorService(Container.EXECUTOR_PROTOCOL);
+        periodicExecutorService = container.getExecutorService(Container.EXECUTOR_PERIODIC);
         assetService = container.getService(ProtocolAssetService.class);
         predictedAssetService = container.getService(ProtocolPredictedAssetService.class);
         messageBrokerContext = container.getService(MessageBrokerService.class).getContext();
-
-        withLock(getProtocolName() + "::start", () -> {
+        SedaEndpoint sensorQueue = messageBrokerContext.getEndpoint(SENSOR_QUEUE, SedaEndpoint.class);
+        sensorIngress = new SensorIngress(
+            attributeEvent -> producerTemplate.sendBodyAndHeader(SENSOR_QUEUE, attributeEvent, Protocol.SENSOR_QUEUE_SOURCE_PROTOCOL, getProtocolName()),
+            () -> sensorQueue == null || sensorQueue.getCurrentQueueSize() < SENSOR_QUEUE_SIZE_THRESHOLD,
+            executorService,
+            this::onSensorBackpressure,
+            getInteger(container.getConfig(), PROTOCOL_SENSOR_UPDATES_PENDING_MAX, PROTOCOL_SENSOR_UPDATES_PENDING_MAX_DEFAULT));
+        actuatorInbox = new ActuatorInbox(
+            getProtocolName() + "[" + getAgent().getId() + "]",
+            this::onActuatorEvent,
+            container.getExecutorService(Container.EXECUTOR_ACTUATOR),
+            getInteger(container.getConfig(), PROTOCOL_ACTUATOR_INBOX_SIZE, PROTOCOL_ACTUATOR_INBOX_SIZE_DEFAULT));
+
+        withProtocolLock(getProtocolName() + "::start", () -> withLock(getProtocolName() + "::start", () -> {
             try {
-                messageBrokerContext.addRoutes(new RouteBuilder() {
-                    @Override
-                    public void configure() throws Exception {
-                        from(ACTUATOR_TOPIC)
-                            .routeId("Actuator-" + getProtocolName() + getAgent().getId())
-                            .process(exchange -> {
-                                Protocol<?> protocolInstance = exchange.getIn().getHeader(ACTUATOR_TOPIC_TARGET_PROTOCOL, Protocol.class);
-                                if (protocolInstance != AbstractProtocol.this) {
-                                    return;
-                                }
-
-                                AttributeEvent event = exchange.getIn().getBody(AttributeEvent.class);
-                                Attribute<?> linkedAttribute = getLinkedAttributes().get(event.getAttributeRef());
-
-                                if (linkedAttribute == null) {
-                                    LOG.info("Attempt to write to attribute that is not actually linked to this protocol '" + AbstractProtocol.this + "': " + linkedAttribute);
-                                    return;
-                                }
-
-                                processLinkedAttributeWrite(event);
-                            });
-                    }
-                });
-
                 doStart(container);
 
             } catch (Exception ex) {
                 throw new RuntimeException(ex);
             }
-        });
+        }));
         this.producerTemplate = container.getService(MessageBrokerService.class).getProducerTemplate();
     }
 
     @Override
     final public void stop(Container container) {
-        withLock(getProtocolName() + "::stop", () -> {
+        withProtocolLock(getProtocolName() + "::stop", () -> withLock(getProtocolName() + "::stop", () -> {
             linkedAttributes.clear();
+            if (sensorIngress != null) {
+                sensorIngress.clear();
+            }
+            if (actuatorInbox != null) {
+                actuatorInbox.clear();
+            }
             try {
-                messageBrokerContext.stopRoute("Actuator-" + getProtocolName(), 1, TimeUnit.MILLISECONDS);
-                messageBrokerContext.removeRoute("Actuator-" + getProtocolName());
-
                 doStop(container);
 
             } catch (Exception ex) {
                 throw new RuntimeException(ex);
             }
-        });
+        }));
     }
 
     protected void setConnectionStatus(ConnectionStatus connectionStatus) {
@@ -154,7 +176,7 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
 
     @Override
     final public void linkAttribute(String assetId, Attribute<?> attribute) throws Exception {
-        withLock(getProtocolName() + "::linkAttribute", () -> {
+        withProtocolLock(getProtocolName() + "::linkAttribute", () -> withLock(getProtocolName() + "::linkAttribute", () -> {
 
             AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
 
@@ -179,19 +201,19 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
                 linkedAttributes.remove(attributeRef);
                 throw new RuntimeException(e);
             }
-        });
+        }));
     }
 
     @Override
     final public void unlinkAttribute(String assetId, Attribute<?> attribute) throws Exception {
-        withLock(getProtocolName() + "::unlinkAttributes", () -> {
+        withProtocolLock(getProtocolName() + "::unlinkAttributes", () -> withLock(getProtocolName() + "::unlinkAttributes", () -> {
             AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
 
             if (linkedAttributes.remove(attributeRef) != null) {
                 dynamicAttributes.remove(attributeRef);
                 doUnlinkAttribute(assetId, attribute, agent.getAgentLink(attribute));
             }
-        });
+        }));
     }
 
     public T getAgent() {
@@ -203,9 +225,31 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
         return linkedAttributes;
     }
 
+    /**
+     * Queue a write of a linked attribute in the {@link ActuatorInbox} of this protocol instance; returns false if the
+     * write was dropped because the protocol isn't started or its inbox is full.
+     */
+    public boolean offerLinkedAttributeWrite(AttributeEvent event) {
+        ActuatorInbox inbox = actuatorInbox;
+        return inbox != null && inbox.offer(event);
+    }
+
+    public ActuatorInbox getActuatorInbox() {
+        return actuatorInbox;
+    }
+
+    protected void onActuatorEvent(AttributeEvent event) {
+        if (!linkedAttributes.containsKey(event.getAttributeRef())) {
+            LOG.info("Attempt to write to attribute that is not actually linked to this protocol '" + this + "': " + event.getAttributeRef());
+            return;
+        }
+
+        processLinkedAttributeWrite(event);
+    }
+
     final protected void processLinkedAttributeWrite(AttributeEvent event) {
         LOG.finest("Processing linked attribute write on protocol '" + this + "': " + event);
-        withLock(getProtocolName() + "::processLinkedAttributeWrite", () -> {
+        withProtocolLock(getProtocolName() + "::processLinkedAttributeWrite", () -> {
 
             Attribute<?> attribute = linkedAttributes.get(event.getAttributeRef());
 
@@ -250,14 +294,12 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
      * publish new sensor values, which performs additional verification and uses a different messaging queue.
      */
     final protected void sendAttributeEvent(AttributeEvent event) {
-        withLock(getProtocolName() + "::sendAttributeEvent", () -> {
-            // Don't allow updating linked attributes with this mechanism as it could cause an infinite loop
-            if (linkedAttributes.containsKey(event.getAttributeRef())) {
-                LOG.warning("Cannot update an attribute linked to the same protocol; use updateLinkedAttribute for that: " + event);
-                return;
-            }
-            assetService.sendAttributeEvent(event);
-        });
+        // Don't allow updating linked attributes with this mechanism as it could cause an infinite loop
+        if (linkedAttributes.containsKey(event.getAttributeRef())) {
+            LOG.warning("Cannot update an attribute linked to the same protocol; use updateLinkedAttribute for that: " + event);
+            return;
+        }
+        assetService.sendAttributeEvent(event);
     }
 
     /**
@@ -272,7 +314,8 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
             return;
         }
 
-        Pair<Boolean, Object> ignoreAndConverted = ProtocolUtil.doInboundValueProcessing(state.getRef().getId(), attribute, agent.getAgentLink(attribute), state.getValue().orElse(null));
+        AgentLink<?> agentLink = agent.getAgentLink(attribute);
+        Pair<Boolean, Object> ignoreAndConverted = ProtocolUtil.doInboundValueProcessing(state.getRef().getId(), attribute, agentLink, state.getValue().orElse(null));
 
         if (ignoreAndConverted.key) {
             LOG.fine("Value conversion returned ignore so attribute will not be updated: " + state.getRef());
@@ -281,7 +324,18 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
 
         AttributeEvent attributeEvent = new AttributeEvent(new AttributeState(state.getRef(), ignoreAndConverted.value), timestamp);
         LOG.finer("Sending linked attribute update on sensor queue: " + attributeEvent);
-        producerTemplate.sendBodyAndHeader(SENSOR_QUEUE, attributeEvent, Protocol.SENSOR_QUEUE_SOURCE_PROTOCOL, getProtocolName());
+        sensorIngress.offer(attributeEvent, agentLink.getCoalesceUpdates().orElse(false));
+    }
+
+    /**
+     * Called when sensor updates are arriving faster than they can be processed (<code>paused</code> is true) and
+     * again once they have caught up; protocols should stop reading from their device in the meantime if they can.
+     */
+    protected void onSensorBackpressure(boolean paused) {
+    }
+
+    public SensorIngress getSensorIngress() {
+        return sensorIngress;
     }
 
     /**
@@ -305,6 +359,45 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
         updateLinkedAttribute(state, timerService.getCurrentTimeMillis());
     }
 
+    /**
+     * Obtain the lock of this protocol instance within {@link GlobalLock#getLockTimeoutMillis()} or throw {@link
+     * IllegalStateException}.
+     *
+     * @param info     An informal text that is printed in log messages.
+     * @param runnable The guarded code to execute while holding the lock.
+     */
+    protected void withProtocolLock(String info, Runnable runnable) {
+        withProtocolLockReturning(info, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Obtain the lock of this protocol instance within {@link GlobalLock#getLockTimeoutMillis()} or throw {@link
+     * IllegalStateException}.
+     *
+     * @param info     An informal text that is printed in log messages.
+     * @param supplier The guarded code to execute while holding the lock.
+     */
+    protected <R> R withProtocolLockReturning(String info, Supplier<R> supplier) {
+        try {
+            if (!protocolLock.tryLock(GlobalLock.getLockTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException(
+                    "Could not acquire lock of protocol '" + this + "' after waiting " + GlobalLock.getLockTimeoutMillis() + "ms: " + Thread.currentThread().getName() + " executing " + info
+                );
+            }
+        } catch (InterruptedException ex) {
+            LOG.log(FINEST, "Interrupted while waiting for protocol lock: " + info);
+            return null;
+        }
+        try {
+            return supplier.get();
+        } finally {
+            protocolLock.unlock();
+        }
+    }
+
     /**
      * Start this protocol instance
      */
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol;
+
+import org.openremote.container.metrics.CounterMetric;
+import org.openremote.container.metrics.MetricsRegistry;
+import org.openremote.container.metrics.TimerMetric;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.syslog.SyslogCategory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
+
+/**
+ * Bounded inbox of attribute writes (actuator events) for a protocol instance. Writes are passed to the handler one at
+ * a time in the order they arrived, so writes to an attribute are never reordered, on the supplied executor; inboxes
+ * of different protocol instances are therefore handled concurrently. A slow device occupies one executor thread whilst
+ * a write to it is in progress, so a slow device only holds up the writes of its own protocol instance as long as
+ * fewer devices than the executor has threads are blocked at once; beyond that the writes of other protocol instances
+ * wait for a thread. Writes offered whilst the inbox is full are dropped.
+ * <p>
+ * Only the drainer takes writes off the queue; {@link #clear} just marks the writes offered so far as cleared and the
+ * drainer discards them instead of handling them.
+ */
+public class ActuatorInbox {
+
+    /**
+     * Max writes handled before the executor thread is handed back so busy inboxes can't starve the others.
+     */
+    public static final int DRAIN_BATCH_SIZE = 100;
+    public static final String PENDING_WRITES_METRIC = "or_actuator_pending_writes";
+    public static final String DISPATCHED_WRITES_METRIC = "or_actuator_dispatched_writes_total";
+    public static final String DROPPED_WRITES_METRIC = "or_actuator_dropped_writes_total";
+    public static final String DISPATCH_LATENCY_METRIC = "or_actuator_dispatch_latency_seconds";
+
+    protected static class PendingWrite {
+        final AttributeEvent event;
+        final long sequence;
+        final long queuedNanos;
+
+        PendingWrite(AttributeEvent event, long sequence, long queuedNanos) {
+            this.event = event;
+            this.sequence = sequence;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, ActuatorInbox.class);
+    protected final String name;
+    protected final Consumer<AttributeEvent> handler;
+    protected final Executor executor;
+    protected final int capacity;
+    protected final Queue<PendingWrite> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * Entries in {@link #queue}; whoever increments this from zero is responsible for draining.
+     */
+    protected final AtomicInteger pendingCount = new AtomicInteger();
+    protected final AtomicLong offeredSequence = new AtomicLong();
+    /**
+     * Writes with a sequence up to and including this have been cleared.
+     */
+    protected final AtomicLong clearedSequence = new AtomicLong();
+
+    // Metrics
+    protected final AtomicLong dispatchedWrites = new AtomicLong();
+    protected final AtomicLong droppedWrites = new AtomicLong();
+    protected final AtomicLong totalLatencyNanos = new AtomicLong();
+    protected final AtomicLong maxLatencyNanos = new AtomicLong();
+    protected MetricsRegistry metricsRegistry;
+    protected String[] metricLabels;
+    protected volatile CounterMetric dispatchedCounter;
+    protected volatile CounterMetric droppedCounter;
+    protected volatile TimerMetric latencyTimer;
+
+    public ActuatorInbox(String name, Consumer<AttributeEvent> handler, Executor executor, int capacity) {
+        this.name = name;
+        this.handler = handler;
+        this.executor = executor;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Queue a write, returns false if the inbox is full and the write was dropped.
+     */
+    public boolean offer(AttributeEvent event) {
+        if (pendingCount.get() >= capacity) {
+            CounterMetric droppedCounter = this.droppedCounter;
+            if (droppedCounter != null) {
+                droppedCounter.increment();
+            }
+            if (droppedWrites.getAndIncrement() % capacity == 0) {
+                LOG.warning("Actuator inbox of '" + name + "' is full so dropping attribute writes, last dropped: " + event);
+            }
+            return false;
+        }
+
+        queue.add(new PendingWrite(event, offeredSequence.incrementAndGet(), System.nanoTime()));
+
+        if (pendingCount.getAndIncrement() == 0) {
+            drainAsync();
+        }
+        return true;
+    }
+
+    protected void drainAsync() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            LOG.fine("Executor rejected actuator inbox drain so discarding pending writes: " + name);
+            discard();
+        }
+    }
+
+    /**
+     * Discards all pending writes, must only be called by the drainer (i.e. the owner of the non zero count).
+     */
+    protected void discard() {
+        int count = pendingCount.get();
+        while (count > 0) {
+            queue.poll();
+            count = pendingCount.decrementAndGet();
+        }
+    }
+
+    protected void drain() {
+        int handled = 0;
+        int count = pendingCount.get();
+
+        while (count > 0) {
+            if (handled == DRAIN_BATCH_SIZE) {
+                // Still the owner as the count isn't zero so carry on in a new task
+                drainAsync();
+                return;
+            }
+
+            // Writes are queued before the count is incremented so there is always one to take
+            PendingWrite write = queue.poll();
+
+            if (write.sequence <= clearedSequence.get()) {
+                count = pendingCount.decrementAndGet();
+                continue;
+            }
+
+            long latencyNanos = System.nanoTime() - write.queuedNanos;
+            totalLatencyNanos.addAndGet(latencyNanos);
+            maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+            TimerMetric latencyTimer = this.latencyTimer;
+            if (latencyTimer != null) {
+                latencyTimer.record(latencyNanos);
+            }
+
+            try {
+                handler.accept(write.event);
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Actuator inbox of '" + name + "' failed to process attribute write: " + write.event, e);
+            }
+            dispatchedWrites.incrementAndGet();
+            CounterMetric dispatchedCounter = this.dispatchedCounter;
+            if (dispatchedCounter != null) {
+                dispatchedCounter.increment();
+            }
+            handled++;
+            count = pendingCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Discards the writes offered so far; they are removed by the drainer so remain in the pending count until then.
+     */
+    public void clear() {
+        clearedSequence.accumulateAndGet(offeredSequence.get(), Math::max);
+    }
+
+    /**
+     * Exports the metrics of this inbox with the given labels (e.g. the agent ID) until {@link #removeMetrics} is called.
+     */
+    public synchronized void registerMetrics(MetricsRegistry metricsRegistry, String... labels) {
+        removeMetrics();
+        this.metricsRegistry = metricsRegistry;
+        this.metricLabels = labels;
+        metricsRegistry.gauge(PENDING_WRITES_METRIC, "Attribute writes waiting in the actuator inbox", this::getPendingWrites, labels);
+        dispatchedCounter = metricsRegistry.counter(DISPATCHED_WRITES_METRIC, "Attribute writes passed to the protocol by the actuator inbox", labels);
+        droppedCounter = metricsRegistry.counter(DROPPED_WRITES_METRIC, "Attribute writes dropped because the actuator inbox was full", labels);
+        latencyTimer = metricsRegistry.timer(DISPATCH_LATENCY_METRIC, "Time attribute writes waited in the actuator inbox before being passed to the protocol", labels);
+    }
+
+    public synchronized void removeMetrics() {
+        if (metricsRegistry == null) {
+            return;
+        }
+        dispatchedCounter = null;
+        droppedCounter = null;
+        latencyTimer = null;
+        metricsRegistry.remove(PENDING_WRITES_METRIC, metricLabels);
+        metricsRegistry.remove(DISPATCHED_WRITES_METRIC, metricLabels);
+        metricsRegistry.remove(DROPPED_WRITES_METRIC, metricLabels);
+        metricsRegistry.remove(DISPATCH_LATENCY_METRIC, metricLabels);
+        metricsRegistry = null;
+        metricLabels = null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getPendingWrites() {
+        return pendingCount.get();
+    }
+
+    public long getDispatchedWrites() {
+        return dispatchedWrites.get();
+    }
+
+    public long getDroppedWrites() {
+        return droppedWrites.get();
+    }
+
+    /**
+     * Average time writes waited in the inbox before being handled.
+     */
+    public long getAverageLatencyMillis() {
+        long dispatched = dispatchedWrites.get();
+        return dispatched > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / dispatched) : 0L;
+    }
+
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "name='" + name + '\'' +
+            ", pending=" + getPendingWrites() +
+            ", dispatched=" + getDispatchedWrites() +
+            ", dropped=" + getDroppedWrites() +
+            ", averageLatencyMillis=" + getAverageLatencyMillis() +
+            ", maxLatencyMillis=" + getMaxLatencyMillis() +
+            '}';
+    }
+}
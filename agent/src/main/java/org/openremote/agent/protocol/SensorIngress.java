@@ -0,0 +1,220 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol;
+
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.attribute.AttributeRef;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Buffers the sensor updates of a protocol instance in front of the {@link
+ * org.openremote.model.asset.agent.Protocol#SENSOR_QUEUE}; whilst the sink is available and nothing is pending updates
+ * are passed straight through, otherwise they are queued and drained in order on the executor once the sink becomes
+ * available again.
+ * <p>
+ * Whilst queued only the latest update of attributes whose agent link {@link
+ * org.openremote.model.asset.agent.AgentLink#getCoalesceUpdates} is kept (the position of the first pending update is
+ * used); every update of other attributes is kept up to {@link #pendingMax}, after which they are dropped. The
+ * backpressure consumer is notified when the pending updates exceed half of {@link #pendingMax} (so IO clients can stop
+ * reading) and again once they have drained to a quarter of it.
+ */
+public class SensorIngress {
+
+    private static final Logger LOG = Logger.getLogger(SensorIngress.class.getName());
+    protected static final long DRAIN_RETRY_MILLIS = 50;
+    protected final Consumer<AttributeEvent> sink;
+    protected final BooleanSupplier sinkAvailable;
+    protected final ScheduledExecutorService executorService;
+    protected final Consumer<Boolean> backpressureConsumer;
+    protected final int pendingMax;
+    /**
+     * Pending {@link AttributeEvent}s and the {@link AttributeRef}s of pending coalesced updates (see {@link #latest}).
+     */
+    protected final Queue<Object> pending = new ConcurrentLinkedQueue<>();
+    protected final Map<AttributeRef, AttributeEvent> latest = new ConcurrentHashMap<>();
+    /**
+     * Entries in {@link #pending}; whoever increments this from zero is responsible for draining.
+     */
+    protected final AtomicInteger pendingCount = new AtomicInteger();
+    protected volatile boolean paused;
+
+    // Metrics
+    protected final AtomicLong coalescedUpdates = new AtomicLong();
+    protected final AtomicLong droppedUpdates = new AtomicLong();
+
+    public SensorIngress(Consumer<AttributeEvent> sink,
+                         BooleanSupplier sinkAvailable,
+                         ScheduledExecutorService executorService,
+                         Consumer<Boolean> backpressureConsumer,
+                         int pendingMax) {
+        this.sink = sink;
+        this.sinkAvailable = sinkAvailable;
+        this.executorService = executorService;
+        this.backpressureConsumer = backpressureConsumer;
+        this.pendingMax = Math.max(4, pendingMax);
+    }
+
+    public void offer(AttributeEvent event, boolean coalesce) {
+        if (pendingCount.get() == 0 && sinkAvailable.getAsBoolean()) {
+            sink.accept(event);
+            return;
+        }
+
+        if (coalesce) {
+            if (latest.put(event.getAttributeRef(), event) != null) {
+                // Replaced a pending update so already queued
+                coalescedUpdates.incrementAndGet();
+                return;
+            }
+            enqueue(event.getAttributeRef());
+            return;
+        }
+
+        if (pendingCount.get() >= pendingMax) {
+            if (droppedUpdates.getAndIncrement() % pendingMax == 0) {
+                LOG.warning("Sensor updates are arriving faster than they can be processed so dropping: " + event);
+            }
+            return;
+        }
+        enqueue(event);
+    }
+
+    protected void enqueue(Object entry) {
+        pending.add(entry);
+        int count = pendingCount.incrementAndGet();
+
+        if (!paused && count > pendingMax / 2) {
+            updateBackpressure();
+        }
+
+        if (count == 1) {
+            scheduleDrain(0);
+        }
+    }
+
+    protected void scheduleDrain(long delayMillis) {
+        try {
+            executorService.schedule(this::drain, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOG.fine("Executor rejected sensor update drain so discarding pending updates");
+            clear();
+        }
+    }
+
+    protected void drain() {
+        int count = pendingCount.get();
+
+        while (count > 0) {
+            if (!sinkAvailable.getAsBoolean()) {
+                scheduleDrain(DRAIN_RETRY_MILLIS);
+                return;
+            }
+
+            Object entry = pending.poll();
+            if (entry == null) {
+                // Taken by clear
+                count = pendingCount.get();
+                continue;
+            }
+            AttributeEvent event = entry instanceof AttributeRef ? latest.remove(entry) : (AttributeEvent) entry;
+
+            if (event != null) {
+                try {
+                    sink.accept(event);
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Failed to send sensor update: " + event, e);
+                }
+            }
+
+            count = pendingCount.decrementAndGet();
+
+            if (paused && count <= pendingMax / 4) {
+                updateBackpressure();
+            }
+        }
+    }
+
+    /**
+     * Pauses or resumes based on the current pending count; synchronized so the last decision always reflects the
+     * latest count.
+     */
+    protected synchronized void updateBackpressure() {
+        int count = pendingCount.get();
+        boolean pause = paused ? count > pendingMax / 4 : count > pendingMax / 2;
+
+        if (pause != paused) {
+            paused = pause;
+            LOG.fine((pause ? "Pausing" : "Resuming") + " sensor updates, pending=" + count);
+            backpressureConsumer.accept(pause);
+        }
+    }
+
+    /**
+     * Discards the pending updates.
+     */
+    public void clear() {
+        latest.clear();
+        while (pending.poll() != null) {
+            pendingCount.decrementAndGet();
+        }
+        if (paused) {
+            updateBackpressure();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public int getPendingUpdates() {
+        return pendingCount.get();
+    }
+
+    public long getCoalescedUpdates() {
+        return coalescedUpdates.get();
+    }
+
+    public long getDroppedUpdates() {
+        return droppedUpdates.get();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "pending=" + getPendingUpdates() +
+            ", coalesced=" + getCoalescedUpdates() +
+            ", dropped=" + getDroppedUpdates() +
+            ", paused=" + paused +
+            '}';
+    }
+}
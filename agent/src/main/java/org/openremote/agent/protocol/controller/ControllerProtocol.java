@@ -55,8 +55,6 @@ import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static org.openremote.container.concurrent.GlobalLock.withLock;
-import static org.openremote.container.concurrent.GlobalLock.withLockReturning;
 import static org.openremote.container.web.WebTargetBuilder.CONNECTION_POOL_SIZE;
 import static org.openremote.container.web.WebTargetBuilder.createClient;
 import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
@@ -131,7 +129,7 @@ public class ControllerProtocol extends AbstractProtocol<ControllerAgent, Contro
         controllerWebTarget = webTargetBuilder.build();
         controller = new Controller(agent.getId());
 
-        controllerHeartbeat = this.executorService.scheduleWithFixedDelay(
+        controllerHeartbeat = this.periodicExecutorService.scheduleWithFixedDelay(
             () -> this.executeHeartbeat(this::onHeartbeatResponse),
             0,
             HEARTBEAT_DELAY_SECONDS,
@@ -264,7 +262,7 @@ public class ControllerProtocol extends AbstractProtocol<ControllerAgent, Contro
     }
 
     private void executeInitialStatus(AttributeRef attributeRef, String deviceName, String sensorName, Consumer<Response> responseConsumer) {
-        withLock(getProtocolName() + "::executeInitialStatus::" + attributeRef, () -> {
+        withProtocolLock(getProtocolName() + "::executeInitialStatus::" + attributeRef, () -> {
             LOG.info("### Initial status check for " + attributeRef.getName() + " [" + deviceName + "," + sensorName + "] ...");
 
             HTTPProtocol.HttpClientRequest checkRequest = RequestBuilder.buildStatusRequest(deviceName, Arrays.asList(sensorName), controllerWebTarget);
@@ -319,7 +317,7 @@ public class ControllerProtocol extends AbstractProtocol<ControllerAgent, Contro
      * to the Protocol) and collect all sensor's name to put them into polling request
      */
     private Future<?> computePollingTask(String deviceName) {
-        return withLockReturning(getProtocolName() + "::computePollingTask::" + deviceName, () -> {
+        return withProtocolLockReturning(getProtocolName() + "::computePollingTask::" + deviceName, () -> {
             List<String> sensorNameList = controller.collectSensorNameLinkedToDeviceName(deviceName);
 
             if (sensorNameList.isEmpty()) {
@@ -462,7 +460,7 @@ public class ControllerProtocol extends AbstractProtocol<ControllerAgent, Contro
 
                 // Starting a heartbeat Task until connection is OK
                 if (controllerHeartbeat == null || this.controllerHeartbeat.isCancelled()) {
-                    controllerHeartbeat = this.executorService.scheduleWithFixedDelay(() ->
+                    controllerHeartbeat = this.periodicExecutorService.scheduleWithFixedDelay(() ->
                         this.executeHeartbeat(this::onHeartbeatResponse), 0, HEARTBEAT_DELAY_SECONDS, TimeUnit.SECONDS);
                 }
             }
@@ -474,7 +472,7 @@ public class ControllerProtocol extends AbstractProtocol<ControllerAgent, Contro
      * Heartbeat is used when connection with Controller 2.x is lost and is running until connection is back
      */
     private void executeHeartbeat(Consumer<Response> responseConsumer) {
-        withLock(getProtocolName() + "::executeHeartbeat", () -> {
+        withProtocolLock(getProtocolName() + "::executeHeartbeat", () -> {
             LOG.info("Doing heartbeat check for controller: " + controllerWebTarget.getUriBuilder().build());
 
             HTTPProtocol.HttpClientRequest checkRequest = RequestBuilder.buildCheckRequest(controllerWebTarget);
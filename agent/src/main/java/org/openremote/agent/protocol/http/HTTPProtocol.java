@@ -26,6 +26,7 @@ import org.jboss.resteasy.core.Headers;
 import org.jboss.resteasy.specimpl.BuiltResponse;
 import org.jboss.resteasy.specimpl.ResponseBuilderImpl;
 import org.openremote.agent.protocol.AbstractProtocol;
+import org.openremote.container.concurrent.TimingWheelScheduler;
 import org.openremote.container.web.QueryParameterInjectorFilter;
 import org.openremote.container.web.WebTargetBuilder;
 import org.openremote.model.Container;
@@ -59,7 +60,6 @@ import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static org.openremote.container.concurrent.GlobalLock.withLock;
 import static org.openremote.container.web.QueryParameterInjectorFilter.QUERY_PARAMETERS_PROPERTY;
 import static org.openremote.container.web.WebTargetBuilder.createClient;
 import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
@@ -282,7 +282,7 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
     protected static ResteasyClient client;
 
     static {
-        client = createClient(org.openremote.container.Container.EXECUTOR_SERVICE);
+        client = createClient(org.openremote.container.Container.EXECUTOR_SERVICES.get(org.openremote.container.Container.EXECUTOR_PROTOCOL));
     }
 
     public HTTPProtocol(HTTPAgent agent) {
@@ -490,7 +490,7 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
 
         LOG.fine("Scheduling polling request '" + clientRequest + "' to execute every " + pollingMillis + " ms for attribute: " + attributeRef);
 
-        return executorService.scheduleWithFixedDelay(() ->
+        Runnable pollingTask = () ->
                 executePollingRequest(clientRequest, body, response -> {
                     try {
                         onPollingResponse(
@@ -500,7 +500,13 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
                     } catch (Exception e) {
                         LOG.log(Level.WARNING, prefixLogMessage("Exception thrown whilst processing polling response [" + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()) + "]: " + clientRequest.requestTarget.getUriBuilder().build().toString()));
                     }
-                }), 0, pollingMillis, TimeUnit.MILLISECONDS);
+                });
+
+        // Spread the first requests of attributes with the same polling interval so they aren't all sent at once
+        if (periodicExecutorService instanceof TimingWheelScheduler) {
+            return ((TimingWheelScheduler) periodicExecutorService).scheduleWithFixedDelay(pollingTask, 0, pollingMillis, TimeUnit.MILLISECONDS, true);
+        }
+        return periodicExecutorService.scheduleWithFixedDelay(pollingTask, 0, pollingMillis, TimeUnit.MILLISECONDS);
     }
 
     protected void executePollingRequest(HttpClientRequest clientRequest, String body, Consumer<Response> responseConsumer) {
@@ -600,7 +606,7 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
     }
 
     protected void cancelPolling(AttributeRef attributeRef) {
-        withLock(getProtocolName() + "::cancelPolling", () -> {
+        withProtocolLock(getProtocolName() + "::cancelPolling", () -> {
             ScheduledFuture<?> pollTask = pollingMap.remove(attributeRef);
             if (pollTask != null) {
                 pollTask.cancel(false);
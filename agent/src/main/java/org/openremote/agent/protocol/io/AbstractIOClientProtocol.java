@@ -178,6 +178,14 @@ public abstract class AbstractIOClientProtocol<T extends AbstractIOClientProtoco
         client.sendMessage(message);
     }
 
+    @Override
+    protected void onSensorBackpressure(boolean paused) {
+        W client = this.client;
+        if (client != null) {
+            client.setReadPaused(paused);
+        }
+    }
+
     protected W createIoClient() throws Exception {
         W client = doCreateIoClient();
 
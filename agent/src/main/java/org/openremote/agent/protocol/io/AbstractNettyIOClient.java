@@ -174,9 +174,10 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
     protected CompletableFuture<Void> connectRetry;
     protected boolean permanentError;
     protected Supplier<ChannelHandler[]> encoderDecoderProvider;
+    protected volatile boolean readPaused;
 
     protected AbstractNettyIOClient() {
-        this.executorService = Container.EXECUTOR_SERVICE;
+        this.executorService = Container.EXECUTOR_SERVICES.get(Container.EXECUTOR_PROTOCOL);
     }
 
     @Override
@@ -431,6 +432,17 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
     protected void initChannel(Channel channel) {
         // Below is un-necessary as channel listener handles this
         addEncodersDecoders(channel);
+        channel.config().setAutoRead(!readPaused);
+    }
+
+    @Override
+    public void setReadPaused(boolean paused) {
+        readPaused = paused;
+        Channel channel = this.channel;
+        if (channel != null) {
+            LOG.fine((paused ? "Pausing" : "Resuming") + " reads: " + getClientUri());
+            channel.config().setAutoRead(!paused);
+        }
     }
 
     protected void addEncodersDecoders(Channel channel) {
@@ -65,6 +65,13 @@ public interface IOClient<T> {
      */
     void removeAllConnectionStatusConsumers();
 
+    /**
+     * Stop (or resume) reading from the device, used to apply backpressure when received messages can't be processed
+     * quickly enough; does nothing by default
+     */
+    default void setReadPaused(boolean paused) {
+    }
+
     /**
      * Get current connection status
      */
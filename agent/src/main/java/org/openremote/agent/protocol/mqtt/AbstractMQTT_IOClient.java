@@ -84,7 +84,7 @@ public abstract class AbstractMQTT_IOClient<S> implements IOClient<MQTTMessage<S
         this.cleanSession = cleanSession;
         this.usernamePassword = usernamePassword;
         this.websocketURI = websocketURI;
-        this.executorService = Container.EXECUTOR_SERVICE;
+        this.executorService = Container.EXECUTOR_SERVICES.get(Container.EXECUTOR_PROTOCOL);
 
         Mqtt3ClientBuilder builder = MqttClient.builder()
             .useMqttVersion3()
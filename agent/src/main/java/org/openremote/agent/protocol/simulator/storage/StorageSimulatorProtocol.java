@@ -199,7 +199,7 @@ public class StorageSimulatorProtocol extends AbstractProtocol<StorageSimulatorA
     }
 
     protected ScheduledFuture<?> scheduleUpdate(String assetId) {
-        return executorService.schedule(() -> {
+        return periodicExecutorService.schedule(() -> {
             try {
                 updateStorageAsset(assetService.findAsset(assetId, ElectricityStorageAsset.class));
             } catch (Exception e) {
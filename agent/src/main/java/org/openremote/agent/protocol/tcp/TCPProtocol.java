@@ -24,14 +24,10 @@ import org.openremote.model.asset.agent.DefaultAgentLink;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.AttributeRef;
-import org.openremote.model.protocol.ProtocolUtil;
+import org.openremote.model.protocol.AttributeMessageDemultiplexer;
 import org.openremote.model.syslog.SyslogCategory;
-import org.openremote.model.util.Pair;
 import org.openremote.model.util.ValueUtil;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 
@@ -49,7 +45,7 @@ public class TCPProtocol extends AbstractTCPClientProtocol<TCPProtocol, TCPAgent
     private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, TCPProtocol.class);
     public static final String PROTOCOL_DISPLAY_NAME = "TCP Client";
 
-    protected final List<Pair<AttributeRef, Consumer<String>>> protocolMessageConsumers = new ArrayList<>();
+    protected final AttributeMessageDemultiplexer protocolMessageConsumers = new AttributeMessageDemultiplexer(() -> timerService.getCurrentTimeMillis(), this::updateLinkedAttribute);
 
     public TCPProtocol(TCPAgent agent) {
         super(agent);
@@ -62,21 +58,13 @@ public class TCPProtocol extends AbstractTCPClientProtocol<TCPProtocol, TCPAgent
 
     @Override
     protected void doLinkAttribute(String assetId, Attribute<?> attribute, DefaultAgentLink agentLink) {
-
-        Consumer<String> messageConsumer = ProtocolUtil.createGenericAttributeMessageConsumer(assetId, attribute, agentLink, timerService::getCurrentTimeMillis, this::updateLinkedAttribute);
-
-        if (messageConsumer != null) {
-            protocolMessageConsumers.add(new Pair<>(
-                new AttributeRef(assetId, attribute.getName()),
-                messageConsumer
-            ));
-        }
+        protocolMessageConsumers.add(assetId, attribute, agentLink);
     }
 
     @Override
     protected void doUnlinkAttribute(String assetId, Attribute<?> attribute, DefaultAgentLink agentLink) {
         AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
-        protocolMessageConsumers.removeIf(attRefConsumerPair -> attRefConsumerPair.key.equals(attributeRef));
+        protocolMessageConsumers.remove(attributeRef);
     }
 
     @Override
@@ -86,11 +74,7 @@ public class TCPProtocol extends AbstractTCPClientProtocol<TCPProtocol, TCPAgent
 
     @Override
     protected void onMessageReceived(String message) {
-        protocolMessageConsumers.forEach(c -> {
-            if (c.value != null) {
-                c.value.accept(message);
-            }
-        });
+        protocolMessageConsumers.accept(message);
     }
 
     @Override
@@ -34,9 +34,8 @@ import org.openremote.model.attribute.AttributeExecuteStatus;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.auth.OAuthGrant;
 import org.openremote.model.auth.UsernamePassword;
-import org.openremote.model.protocol.ProtocolUtil;
+import org.openremote.model.protocol.AttributeMessageDemultiplexer;
 import org.openremote.model.syslog.SyslogCategory;
-import org.openremote.model.util.Pair;
 import org.openremote.model.util.TextUtil;
 import org.openremote.model.util.ValueUtil;
 import org.openremote.model.value.ValueType;
@@ -49,7 +48,6 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 
@@ -77,10 +75,10 @@ public class WebsocketAgentProtocol extends AbstractNettyIOClientProtocol<Websoc
     protected List<Runnable> protocolConnectedTasks;
     protected Map<AttributeRef, Runnable> attributeConnectedTasks;
     protected Map<String, List<String>> clientHeaders;
-    protected final List<Pair<AttributeRef, Consumer<String>>> protocolMessageConsumers = new ArrayList<>();
+    protected final AttributeMessageDemultiplexer protocolMessageConsumers = new AttributeMessageDemultiplexer(() -> timerService.getCurrentTimeMillis(), this::updateLinkedAttribute);
 
     static {
-        resteasyClient = createClient(org.openremote.container.Container.EXECUTOR_SERVICE);
+        resteasyClient = createClient(org.openremote.container.Container.EXECUTOR_SERVICES.get(org.openremote.container.Container.EXECUTOR_PROTOCOL));
     }
 
     public WebsocketAgentProtocol(WebsocketAgent agent) {
@@ -109,11 +107,7 @@ public class WebsocketAgentProtocol extends AbstractNettyIOClientProtocol<Websoc
 
     @Override
     protected void onMessageReceived(String message) {
-        protocolMessageConsumers.forEach(c -> {
-            if (c.value != null) {
-                c.value.accept(message);
-            }
-        });
+        protocolMessageConsumers.accept(message);
     }
 
     @Override
@@ -193,17 +187,13 @@ public class WebsocketAgentProtocol extends AbstractNettyIOClientProtocol<Websoc
             }
         });
 
-        Consumer<String> messageConsumer = ProtocolUtil.createGenericAttributeMessageConsumer(assetId, attribute, agent.getAgentLink(attribute), timerService::getCurrentTimeMillis, this::updateLinkedAttribute);
-
-        if (messageConsumer != null) {
-            protocolMessageConsumers.add(new Pair<>(attributeRef, messageConsumer));
-        }
+        protocolMessageConsumers.add(assetId, attribute, agent.getAgentLink(attribute));
     }
 
     @Override
     protected void doUnlinkAttribute(String assetId, Attribute<?> attribute, WebsocketAgentLink agentLink) {
         AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
-        protocolMessageConsumers.removeIf((attrRefConsumer) -> attrRefConsumer.key.equals(attributeRef));
+        protocolMessageConsumers.remove(attributeRef);
         attributeConnectedTasks.remove(attributeRef);
     }
 
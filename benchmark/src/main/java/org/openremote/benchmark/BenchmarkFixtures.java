@@ -0,0 +1,217 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark;
+
+import org.openremote.container.timer.TimerService;
+import org.openremote.container.util.UniqueIdentifierGenerator;
+import org.openremote.model.Constants;
+import org.openremote.model.asset.Asset;
+import org.openremote.model.asset.impl.BuildingAsset;
+import org.openremote.model.asset.impl.RoomAsset;
+import org.openremote.model.asset.impl.ThingAsset;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.attribute.MetaItem;
+import org.openremote.model.geo.GeoJSONPoint;
+import org.openremote.model.rules.AssetState;
+import org.openremote.model.value.MetaItemType;
+import org.openremote.model.value.ValueType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds the in memory fixtures shared by the benchmarks, no database or container is needed: a site of buildings
+ * with rooms that carry the attributes typically found on a site (sensors with data point and rules meta, setpoints,
+ * switches and a location) and stand alone assets with a configurable number of attributes. Everything is generated
+ * from a seeded {@link Random} and IDs are derived from names so runs are comparable.
+ */
+public final class BenchmarkFixtures {
+
+    public static final String REALM = "benchmark";
+    public static final long SEED = 42L;
+    public static final String TEMPERATURE = "temperature";
+    public static final String TARGET_TEMPERATURE = "targetTemperature";
+    public static final String HUMIDITY = "humidity";
+    public static final String LIGHT_SWITCH = "lightSwitch";
+    public static final String PRESENCE_DETECTED = "presenceDetected";
+    public static final String ALARM = "alarm";
+    public static final String SENSOR_PREFIX = "sensor";
+    public static final int ROOMS_PER_BUILDING = 100;
+    public static final int EXTRA_ROOM_SENSORS = 4;
+    // Site centre, locations are spread around it
+    public static final double LATITUDE = 51.4463;
+    public static final double LONGITUDE = 5.4540;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Only log warnings so that logging doesn't distort the results.
+     */
+    public static void quietLogging() {
+        Logger.getLogger("").setLevel(Level.WARNING);
+    }
+
+    /**
+     * A {@link TimerService} using the wall clock without having to initialise it through a container.
+     */
+    public static TimerService createTimerService() {
+        return new TimerService() {
+            {
+                clock = Clock.REAL;
+            }
+        };
+    }
+
+    public static String createId(String name) {
+        return UniqueIdentifierGenerator.generateId(name);
+    }
+
+    /**
+     * Creates the buildings followed by their rooms; each room has the standard room attributes plus
+     * <code>extraSensors</code> numeric sensor attributes. Parents and realm are set as if the assets were loaded from
+     * the database but the (transient) path isn't.
+     */
+    public static List<Asset<?>> createSite(int buildings, int roomsPerBuilding, int extraSensors, Random random) {
+        List<Asset<?>> assets = new ArrayList<>(buildings * (roomsPerBuilding + 1));
+        long timestamp = System.currentTimeMillis();
+
+        for (int b = 0; b < buildings; b++) {
+            String buildingName = "Building " + b;
+            BuildingAsset building = new BuildingAsset(buildingName)
+                .setId(createId(buildingName))
+                .setRealm(REALM)
+                .setLocation(createLocation(random));
+            building.getAttributes().getOrCreate(BuildingAsset.STREET).setValue("Street " + b);
+            building.getAttributes().getOrCreate(BuildingAsset.CITY).setValue("Eindhoven");
+            building.getAttributes().getOrCreate(BuildingAsset.AREA).setValue(1000 + random.nextInt(5000));
+            assets.add(building);
+
+            for (int r = 0; r < roomsPerBuilding; r++) {
+                String roomName = buildingName + " Room " + r;
+                RoomAsset room = new RoomAsset(roomName)
+                    .setId(createId(roomName))
+                    .setParent(building)
+                    .setLocation(createLocation(random));
+                room.addOrReplaceAttributes(createRoomAttributes(extraSensors, timestamp, random).toArray(new Attribute<?>[0]));
+                assets.add(room);
+            }
+        }
+
+        return assets;
+    }
+
+    /**
+     * Creates a site of buildings with {@link #ROOMS_PER_BUILDING} rooms that yields approximately the requested number
+     * of asset states (rules facts), see {@link #createAssetStates}.
+     */
+    public static List<Asset<?>> createSiteWithAssetStates(int assetStateCount, Random random) {
+        int assetStatesPerBuilding = createAssetStates(createSite(1, ROOMS_PER_BUILDING, EXTRA_ROOM_SENSORS, new Random(SEED))).size();
+        int buildings = Math.max(1, Math.round((float) assetStateCount / assetStatesPerBuilding));
+        return createSite(buildings, ROOMS_PER_BUILDING, EXTRA_ROOM_SENSORS, random);
+    }
+
+    public static List<Attribute<?>> createRoomAttributes(int extraSensors, long timestamp, Random random) {
+        List<Attribute<?>> attributes = new ArrayList<>(extraSensors + 6);
+        attributes.add(createSensorAttribute(TEMPERATURE, 15 + random.nextInt(150) / 10d, timestamp, Constants.UNITS_CELSIUS));
+        attributes.add(createSensorAttribute(HUMIDITY, (double) 30 + random.nextInt(50), timestamp, Constants.UNITS_PERCENTAGE));
+        attributes.add(new Attribute<>(TARGET_TEMPERATURE, ValueType.NUMBER, 21d, timestamp)
+            .addMeta(
+                new MetaItem<>(MetaItemType.RULE_STATE, true),
+                new MetaItem<>(MetaItemType.UNITS, Constants.units(Constants.UNITS_CELSIUS))
+            ));
+        attributes.add(new Attribute<>(LIGHT_SWITCH, ValueType.BOOLEAN, random.nextBoolean(), timestamp)
+            .addMeta(new MetaItem<>(MetaItemType.RULE_STATE, true)));
+        attributes.add(new Attribute<>(PRESENCE_DETECTED, ValueType.BOOLEAN, random.nextBoolean(), timestamp)
+            .addMeta(
+                new MetaItem<>(MetaItemType.RULE_STATE, true),
+                new MetaItem<>(MetaItemType.READ_ONLY, true)
+            ));
+        attributes.add(new Attribute<>(ALARM, ValueType.BOOLEAN, false, timestamp)
+            .addMeta(new MetaItem<>(MetaItemType.RULE_STATE, true)));
+
+        for (int i = 0; i < extraSensors; i++) {
+            attributes.add(createSensorAttribute(SENSOR_PREFIX + i, random.nextDouble() * 100, timestamp, Constants.UNITS_PERCENTAGE));
+        }
+        return attributes;
+    }
+
+    /**
+     * Creates a stand alone asset with the requested number of attributes (a mix of sensors, switches and labels).
+     */
+    public static ThingAsset createThing(String name, int attributeCount, Random random) {
+        ThingAsset thing = new ThingAsset(name)
+            .setId(createId(name))
+            .setRealm(REALM)
+            .setLocation(createLocation(random));
+        long timestamp = System.currentTimeMillis();
+        Attribute<?>[] attributes = new Attribute<?>[attributeCount];
+
+        for (int i = 0; i < attributeCount; i++) {
+            switch (i % 3) {
+                case 0:
+                    attributes[i] = createSensorAttribute(SENSOR_PREFIX + i, random.nextDouble() * 100, timestamp, Constants.UNITS_PERCENTAGE);
+                    break;
+                case 1:
+                    attributes[i] = new Attribute<>("switch" + i, ValueType.BOOLEAN, random.nextBoolean(), timestamp)
+                        .addMeta(new MetaItem<>(MetaItemType.RULE_STATE, true));
+                    break;
+                default:
+                    attributes[i] = new Attribute<>("label" + i, ValueType.TEXT, "Label " + i, timestamp)
+                        .addMeta(new MetaItem<>(MetaItemType.LABEL, "Label " + i));
+            }
+        }
+
+        thing.addOrReplaceAttributes(attributes);
+        return thing;
+    }
+
+    public static Attribute<Double> createSensorAttribute(String name, double value, long timestamp, String units) {
+        return new Attribute<>(name, ValueType.NUMBER, value, timestamp)
+            .addMeta(
+                new MetaItem<>(MetaItemType.STORE_DATA_POINTS, true),
+                new MetaItem<>(MetaItemType.RULE_STATE, true),
+                new MetaItem<>(MetaItemType.READ_ONLY, true),
+                new MetaItem<>(MetaItemType.UNITS, Constants.units(units))
+            );
+    }
+
+    public static GeoJSONPoint createLocation(Random random) {
+        return new GeoJSONPoint(LONGITUDE + (random.nextDouble() - 0.5) / 10, LATITUDE + (random.nextDouble() - 0.5) / 10);
+    }
+
+    /**
+     * Creates the rules engine facts of the assets, one per attribute as loaded by the rules service.
+     */
+    public static List<AssetState<?>> createAssetStates(Collection<Asset<?>> assets) {
+        List<AssetState<?>> assetStates = new ArrayList<>();
+        for (Asset<?> asset : assets) {
+            for (Attribute<?> attribute : asset.getAttributes().values()) {
+                assetStates.add(new AssetState<>(asset, attribute, AttributeEvent.Source.INTERNAL));
+            }
+        }
+        return assetStates;
+    }
+}
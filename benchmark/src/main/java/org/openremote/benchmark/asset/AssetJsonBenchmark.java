@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.asset;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.benchmark.BenchmarkFixtures;
+import org.openremote.model.asset.Asset;
+import org.openremote.model.asset.impl.ThingAsset;
+import org.openremote.model.attribute.AttributeMap;
+import org.openremote.model.util.ValueUtil;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serialisation of assets with {@link ValueUtil#JSON}, from typical assets up to 10,000 attribute payloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssetJsonBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int attributeCount;
+
+    protected ThingAsset asset;
+    protected byte[] assetJson;
+    protected byte[] attributesJson;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFixtures.quietLogging();
+        asset = BenchmarkFixtures.createThing("Thing", attributeCount, new Random(BenchmarkFixtures.SEED));
+        assetJson = ValueUtil.JSON.writeValueAsBytes(asset);
+        attributesJson = ValueUtil.JSON.writeValueAsBytes(asset.getAttributes());
+    }
+
+    @Benchmark
+    public byte[] serialiseAsset() throws IOException {
+        return ValueUtil.JSON.writeValueAsBytes(asset);
+    }
+
+    @Benchmark
+    public Asset<?> deserialiseAsset() throws IOException {
+        return ValueUtil.JSON.readValue(assetJson, Asset.class);
+    }
+
+    @Benchmark
+    public AttributeMap deserialiseAttributes() throws IOException {
+        return ValueUtil.JSON.readValue(attributesJson, AttributeMap.class);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.asset;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.*;
+import org.openremote.benchmark.BenchmarkFixtures;
+import org.openremote.model.asset.impl.ThingAsset;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.AttributeMap;
+import org.openremote.model.attribute.AttributeMapSnapshot;
+import org.openremote.model.persistence.AttributeMapType;
+import org.openremote.model.util.ValueUtil;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Attribute cloning and the cost of loading and flushing the attributes of an asset through the {@link
+ * AttributeMapType} (snapshot on load, dirty check on flush) compared to the generic JSON type it replaced, which
+ * snapshots by round tripping the map through JSON and compares JSON trees on flush.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttributeMapBenchmark {
+
+    @Param({"10", "1000"})
+    public int attributeCount;
+
+    protected final AttributeMapType attributeMapType = new AttributeMapType();
+    protected AttributeMap attributes;
+    protected Attribute<?> attribute;
+    protected String attributesJson;
+    protected int counter;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFixtures.quietLogging();
+        ThingAsset asset = BenchmarkFixtures.createThing("Thing", attributeCount, new Random(BenchmarkFixtures.SEED));
+        attributes = asset.getAttributes();
+        attribute = attributes.get(BenchmarkFixtures.SENSOR_PREFIX + 0).orElseThrow();
+        attributesJson = ValueUtil.JSON.writeValueAsString(attributes);
+    }
+
+    @Benchmark
+    public Attribute<?> cloneAttribute() {
+        return ValueUtil.clone(attribute);
+    }
+
+    @Benchmark
+    public AttributeMap cloneAttributes() {
+        return ValueUtil.clone(attributes);
+    }
+
+    @Benchmark
+    public AttributeMap copyAttributes() {
+        return AttributeMapSnapshot.copyOf(attributes);
+    }
+
+    @Benchmark
+    public boolean loadAndFlushUnmodified() throws IOException {
+        AttributeMap loaded = ValueUtil.JSON.readValue(attributesJson, AttributeMap.class);
+        Object snapshot = attributeMapType.deepCopy(loaded);
+        return !attributeMapType.equals(loaded, snapshot);
+    }
+
+    @Benchmark
+    public boolean loadAndFlushModified() throws IOException {
+        AttributeMap loaded = ValueUtil.JSON.readValue(attributesJson, AttributeMap.class);
+        Object snapshot = attributeMapType.deepCopy(loaded);
+        setSensorValue(loaded);
+        return !attributeMapType.equals(loaded, snapshot);
+    }
+
+    @Benchmark
+    public boolean loadAndFlushUnmodifiedJsonSnapshot() throws IOException {
+        AttributeMap loaded = ValueUtil.JSON.readValue(attributesJson, AttributeMap.class);
+        AttributeMap snapshot = ValueUtil.JSON.readValue(ValueUtil.JSON.writeValueAsString(loaded), AttributeMap.class);
+        return isModifiedJson(loaded, snapshot);
+    }
+
+    @Benchmark
+    public boolean loadAndFlushModifiedJsonSnapshot() throws IOException {
+        AttributeMap loaded = ValueUtil.JSON.readValue(attributesJson, AttributeMap.class);
+        AttributeMap snapshot = ValueUtil.JSON.readValue(ValueUtil.JSON.writeValueAsString(loaded), AttributeMap.class);
+        setSensorValue(loaded);
+        return isModifiedJson(loaded, snapshot);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void setSensorValue(AttributeMap attributes) {
+        attributes.get(BenchmarkFixtures.SENSOR_PREFIX + 0)
+            .ifPresent(sensor -> ((Attribute<Object>) sensor).setValue((double) counter++));
+    }
+
+    protected static boolean isModifiedJson(AttributeMap current, AttributeMap snapshot) {
+        JsonNode currentTree = ValueUtil.JSON.valueToTree(current);
+        JsonNode snapshotTree = ValueUtil.JSON.valueToTree(snapshot);
+        return !currentTree.equals(snapshotTree);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.concurrent;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.benchmark.BenchmarkFixtures;
+import org.openremote.container.concurrent.ContainerScheduledExecutor;
+import org.openremote.container.concurrent.TimingWheelScheduler;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling and then cancelling 1,000,000 periodic tasks (e.g. one polling task per linked attribute) on the
+ * {@link TimingWheelScheduler} with the container defaults compared to a {@link ContainerScheduledExecutor}; the
+ * reported time is per task.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TimingWheelSchedulerBenchmark {
+
+    public static final int TASK_COUNT = 1_000_000;
+    public static final long TICK_MILLIS = 10;
+    public static final int WHEEL_SIZE = 512;
+
+    @Param({"timingWheel", "scheduledExecutor"})
+    public String scheduler;
+
+    protected ScheduledExecutorService executorService;
+    protected ScheduledFuture<?>[] futures;
+    protected final Runnable task = () -> {};
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        BenchmarkFixtures.quietLogging();
+        executorService = "timingWheel".equals(scheduler)
+            ? new TimingWheelScheduler("periodic", Runnable::run, TICK_MILLIS, WHEEL_SIZE)
+            : new ContainerScheduledExecutor("periodic", Math.max(Runtime.getRuntime().availableProcessors(), 2));
+        futures = new ScheduledFuture<?>[TASK_COUNT];
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        executorService.shutdownNow();
+        futures = null;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASK_COUNT)
+    public void scheduleAndCancel() {
+        for (int i = 0; i < TASK_COUNT; i++) {
+            // Polling periods of 1s to 1 minute
+            long periodMillis = 1000L * (1 + i % 60);
+            futures[i] = executorService.scheduleAtFixedRate(task, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+        for (ScheduledFuture<?> future : futures) {
+            future.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.datapoint;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.benchmark.BenchmarkFixtures;
+import org.openremote.manager.datapoint.DatapointCache;
+import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.datapoint.DatapointInterval;
+import org.openremote.model.datapoint.ValueDatapoint;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.openremote.benchmark.BenchmarkFixtures.SEED;
+import static org.openremote.benchmark.BenchmarkFixtures.TEMPERATURE;
+
+/**
+ * The {@link DatapointCache} that answers the recent data point queries of rules: storing a data point and
+ * aggregating the last hour of an attribute per minute, with a data point every 10 seconds for each attribute.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatapointCacheBenchmark {
+
+    public static final long WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+    public static final long INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    @Param({"100", "10000"})
+    public int attributeCount;
+
+    protected DatapointCache datapointCache;
+    protected AttributeRef[] attributeRefs;
+    protected Random random;
+    protected long queryMillis;
+    protected LocalDateTime queryFrom;
+    protected LocalDateTime queryTo;
+    protected long updateMillis;
+    protected int attributeIndex;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.quietLogging();
+        random = new Random(SEED);
+        datapointCache = new DatapointCache((int) (WINDOW_MILLIS / INTERVAL_MILLIS) * 2);
+        attributeRefs = new AttributeRef[attributeCount];
+        queryMillis = System.currentTimeMillis();
+        updateMillis = queryMillis;
+        queryFrom = LocalDateTime.ofInstant(Instant.ofEpochMilli(queryMillis - WINDOW_MILLIS), ZoneId.systemDefault());
+        queryTo = LocalDateTime.ofInstant(Instant.ofEpochMilli(queryMillis), ZoneId.systemDefault());
+
+        int points = (int) (WINDOW_MILLIS / INTERVAL_MILLIS);
+        long fromMillis = queryMillis - WINDOW_MILLIS;
+
+        for (int i = 0; i < attributeCount; i++) {
+            attributeRefs[i] = new AttributeRef(BenchmarkFixtures.createId("Room " + i), TEMPERATURE);
+            long[] timestamps = new long[points];
+            double[] values = new double[points];
+            for (int j = 0; j < points; j++) {
+                timestamps[j] = fromMillis + j * INTERVAL_MILLIS;
+                values[j] = 15 + random.nextDouble() * 10;
+            }
+            datapointCache.add(attributeRefs[i], WINDOW_MILLIS, queryMillis);
+            datapointCache.seed(attributeRefs[i], fromMillis, timestamps, values, queryMillis);
+        }
+    }
+
+    /**
+     * Stores the next data point of the next attribute, time moves on so that every attribute gets one per interval.
+     */
+    @Benchmark
+    public void update() {
+        updateMillis += Math.max(1L, INTERVAL_MILLIS / attributeCount);
+        datapointCache.update(nextAttributeRef(), updateMillis, 15 + random.nextDouble() * 10, updateMillis);
+    }
+
+    @Benchmark
+    public ValueDatapoint<?>[] lastHourPerMinute() {
+        return datapointCache.getValueDatapoints(nextAttributeRef(), DatapointInterval.MINUTE, 1, queryFrom, queryTo, queryMillis);
+    }
+
+    protected AttributeRef nextAttributeRef() {
+        AttributeRef attributeRef = attributeRefs[attributeIndex];
+        attributeIndex = (attributeIndex + 1) % attributeCount;
+        return attributeRef;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.datapoint;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.manager.datapoint.AbstractDatapointService;
+import org.openremote.model.datapoint.ValueDatapoint;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.openremote.benchmark.BenchmarkFixtures.SEED;
+
+/**
+ * {@link AbstractDatapointService#largestTriangleThreeBuckets} downsampling of a random walk, the input sizes match
+ * the min/max decimated data points read from the DB for charts of 1,000 and 10,000 points.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LttbBenchmark {
+
+    @Param({"1000", "10000"})
+    public int points;
+
+    protected ValueDatapoint<?>[] datapoints;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(SEED);
+        // Each decimated bucket contributes its min and max
+        int length = points * 8 * 2;
+        long timestamp = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(length);
+        double value = 20d;
+        datapoints = new ValueDatapoint<?>[length];
+        for (int i = 0; i < length; i++) {
+            value += random.nextGaussian();
+            datapoints[i] = new ValueDatapoint<>(timestamp + TimeUnit.SECONDS.toMillis(i), value);
+        }
+    }
+
+    @Benchmark
+    public ValueDatapoint<?>[] largestTriangleThreeBuckets() {
+        return AbstractDatapointService.largestTriangleThreeBuckets(datapoints, points);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.energy;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.manager.energy.EnergyOptimiser;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+import static org.openremote.benchmark.BenchmarkFixtures.SEED;
+
+/**
+ * One optimisation run of an {@link EnergyOptimiser} for a storage asset that can import and export with a minimum
+ * energy level, as done by the energy optimisation service per asset; with the primitive and the boxed routines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnergyOptimiserBenchmark {
+
+    public static final double ENERGY_LEVEL = 40d;
+    public static final double ENERGY_LEVEL_MIN = 30d;
+    public static final double ENERGY_LEVEL_MAX = 90d;
+    public static final double POWER_IMPORT_MAX = 11d;
+    public static final double POWER_EXPORT_MAX = -11d;
+
+    @Param({"1", "0.25"})
+    public double intervalSize;
+
+    protected EnergyOptimiser optimiser;
+    protected int intervalCount;
+    protected double[] powerNets;
+    protected double[] importPowerLimits;
+    protected double[] exportPowerLimits;
+    protected double[] costImports;
+    protected double[] costExports;
+    protected double[] energyLevelMins;
+    protected double[] energyLevelMaxs;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(SEED);
+        optimiser = new EnergyOptimiser(intervalSize, 1d);
+        intervalCount = optimiser.get24HourIntervalCount();
+        powerNets = new double[intervalCount];
+        importPowerLimits = new double[intervalCount];
+        exportPowerLimits = new double[intervalCount];
+        costImports = new double[intervalCount];
+        costExports = new double[intervalCount];
+        energyLevelMins = new double[intervalCount];
+        energyLevelMaxs = new double[intervalCount];
+
+        for (int i = 0; i < intervalCount; i++) {
+            powerNets[i] = Math.round((random.nextDouble() * 50 - 25) * 100) / 100d;
+            importPowerLimits[i] = 20 + random.nextInt(40);
+            exportPowerLimits[i] = -20 - random.nextInt(40);
+            costImports[i] = Math.round((random.nextDouble() * 20 - 8) * 100) / 100d;
+            costExports[i] = Math.round((random.nextDouble() * 20 - 10) * 100) / 100d;
+        }
+        Arrays.fill(energyLevelMins, ENERGY_LEVEL_MIN);
+        Arrays.fill(energyLevelMaxs, ENERGY_LEVEL_MAX);
+    }
+
+    @Benchmark
+    public double[] primitive() {
+        double[] mins = energyLevelMins.clone();
+        double[] powerSetpoints = new double[intervalCount];
+        IntToDoubleFunction powerImportMaxCalculator = interval -> POWER_IMPORT_MAX;
+        IntToDoubleFunction powerExportMaxCalculator = interval -> POWER_EXPORT_MAX;
+        IntToDoubleFunction energyLevelCalculator = interval -> {
+            double level = ENERGY_LEVEL;
+            for (int j = 0; j < interval; j++) {
+                level += powerSetpoints[j] * intervalSize;
+            }
+            return level;
+        };
+
+        optimiser.normaliseEnergyMinRequirements(mins, powerImportMaxCalculator, powerExportMaxCalculator, ENERGY_LEVEL);
+
+        EnergyOptimiser.IntervalOptimiser exportOptimiser = optimiser.getExportIntervalOptimiser(powerNets, exportPowerLimits, costImports, costExports, 0d);
+        double[][] exportCostAndPower = optimiser.getCostAndPower(exportOptimiser, 0d, POWER_EXPORT_MAX);
+        EnergyOptimiser.IntervalOptimiser importOptimiser = optimiser.getImportIntervalOptimiser(powerNets, importPowerLimits, costImports, costExports, 0d);
+        double[][] importCostAndPower = optimiser.getCostAndPower(importOptimiser, 0d, POWER_IMPORT_MAX);
+        optimiser.applyEnergyMinImports(importCostAndPower, mins, powerSetpoints, energyLevelCalculator, importOptimiser, powerImportMaxCalculator);
+
+        optimiser.applyEarningOpportunities(importCostAndPower, exportCostAndPower, mins, energyLevelMaxs, powerSetpoints, energyLevelCalculator, powerImportMaxCalculator, powerExportMaxCalculator);
+        return powerSetpoints;
+    }
+
+    @Benchmark
+    public double[] boxed() {
+        double[] mins = energyLevelMins.clone();
+        double[] powerSetpoints = new double[intervalCount];
+        Function<Integer, Double> powerImportMaxCalculator = interval -> POWER_IMPORT_MAX;
+        Function<Integer, Double> powerExportMaxCalculator = interval -> POWER_EXPORT_MAX;
+        Function<Integer, Double> energyLevelCalculator = interval ->
+            ENERGY_LEVEL + IntStream.range(0, interval).mapToDouble(j -> powerSetpoints[j] * intervalSize).sum();
+
+        optimiser.normaliseEnergyMinRequirements(mins, powerImportMaxCalculator, powerExportMaxCalculator, ENERGY_LEVEL);
+
+        BiFunction<Integer, Double, double[]> exportOptimiser = optimiser.getExportOptimiser(powerNets, exportPowerLimits, costImports, costExports, 0d);
+        double[][] exportCostAndPower = IntStream.range(0, intervalCount)
+            .mapToObj(interval -> exportOptimiser.apply(interval, POWER_EXPORT_MAX))
+            .toArray(double[][]::new);
+        BiFunction<Integer, double[], double[]> importOptimiser = optimiser.getImportOptimiser(powerNets, importPowerLimits, costImports, costExports, 0d);
+        double[][] importCostAndPower = IntStream.range(0, intervalCount)
+            .mapToObj(interval -> importOptimiser.apply(interval, new double[] {0d, POWER_IMPORT_MAX}))
+            .toArray(double[][]::new);
+        optimiser.applyEnergyMinImports(importCostAndPower, mins, powerSetpoints, energyLevelCalculator, importOptimiser, powerImportMaxCalculator);
+
+        optimiser.applyEarningOpportunities(importCostAndPower, exportCostAndPower, mins, energyLevelMaxs, powerSetpoints, energyLevelCalculator, powerImportMaxCalculator, powerExportMaxCalculator);
+        return powerSetpoints;
+    }
+}
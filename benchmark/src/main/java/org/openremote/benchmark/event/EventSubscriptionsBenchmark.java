@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.event;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.openjdk.jmh.annotations.*;
+import org.openremote.benchmark.BenchmarkFixtures;
+import org.openremote.container.timer.TimerService;
+import org.openremote.manager.event.EventSubscriptions;
+import org.openremote.model.asset.AssetFilter;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.event.shared.EventSubscription;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.openremote.benchmark.BenchmarkFixtures.*;
+
+/**
+ * Fan-out of attribute events to client sessions with {@link EventSubscriptions#splitForSubscribers}; every session
+ * has a realm wide subscription to a few attributes (a dashboard) and one to all attributes of a handful of assets (an
+ * asset view) and every tenth session is a restricted user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventSubscriptionsBenchmark {
+
+    public static final int ASSET_COUNT = 1000;
+    public static final int ASSETS_PER_SESSION = 10;
+    public static final int EVENT_COUNT = 1024;
+
+    /**
+     * Exposes subscribing which is otherwise done by the client event service.
+     */
+    public static class SessionEventSubscriptions extends EventSubscriptions {
+
+        public SessionEventSubscriptions(TimerService timerService) {
+            super(timerService);
+        }
+
+        public void subscribe(String sessionKey, boolean restrictedUser, EventSubscription<?> subscription) {
+            createOrUpdate(sessionKey, restrictedUser, false, subscription);
+        }
+    }
+
+    @Param({"100", "1000", "10000"})
+    public int sessionCount;
+
+    protected SessionEventSubscriptions eventSubscriptions;
+    protected Exchange[] exchanges;
+    protected int eventIndex;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.quietLogging();
+        Random random = new Random(SEED);
+        eventSubscriptions = new SessionEventSubscriptions(BenchmarkFixtures.createTimerService());
+
+        String[] assetIds = new String[ASSET_COUNT];
+        String[] parentIds = new String[ASSET_COUNT];
+        for (int i = 0; i < ASSET_COUNT; i++) {
+            assetIds[i] = BenchmarkFixtures.createId("Room " + i);
+            parentIds[i] = BenchmarkFixtures.createId("Building " + (i / ROOMS_PER_BUILDING));
+        }
+
+        for (int i = 0; i < sessionCount; i++) {
+            String sessionKey = "session" + i;
+            boolean restrictedUser = i % 10 == 0;
+
+            eventSubscriptions.subscribe(sessionKey, restrictedUser, new EventSubscription<>(
+                AttributeEvent.class,
+                new AssetFilter<AttributeEvent>().setRealm(REALM).setAttributeNames(TEMPERATURE, PRESENCE_DETECTED),
+                "dashboard"
+            ));
+
+            String[] viewedAssetIds = new String[ASSETS_PER_SESSION];
+            for (int j = 0; j < ASSETS_PER_SESSION; j++) {
+                viewedAssetIds[j] = assetIds[random.nextInt(ASSET_COUNT)];
+            }
+            eventSubscriptions.subscribe(sessionKey, restrictedUser, new EventSubscription<>(
+                AttributeEvent.class,
+                new AssetFilter<AttributeEvent>().setRealm(REALM).setAssetIds(viewedAssetIds),
+                "assetView"
+            ));
+        }
+
+        String[] attributeNames = {TEMPERATURE, HUMIDITY, LIGHT_SWITCH, PRESENCE_DETECTED};
+        DefaultCamelContext camelContext = new DefaultCamelContext();
+        exchanges = new Exchange[EVENT_COUNT];
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            int assetIndex = random.nextInt(ASSET_COUNT);
+            String attributeName = attributeNames[random.nextInt(attributeNames.length)];
+            AttributeEvent event = new AttributeEvent(assetIds[assetIndex], attributeName, random.nextInt(100))
+                .setRealm(REALM)
+                .setParentId(parentIds[assetIndex])
+                .setAccessRestrictedRead(random.nextBoolean());
+            exchanges[i] = new DefaultExchange(camelContext);
+            exchanges[i].getIn().setBody(event);
+        }
+    }
+
+    @Benchmark
+    public List<Message> splitForSubscribers() {
+        Exchange exchange = exchanges[eventIndex];
+        eventIndex = (eventIndex + 1) % EVENT_COUNT;
+        return eventSubscriptions.splitForSubscribers(exchange);
+    }
+}
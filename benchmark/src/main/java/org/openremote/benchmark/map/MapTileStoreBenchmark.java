@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.map;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.benchmark.BenchmarkFixtures;
+import org.openremote.manager.map.MapTileStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.openremote.benchmark.BenchmarkFixtures.SEED;
+
+/**
+ * Concurrent tile requests against a {@link MapTileStore} backed by a generated mbtiles file of a 64 x 64 tile area
+ * at zoom 14 (and the tiles covering it at lower zooms), with and without the tile cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class MapTileStoreBenchmark {
+
+    public static final int MAX_ZOOM = 14;
+    public static final int AREA_TILES = 64;
+    // Tiles around Eindhoven at the max zoom
+    public static final int AREA_COLUMN = 8440;
+    public static final int AREA_ROW = 5450;
+
+    @Param({"1", "4"})
+    public int connectionCount;
+
+    @Param({"0", "67108864"})
+    public long cacheMaxBytes;
+
+    protected Path tilesPath;
+    protected MapTileStore tileStore;
+
+    @State(Scope.Thread)
+    public static class TileRequests {
+        protected Random random;
+
+        @Setup
+        public void setup() {
+            random = new Random(SEED + Thread.currentThread().getId());
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkFixtures.quietLogging();
+        tilesPath = Files.createTempFile("benchmark", ".mbtiles");
+        writeTiles(tilesPath);
+        tileStore = new MapTileStore(tilesPath, connectionCount, cacheMaxBytes);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        tileStore.close();
+        Files.deleteIfExists(tilesPath);
+    }
+
+    @Benchmark
+    public byte[] getTile(TileRequests requests) {
+        return tileStore.getTile(
+            MAX_ZOOM,
+            AREA_COLUMN + requests.random.nextInt(AREA_TILES),
+            AREA_ROW + requests.random.nextInt(AREA_TILES));
+    }
+
+    protected static void writeTiles(Path path) throws Exception {
+        Random random = new Random(SEED);
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + path.toAbsolutePath())) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("create table metadata (name text, value text)");
+                statement.execute("create table tiles (zoom_level integer, tile_column integer, tile_row integer, tile_data blob)");
+                statement.execute("create unique index tile_index on tiles (zoom_level, tile_column, tile_row)");
+            }
+
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement("insert into tiles values (?, ?, ?, ?)")) {
+                for (int zoom = MAX_ZOOM, shift = 0; zoom >= 0 && AREA_TILES >> shift > 0; zoom--, shift++) {
+                    int tiles = AREA_TILES >> shift;
+                    for (int column = 0; column < tiles; column++) {
+                        for (int row = 0; row < tiles; row++) {
+                            byte[] tile = new byte[2048 + random.nextInt(6144)];
+                            random.nextBytes(tile);
+                            int xyzRow = (AREA_ROW >> shift) + row;
+                            insert.setInt(1, zoom);
+                            insert.setInt(2, (AREA_COLUMN >> shift) + column);
+                            // Stored as TMS
+                            insert.setInt(3, (1 << zoom) - 1 - xyzRow);
+                            insert.setBytes(4, tile);
+                            insert.addBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+            }
+            connection.commit();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.metrics;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.container.metrics.CounterMetric;
+import org.openremote.container.metrics.MetricsRegistry;
+import org.openremote.container.metrics.TimerMetric;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost that instrumentation adds to hot paths: incrementing a counter, timing an operation and looking a metric up
+ * in the {@link MetricsRegistry} by name and labels, uncontended and from 8 threads, and rendering the Prometheus
+ * exposition of a registry with a typical number of metrics.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmark {
+
+    public static final int PROCESSOR_COUNT = 20;
+
+    protected MetricsRegistry registry;
+    protected CounterMetric counter;
+    protected TimerMetric timer;
+
+    @Setup
+    public void setup() {
+        registry = new MetricsRegistry();
+        counter = registry.counter("or_benchmark_events_total", "Events processed");
+        timer = registry.timer("or_benchmark_seconds", "Time taken to process an event");
+        for (int i = 0; i < PROCESSOR_COUNT; i++) {
+            registry.timer("or_asset_processor_seconds", "Time taken by each asset update processor", "processor", "Processor" + i)
+                .record(i * 1000L);
+        }
+    }
+
+    @Benchmark
+    public void counterIncrement() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public void timerRecordSince() {
+        timer.recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    public TimerMetric registryLookup() {
+        return registry.timer("or_asset_processor_seconds", "Time taken by each asset update processor", "processor", "Processor1");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void counterIncrementContended() {
+        counter.increment();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void timerRecordSinceContended() {
+        timer.recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String toPrometheus() {
+        return registry.toPrometheus();
+    }
+}
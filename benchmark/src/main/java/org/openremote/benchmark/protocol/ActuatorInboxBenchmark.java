@@ -0,0 +1,234 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.protocol;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.agent.protocol.ActuatorInbox;
+import org.openremote.agent.protocol.ProtocolAssetService;
+import org.openremote.agent.protocol.ProtocolPredictedAssetService;
+import org.openremote.benchmark.BenchmarkFixtures;
+import org.openremote.container.Container;
+import org.openremote.container.message.MessageBrokerContext;
+import org.openremote.container.message.MessageBrokerService;
+import org.openremote.container.persistence.PersistenceEvent;
+import org.openremote.model.ContainerService;
+import org.openremote.model.asset.Asset;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.attribute.MetaItem;
+import org.openremote.model.query.AssetQuery;
+import org.openremote.model.value.MetaItemType;
+import org.openremote.model.value.ValueType;
+import org.openremote.test.protocol.MockAgent;
+import org.openremote.test.protocol.MockAgentLink;
+import org.openremote.test.protocol.MockProtocol;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.openremote.benchmark.BenchmarkFixtures.LIGHT_SWITCH;
+
+/**
+ * A burst of attribute writes to 1,000 started {@link MockProtocol} instances, each offered through
+ * {@link MockProtocol#offerLinkedAttributeWrite} to its {@link ActuatorInbox} on the container's actuator pool (sized
+ * by <code>SCHEDULED_TASKS_THREADS_MAX_ACTUATOR</code>); measures how long it takes until the writes of every
+ * responsive agent have been handled by its protocol whilst some agents have a slow device ({@link
+ * MockProtocol#writeDelayMillis} of 1ms). The container isn't started, only the services the protocols use are
+ * provided and sensor updates are disabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ActuatorInboxBenchmark {
+
+    public static final int AGENT_COUNT = 1000;
+    public static final int WRITES_PER_AGENT = 10;
+    public static final long SLOW_WRITE_DELAY_MILLIS = 1L;
+
+    /**
+     * Asset operations aren't part of the write path so they do nothing.
+     */
+    public static class NoopProtocolAssetService implements ProtocolAssetService {
+
+        @Override
+        public void init(org.openremote.model.Container container) {
+        }
+
+        @Override
+        public void start(org.openremote.model.Container container) {
+        }
+
+        @Override
+        public void stop(org.openremote.model.Container container) {
+        }
+
+        @Override
+        public <T extends Asset<?>> T mergeAsset(T asset) {
+            return asset;
+        }
+
+        @Override
+        public boolean deleteAssets(String... assetIds) {
+            return true;
+        }
+
+        @Override
+        public <T extends Asset<?>> T findAsset(String assetId, Class<T> assetType) {
+            return null;
+        }
+
+        @Override
+        public <T extends Asset<?>> T findAsset(String assetId) {
+            return null;
+        }
+
+        @Override
+        public List<Asset<?>> findAssets(String assetId, AssetQuery assetQuery) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void sendAttributeEvent(AttributeEvent attributeEvent) {
+        }
+
+        @Override
+        public void subscribeChildAssetChange(String agentId, Consumer<PersistenceEvent<Asset<?>>> assetChangeConsumer) {
+        }
+
+        @Override
+        public void unsubscribeChildAssetChange(String agentId, Consumer<PersistenceEvent<Asset<?>>> assetChangeConsumer) {
+        }
+    }
+
+    public static class NoopProtocolPredictedAssetService implements ProtocolPredictedAssetService {
+
+        @Override
+        public void init(org.openremote.model.Container container) {
+        }
+
+        @Override
+        public void start(org.openremote.model.Container container) {
+        }
+
+        @Override
+        public void stop(org.openremote.model.Container container) {
+        }
+
+        @Override
+        public void updateValue(AttributeRef attributeRef, Object value, LocalDateTime timestamp) {
+        }
+
+        @Override
+        public void updateValue(String assetId, String attributeName, Object value, LocalDateTime timestamp) {
+        }
+    }
+
+    @Param({"0", "10"})
+    public int slowAgentCount;
+
+    protected Container container;
+    protected MockProtocol[] protocols;
+    protected AttributeEvent[] events;
+    protected long[] expectedWrites;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkFixtures.quietLogging();
+        // Only the context is needed to look up the sensor queue, Camel itself isn't started
+        MessageBrokerService messageBrokerService = new MessageBrokerService() {
+            {
+                context = new MessageBrokerContext();
+            }
+        };
+        container = new Container(new ContainerService[] {
+            BenchmarkFixtures.createTimerService(),
+            messageBrokerService,
+            new NoopProtocolAssetService(),
+            new NoopProtocolPredictedAssetService()
+        });
+        protocols = new MockProtocol[AGENT_COUNT];
+        events = new AttributeEvent[AGENT_COUNT];
+        expectedWrites = new long[AGENT_COUNT];
+
+        for (int i = 0; i < AGENT_COUNT; i++) {
+            String agentId = BenchmarkFixtures.createId("Agent " + i);
+            String assetId = BenchmarkFixtures.createId("Light " + i);
+            MockAgent agent = new MockAgent("Agent " + i)
+                .setId(agentId)
+                .setRealm(BenchmarkFixtures.REALM)
+                .setRequired(true);
+            MockProtocol protocol = new MockProtocol(agent);
+            protocol.updateSensor = false;
+            protocol.writeDelayMillis = isSlow(i) ? SLOW_WRITE_DELAY_MILLIS : 0L;
+            protocol.start(container);
+            protocol.linkAttribute(
+                assetId,
+                new Attribute<>(LIGHT_SWITCH, ValueType.BOOLEAN)
+                    .addMeta(new MetaItem<>(MetaItemType.AGENT_LINK, new MockAgentLink(agentId).setRequiredValue("true"))));
+            protocols[i] = protocol;
+            events[i] = new AttributeEvent(assetId, LIGHT_SWITCH, true);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (MockProtocol protocol : protocols) {
+            protocol.writeDelayMillis = 0L;
+            protocol.stop(container);
+        }
+    }
+
+    @Benchmark
+    public long burst() {
+        for (int write = 0; write < WRITES_PER_AGENT; write++) {
+            for (int i = 0; i < AGENT_COUNT; i++) {
+                protocols[i].offerLinkedAttributeWrite(events[i]);
+            }
+        }
+
+        long dispatched = 0L;
+        for (int i = 0; i < AGENT_COUNT; i++) {
+            if (isSlow(i)) {
+                continue;
+            }
+            ActuatorInbox inbox = protocols[i].getActuatorInbox();
+            expectedWrites[i] += WRITES_PER_AGENT;
+            while (inbox.getDispatchedWrites() < expectedWrites[i]) {
+                Thread.onSpinWait();
+            }
+            // The inbox is idle now so the recorded writes can be cleared, otherwise they'd grow with every invocation
+            protocols[i].protocolWriteAttributeEvents.clear();
+            protocols[i].protocolMethodCalls.clear();
+            dispatched += expectedWrites[i];
+        }
+        return dispatched;
+    }
+
+    protected boolean isSlow(int agentIndex) {
+        return agentIndex < slowAgentCount;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.protocol;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.benchmark.BenchmarkFixtures;
+import org.openremote.model.asset.agent.DefaultAgentLink;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.AttributeState;
+import org.openremote.model.protocol.AttributeMessageDemultiplexer;
+import org.openremote.model.protocol.ProtocolUtil;
+import org.openremote.model.query.AssetQuery;
+import org.openremote.model.query.filter.StringPredicate;
+import org.openremote.model.value.JsonPathFilter;
+import org.openremote.model.value.ValueFilter;
+import org.openremote.model.value.ValueType;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.openremote.benchmark.BenchmarkFixtures.SEED;
+
+/**
+ * Routing inbound messages of a TCP/UDP/websocket/MQTT style protocol to the linked attributes with an {@link
+ * AttributeMessageDemultiplexer} compared to offering every message to a consumer per linked attribute (see {@link
+ * ProtocolUtil#createGenericAttributeMessageConsumer}). Messages are JSON with a sensor ID that the links match on.
+ * <p>
+ * The TCP variants read the messages from a local server that writes a batch of lines for every byte it receives.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttributeMessageDemultiplexerBenchmark {
+
+    public static final int MESSAGE_COUNT = 1024;
+    public static final int TCP_BATCH_SIZE = 100;
+    public static final String ASSET_ID = BenchmarkFixtures.createId("Sensor hub");
+
+    @Param({"100", "1000"})
+    public int linkCount;
+
+    protected AttributeMessageDemultiplexer demultiplexer;
+    protected List<Consumer<String>> linkConsumers;
+    protected String[] messages;
+    protected int messageIndex;
+    protected long states;
+
+    protected ServerSocket serverSocket;
+    protected Thread serverThread;
+    protected Socket socket;
+    protected OutputStream socketOutput;
+    protected BufferedReader socketReader;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFixtures.quietLogging();
+        Random random = new Random(SEED);
+        Consumer<AttributeState> stateConsumer = state -> states++;
+        demultiplexer = new AttributeMessageDemultiplexer(System::currentTimeMillis, stateConsumer);
+        linkConsumers = new ArrayList<>(linkCount);
+
+        for (int i = 0; i < linkCount; i++) {
+            Attribute<String> attribute = new Attribute<>("sensor" + i, ValueType.TEXT);
+            DefaultAgentLink agentLink = new DefaultAgentLink("agent")
+                .setMessageMatchFilters(new ValueFilter[] {new JsonPathFilter("$.id", false, false)})
+                .setMessageMatchPredicate(new StringPredicate(AssetQuery.Match.EXACT, "sensor" + i));
+            demultiplexer.add(ASSET_ID, attribute, agentLink);
+            linkConsumers.add(ProtocolUtil.createGenericAttributeMessageConsumer(ASSET_ID, attribute, agentLink, System::currentTimeMillis, stateConsumer));
+        }
+
+        messages = new String[MESSAGE_COUNT];
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            messages[i] = "{\"id\":\"sensor" + random.nextInt(linkCount) + "\",\"value\":" + random.nextInt(1000) / 10d + "}";
+        }
+
+        startServer();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        socket.close();
+        serverSocket.close();
+        serverThread.join(1000);
+    }
+
+    @Benchmark
+    public long demultiplexed() {
+        demultiplexer.accept(nextMessage());
+        return states;
+    }
+
+    @Benchmark
+    public long perLinkConsumers() {
+        String message = nextMessage();
+        for (Consumer<String> linkConsumer : linkConsumers) {
+            linkConsumer.accept(message);
+        }
+        return states;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TCP_BATCH_SIZE)
+    public long tcpDemultiplexed() throws IOException {
+        requestBatch();
+        for (int i = 0; i < TCP_BATCH_SIZE; i++) {
+            demultiplexer.accept(socketReader.readLine());
+        }
+        return states;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TCP_BATCH_SIZE)
+    public long tcpPerLinkConsumers() throws IOException {
+        requestBatch();
+        for (int i = 0; i < TCP_BATCH_SIZE; i++) {
+            String message = socketReader.readLine();
+            for (Consumer<String> linkConsumer : linkConsumers) {
+                linkConsumer.accept(message);
+            }
+        }
+        return states;
+    }
+
+    protected String nextMessage() {
+        String message = messages[messageIndex];
+        messageIndex = (messageIndex + 1) % MESSAGE_COUNT;
+        return message;
+    }
+
+    protected void requestBatch() throws IOException {
+        socketOutput.write(1);
+        socketOutput.flush();
+    }
+
+    /**
+     * Stands in for a device that sends a batch of messages, one per line, when polled.
+     */
+    protected void startServer() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        byte[][] batches = new byte[MESSAGE_COUNT / TCP_BATCH_SIZE][];
+        for (int i = 0; i < batches.length; i++) {
+            StringBuilder batch = new StringBuilder();
+            for (int j = 0; j < TCP_BATCH_SIZE; j++) {
+                batch.append(messages[i * TCP_BATCH_SIZE + j]).append('\n');
+            }
+            batches[i] = batch.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        serverThread = new Thread(() -> {
+            try (Socket client = serverSocket.accept();
+                 InputStream input = client.getInputStream();
+                 OutputStream output = new BufferedOutputStream(client.getOutputStream())) {
+                int batchIndex = 0;
+                while (input.read() >= 0) {
+                    output.write(batches[batchIndex]);
+                    output.flush();
+                    batchIndex = (batchIndex + 1) % batches.length;
+                }
+            } catch (IOException ignored) {
+                // Closed on tear down
+            }
+        }, "Benchmark TCP server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        socket.setTcpNoDelay(true);
+        socketOutput = socket.getOutputStream();
+        socketReader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+}
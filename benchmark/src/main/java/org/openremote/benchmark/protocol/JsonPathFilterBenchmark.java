@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.protocol;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.ParseContext;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import org.openjdk.jmh.annotations.*;
+import org.openremote.benchmark.BenchmarkFixtures;
+import org.openremote.model.protocol.ProtocolUtil;
+import org.openremote.model.util.ValueUtil;
+import org.openremote.model.value.JsonPathFilter;
+import org.openremote.model.value.RegexValueFilter;
+import org.openremote.model.value.ValueFilter;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.openremote.benchmark.BenchmarkFixtures.SEED;
+
+/**
+ * Fan-out of one inbound JSON payload to the value filters of every linked attribute, each link extracts its own
+ * sensor reading; with the filter results shared per message ({@link ProtocolUtil#applyValueFiltersShared}), with
+ * {@link ValueUtil#applyValueFilters} and with the previous behaviour of parsing the payload for every link.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonPathFilterBenchmark {
+
+    // Distinct payloads so that nothing is carried over from the previous message
+    public static final int PAYLOAD_COUNT = 16;
+
+    protected static final ParseContext PER_LINK_PARSER = JsonPath.using(
+        Configuration.builder()
+            .jsonProvider(new JacksonJsonNodeJsonProvider())
+            .mappingProvider(new JacksonMappingProvider())
+            .build()
+            .addOptions(Option.DEFAULT_PATH_LEAF_TO_NULL)
+    );
+
+    @Param({"10", "100"})
+    public int linkCount;
+
+    protected String[] payloads;
+    protected ValueFilter[][] linkFilters;
+    protected String[] linkPaths;
+    protected int payloadIndex;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.quietLogging();
+        Random random = new Random(SEED);
+        payloads = new String[PAYLOAD_COUNT];
+        for (int p = 0; p < PAYLOAD_COUNT; p++) {
+            StringBuilder payload = new StringBuilder("{\"gateway\":\"gw").append(p).append("\",\"sensors\":[");
+            for (int i = 0; i < linkCount; i++) {
+                if (i > 0) {
+                    payload.append(',');
+                }
+                payload.append("{\"id\":\"sensor").append(i).append("\",\"value\":").append(random.nextInt(1000) / 10d)
+                    .append(",\"unit\":\"C\",\"battery\":").append(random.nextInt(100)).append('}');
+            }
+            payloads[p] = payload.append("]}").toString();
+        }
+
+        // Links share the payload parse, extract their reading and strip anything that isn't part of the number
+        linkFilters = new ValueFilter[linkCount][];
+        linkPaths = new String[linkCount];
+        for (int i = 0; i < linkCount; i++) {
+            linkPaths[i] = "$.sensors[" + i + "].value";
+            linkFilters[i] = new ValueFilter[] {
+                new JsonPathFilter(linkPaths[i], false, false),
+                new RegexValueFilter("([0-9.]+)", false, false)
+            };
+        }
+    }
+
+    @Benchmark
+    public Object shared() {
+        String payload = nextPayload();
+        Object result = null;
+        for (ValueFilter[] filters : linkFilters) {
+            result = ProtocolUtil.applyValueFiltersShared(payload, filters);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Object unshared() {
+        String payload = nextPayload();
+        Object result = null;
+        for (ValueFilter[] filters : linkFilters) {
+            result = ValueUtil.applyValueFilters(payload, filters);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Object perLinkParse() {
+        String payload = nextPayload();
+        Object result = null;
+        for (String linkPath : linkPaths) {
+            result = PER_LINK_PARSER.parse(payload).read(linkPath);
+        }
+        return result;
+    }
+
+    protected String nextPayload() {
+        String payload = payloads[payloadIndex];
+        payloadIndex = (payloadIndex + 1) % PAYLOAD_COUNT;
+        return payload;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.rules;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.benchmark.BenchmarkFixtures;
+import org.openremote.container.timer.TimerService;
+import org.openremote.manager.rules.AssetQueryPredicate;
+import org.openremote.manager.rules.RulesFacts;
+import org.openremote.model.asset.Asset;
+import org.openremote.model.asset.impl.RoomAsset;
+import org.openremote.model.query.AssetQuery;
+import org.openremote.model.query.LogicGroup;
+import org.openremote.model.query.filter.*;
+import org.openremote.model.rules.AssetState;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+import static org.openremote.benchmark.BenchmarkFixtures.*;
+
+/**
+ * Evaluation of {@link AssetQueryPredicate}s against the asset states of a site, this is what rule conditions and
+ * {@link RulesFacts#matchAssetState} do on every rules firing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssetQueryPredicateBenchmark {
+
+    private static final Logger LOG = Logger.getLogger(AssetQueryPredicateBenchmark.class.getName());
+
+    @Param({"10000", "100000"})
+    public int assetStateCount;
+
+    protected List<AssetState<?>> assetStates;
+    protected RulesFacts facts;
+    protected AssetQuery typeAndAttributeQuery;
+    protected Predicate<AssetState<?>> typeAndAttributePredicate;
+    protected Predicate<AssetState<?>> parentAndNamePredicate;
+    protected Predicate<AssetState<?>> attributeGroupPredicate;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.quietLogging();
+        TimerService timerService = BenchmarkFixtures.createTimerService();
+        List<Asset<?>> assets = BenchmarkFixtures.createSiteWithAssetStates(assetStateCount, new Random(SEED));
+        assetStates = BenchmarkFixtures.createAssetStates(assets);
+
+        // Asset states are added directly as the facts indexes aren't used when matching
+        facts = new RulesFacts(timerService, null, null, this, LOG);
+        facts.getAssetStates().addAll(assetStates);
+
+        typeAndAttributeQuery = new AssetQuery()
+            .types(RoomAsset.class)
+            .attributes(new AttributePredicate(TEMPERATURE, new NumberPredicate(25, AssetQuery.Operator.GREATER_THAN)));
+
+        AssetQuery parentAndNameQuery = new AssetQuery()
+            .tenant(new TenantPredicate(REALM))
+            .parents(assets.get(0).getId())
+            .names(new StringPredicate(AssetQuery.Match.BEGIN, assets.get(0).getName() + " Room 1"));
+
+        AssetQuery attributeGroupQuery = new AssetQuery()
+            .types(RoomAsset.class)
+            .attributes(new LogicGroup<>(LogicGroup.Operator.OR, Arrays.asList(
+                new AttributePredicate(PRESENCE_DETECTED, new BooleanPredicate(true)),
+                new AttributePredicate(LIGHT_SWITCH, new BooleanPredicate(true))
+            )));
+
+        typeAndAttributePredicate = new AssetQueryPredicate(timerService, null, typeAndAttributeQuery);
+        parentAndNamePredicate = new AssetQueryPredicate(timerService, null, parentAndNameQuery);
+        attributeGroupPredicate = new AssetQueryPredicate(timerService, null, attributeGroupQuery);
+    }
+
+    @Benchmark
+    public int typeAndAttribute() {
+        return countMatches(typeAndAttributePredicate);
+    }
+
+    @Benchmark
+    public int parentAndName() {
+        return countMatches(parentAndNamePredicate);
+    }
+
+    @Benchmark
+    public int attributeGroup() {
+        return countMatches(attributeGroupPredicate);
+    }
+
+    /**
+     * The same query through the rules facts, which creates the predicate and uses a parallel stream.
+     */
+    @Benchmark
+    public long matchAssetState() {
+        return facts.matchAssetState(typeAndAttributeQuery).count();
+    }
+
+    protected int countMatches(Predicate<AssetState<?>> predicate) {
+        int matches = 0;
+        for (AssetState<?> assetState : assetStates) {
+            if (predicate.test(assetState)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
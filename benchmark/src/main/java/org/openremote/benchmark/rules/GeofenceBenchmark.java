@@ -0,0 +1,136 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.rules;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.benchmark.BenchmarkFixtures;
+import org.openremote.manager.rules.RulesEngine;
+import org.openremote.manager.rules.geofence.ORConsoleGeofenceAssetAdapter;
+import org.openremote.model.query.filter.GeofencePredicate;
+import org.openremote.model.query.filter.RadialGeofencePredicate;
+import org.openremote.model.query.filter.RectangularGeofencePredicate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.openremote.benchmark.BenchmarkFixtures.*;
+
+/**
+ * {@link ORConsoleGeofenceAssetAdapter#processLocationPredicates} with 10,000 simulated consoles when the location
+ * predicates of some or all of them are modified by a rules deployment; consoles are notified by counting them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeofenceBenchmark {
+
+    public static final int CONSOLE_COUNT = 10000;
+
+    /**
+     * Consoles are registered directly and geofence refresh notifications are counted rather than pushed.
+     */
+    public static class SimulatedConsoleGeofenceAdapter extends ORConsoleGeofenceAssetAdapter {
+
+        protected long notifiedConsoles;
+
+        public SimulatedConsoleGeofenceAdapter(Collection<String> consoleIds) {
+            consoleIdRealmMap = new ConcurrentHashMap<>();
+            consoleIds.forEach(consoleId -> consoleIdRealmMap.put(consoleId, REALM));
+            executorService = new ScheduledThreadPoolExecutor(1);
+        }
+
+        @Override
+        protected void notifyAssetGeofencesChanged(Set<String> assetIds) {
+            if (assetIds != null) {
+                notifiedConsoles += assetIds.size();
+            }
+        }
+
+        public void shutdown() {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Param({"1", "100"})
+    public int changedPercent;
+
+    protected List<String> consoleIds;
+    protected SimulatedConsoleGeofenceAdapter adapter;
+    protected List<RulesEngine.AssetStateLocationPredicates> modifiedLocationPredicates;
+    protected int changedOffset;
+    protected int radius = 100;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.quietLogging();
+        consoleIds = new ArrayList<>(CONSOLE_COUNT);
+        for (int i = 0; i < CONSOLE_COUNT; i++) {
+            consoleIds.add(BenchmarkFixtures.createId("Console " + i));
+        }
+        adapter = new SimulatedConsoleGeofenceAdapter(consoleIds);
+
+        // Every console starts with geofences
+        List<RulesEngine.AssetStateLocationPredicates> locationPredicates = new ArrayList<>(CONSOLE_COUNT);
+        for (String consoleId : consoleIds) {
+            locationPredicates.add(createLocationPredicates(consoleId, radius));
+        }
+        adapter.processLocationPredicates(locationPredicates);
+    }
+
+    /**
+     * The list and its predicate sets are modified by the adapter so a new one is needed for every call.
+     */
+    @Setup(Level.Invocation)
+    public void createModifiedLocationPredicates() {
+        int changed = Math.max(1, CONSOLE_COUNT * changedPercent / 100);
+        radius = radius == 100 ? 200 : 100;
+        modifiedLocationPredicates = new ArrayList<>(changed);
+        for (int i = 0; i < changed; i++) {
+            String consoleId = consoleIds.get((changedOffset + i) % CONSOLE_COUNT);
+            modifiedLocationPredicates.add(createLocationPredicates(consoleId, radius));
+        }
+        changedOffset = (changedOffset + changed) % CONSOLE_COUNT;
+    }
+
+    @TearDown
+    public void tearDown() {
+        adapter.shutdown();
+    }
+
+    @Benchmark
+    public int processLocationPredicates() {
+        adapter.processLocationPredicates(modifiedLocationPredicates);
+        return modifiedLocationPredicates.size();
+    }
+
+    protected static RulesEngine.AssetStateLocationPredicates createLocationPredicates(String consoleId, int radius) {
+        Set<GeofencePredicate> predicates = new HashSet<>();
+        predicates.add(new RadialGeofencePredicate(radius, LATITUDE, LONGITUDE));
+        predicates.add(new RadialGeofencePredicate(radius * 2, LATITUDE + 0.01, LONGITUDE));
+        // Not supported by consoles so removed by the adapter
+        predicates.add(new RectangularGeofencePredicate(LATITUDE - 0.01, LONGITUDE - 0.01, LATITUDE + 0.01, LONGITUDE + 0.01));
+        return new RulesEngine.AssetStateLocationPredicates(consoleId, predicates);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.rules;
+
+import org.jeasy.rules.api.Rule;
+import org.jeasy.rules.api.Rules;
+import org.jeasy.rules.api.RulesEngineParameters;
+import org.jeasy.rules.core.InferenceRulesEngine;
+import org.openjdk.jmh.annotations.*;
+import org.openremote.benchmark.BenchmarkFixtures;
+import org.openremote.container.persistence.PersistenceEvent;
+import org.openremote.container.timer.TimerService;
+import org.openremote.manager.rules.JsonRulesBuilder;
+import org.openremote.manager.rules.RulesClock;
+import org.openremote.manager.rules.RulesEngine;
+import org.openremote.manager.rules.RulesFacts;
+import org.openremote.model.asset.Asset;
+import org.openremote.model.asset.impl.RoomAsset;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.query.AssetQuery;
+import org.openremote.model.rules.AssetState;
+import org.openremote.model.rules.Assets;
+import org.openremote.model.rules.Ruleset;
+import org.openremote.model.rules.TenantRuleset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.openremote.benchmark.BenchmarkFixtures.*;
+
+/**
+ * Firing a JSON ruleset against 10,000 and 100,000 asset states the way a rules engine deployment does: an attribute
+ * update replaces its asset state, the rule conditions are told about the change and the rules are fired. Attribute
+ * writes of the rule actions are counted instead of dispatched.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RulesFireBenchmark {
+
+    private static final Logger LOG = Logger.getLogger(RulesFireBenchmark.class.getName());
+    public static final String RULES_RESOURCE = "RoomRules.json";
+
+    /**
+     * Counts the attribute writes of rule actions.
+     */
+    public static class CountingAssets extends Assets {
+
+        protected long dispatchedWrites;
+
+        @Override
+        public Stream<Asset<?>> getResults(AssetQuery assetQuery) {
+            return Stream.empty();
+        }
+
+        @Override
+        public Assets dispatch(AttributeEvent... events) {
+            dispatchedWrites += events.length;
+            return this;
+        }
+
+        @Override
+        public Assets dispatch(String assetId, String attributeName, Object value) {
+            dispatchedWrites++;
+            return this;
+        }
+
+        @Override
+        public Assets dispatch(String assetId, String attributeName) {
+            dispatchedWrites++;
+            return this;
+        }
+
+        public long getDispatchedWrites() {
+            return dispatchedWrites;
+        }
+    }
+
+    @Param({"10000", "100000"})
+    public int assetStateCount;
+
+    protected TimerService timerService;
+    protected CountingAssets assetsFacade;
+    protected RulesFacts facts;
+    protected JsonRulesBuilder rulesBuilder;
+    protected Rules rules;
+    protected InferenceRulesEngine engine;
+    protected List<RoomAsset> rooms;
+    protected int roomIndex;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkFixtures.quietLogging();
+        timerService = BenchmarkFixtures.createTimerService();
+        assetsFacade = new CountingAssets();
+        List<Asset<?>> assets = BenchmarkFixtures.createSiteWithAssetStates(assetStateCount, new Random(SEED));
+        rooms = assets.stream()
+            .filter(asset -> asset instanceof RoomAsset)
+            .map(asset -> (RoomAsset) asset)
+            .collect(Collectors.toList());
+
+        // Asset states are added directly as putAssetState is linear in the number of facts which makes loading
+        // 100,000 of them slow, the facts indexes it maintains aren't used by JSON rules
+        facts = new RulesFacts(timerService, null, assetsFacade, this, LOG);
+        facts.getAssetStates().addAll(BenchmarkFixtures.createAssetStates(assets));
+
+        Ruleset ruleset = new TenantRuleset(REALM, "Room rules", Ruleset.Lang.JSON, readRules()).setId(1L);
+        rulesBuilder = new JsonRulesBuilder(ruleset, timerService, null, null, assetsFacade, null, null, null, null, (action, delay) -> {});
+        rules = new Rules();
+        for (Rule rule : rulesBuilder.build()) {
+            rules.register(rule);
+        }
+        rulesBuilder.start(facts);
+
+        engine = new InferenceRulesEngine(
+            new RulesEngineParameters(false, true, false, RulesEngineParameters.DEFAULT_RULE_PRIORITY_THRESHOLD)
+        );
+        engine.registerRuleListener(facts);
+
+        // Trigger the rules for the initial state so that only changes trigger them from here on
+        fire();
+    }
+
+    /**
+     * Toggles the temperature of the next room either side of the rule threshold and fires the rules.
+     */
+    @Benchmark
+    public long updateAndFire() {
+        RoomAsset room = rooms.get(roomIndex);
+        roomIndex = (roomIndex + 1) % rooms.size();
+
+        @SuppressWarnings("unchecked")
+        Attribute<Double> temperature = (Attribute<Double>) room.getAttribute(TEMPERATURE).orElseThrow(IllegalStateException::new);
+        temperature.setValue(temperature.getValue().orElse(0d) > 25 ? 20d : 30d);
+        AssetState<?> assetState = new AssetState<>(room, temperature, AttributeEvent.Source.SENSOR);
+
+        facts.putAssetState(assetState);
+        rulesBuilder.onAssetStatesChanged(facts, new RulesEngine.AssetStateChangeEvent(PersistenceEvent.Cause.UPDATE, assetState));
+        fire();
+        return assetsFacade.getDispatchedWrites();
+    }
+
+    /**
+     * Fires the rules without any fact changes, as happens on every rules clock tick.
+     */
+    @Benchmark
+    public long fireUnchanged() {
+        fire();
+        return assetsFacade.getDispatchedWrites();
+    }
+
+    protected void fire() {
+        facts.setClock(new RulesClock(timerService));
+        facts.reset();
+        engine.fire(rules, facts);
+        facts.reset();
+    }
+
+    protected String readRules() throws IOException {
+        try (InputStream inputStream = RulesFireBenchmark.class.getResourceAsStream(RULES_RESOURCE)) {
+            if (inputStream == null) {
+                throw new IllegalStateException("Missing rules resource: " + RULES_RESOURCE);
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark.syslog;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.manager.syslog.SyslogBuffer;
+import org.openremote.manager.syslog.SyslogService;
+import org.openremote.model.syslog.SyslogCategory;
+import org.openremote.model.syslog.SyslogEvent;
+import org.openremote.model.syslog.SyslogLevel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 31 logging threads capturing syslog events whilst one thread drains them in flush sized chunks, with the {@link
+ * SyslogBuffer} and with the previous list guarded by a monitor.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyslogBufferBenchmark {
+
+    public static final int PRODUCER_THREADS = 31;
+
+    protected SyslogBuffer<SyslogEvent> buffer;
+    protected List<SyslogEvent> synchronizedBatch;
+    protected SyslogEvent event;
+
+    @State(Scope.Thread)
+    public static class Drain {
+        protected final List<SyslogEvent> events = new ArrayList<>(SyslogService.FLUSH_BATCH_SIZE);
+    }
+
+    @Setup
+    public void setup() {
+        buffer = new SyslogBuffer<>(SyslogService.SYSLOG_BUFFER_SIZE_DEFAULT, SyslogBuffer.OverflowPolicy.DROP_NEWEST);
+        synchronizedBatch = new ArrayList<>();
+        event = new SyslogEvent(System.currentTimeMillis(), SyslogLevel.INFO, SyslogCategory.PROTOCOL, "Benchmark", "Benchmark message");
+    }
+
+    @Benchmark
+    @Group("ringBuffer")
+    @GroupThreads(PRODUCER_THREADS)
+    public boolean ringBufferOffer() {
+        return buffer.offer(event);
+    }
+
+    @Benchmark
+    @Group("ringBuffer")
+    @GroupThreads(1)
+    public int ringBufferDrain(Drain drain) {
+        int drained = buffer.drainTo(drain.events, SyslogService.FLUSH_BATCH_SIZE);
+        drain.events.clear();
+        return drained;
+    }
+
+    @Benchmark
+    @Group("synchronizedList")
+    @GroupThreads(PRODUCER_THREADS)
+    public void synchronizedListAdd() {
+        synchronized (synchronizedBatch) {
+            synchronizedBatch.add(event);
+        }
+    }
+
+    @Benchmark
+    @Group("synchronizedList")
+    @GroupThreads(1)
+    public int synchronizedListDrain() {
+        List<SyslogEvent> events;
+        synchronized (synchronizedBatch) {
+            events = new ArrayList<>(synchronizedBatch);
+            synchronizedBatch.clear();
+        }
+        return events.size();
+    }
+}
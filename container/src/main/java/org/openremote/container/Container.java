@@ -22,12 +22,14 @@ package org.openremote.container;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import org.openremote.container.concurrent.ContainerScheduledExecutor;
 import org.openremote.container.concurrent.ContainerThreads;
+import org.openremote.container.concurrent.TimingWheelScheduler;
 import org.openremote.container.util.LogUtil;
 import org.openremote.model.ContainerService;
 import org.openremote.model.util.TextUtil;
 import org.openremote.model.util.ValueUtil;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -74,12 +76,37 @@ public class Container implements org.openremote.model.Container {
 
     public static final Logger LOG;
     public static ScheduledExecutorService EXECUTOR_SERVICE;
+    /**
+     * The named executor pools, see {@link #getExecutorService(String)}.
+     */
+    public static final Map<String, ScheduledExecutorService> EXECUTOR_SERVICES = new ConcurrentHashMap<>();
     public static final String SCHEDULED_TASKS_THREADS_MAX = "SCHEDULED_TASKS_THREADS_MAX";
     public static final int SCHEDULED_TASKS_THREADS_MAX_DEFAULT = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+    /**
+     * Prefix of the config keys for sizing the named executor pools e.g. SCHEDULED_TASKS_THREADS_MAX_RULES
+     */
+    public static final String SCHEDULED_TASKS_THREADS_MAX_PREFIX = SCHEDULED_TASKS_THREADS_MAX + "_";
+    public static final Map<String, Integer> EXECUTOR_THREADS_MAX_DEFAULTS;
+    /**
+     * The {@link #EXECUTOR_PERIODIC} scheduler.
+     */
+    public static TimingWheelScheduler PERIODIC_SCHEDULER;
+    public static final String PERIODIC_SCHEDULER_TICK_MILLIS = "PERIODIC_SCHEDULER_TICK_MILLIS";
+    public static final int PERIODIC_SCHEDULER_TICK_MILLIS_DEFAULT = 10;
+    public static final int PERIODIC_SCHEDULER_WHEEL_SIZE = 512;
 
     static {
         LogUtil.configureLogging();
         LOG = Logger.getLogger(Container.class.getName());
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        Map<String, Integer> executorDefaults = new LinkedHashMap<>();
+        executorDefaults.put(EXECUTOR_RULES, Math.max(processors / 2, 2));
+        executorDefaults.put(EXECUTOR_PROTOCOL, Math.max(processors, 4));
+        executorDefaults.put(EXECUTOR_ACTUATOR, Math.max(processors * 2, 8));
+        executorDefaults.put(EXECUTOR_PERSISTENCE, 2);
+        executorDefaults.put(EXECUTOR_NOTIFICATION, 2);
+        EXECUTOR_THREADS_MAX_DEFAULTS = Collections.unmodifiableMap(executorDefaults);
     }
 
     protected final Map<String, String> config = new HashMap<>();
@@ -126,6 +153,21 @@ public class Container implements org.openremote.model.Container {
 
         EXECUTOR_SERVICE = new NoShutdownScheduledExecutorService("Scheduled task", scheduledTasksThreadsMax);
 
+        EXECUTOR_SERVICES.clear();
+        EXECUTOR_THREADS_MAX_DEFAULTS.forEach((name, threadsMaxDefault) -> {
+            int threadsMax = getInteger(
+                getConfig(),
+                SCHEDULED_TASKS_THREADS_MAX_PREFIX + name.toUpperCase(Locale.ROOT),
+                threadsMaxDefault);
+            EXECUTOR_SERVICES.put(name, new NoShutdownScheduledExecutorService("Scheduled task " + name, threadsMax));
+        });
+
+        PERIODIC_SCHEDULER = new TimingWheelScheduler(
+            "Periodic task",
+            EXECUTOR_SERVICES.get(EXECUTOR_PROTOCOL),
+            Math.max(1, getInteger(getConfig(), PERIODIC_SCHEDULER_TICK_MILLIS, PERIODIC_SCHEDULER_TICK_MILLIS_DEFAULT)),
+            PERIODIC_SCHEDULER_WHEEL_SIZE);
+
         // Any log handlers of the root logger that are container services must be registered
         for (Handler handler : Logger.getLogger("").getHandlers()) {
             if (handler instanceof ContainerService) {
@@ -192,7 +234,11 @@ public class Container implements org.openremote.model.Container {
 
         try {
             LOG.info("Cancelling scheduled tasks");
+            PERIODIC_SCHEDULER.shutdownNow();
             ((NoShutdownScheduledExecutorService) EXECUTOR_SERVICE).doShutdownNow();
+            for (ScheduledExecutorService executorService : EXECUTOR_SERVICES.values()) {
+                ((NoShutdownScheduledExecutorService) executorService).doShutdownNow();
+            }
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Exception thrown whilst trying to stop scheduled tasks", e);
         }
@@ -263,4 +309,24 @@ public class Container implements org.openremote.model.Container {
     public ScheduledExecutorService getExecutorService() {
         return EXECUTOR_SERVICE;
     }
+
+    @Override
+    public ScheduledExecutorService getExecutorService(String name) {
+        if (EXECUTOR_PERIODIC.equals(name)) {
+            return PERIODIC_SCHEDULER;
+        }
+        return EXECUTOR_SERVICES.getOrDefault(name, EXECUTOR_SERVICE);
+    }
+
+    /**
+     * The default and named executor pools, for monitoring.
+     */
+    public static List<ContainerScheduledExecutor> getExecutors() {
+        List<ContainerScheduledExecutor> executors = new ArrayList<>();
+        if (EXECUTOR_SERVICE != null) {
+            executors.add((ContainerScheduledExecutor) EXECUTOR_SERVICE);
+        }
+        EXECUTOR_SERVICES.values().forEach(executorService -> executors.add((ContainerScheduledExecutor) executorService));
+        return executors;
+    }
 }
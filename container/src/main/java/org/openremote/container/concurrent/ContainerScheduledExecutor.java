@@ -19,27 +19,106 @@
  */
 package org.openremote.container.concurrent;
 
+import java.util.concurrent.Delayed;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.openremote.container.concurrent.ContainerThreads.DEFAULT_REJECTED_EXECUTION_HANDLER;
 import static org.openremote.container.concurrent.ContainerThreads.logExceptionCause;
 
+/**
+ * A {@link ScheduledThreadPoolExecutor} that logs task failures and records basic metrics: queue depth, how late
+ * tasks start compared to when they were due (latency) and how long they run for.
+ */
 public class ContainerScheduledExecutor extends ScheduledThreadPoolExecutor {
 
+    protected static final ThreadLocal<Long> TASK_START_NANOS = new ThreadLocal<>();
+    protected final String name;
+
+    // Metrics
+    protected final AtomicLong executedTasks = new AtomicLong();
+    protected final AtomicLong totalLatencyNanos = new AtomicLong();
+    protected final AtomicLong maxLatencyNanos = new AtomicLong();
+    protected final AtomicLong totalRunNanos = new AtomicLong();
+
     public ContainerScheduledExecutor(String name, int corePoolSize) {
-        this(new ContainerThreadFactory(name), DEFAULT_REJECTED_EXECUTION_HANDLER, corePoolSize);
+        this(name, new ContainerThreadFactory(name), DEFAULT_REJECTED_EXECUTION_HANDLER, corePoolSize);
     }
 
     public ContainerScheduledExecutor(ThreadFactory threadFactory, RejectedExecutionHandler rejectedHandler, int corePoolSize) {
+        this(null, threadFactory, rejectedHandler, corePoolSize);
+    }
+
+    public ContainerScheduledExecutor(String name, ThreadFactory threadFactory, RejectedExecutionHandler rejectedHandler, int corePoolSize) {
         super(corePoolSize, threadFactory, rejectedHandler);
+        this.name = name;
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable runnable) {
+        super.beforeExecute(thread, runnable);
+        if (runnable instanceof Delayed) {
+            // Delay is negative once the task is due, so this is how late it started
+            long latencyNanos = Math.max(0L, -((Delayed) runnable).getDelay(TimeUnit.NANOSECONDS));
+            totalLatencyNanos.addAndGet(latencyNanos);
+            maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+        }
+        TASK_START_NANOS.set(System.nanoTime());
     }
 
     @Override
     protected void afterExecute(Runnable runnable, Throwable throwable) {
         super.afterExecute(runnable, throwable);
+        Long startNanos = TASK_START_NANOS.get();
+        if (startNanos != null) {
+            totalRunNanos.addAndGet(System.nanoTime() - startNanos);
+            TASK_START_NANOS.remove();
+        }
+        executedTasks.incrementAndGet();
         logExceptionCause(runnable, throwable);
     }
 
-}
\ No newline at end of file
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The number of tasks waiting to run, including those scheduled to run in the future.
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    public long getExecutedTasks() {
+        return executedTasks.get();
+    }
+
+    public long getAverageLatencyMillis() {
+        long executed = executedTasks.get();
+        return executed > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / executed) : 0L;
+    }
+
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+    }
+
+    public long getAverageRunMillis() {
+        long executed = executedTasks.get();
+        return executed > 0 ? TimeUnit.NANOSECONDS.toMillis(totalRunNanos.get() / executed) : 0L;
+    }
+
+    @Override
+    public String toString() {
+        return (name != null ? name : super.toString()) + "{" +
+            "poolSize=" + getCorePoolSize() +
+            ", active=" + getActiveCount() +
+            ", queueDepth=" + getQueueDepth() +
+            ", executedTasks=" + getExecutedTasks() +
+            ", averageLatencyMillis=" + getAverageLatencyMillis() +
+            ", maxLatencyMillis=" + getMaxLatencyMillis() +
+            '}';
+    }
+}
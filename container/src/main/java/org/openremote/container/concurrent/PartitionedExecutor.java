@@ -0,0 +1,201 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.concurrent;
+
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Runs tasks on a fixed number of single threaded partitions; tasks submitted with the same partition key always run
+ * on the same partition so they are executed in submission order whilst tasks for different keys run in parallel.
+ * Records queue depth and how long tasks wait before they start (latency).
+ * <p>
+ * When a partition queue is full a task submitted with {@link #execute} is discarded and counted in
+ * {@link #getRejectedTasks}, a warning is logged at most once per {@link #REJECTED_WARNING_INTERVAL_MILLIS}; tasks
+ * submitted with {@link #executeGuaranteed} are always queued (even beyond the capacity) so are never discarded and
+ * never make the caller wait.
+ */
+public class PartitionedExecutor {
+
+    private static final Logger LOG = Logger.getLogger(PartitionedExecutor.class.getName());
+    public static final long REJECTED_WARNING_INTERVAL_MILLIS = 10000L;
+
+    protected class PartitionTask implements Runnable {
+        protected final Runnable task;
+        protected final boolean guaranteed;
+        protected final long queuedNanos = System.nanoTime();
+
+        protected PartitionTask(Runnable task, boolean guaranteed) {
+            this.task = task;
+            this.guaranteed = guaranteed;
+        }
+
+        @Override
+        public void run() {
+            long latencyNanos = System.nanoTime() - queuedNanos;
+            totalLatencyNanos.addAndGet(latencyNanos);
+            maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+            try {
+                task.run();
+            } finally {
+                executedTasks.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Unbounded queue that only accepts tasks that aren't guaranteed whilst it holds less than the capacity.
+     */
+    protected static class PartitionQueue extends LinkedBlockingQueue<Runnable> {
+        protected final int capacity;
+
+        protected PartitionQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            boolean guaranteed = runnable instanceof PartitionTask && ((PartitionTask) runnable).guaranteed;
+            return (guaranteed || size() < capacity) && super.offer(runnable);
+        }
+    }
+
+    protected final RejectedExecutionHandler rejectedExecutionHandler = this::onRejected;
+    protected final String name;
+    protected final ContainerExecutor[] partitions;
+    protected final AtomicLong lastRejectedWarningMillis = new AtomicLong();
+    protected final AtomicLong rejectedSinceWarning = new AtomicLong();
+
+    // Metrics
+    protected final AtomicLong executedTasks = new AtomicLong();
+    protected final AtomicLong rejectedTasks = new AtomicLong();
+    protected final AtomicLong totalLatencyNanos = new AtomicLong();
+    protected final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public PartitionedExecutor(String name, int partitionCount, int partitionQueueCapacity) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("Partition count must be at least 1");
+        }
+        this.name = name;
+        this.partitions = new ContainerExecutor[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new ContainerExecutor(
+                new ContainerThreadFactory(name + " " + i),
+                rejectedExecutionHandler,
+                1,
+                1,
+                60L,
+                new PartitionQueue(partitionQueueCapacity)
+            );
+        }
+    }
+
+    /**
+     * Run the task on the key's partition, the task is discarded if the partition queue is full.
+     */
+    public void execute(Object partitionKey, Runnable task) {
+        partitions[getPartition(partitionKey)].execute(new PartitionTask(task, false));
+    }
+
+    /**
+     * Run the task on the key's partition even if the partition queue is full; use only for low volume tasks that must
+     * not be lost (e.g. subscription changes), they are still executed in order with the other tasks of the key.
+     */
+    public void executeGuaranteed(Object partitionKey, Runnable task) {
+        partitions[getPartition(partitionKey)].execute(new PartitionTask(task, true));
+    }
+
+    protected void onRejected(Runnable runnable, ThreadPoolExecutor executor) {
+        rejectedTasks.incrementAndGet();
+        long rejected = rejectedSinceWarning.incrementAndGet();
+        long now = System.currentTimeMillis();
+        long lastWarning = lastRejectedWarningMillis.get();
+        if (now - lastWarning >= REJECTED_WARNING_INTERVAL_MILLIS && lastRejectedWarningMillis.compareAndSet(lastWarning, now)) {
+            rejectedSinceWarning.addAndGet(-rejected);
+            LOG.warning("Partitioned executor '" + name + "' discarded " + rejected + " task(s) as partition queue is full, total discarded: " + rejectedTasks.get());
+        }
+    }
+
+    public void shutdownNow() {
+        for (ContainerExecutor partition : partitions) {
+            partition.shutdownNow();
+        }
+    }
+
+    protected int getPartition(Object partitionKey) {
+        return Math.floorMod(Objects.hashCode(partitionKey), partitions.length);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * The number of tasks waiting to run across all partitions.
+     */
+    public int getQueueDepth() {
+        int queueDepth = 0;
+        for (ContainerExecutor partition : partitions) {
+            queueDepth += partition.getQueue().size();
+        }
+        return queueDepth;
+    }
+
+    public long getExecutedTasks() {
+        return executedTasks.get();
+    }
+
+    /**
+     * The number of tasks discarded because their partition queue was full.
+     */
+    public long getRejectedTasks() {
+        return rejectedTasks.get();
+    }
+
+    public long getAverageLatencyMillis() {
+        long executed = executedTasks.get();
+        return executed > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / executed) : 0L;
+    }
+
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return name + "{" +
+            "partitions=" + getPartitionCount() +
+            ", queueDepth=" + getQueueDepth() +
+            ", executedTasks=" + getExecutedTasks() +
+            ", rejectedTasks=" + getRejectedTasks() +
+            ", averageLatencyMillis=" + getAverageLatencyMillis() +
+            ", maxLatencyMillis=" + getMaxLatencyMillis() +
+            '}';
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.concurrent;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timing wheel for large numbers of delayed and periodic tasks (e.g. one polling task per linked attribute);
+ * scheduling and cancelling are O(1) and a single ticker thread advances the wheel every tick instead of a delay
+ * queue heap being reordered for every task. Expired tasks are run on the supplied executor, so task timing has the
+ * resolution of the tick.
+ * <p>
+ * Periodic tasks scheduled with <code>spread</code> have their first run delayed by a phase (up to the period or
+ * {@link #PHASE_SPREAD_MAX_MILLIS} if shorter) taken from a low discrepancy sequence so that tasks with the same period
+ * scheduled together don't all run on the same tick; otherwise the initial delay is honoured as given. Periodic tasks
+ * that throw an exception are not run again (the exception is logged), as with
+ * {@link java.util.concurrent.ScheduledThreadPoolExecutor}; cancelling never interrupts a running task.
+ */
+public class TimingWheelScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private static final Logger LOG = Logger.getLogger(TimingWheelScheduler.class.getName());
+    public static final long PHASE_SPREAD_MAX_MILLIS = 10000;
+    protected static final double PHASE_RATIO = 0.6180339887498949;
+
+    protected static class Bucket {
+        protected WheelTask<?> head;
+        protected WheelTask<?> tail;
+
+        protected void add(WheelTask<?> task) {
+            task.bucket = this;
+            if (head == null) {
+                head = tail = task;
+            } else {
+                tail.next = task;
+                task.prev = tail;
+                tail = task;
+            }
+        }
+
+        protected WheelTask<?> remove(WheelTask<?> task) {
+            WheelTask<?> next = task.next;
+            if (task.prev != null) {
+                task.prev.next = next;
+            }
+            if (task.next != null) {
+                task.next.prev = task.prev;
+            }
+            if (task == head) {
+                head = next;
+            }
+            if (task == tail) {
+                tail = task.prev;
+            }
+            task.prev = null;
+            task.next = null;
+            task.bucket = null;
+            return next;
+        }
+    }
+
+    protected class WheelTask<V> implements ScheduledFuture<V>, Runnable {
+        protected final Callable<V> callable;
+        /**
+         * Positive for fixed rate, negative for fixed delay and zero for one shot tasks.
+         */
+        protected final long periodNanos;
+        protected final CompletableFuture<V> result = new CompletableFuture<>();
+        protected volatile long deadlineNanos;
+        // Only accessed by the ticker thread
+        protected long remainingRounds;
+        protected Bucket bucket;
+        protected WheelTask<?> prev;
+        protected WheelTask<?> next;
+
+        protected WheelTask(Callable<V> callable, long deadlineNanos, long periodNanos) {
+            this.callable = callable;
+            this.deadlineNanos = deadlineNanos;
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        public void run() {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                V value = callable.call();
+                if (periodNanos == 0) {
+                    result.complete(value);
+                    return;
+                }
+            } catch (Throwable t) {
+                LOG.log(Level.WARNING, "Exception thrown by scheduled task: " + name, t);
+                result.completeExceptionally(t);
+                return;
+            }
+            deadlineNanos = periodNanos > 0 ? deadlineNanos + periodNanos : getNanos() - periodNanos;
+            if (shutdown) {
+                result.cancel(false);
+            } else {
+                pendingTasks.add(this);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = result.cancel(false);
+            if (cancelled) {
+                cancelledTasks.add(this);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return result.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return result.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return result.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return result.get(timeout, unit);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - getNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    protected final String name;
+    protected final Executor taskExecutor;
+    protected final long tickNanos;
+    protected final Bucket[] wheel;
+    protected final int mask;
+    protected final long startNanos = System.nanoTime();
+    protected final Queue<WheelTask<?>> pendingTasks = new ConcurrentLinkedQueue<>();
+    protected final Queue<WheelTask<?>> cancelledTasks = new ConcurrentLinkedQueue<>();
+    protected final AtomicLong phaseSequence = new AtomicLong();
+    protected final Thread tickerThread;
+    protected volatile boolean shutdown;
+    // Only accessed by the ticker thread
+    protected long tick;
+
+    // Metrics
+    protected final AtomicInteger wheelTasks = new AtomicInteger();
+    protected final AtomicLong expiredTasks = new AtomicLong();
+
+    /**
+     * @param name          used for the ticker thread and logging.
+     * @param taskExecutor  runs the expired tasks.
+     * @param tickMillis    the resolution of the wheel.
+     * @param wheelSize     number of buckets, rounded up to a power of two; tasks further in the future than a turn of
+     *                      the wheel are kept in the bucket for multiple rounds.
+     */
+    public TimingWheelScheduler(String name, Executor taskExecutor, long tickMillis, int wheelSize) {
+        this(name, taskExecutor, tickMillis, wheelSize, new ContainerThreadFactory(name));
+    }
+
+    public TimingWheelScheduler(String name, Executor taskExecutor, long tickMillis, int wheelSize, ThreadFactory threadFactory) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be at least 1ms: " + tickMillis);
+        }
+        this.name = name;
+        this.taskExecutor = taskExecutor;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(Math.max(1, Math.min(wheelSize, 1 << 20)) * 2 - 1);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.tickerThread = threadFactory.newThread(this::runTicker);
+        this.tickerThread.start();
+    }
+
+    protected long getNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    protected <V> WheelTask<V> enqueue(WheelTask<V> task) {
+        if (shutdown) {
+            task.result.cancel(false);
+            throw new RejectedExecutionException("Scheduler has been shutdown: " + name);
+        }
+        pendingTasks.add(task);
+        return task;
+    }
+
+    protected long getPhaseNanos(long periodNanos) {
+        double fraction = (phaseSequence.getAndIncrement() * PHASE_RATIO) % 1d;
+        return (long) (fraction * Math.min(periodNanos, TimeUnit.MILLISECONDS.toNanos(PHASE_SPREAD_MAX_MILLIS)));
+    }
+
+    protected void runTicker() {
+        while (!shutdown) {
+            long deadline = (tick + 1) * tickNanos;
+            long sleepNanos = deadline - getNanos();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (shutdown) {
+                        break;
+                    }
+                    continue;
+                }
+            }
+            try {
+                removeCancelledTasks();
+                transferPendingTasks();
+                expireTasks(wheel[(int) (tick & mask)]);
+            } catch (Throwable t) {
+                LOG.log(Level.SEVERE, "Exception thrown whilst advancing timing wheel: " + name, t);
+            }
+            tick++;
+        }
+
+        // Cancel everything left in the wheel
+        for (Bucket bucket : wheel) {
+            for (WheelTask<?> task = bucket.head; task != null; task = bucket.remove(task)) {
+                task.result.cancel(false);
+            }
+        }
+        wheelTasks.set(0);
+    }
+
+    protected void removeCancelledTasks() {
+        WheelTask<?> task;
+        while ((task = cancelledTasks.poll()) != null) {
+            if (task.bucket != null) {
+                task.bucket.remove(task);
+                wheelTasks.decrementAndGet();
+            }
+        }
+    }
+
+    protected void transferPendingTasks() {
+        WheelTask<?> task;
+        while ((task = pendingTasks.poll()) != null) {
+            if (task.isDone()) {
+                continue;
+            }
+            long ticks = Math.max(task.deadlineNanos / tickNanos, tick);
+            task.remainingRounds = (ticks - tick) / wheel.length;
+            wheel[(int) (ticks & mask)].add(task);
+            wheelTasks.incrementAndGet();
+        }
+    }
+
+    protected void expireTasks(Bucket bucket) {
+        WheelTask<?> task = bucket.head;
+        while (task != null) {
+            if (task.remainingRounds > 0) {
+                task.remainingRounds--;
+                task = task.next;
+                continue;
+            }
+            WheelTask<?> expired = task;
+            task = bucket.remove(task);
+            wheelTasks.decrementAndGet();
+            if (expired.isDone()) {
+                continue;
+            }
+            expiredTasks.incrementAndGet();
+            try {
+                taskExecutor.execute(expired);
+            } catch (RejectedExecutionException e) {
+                LOG.info("Executor rejected expired task of timing wheel: " + name);
+                expired.result.cancel(false);
+            }
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(Executors.callable(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return enqueue(new WheelTask<>(callable, getNanos() + Math.max(0, unit.toNanos(delay)), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return scheduleAtFixedRate(command, initialDelay, period, unit, false);
+    }
+
+    /**
+     * As {@link #scheduleAtFixedRate(Runnable, long, long, TimeUnit)} but when <code>spread</code> is true the first
+     * run is additionally delayed by a phase so tasks with the same period don't all run on the same tick.
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit, boolean spread) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        long periodNanos = unit.toNanos(period);
+        long phaseNanos = spread ? getPhaseNanos(periodNanos) : 0L;
+        return enqueue(new WheelTask<>(Executors.callable(command), getNanos() + Math.max(0, unit.toNanos(initialDelay)) + phaseNanos, periodNanos));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return scheduleWithFixedDelay(command, initialDelay, delay, unit, false);
+    }
+
+    /**
+     * As {@link #scheduleWithFixedDelay(Runnable, long, long, TimeUnit)} but when <code>spread</code> is true the first
+     * run is additionally delayed by a phase so tasks with the same delay don't all run on the same tick.
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit, boolean spread) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Delay must be positive: " + delay);
+        }
+        long delayNanos = unit.toNanos(delay);
+        long phaseNanos = spread ? getPhaseNanos(delayNanos) : 0L;
+        return enqueue(new WheelTask<>(Executors.callable(command), getNanos() + Math.max(0, unit.toNanos(initialDelay)) + phaseNanos, -delayNanos));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Scheduler has been shutdown: " + name);
+        }
+        taskExecutor.execute(command);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        tickerThread.interrupt();
+        WheelTask<?> task;
+        while ((task = pendingTasks.poll()) != null) {
+            task.result.cancel(false);
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && !tickerThread.isAlive();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        tickerThread.join(Math.max(1, unit.toMillis(timeout)));
+        return isTerminated();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getTickMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+
+    /**
+     * The number of tasks waiting in the wheel (scheduled tasks not yet picked up by the ticker are not included).
+     */
+    public int getWheelTasks() {
+        return wheelTasks.get();
+    }
+
+    public long getExpiredTasks() {
+        return expiredTasks.get();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "name='" + name + '\'' +
+            ", tickMillis=" + getTickMillis() +
+            ", wheelSize=" + wheel.length +
+            ", wheelTasks=" + getWheelTasks() +
+            ", expiredTasks=" + getExpiredTasks() +
+            '}';
+    }
+}
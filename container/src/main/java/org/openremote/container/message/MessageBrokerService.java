@@ -30,6 +30,7 @@ import org.openremote.model.Container;
 import org.openremote.model.ContainerService;
 import org.openremote.container.concurrent.ContainerExecutor;
 import org.openremote.container.concurrent.ContainerScheduledExecutor;
+import org.openremote.container.metrics.MetricsService;
 import org.openremote.container.security.IdentityService;
 import org.openremote.container.web.DefaultWebsocketComponent;
 import org.openremote.container.web.WebService;
@@ -132,6 +133,11 @@ public class MessageBrokerService implements ContainerService {
 
         context.getRegistry().put(Container.class.getName(), container);
 
+        // Must be in place before any routes are added
+        QueueMetrics queueMetrics = new QueueMetrics(MetricsService.getRegistry(container));
+        context.getManagementStrategy().addEventNotifier(queueMetrics);
+        context.addRoutePolicyFactory(queueMetrics);
+
         String allowedOrigin = getString(container.getConfig(), MESSAGE_SESSION_ALLOWED_ORIGIN, MESSAGE_SESSION_ALLOWED_ORIGIN_DEFAULT);
         WebsocketComponent websocketComponent = new DefaultWebsocketComponent(
             container,
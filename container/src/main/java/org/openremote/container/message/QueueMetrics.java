@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.message;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Endpoint;
+import org.apache.camel.Exchange;
+import org.apache.camel.Route;
+import org.apache.camel.component.seda.SedaEndpoint;
+import org.apache.camel.management.event.ExchangeSendingEvent;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.spi.RoutePolicy;
+import org.apache.camel.spi.RoutePolicyFactory;
+import org.apache.camel.support.EventNotifierSupport;
+import org.apache.camel.support.RoutePolicySupport;
+import org.apache.camel.util.StringHelper;
+import org.openremote.container.metrics.MetricsRegistry;
+import org.openremote.container.metrics.TimerMetric;
+
+import java.util.EventObject;
+
+/**
+ * Records the depth of each SEDA queue that a route consumes from and how long messages wait in it. Messages sent to
+ * a SEDA endpoint (by a route or a producer template) are stamped with the time they were queued and the wait is
+ * recorded when the consuming route begins processing the message.
+ */
+public class QueueMetrics extends EventNotifierSupport implements RoutePolicyFactory {
+
+    public static final String PROPERTY_QUEUED_NANOS = QueueMetrics.class.getName() + ".queuedNanos";
+
+    protected static class QueueRoutePolicy extends RoutePolicySupport {
+
+        protected final MetricsRegistry registry;
+        protected TimerMetric waitTimer;
+
+        public QueueRoutePolicy(MetricsRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public void onInit(Route route) {
+            if (route.getEndpoint() instanceof SedaEndpoint) {
+                SedaEndpoint endpoint = (SedaEndpoint) route.getEndpoint();
+                String queue = getQueueName(endpoint);
+                registry.gauge("or_queue_depth", "Messages waiting in the queue", endpoint::getCurrentQueueSize, "queue", queue);
+                waitTimer = registry.timer("or_queue_wait_seconds", "Time messages wait in the queue before being processed", "queue", queue);
+            }
+        }
+
+        @Override
+        public void onExchangeBegin(Route route, Exchange exchange) {
+            if (waitTimer == null) {
+                return;
+            }
+            Long queuedNanos = exchange.getProperty(PROPERTY_QUEUED_NANOS, Long.class);
+            if (queuedNanos != null) {
+                waitTimer.recordSince(queuedNanos);
+                exchange.removeProperty(PROPERTY_QUEUED_NANOS);
+            }
+        }
+
+        @Override
+        protected void doStart() throws Exception {
+        }
+
+        @Override
+        protected void doStop() throws Exception {
+        }
+    }
+
+    protected final MetricsRegistry registry;
+
+    public QueueMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+        // Only exchanges being sent are of interest, skip creating all other events
+        setIgnoreCamelContextEvents(true);
+        setIgnoreRouteEvents(true);
+        setIgnoreServiceEvents(true);
+        setIgnoreExchangeCreatedEvent(true);
+        setIgnoreExchangeCompletedEvent(true);
+        setIgnoreExchangeFailedEvents(true);
+        setIgnoreExchangeRedeliveryEvents(true);
+        setIgnoreExchangeSentEvents(true);
+    }
+
+    /**
+     * The queue name of a SEDA endpoint URI, e.g. <code>AssetQueue</code> for <code>seda://AssetQueue?size=25000</code>.
+     */
+    public static String getQueueName(Endpoint endpoint) {
+        String name = endpoint.getEndpointUri();
+        name = name.contains("://") ? StringHelper.after(name, "://") : StringHelper.after(name, ":");
+        return name.contains("?") ? StringHelper.before(name, "?") : name;
+    }
+
+    @Override
+    public boolean isEnabled(EventObject event) {
+        return event instanceof ExchangeSendingEvent && ((ExchangeSendingEvent) event).getEndpoint() instanceof SedaEndpoint;
+    }
+
+    @Override
+    public void notify(EventObject event) throws Exception {
+        ((ExchangeSendingEvent) event).getExchange().setProperty(PROPERTY_QUEUED_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public RoutePolicy createRoutePolicy(CamelContext camelContext, String routeId, RouteDefinition route) {
+        return new QueueRoutePolicy(registry);
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value read from its source (e.g. a queue size) whenever the metrics are collected, so recording costs nothing.
+ */
+public class GaugeMetric extends Metric {
+
+    protected final DoubleSupplier supplier;
+
+    public GaugeMetric(String name, String help, DoubleSupplier supplier, String... labels) {
+        super(name, help, labels);
+        this.supplier = supplier;
+    }
+
+    /**
+     * @return The current value or {@link Double#NaN} if the source failed.
+     */
+    public double getValue() {
+        try {
+            return supplier.getAsDouble();
+        } catch (RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+
+    @Override
+    public String getType() {
+        return "gauge";
+    }
+
+    @Override
+    protected void writeSamples(StringBuilder sb) {
+        writeSample(sb, name, getValue());
+    }
+}
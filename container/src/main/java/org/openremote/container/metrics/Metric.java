@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.metrics;
+
+import java.util.Arrays;
+
+/**
+ * A named metric with optional labels (alternating label names and values) held by a {@link MetricsRegistry}.
+ */
+public abstract class Metric {
+
+    protected final String name;
+    protected final String help;
+    protected final String[] labels;
+
+    protected Metric(String name, String help, String... labels) {
+        this.name = name;
+        this.help = help;
+        this.labels = labels != null ? labels : new String[0];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public String[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * The Prometheus metric type.
+     */
+    public abstract String getType();
+
+    /**
+     * Appends the samples of this metric in Prometheus text format.
+     */
+    protected abstract void writeSamples(StringBuilder sb);
+
+    protected void writeSample(StringBuilder sb, String sampleName, double value, String... extraLabels) {
+        sb.append(sampleName);
+        if (labels.length > 0 || extraLabels.length > 0) {
+            sb.append('{');
+            boolean first = true;
+            for (String[] pairs : new String[][]{labels, extraLabels}) {
+                for (int i = 0; i < pairs.length - 1; i += 2) {
+                    if (!first) {
+                        sb.append(',');
+                    }
+                    first = false;
+                    sb.append(pairs[i]).append("=\"");
+                    appendEscaped(sb, pairs[i + 1]);
+                    sb.append('"');
+                }
+            }
+            sb.append('}');
+        }
+        sb.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else if (Double.isNaN(value)) {
+            sb.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            sb.append(value > 0 ? "+Inf" : "-Inf");
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    protected static void appendEscaped(StringBuilder sb, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "name='" + name + '\'' +
+            ", labels=" + Arrays.toString(labels) +
+            '}';
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.metrics;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openremote.model.Container;
+import org.openremote.model.ContainerService;
+import org.openremote.model.system.HealthStatusProvider;
+import org.openremote.model.util.ValueUtil;
+
+import java.util.Comparator;
+
+/**
+ * Summarises the {@link MetricsRegistry}: counters and gauges with their value and timers with their count, average,
+ * 99th percentile and max in milliseconds.
+ */
+public class MetricsHealthStatusProvider implements HealthStatusProvider, ContainerService {
+
+    public static final String NAME = "metrics";
+    public static final String VERSION = "1.0";
+    protected MetricsRegistry registry;
+
+    @Override
+    public int getPriority() {
+        return ContainerService.DEFAULT_PRIORITY;
+    }
+
+    @Override
+    public void init(Container container) throws Exception {
+        registry = MetricsService.getRegistry(container);
+    }
+
+    @Override
+    public void start(Container container) throws Exception {
+
+    }
+
+    @Override
+    public void stop(Container container) throws Exception {
+
+    }
+
+    @Override
+    public String getHealthStatusName() {
+        return NAME;
+    }
+
+    @Override
+    public String getHealthStatusVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getHealthStatus() {
+        if (registry == null) {
+            return null;
+        }
+
+        ObjectNode objectValue = ValueUtil.JSON.createObjectNode();
+
+        registry.getMetrics().stream().sorted(Comparator.comparing(MetricsHealthStatusProvider::getDisplayName)).forEach(metric -> {
+            String name = getDisplayName(metric);
+            if (metric instanceof CounterMetric) {
+                objectValue.put(name, ((CounterMetric) metric).getCount());
+            } else if (metric instanceof GaugeMetric) {
+                objectValue.put(name, ((GaugeMetric) metric).getValue());
+            } else if (metric instanceof TimerMetric) {
+                TimerMetric timer = (TimerMetric) metric;
+                ObjectNode timerValue = ValueUtil.JSON.createObjectNode();
+                timerValue.put("count", timer.getCount());
+                timerValue.put("averageMillis", timer.getAverageMicros() / 1000d);
+                timerValue.put("p99Millis", timer.getQuantileMicros(0.99) / 1000d);
+                timerValue.put("maxMillis", timer.getMaxMicros() / 1000d);
+                objectValue.set(name, timerValue);
+            }
+        });
+
+        return objectValue;
+    }
+
+    protected static String getDisplayName(Metric metric) {
+        String[] labels = metric.getLabels();
+        if (labels.length == 0) {
+            return metric.getName();
+        }
+        StringBuilder sb = new StringBuilder(metric.getName()).append('{');
+        for (int i = 0; i < labels.length - 1; i += 2) {
+            sb.append(i > 0 ? "," : "").append(labels[i]).append('=').append(labels[i + 1]);
+        }
+        return sb.append('}').toString();
+    }
+}
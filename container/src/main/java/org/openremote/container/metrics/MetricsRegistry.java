@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.metrics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Holds the runtime {@link Metric}s of the container; a metric is identified by its name and labels (alternating label
+ * names and values) and looking one up again returns the same instance, so callers on hot paths should keep a
+ * reference rather than looking it up each time. Metric names should use the <code>or_</code> prefix and follow the
+ * Prometheus conventions (base units, <code>_total</code> suffix for counters).
+ */
+public class MetricsRegistry {
+
+    protected static final Pattern NAME_PATTERN = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+    protected static final Pattern LABEL_NAME_PATTERN = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+    protected final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    public CounterMetric counter(String name, String help, String... labels) {
+        return getOrCreate(CounterMetric.class, name, labels, key -> new CounterMetric(name, help, labels));
+    }
+
+    public TimerMetric timer(String name, String help, String... labels) {
+        return getOrCreate(TimerMetric.class, name, labels, key -> new TimerMetric(name, help, labels));
+    }
+
+    /**
+     * Registers a gauge, replacing any existing gauge with the same name and labels (e.g. when a service restarts).
+     */
+    public GaugeMetric gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        validate(name, labels);
+        GaugeMetric gauge = new GaugeMetric(name, help, supplier, labels);
+        metrics.compute(getKey(name, labels), (key, previous) -> {
+            if (previous != null && !(previous instanceof GaugeMetric)) {
+                throw new IllegalArgumentException("Metric is already registered with another type: " + previous);
+            }
+            return gauge;
+        });
+        return gauge;
+    }
+
+    public Optional<Metric> get(String name, String... labels) {
+        return Optional.ofNullable(metrics.get(getKey(name, labels)));
+    }
+
+    public void remove(String name, String... labels) {
+        metrics.remove(getKey(name, labels));
+    }
+
+    /**
+     * Removes the metrics with the given name regardless of their labels.
+     */
+    public void removeAll(String name) {
+        metrics.values().removeIf(metric -> metric.getName().equals(name));
+    }
+
+    public Collection<Metric> getMetrics() {
+        return Collections.unmodifiableCollection(metrics.values());
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format (version 0.0.4), grouped by name.
+     */
+    public String toPrometheus() {
+        Map<String, List<Metric>> families = new TreeMap<>();
+        metrics.values().forEach(metric -> families.computeIfAbsent(metric.getName(), name -> new ArrayList<>()).add(metric));
+
+        StringBuilder sb = new StringBuilder(families.size() * 128);
+        families.forEach((name, family) -> {
+            Metric first = family.get(0);
+            if (first.getHelp() != null) {
+                sb.append("# HELP ").append(name).append(' ');
+                sb.append(first.getHelp().replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            }
+            sb.append("# TYPE ").append(name).append(' ').append(first.getType()).append('\n');
+            family.forEach(metric -> metric.writeSamples(sb));
+        });
+        return sb.toString();
+    }
+
+    protected <T extends Metric> T getOrCreate(Class<T> type, String name, String[] labels, Function<String, T> factory) {
+        String key = getKey(name, labels);
+        Metric metric = metrics.get(key);
+        if (metric == null) {
+            validate(name, labels);
+            metric = metrics.computeIfAbsent(key, factory);
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric is already registered with another type: " + metric);
+        }
+        return type.cast(metric);
+    }
+
+    protected static String getKey(String name, String[] labels) {
+        if (labels == null || labels.length == 0) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder(name);
+        for (String label : labels) {
+            sb.append('\u0000').append(label);
+        }
+        return sb.toString();
+    }
+
+    protected static void validate(String name, String[] labels) {
+        if (name == null || !NAME_PATTERN.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid metric name: " + name);
+        }
+        if (labels != null) {
+            if (labels.length % 2 != 0) {
+                throw new IllegalArgumentException("Labels must be name and value pairs: " + name + " " + Arrays.toString(labels));
+            }
+            for (int i = 0; i < labels.length; i += 2) {
+                if (labels[i] == null || !LABEL_NAME_PATTERN.matcher(labels[i]).matches() || labels[i].equals("quantile")) {
+                    throw new IllegalArgumentException("Invalid label name: " + name + " " + labels[i]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "metrics=" + metrics.size() +
+            '}';
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.metrics;
+
+import org.openremote.container.concurrent.ContainerScheduledExecutor;
+import org.openremote.model.Container;
+import org.openremote.model.ContainerService;
+
+
+/**
+ * Owns the {@link MetricsRegistry} that other services record their runtime metrics in (queue depths and wait times,
+ * processing latencies, fan out rates etc.) and registers the metrics of the container executor pools. The metrics are
+ * exposed in Prometheus format by the status resource and summarised by the {@link MetricsHealthStatusProvider}.
+ */
+public class MetricsService implements ContainerService {
+
+    public static final int PRIORITY = ContainerService.HIGH_PRIORITY - 100;
+    protected final MetricsRegistry registry = new MetricsRegistry();
+
+    /**
+     * Get the registry of the container's {@link MetricsService}; when the service isn't present (e.g. in tests with a
+     * reduced set of services) a detached registry is returned so callers don't need to check.
+     */
+    public static MetricsRegistry getRegistry(Container container) {
+        return container.hasService(MetricsService.class)
+            ? container.getService(MetricsService.class).getRegistry()
+            : new MetricsRegistry();
+    }
+
+    @Override
+    public int getPriority() {
+        return PRIORITY;
+    }
+
+    @Override
+    public void init(Container container) throws Exception {
+    }
+
+    @Override
+    public void start(Container container) throws Exception {
+        for (ContainerScheduledExecutor executor : org.openremote.container.Container.getExecutors()) {
+            String name = executor.getName() != null ? executor.getName() : "default";
+            registry.gauge("or_executor_queue_depth", "Tasks waiting in the executor pool, including scheduled tasks", executor::getQueueDepth, "executor", name);
+            registry.gauge("or_executor_active_threads", "Threads of the executor pool running a task", executor::getActiveCount, "executor", name);
+            registry.gauge("or_executor_executed_tasks", "Tasks run by the executor pool", executor::getExecutedTasks, "executor", name);
+            registry.gauge("or_executor_max_latency_seconds", "Longest delay between a task being due and it starting", () -> executor.getMaxLatencyMillis() / 1000d, "executor", name);
+        }
+    }
+
+    @Override
+    public void stop(Container container) throws Exception {
+    }
+
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "registry=" + registry +
+            '}';
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Records durations in an HDR histogram with microsecond resolution and two significant digits. Recording is wait-free
+ * so it can be used on hot paths; the recorded values are only merged into the cumulative histogram when the metrics
+ * are collected. Exposed as a Prometheus summary (quantiles in seconds).
+ */
+public class TimerMetric extends Metric {
+
+    public static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    protected static final int SIGNIFICANT_DIGITS = 2;
+
+    protected final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    protected final Histogram histogram = new Histogram(SIGNIFICANT_DIGITS);
+    protected final LongAdder count = new LongAdder();
+    protected final LongAdder totalNanos = new LongAdder();
+    protected Histogram intervalHistogram;
+
+    public TimerMetric(String name, String help, String... labels) {
+        super(name, help, labels);
+    }
+
+    public void record(long durationNanos) {
+        durationNanos = Math.max(0L, durationNanos);
+        recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+        count.increment();
+        totalNanos.add(durationNanos);
+    }
+
+    public void record(long duration, TimeUnit unit) {
+        record(unit.toNanos(duration));
+    }
+
+    /**
+     * Records the time elapsed since the given {@link System#nanoTime}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public <R> R time(Supplier<R> supplier) {
+        long startNanos = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            recordSince(startNanos);
+        }
+    }
+
+    public void time(Runnable runnable) {
+        long startNanos = System.nanoTime();
+        try {
+            runnable.run();
+        } finally {
+            recordSince(startNanos);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getAverageMicros() {
+        long count = getCount();
+        return count > 0 ? TimeUnit.NANOSECONDS.toMicros(getTotalNanos() / count) : 0L;
+    }
+
+    /**
+     * @param quantile Between 0 and 1.
+     */
+    public synchronized long getQuantileMicros(double quantile) {
+        collect();
+        return histogram.getTotalCount() > 0 ? histogram.getValueAtPercentile(quantile * 100d) : 0L;
+    }
+
+    public synchronized long getMaxMicros() {
+        collect();
+        return histogram.getTotalCount() > 0 ? histogram.getMaxValue() : 0L;
+    }
+
+    protected void collect() {
+        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+        histogram.add(intervalHistogram);
+    }
+
+    @Override
+    public String getType() {
+        return "summary";
+    }
+
+    @Override
+    protected synchronized void writeSamples(StringBuilder sb) {
+        collect();
+        for (double quantile : QUANTILES) {
+            long micros = histogram.getTotalCount() > 0 ? histogram.getValueAtPercentile(quantile * 100d) : 0L;
+            writeSample(sb, name, micros / 1e6, "quantile", Double.toString(quantile));
+        }
+        writeSample(sb, name + "_sum", getTotalNanos() / 1e9);
+        writeSample(sb, name + "_count", getCount());
+    }
+}
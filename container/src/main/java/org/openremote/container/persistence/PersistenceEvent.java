@@ -22,13 +22,10 @@ package org.openremote.container.persistence;
 import org.apache.camel.Predicate;
 
 import java.util.Arrays;
+import java.util.Objects;
 
 public class PersistenceEvent<T> {
 
-    // TODO: Make configurable
-    public static final String PERSISTENCE_TOPIC =
-        "seda://PersistenceTopic?multipleConsumers=true&concurrentConsumers=1&waitForTaskToComplete=NEVER&purgeWhenStopping=true&discardIfNoConsumers=true&limitConcurrentConsumers=false&size=25000";
-
     public static final String HEADER_ENTITY_TYPE = PersistenceEvent.class.getSimpleName() + ".ENTITY_TYPE";
 
     public enum Cause {
@@ -90,6 +87,22 @@ public class PersistenceEvent<T> {
         return (E) getCurrentState()[getPropertyIndex(propertyName)];
     }
 
+    /**
+     * Returns true if the property value differs between the previous and current state; also true when there is no
+     * previous state or the property isn't part of this event.
+     */
+    public boolean hasPropertyChanged(String propertyName) {
+        if (getPreviousState() == null || getPropertyNames() == null) {
+            return true;
+        }
+        for (int i = 0; i < getPropertyNames().length; i++) {
+            if (getPropertyNames()[i].equals(propertyName)) {
+                return !Objects.equals(getPreviousState()[i], getCurrentState()[i]);
+            }
+        }
+        return true;
+    }
+
     protected int getPropertyIndex(String propertyName) {
         for (int i = 0; i < getPropertyNames().length; i++) {
             String property = getPropertyNames()[i];
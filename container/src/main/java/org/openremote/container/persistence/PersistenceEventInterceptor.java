@@ -19,34 +19,32 @@
  */
 package org.openremote.container.persistence;
 
-import org.apache.camel.CamelExecutionException;
-import org.apache.camel.ExchangePattern;
 import org.hibernate.CallbackException;
 import org.hibernate.EmptyInterceptor;
 import org.hibernate.Transaction;
 import org.hibernate.type.Type;
-import org.openremote.container.message.MessageBrokerService;
 
 import javax.transaction.Status;
 import javax.transaction.Synchronization;
 import java.io.Serializable;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Intercept Hibernate lifecycle events and publish a message.
+ * Intercept Hibernate lifecycle events and publish them to the subscribers of the {@link PersistenceService} once the
+ * transaction has committed.
  */
 public class PersistenceEventInterceptor extends EmptyInterceptor {
 
     private static final Logger LOG = Logger.getLogger(PersistenceEventInterceptor.class.getName());
 
-    protected MessageBrokerService messageBrokerService;
-    protected Set<PersistenceEvent<?>> persistenceEvents = new HashSet<>();
+    protected PersistenceService persistenceService;
+    protected List<PersistenceEvent<?>> persistenceEvents = new ArrayList<>();
 
-    public void setMessageBrokerService(MessageBrokerService messageBrokerService) {
-        this.messageBrokerService = messageBrokerService;
+    public void setPersistenceService(PersistenceService persistenceService) {
+        this.persistenceService = persistenceService;
     }
 
     @Override
@@ -103,28 +101,12 @@ public class PersistenceEventInterceptor extends EmptyInterceptor {
             @Override
             public void afterCompletion(int status) {
                 try {
-                    if (status != Status.STATUS_COMMITTED)
+                    if (status != Status.STATUS_COMMITTED || persistenceService == null)
                         return;
 
-                    if (messageBrokerService.getProducerTemplate() == null) {
-                        // Message broker not started yet
-                        return;
-                    }
-
-                    for (PersistenceEvent<?> persistenceEvent : persistenceEvents) {
-                        try {
-                            messageBrokerService.getProducerTemplate().sendBodyAndHeader(
-                                PersistenceEvent.PERSISTENCE_TOPIC,
-                                ExchangePattern.InOnly,
-                                persistenceEvent,
-                                PersistenceEvent.HEADER_ENTITY_TYPE,
-                                persistenceEvent.getEntity().getClass()
-                            );
-                        } catch (CamelExecutionException ex) {
-                            // TODO Better error handling?
-                            LOG.log(Level.SEVERE, "Error dispatching: " + persistenceEvent + " - " + ex, ex);
-                        }
-                    }
+                    persistenceService.publishPersistenceEvents(new ArrayList<>(persistenceEvents));
+                } catch (Exception ex) {
+                    LOG.log(Level.SEVERE, "Error publishing persistence events", ex);
                 } finally {
                     persistenceEvents.clear();
                 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.persistence;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A consumer's registration for {@link PersistenceEvent}s of an entity type (including sub types), optionally limited
+ * to updates of specific properties; each subscription has its own bounded SEDA queue so a slow or busy consumer
+ * doesn't hold up any other consumer. When aggregated the consumer receives a single {@link java.util.List} of all the
+ * matching events of a transaction rather than an exchange per event.
+ */
+public class PersistenceEventSubscription {
+
+    public static final String ENDPOINT_PREFIX = "seda://PersistenceEvent.";
+
+    protected final String consumerId;
+    protected final Class<?> entityType;
+    protected final Set<String> propertyNames;
+    protected final boolean aggregated;
+    protected final String endpointUri;
+
+    public PersistenceEventSubscription(String consumerId, Class<?> entityType, boolean aggregated, int queueSize, String...propertyNames) {
+        this.consumerId = consumerId;
+        this.entityType = entityType;
+        this.aggregated = aggregated;
+        this.propertyNames = propertyNames == null || propertyNames.length == 0
+            ? Collections.emptySet()
+            : new HashSet<>(Arrays.asList(propertyNames));
+        this.endpointUri = ENDPOINT_PREFIX + consumerId
+            + "?concurrentConsumers=1&waitForTaskToComplete=NEVER&purgeWhenStopping=true&discardIfNoConsumers=true&size=" + queueSize;
+    }
+
+    public String getConsumerId() {
+        return consumerId;
+    }
+
+    public Class<?> getEntityType() {
+        return entityType;
+    }
+
+    public Set<String> getPropertyNames() {
+        return propertyNames;
+    }
+
+    public boolean isAggregated() {
+        return aggregated;
+    }
+
+    public String getEndpointUri() {
+        return endpointUri;
+    }
+
+    public boolean isForEntityType(Class<?> type) {
+        return entityType.isAssignableFrom(type);
+    }
+
+    /**
+     * Creates and deletes always match; updates only match if no property names are set or at least one of them
+     * changed.
+     */
+    public boolean matches(PersistenceEvent<?> persistenceEvent) {
+        if (persistenceEvent.getCause() != PersistenceEvent.Cause.UPDATE || propertyNames.isEmpty()) {
+            return true;
+        }
+
+        return propertyNames.stream().anyMatch(persistenceEvent::hasPropertyChanged);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "consumerId='" + consumerId + '\'' +
+            ", entityType=" + entityType.getSimpleName() +
+            ", propertyNames=" + propertyNames +
+            ", aggregated=" + aggregated +
+            '}';
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.openremote.container.persistence;
 
+import org.apache.camel.CamelExecutionException;
 import org.apache.camel.ExchangePattern;
 import org.flywaydb.core.Flyway;
 import org.flywaydb.core.api.MigrationInfo;
@@ -29,6 +30,9 @@ import org.hibernate.engine.spi.SharedSessionContractImplementor;
 import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
 import org.hibernate.jpa.boot.internal.PersistenceUnitInfoDescriptor;
 import org.openremote.container.message.MessageBrokerService;
+import org.openremote.container.metrics.CounterMetric;
+import org.openremote.container.metrics.MetricsService;
+import org.openremote.container.metrics.TimerMetric;
 import org.openremote.model.Container;
 import org.openremote.model.ContainerService;
 import org.openremote.model.EntityClassProvider;
@@ -60,11 +64,13 @@ import javax.ws.rs.core.UriBuilder;
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.IntStream;
+import java.util.stream.Collectors;
 
 import static org.openremote.container.util.MapAccess.*;
 
@@ -214,6 +220,8 @@ public class PersistenceService implements ContainerService {
     public static final int DB_MAX_POOL_SIZE_DEFAULT = 20;
     public static final String DB_CONNECTION_TIMEOUT_SECONDS = "DB_CONNECTION_TIMEOUT_SECONDS";
     public static final int DB_CONNECTION_TIMEOUT_SECONDS_DEFAULT = 300;
+    public static final String PERSISTENCE_EVENT_QUEUE_SIZE = "PERSISTENCE_EVENT_QUEUE_SIZE";
+    public static final int PERSISTENCE_EVENT_QUEUE_SIZE_DEFAULT = 25000;
     public static final int PRIORITY = Integer.MIN_VALUE + 100;
 
     protected MessageBrokerService messageBrokerService;
@@ -226,6 +234,11 @@ public class PersistenceService implements ContainerService {
     protected boolean forceClean;
     protected Set<String> defaultSchemaLocations = new HashSet<>();
     protected Set<String> schemas = new HashSet<>();
+    protected int persistenceEventQueueSize = PERSISTENCE_EVENT_QUEUE_SIZE_DEFAULT;
+    protected TimerMetric transactionTimer;
+    protected CounterMetric transactionFailures;
+    protected final List<PersistenceEventSubscription> persistenceEventSubscriptions = new CopyOnWriteArrayList<>();
+    protected final Map<Class<?>, List<PersistenceEventSubscription>> entityTypeSubscriptions = new ConcurrentHashMap<>();
 
     @Override
     public int getPriority() {
@@ -238,6 +251,9 @@ public class PersistenceService implements ContainerService {
             ? container.getService(MessageBrokerService.class)
             : null;
 
+        transactionTimer = MetricsService.getRegistry(container).timer("or_db_transaction_seconds", "Duration of database transactions");
+        transactionFailures = MetricsService.getRegistry(container).counter("or_db_transaction_failures_total", "Database transactions that were rolled back");
+
         String dbVendor = getString(container.getConfig(), DB_VENDOR, DB_VENDOR_DEFAULT).toUpperCase(Locale.ROOT);
         LOG.info("Preparing persistence service for database: " + dbVendor);
 
@@ -257,6 +273,7 @@ public class PersistenceService implements ContainerService {
         String connectionUrl = "jdbc:" + database.getConnectorName() + "://" + dbHost + ":" + dbPort + "/" + dbName;
         connectionUrl = UriBuilder.fromUri(connectionUrl).replaceQueryParam("currentSchema", dbSchema).build().toString();
 
+        persistenceEventQueueSize = getInteger(container.getConfig(), PERSISTENCE_EVENT_QUEUE_SIZE, PERSISTENCE_EVENT_QUEUE_SIZE_DEFAULT);
         persistenceUnitProperties = database.createProperties();
 
         if (messageBrokerService != null) {
@@ -353,7 +370,7 @@ public class PersistenceService implements ContainerService {
             Session session = entityManager.unwrap(Session.class);
             PersistenceEventInterceptor persistenceEventInterceptor =
                 (PersistenceEventInterceptor) ((SharedSessionContractImplementor) session).getInterceptor();
-            persistenceEventInterceptor.setMessageBrokerService(messageBrokerService);
+            persistenceEventInterceptor.setPersistenceService(this);
         }
 
         return entityManager;
@@ -367,6 +384,7 @@ public class PersistenceService implements ContainerService {
     }
 
     public <R> R doReturningTransaction(Function<EntityManager, R> entityManagerFunction) {
+        long startNanos = System.nanoTime();
         EntityManager em = createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
@@ -375,6 +393,9 @@ public class PersistenceService implements ContainerService {
             tx.commit();
             return result;
         } catch (Exception ex) {
+            if (transactionFailures != null) {
+                transactionFailures.increment();
+            }
             if (tx != null && tx.isActive()) {
                 try {
                     LOG.log(Level.FINE, "Rolling back failed transaction, cause follows", ex);
@@ -386,6 +407,9 @@ public class PersistenceService implements ContainerService {
             throw ex;
         } finally {
             em.close();
+            if (transactionTimer != null) {
+                transactionTimer.recordSince(startNanos);
+            }
         }
     }
 
@@ -402,7 +426,8 @@ public class PersistenceService implements ContainerService {
     }
 
     /**
-     * Generate {@link PersistenceEvent}s for entities not managed by JPA (i.e. Keycloak entities)
+     * Generate a {@link PersistenceEvent} for an entity not managed by JPA (i.e. Keycloak entities) from the current and
+     * previous instance; for updates only the properties whose values differ are included.
      */
     public void publishPersistenceEvent(PersistenceEvent.Cause cause, Object currentEntity, Object previousEntity, Field[] propertyFields) {
         switch (cause) {
@@ -416,15 +441,15 @@ public class PersistenceService implements ContainerService {
                 List<String> propertyNames = new ArrayList<>(propertyFields.length);
                 List<Object> currentState = new ArrayList<>(propertyFields.length);
                 List<Object> previousState = new ArrayList<>(propertyFields.length);
-                IntStream.range(0, propertyFields.length).forEach(i -> {
-                    Object currentValue = ValueUtil.getObjectFieldValue(currentEntity, propertyFields[i]);
-                    Object previousValue = ValueUtil.getObjectFieldValue(previousEntity, propertyFields[i]);
+                for (Field propertyField : propertyFields) {
+                    Object currentValue = ValueUtil.getObjectFieldValue(currentEntity, propertyField);
+                    Object previousValue = ValueUtil.getObjectFieldValue(previousEntity, propertyField);
                     if (!ValueUtil.objectsEquals(currentValue, previousValue)) {
-                        propertyNames.add(propertyFields[i].getName());
+                        propertyNames.add(propertyField.getName());
                         currentState.add(currentValue);
                         previousState.add(previousValue);
                     }
-                });
+                }
                 publishPersistenceEvent(cause, currentEntity, propertyNames.toArray(new String[0]), currentState.toArray(), previousState.toArray());
                 break;
         }
@@ -435,16 +460,86 @@ public class PersistenceService implements ContainerService {
      */
     public void publishPersistenceEvent(PersistenceEvent.Cause cause, Object entity, String[] propertyNames, Object[] currentState, Object[] previousState) {
         // Fire persistence event although we don't use database for Tenant CUD but call Keycloak API
-        PersistenceEvent<?> persistenceEvent = new PersistenceEvent<>(cause, entity, propertyNames, currentState, previousState);
+        publishPersistenceEvents(Collections.singletonList(new PersistenceEvent<>(cause, entity, propertyNames, currentState, previousState)));
+    }
+
+    /**
+     * Subscribe to {@link PersistenceEvent}s of the specified entity type and its sub types; returns the URI of the
+     * consumer's own queue to consume from. If property names are specified then update events are only delivered
+     * when at least one of the properties has changed. Subscribing again with the same consumer ID replaces the
+     * existing subscription.
+     */
+    public String subscribePersistenceEvents(String consumerId, Class<?> entityType, String...propertyNames) {
+        return addPersistenceEventSubscription(new PersistenceEventSubscription(consumerId, entityType, false, persistenceEventQueueSize, propertyNames));
+    }
+
+    /**
+     * Same as {@link #subscribePersistenceEvents} but the consumer receives a single {@link List} of the matching
+     * {@link PersistenceEvent}s of each transaction; use this for consumers that are hit by bulk operations.
+     */
+    public String subscribeAggregatedPersistenceEvents(String consumerId, Class<?> entityType, String...propertyNames) {
+        return addPersistenceEventSubscription(new PersistenceEventSubscription(consumerId, entityType, true, persistenceEventQueueSize, propertyNames));
+    }
+
+    protected String addPersistenceEventSubscription(PersistenceEventSubscription subscription) {
+        persistenceEventSubscriptions.removeIf(existing -> existing.getConsumerId().equals(subscription.getConsumerId()));
+        persistenceEventSubscriptions.add(subscription);
+        entityTypeSubscriptions.clear();
+        LOG.fine("Added persistence event subscription: " + subscription);
+        return subscription.getEndpointUri();
+    }
+
+    public List<PersistenceEventSubscription> getPersistenceEventSubscriptions() {
+        return Collections.unmodifiableList(persistenceEventSubscriptions);
+    }
+
+    protected List<PersistenceEventSubscription> getPersistenceEventSubscriptions(Class<?> entityType) {
+        return entityTypeSubscriptions.computeIfAbsent(entityType, type ->
+            persistenceEventSubscriptions.stream().filter(subscription -> subscription.isForEntityType(type)).collect(Collectors.toList()));
+    }
+
+    /**
+     * Deliver the events of a committed transaction to the queue of each matching subscription, in order.
+     */
+    public void publishPersistenceEvents(List<PersistenceEvent<?>> persistenceEvents) {
+        if (persistenceEvents.isEmpty() || messageBrokerService == null || messageBrokerService.getProducerTemplate() == null) {
+            // Message broker not started yet
+            return;
+        }
+
+        Map<PersistenceEventSubscription, List<PersistenceEvent<?>>> aggregatedEvents = new LinkedHashMap<>();
+
+        for (PersistenceEvent<?> persistenceEvent : persistenceEvents) {
+            Class<?> entityType = persistenceEvent.getEntity().getClass();
 
-        if (messageBrokerService.getProducerTemplate() != null) {
+            for (PersistenceEventSubscription subscription : getPersistenceEventSubscriptions(entityType)) {
+                if (!subscription.matches(persistenceEvent)) {
+                    continue;
+                }
+                if (subscription.isAggregated()) {
+                    aggregatedEvents.computeIfAbsent(subscription, s -> new ArrayList<>()).add(persistenceEvent);
+                } else {
+                    sendPersistenceEvent(subscription, persistenceEvent, entityType);
+                }
+            }
+        }
+
+        aggregatedEvents.forEach((subscription, events) -> sendPersistenceEvent(subscription, events, subscription.getEntityType()));
+    }
+
+    protected void sendPersistenceEvent(PersistenceEventSubscription subscription, Object body, Class<?> entityType) {
+        try {
             messageBrokerService.getProducerTemplate().sendBodyAndHeader(
-                PersistenceEvent.PERSISTENCE_TOPIC,
+                subscription.getEndpointUri(),
                 ExchangePattern.InOnly,
-                persistenceEvent,
+                body,
                 PersistenceEvent.HEADER_ENTITY_TYPE,
-                persistenceEvent.getEntity().getClass()
+                entityType
             );
+        } catch (CamelExecutionException ex) {
+            // Most likely the consumer's queue is full; other consumers are not affected
+            Object event = body instanceof List ? ((List<?>) body).size() + " aggregated events" : body;
+            LOG.log(Level.SEVERE, "Error dispatching to persistence event consumer '" + subscription.getConsumerId() + "': " + event + " - " + ex, ex);
         }
     }
 
@@ -10,6 +10,10 @@
     @TypeDef(
         name = EpochMillisInstantType.TYPE_NAME,
         typeClass = EpochMillisInstantType.class
+    ),
+    @TypeDef(
+        name = AttributeMapType.TYPE_NAME,
+        typeClass = AttributeMapType.class
     )
 })
 
@@ -20,4 +24,5 @@ import com.vladmihalcea.hibernate.type.json.JsonBinaryType;
 import org.hibernate.annotations.TypeDef;
 import org.hibernate.annotations.TypeDefs;
 import org.openremote.model.Constants;
+import org.openremote.model.persistence.AttributeMapType;
 import org.openremote.model.persistence.EpochMillisInstantType;
@@ -296,7 +296,11 @@ public abstract class KeycloakIdentityProvider implements IdentityProvider {
         }
     }
 
-    public synchronized KeycloakDeployment getKeycloakDeployment(String realm, String clientId) {
+    /**
+     * The deployments are held in a {@link LoadingCache} which is safe for concurrent use (only callers for a
+     * deployment that is being loaded wait) so this doesn't lock.
+     */
+    public KeycloakDeployment getKeycloakDeployment(String realm, String clientId) {
         try {
             return keycloakDeploymentCache.get(new KeycloakRealmClient(realm, clientId));
         } catch (Exception ex) {
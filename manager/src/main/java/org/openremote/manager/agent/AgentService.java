@@ -21,9 +21,14 @@ package org.openremote.manager.agent;
 
 import groovy.util.MapEntry;
 import org.apache.camel.builder.RouteBuilder;
+import org.openremote.agent.protocol.AbstractProtocol;
+import org.openremote.agent.protocol.ActuatorInbox;
 import org.openremote.agent.protocol.ProtocolAssetService;
 import org.openremote.container.message.MessageBrokerService;
+import org.openremote.container.metrics.MetricsRegistry;
+import org.openremote.container.metrics.MetricsService;
 import org.openremote.container.persistence.PersistenceEvent;
+import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetProcessingException;
 import org.openremote.manager.asset.AssetProcessingService;
@@ -56,6 +61,7 @@ import org.openremote.model.util.TextUtil;
 
 import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
@@ -69,7 +75,6 @@ import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
 import static org.openremote.container.concurrent.GlobalLock.withLock;
 import static org.openremote.container.concurrent.GlobalLock.withLockReturning;
-import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
 import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
 import static org.openremote.manager.asset.AssetProcessingService.ASSET_QUEUE;
 import static org.openremote.manager.gateway.GatewayService.isNotForGateway;
@@ -96,13 +101,21 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
     protected MessageBrokerService messageBrokerService;
     protected ClientEventService clientEventService;
     protected GatewayService gatewayService;
+    protected PersistenceService persistenceService;
     protected ScheduledExecutorService executorService;
     protected Map<String, Agent<?, ?, ?>> agentMap;
     protected final Map<String, Future<Void>> agentDiscoveryImportFutureMap = new HashMap<>();
-    protected final Map<String, Protocol<?>> protocolInstanceMap = new HashMap<>();
+    // Modified under the protocol lifecycle lock but concurrent so protocol instances can be read without it
+    protected final Map<String, Protocol<?>> protocolInstanceMap = new ConcurrentHashMap<>();
+    /**
+     * Serialises starting, stopping and (un)linking attributes of protocol instances; these wait for the protocol lock
+     * (e.g. until a slow device write completes) so they must never be done whilst holding the global lock.
+     */
+    protected final Object protocolLifecycleLock = new Object();
     protected final Map<String, List<Consumer<PersistenceEvent<Asset<?>>>>> childAssetSubscriptions = new HashMap<>();
     protected boolean initDone;
     protected Container container;
+    protected MetricsRegistry metricsRegistry;
 
     @Override
     public int getPriority() {
@@ -118,8 +131,11 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
         assetStorageService = container.getService(AssetStorageService.class);
         messageBrokerService = container.getService(MessageBrokerService.class);
         clientEventService = container.getService(ClientEventService.class);
+        persistenceService = container.getService(PersistenceService.class);
+
+        metricsRegistry = MetricsService.getRegistry(container);
         gatewayService = container.getService(GatewayService.class);
-        executorService = container.getExecutorService();
+        executorService = container.getExecutorService(Container.EXECUTOR_PROTOCOL);
 
         if (initDone) {
             return;
@@ -131,7 +147,7 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
                 container.getService(ManagerIdentityService.class),
                 assetStorageService,
                 this,
-                container.getExecutorService())
+                container.getExecutorService(Container.EXECUTOR_PROTOCOL))
         );
 
         initDone = true;
@@ -160,9 +176,8 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
     @SuppressWarnings("unchecked")
     @Override
     public void configure() throws Exception {
-        from(PERSISTENCE_TOPIC)
+        from(persistenceService.subscribePersistenceEvents("AgentPersistenceChanges", Asset.class))
             .routeId("AgentPersistenceChanges")
-            .filter(isPersistenceEventForEntityType(Asset.class))
             .filter(isNotForGateway(gatewayService))
             .process(exchange -> {
                 PersistenceEvent<Asset<?>> persistenceEvent = (PersistenceEvent<Asset<?>>)exchange.getIn().getBody(PersistenceEvent.class);
@@ -175,6 +190,23 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
                 }
             });
 
+        // An agent linked attribute has been written so pass it to the inbox of the agent's protocol instance, this
+        // never blocks so a slow protocol can't hold up writes to other agents
+        from(ACTUATOR_TOPIC)
+            .routeId("ActuatorDispatch")
+            .filter(body().isInstanceOf(AttributeEvent.class))
+            .process(exchange -> {
+                Protocol<?> protocol = exchange.getIn().getHeader(Protocol.ACTUATOR_TOPIC_TARGET_PROTOCOL, Protocol.class);
+                AttributeEvent attributeEvent = exchange.getIn().getBody(AttributeEvent.class);
+
+                if (!(protocol instanceof AbstractProtocol)) {
+                    LOG.finer("Attribute write target protocol is not running so ignoring: " + attributeEvent);
+                    return;
+                }
+
+                ((AbstractProtocol<?, ?>) protocol).offerLinkedAttributeWrite(attributeEvent);
+            });
+
         // A protocol wants to write a new sensor value
         from(SENSOR_QUEUE)
             .routeId("FromSensorUpdates")
@@ -394,7 +426,7 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
     }
 
     protected void startAgent(Agent<?,?,?> agent) {
-        withLock(getClass().getSimpleName() + "::startAgent", () -> {
+        synchronized (protocolLifecycleLock) {
             Protocol<?> protocol = null;
 
             try {
@@ -404,6 +436,10 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
                 LOG.fine("Starting protocol instance: " + protocol);
                 protocol.start(container);
                 LOG.fine("Started protocol instance:" + protocol);
+                ActuatorInbox actuatorInbox = getActuatorInbox(protocol);
+                if (actuatorInbox != null) {
+                    actuatorInbox.registerMetrics(metricsRegistry, "agent_id", agent.getId());
+                }
 
                 LOG.finer("Linking attributes to protocol instance: " + protocol);
 
@@ -436,16 +472,20 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
                         protocol.stop(container);
                     } catch (Exception ignored) {
                     }
+                    ActuatorInbox actuatorInbox = getActuatorInbox(protocol);
+                    if (actuatorInbox != null) {
+                        actuatorInbox.removeMetrics();
+                    }
                 }
                 protocolInstanceMap.remove(agent.getId());
                 LOG.log(Level.SEVERE, "Failed to start protocol instance for agent: " + agent, e);
                 sendAttributeEvent(new AttributeEvent(agent.getId(), Agent.STATUS.getName(), ConnectionStatus.ERROR));
             }
-        });
+        }
     }
 
     protected void stopAgent(String agentId) {
-        withLock(getClass().getSimpleName() + "::stopAgent", () -> {
+        synchronized (protocolLifecycleLock) {
             Protocol<?> protocol = protocolInstanceMap.get(agentId);
 
             if (protocol == null) {
@@ -464,15 +504,19 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
             } catch (Exception e) {
                 LOG.log(Level.SEVERE, "Protocol instance threw an exception whilst being stopped", e);
             }
+            ActuatorInbox actuatorInbox = getActuatorInbox(protocol);
+            if (actuatorInbox != null) {
+                actuatorInbox.removeMetrics();
+            }
 
             // Remove child asset subscriptions for this agent
-            childAssetSubscriptions.remove(agentId);
+            withLock(getClass().getSimpleName() + "::stopAgent", () -> childAssetSubscriptions.remove(agentId));
             protocolInstanceMap.remove(agentId);
-        });
+        }
     }
 
     protected void linkAttributes(Agent<?,?,?> agent, String assetId, Collection<Attribute<?>> attributes) {
-        withLock(getClass().getSimpleName() + "::linkAttributes", () -> {
+        synchronized (protocolLifecycleLock) {
             Protocol<?> protocol = getProtocolInstance(agent.getId());
 
             if (protocol == null) {
@@ -492,11 +536,11 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
                     LOG.log(Level.SEVERE, "Failed to link attribute '" + attributeRef + "' to protocol: " + protocol, ex);
                 }
             });
-        });
+        }
     }
 
     protected void unlinkAttributes(String agentId, String assetId, List<Attribute<?>> attributes) {
-        withLock(getClass().getSimpleName() + "::unlinkAttributes", () -> {
+        synchronized (protocolLifecycleLock) {
             Protocol<?> protocol = getProtocolInstance(agentId);
 
             if (protocol == null) {
@@ -516,7 +560,7 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
                     LOG.log(Level.SEVERE, "Ignoring error on unlinking attribute '" + attribute + "' from protocol: " + protocol, ex);
                 }
             });
-        });
+        }
     }
 
     /**
@@ -554,7 +598,8 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
 
                 if (source == CLIENT && agent.isConfigurationAttribute(attribute.getName())) {
                     LOG.finer("Agent attribute event occurred from a client for an agent config attribute so updating: agent=" + agent.getId() + ", event=" + attributeEvent);
-                    onAgentUpdated(agent);
+                    // Asset processing holds the global lock so restart the protocol instance outside of it
+                    executorService.execute(() -> onAgentUpdated(agent));
                 }
             }
 
@@ -663,6 +708,25 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
         return protocolInstanceMap.get(agentId);
     }
 
+    /**
+     * The {@link ActuatorInbox} of each running protocol instance by agent ID, for monitoring; doesn't take the global
+     * lock so it can be called whilst the lock is held by another thread.
+     */
+    public Map<String, ActuatorInbox> getActuatorInboxes() {
+        Map<String, ActuatorInbox> inboxes = new HashMap<>();
+        protocolInstanceMap.forEach((agentId, protocol) -> {
+            ActuatorInbox actuatorInbox = getActuatorInbox(protocol);
+            if (actuatorInbox != null) {
+                inboxes.put(agentId, actuatorInbox);
+            }
+        });
+        return inboxes;
+    }
+
+    protected static ActuatorInbox getActuatorInbox(Protocol<?> protocol) {
+        return protocol instanceof AbstractProtocol ? ((AbstractProtocol<?, ?>) protocol).getActuatorInbox() : null;
+    }
+
     @Override
     public void subscribeChildAssetChange(String agentId, Consumer<PersistenceEvent<Asset<?>>> assetChangeConsumer) {
         if (!getAgents().containsKey(agentId)) {
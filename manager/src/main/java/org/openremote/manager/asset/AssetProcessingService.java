@@ -23,6 +23,9 @@ import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
 import org.apache.camel.builder.RouteBuilder;
 import org.openremote.container.message.MessageBrokerService;
+import org.openremote.container.metrics.MetricsRegistry;
+import org.openremote.container.metrics.MetricsService;
+import org.openremote.container.metrics.TimerMetric;
 import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.security.AuthContext;
 import org.openremote.container.timer.TimerService;
@@ -49,7 +52,9 @@ import org.openremote.model.value.ValueType;
 import javax.persistence.EntityManager;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -128,6 +133,7 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
     public static final String ASSET_QUEUE = "seda://AssetQueue?waitForTaskToComplete=IfReplyExpected&timeout=10000&purgeWhenStopping=true&discardIfNoConsumers=false&size=25000";
     private static final Logger LOG = Logger.getLogger(AssetProcessingService.class.getName());
     final protected List<AssetUpdateProcessor> processors = new ArrayList<>();
+    final protected Map<AssetUpdateProcessor, TimerMetric> processorTimers = new HashMap<>();
     protected TimerService timerService;
     protected ManagerIdentityService identityService;
     protected PersistenceService persistenceService;
@@ -208,6 +214,12 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
         processors.add(assetDatapointService);
         processors.add(assetAttributeLinkingService);
 
+        MetricsRegistry metricsRegistry = MetricsService.getRegistry(container);
+        processors.forEach(processor -> processorTimers.put(
+            processor,
+            metricsRegistry.timer("or_asset_processor_seconds", "Time taken by each asset update processor", "processor", processor.getClass().getSimpleName())
+        ));
+
         container.getService(MessageBrokerService.class).getContext().addRoutes(this);
     }
 
@@ -458,6 +470,8 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
         boolean complete = false;
         for (AssetUpdateProcessor processor : processors) {
             LOG.finest("==> Processor " + processor + " accepts: " + attributeStr);
+            TimerMetric processorTimer = processorTimers.get(processor);
+            long startNanos = System.nanoTime();
             try {
                 complete = processor.processAssetUpdate(em, asset, attribute, source);
             } catch (AssetProcessingException ex) {
@@ -468,6 +482,10 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
                     "processor '" + processor + "' threw an exception",
                     t
                 );
+            } finally {
+                if (processorTimer != null) {
+                    processorTimer.recordSince(startNanos);
+                }
             }
             if (complete) {
                 LOG.fine("<== Processor " + processor + " completely consumed: " + attributeStr);
@@ -79,8 +79,6 @@ import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.groupingBy;
 import static org.apache.camel.builder.PredicateBuilder.or;
-import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
-import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
 import static org.openremote.manager.event.ClientEventService.CLIENT_EVENT_TOPIC;
 import static org.openremote.model.attribute.Attribute.getAddedOrModifiedAttributes;
 import static org.openremote.model.query.AssetQuery.*;
@@ -360,10 +358,13 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
     @Override
     public void configure() throws Exception {
         // If any asset was modified in the database, publish events
-        from(PERSISTENCE_TOPIC)
+        from(persistenceService.subscribeAggregatedPersistenceEvents("AssetPersistenceChanges", Asset.class))
             .routeId("AssetPersistenceChanges")
-            .filter(isPersistenceEventForEntityType(Asset.class))
-            .process(exchange -> publishModificationEvents(exchange.getIn().getBody(PersistenceEvent.class)));
+            .process(exchange -> {
+                @SuppressWarnings("unchecked")
+                List<PersistenceEvent<Asset<?>>> persistenceEvents = exchange.getIn().getBody(List.class);
+                persistenceEvents.forEach(this::publishModificationEvents);
+            });
 
         // React if a client wants to read assets and attributes
         from(CLIENT_EVENT_TOPIC)
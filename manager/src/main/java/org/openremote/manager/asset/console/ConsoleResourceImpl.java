@@ -22,6 +22,7 @@ package org.openremote.manager.asset.console;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.manager.event.ClientEventService;
+import org.openremote.manager.event.InternalEventSubscriber;
 import org.openremote.manager.security.ManagerIdentityService;
 import org.openremote.manager.web.ManagerWebResource;
 import org.openremote.model.asset.Asset;
@@ -60,11 +61,12 @@ public class ConsoleResourceImpl extends ManagerWebResource implements ConsoleRe
         super(timerService, identityService);
         this.assetStorageService = assetStorageService;
 
-        // Subscribe for asset events
+        // Subscribe for asset events; the consumer is trivial and never publishes so can safely hold up the publisher
         clientEventService.addInternalSubscription(
             AssetEvent.class,
             null,
-            this::onAssetChange);
+            this::onAssetChange,
+            InternalEventSubscriber.OverflowPolicy.BLOCK);
     }
 
     protected void onAssetChange(AssetEvent event) {
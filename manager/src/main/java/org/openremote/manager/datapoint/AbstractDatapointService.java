@@ -12,11 +12,13 @@ import org.openremote.model.asset.Asset;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.datapoint.Datapoint;
+import org.openremote.model.datapoint.DatapointDownsampling;
 import org.openremote.model.datapoint.DatapointInterval;
 import org.openremote.model.datapoint.DatapointPeriod;
 import org.openremote.model.datapoint.ValueDatapoint;
 import org.openremote.model.util.Pair;
 import org.openremote.model.util.ValueUtil;
+import org.openremote.model.value.MetaItemType;
 import org.postgresql.util.PGInterval;
 import org.postgresql.util.PGobject;
 
@@ -25,29 +27,143 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
+import static org.openremote.container.util.MapAccess.getInteger;
 
 /**
  * Base class for all classes that store and retrieve {@link org.openremote.model.datapoint.Datapoint}.
+ * <p>
+ * Datapoint tables are partitioned by day on <code>TIMESTAMP</code> (see <code>CREATE_DATAPOINT_PARTITION</code> in
+ * the DB schema); partitions are created {@link #DATA_POINTS_PARTITION_DAYS_AHEAD} days ahead and purging drops whole
+ * partitions wherever possible (see {@link #purgePartitions}). All queries should constrain <code>TIMESTAMP</code> so
+ * that only the relevant partitions are scanned.
+ * <p>
+ * If {@link #isRollupSupported} then hourly and daily rollups (min, max, avg, count and latest value) of numeric and
+ * boolean data points are maintained by recomputing the hours that have been written to (tracked in memory, the last
+ * {@value #ROLLUP_STARTUP_HOURS} hours are recomputed on start) every {@link #DATA_POINTS_ROLLUP_INTERVAL_SECONDS};
+ * the coarsest rollup that satisfies the {@link DatapointInterval} is then used when getting aggregated data points.
+ * <p>
+ * Attributes with a {@link MetaItemType#DATA_POINTS_CACHE_MINUTES} meta item have their recent data points buffered
+ * in the {@link DatapointCache} (up to {@link #DATA_POINTS_CACHE_MAX_POINTS} each) once queried by {@link AttributeRef}
+ * (as the rules facades do) and subsequent queries within the window are answered from memory.
+ * <p>
+ * The average values of many attributes over the same grid of periods can be retrieved in a single query with {@link
+ * #getAverageValueSeries}.
  */
 public abstract class AbstractDatapointService<T extends Datapoint> implements ContainerService {
 
     public static final int PRIORITY = AssetStorageService.PRIORITY + 100;
+    public static final String DATA_POINTS_PARTITION_DAYS_AHEAD = "DATA_POINTS_PARTITION_DAYS_AHEAD";
+    public static final int DATA_POINTS_PARTITION_DAYS_AHEAD_DEFAULT = 7;
+    protected static final String PARTITION_PURGED_COMMENT = "PURGED";
+    protected static final Pattern PARTITION_BOUND_PATTERN = Pattern.compile("FROM \\((.+?)\\) TO \\((.+?)\\)");
+    public static final String DATA_POINTS_ROLLUP_INTERVAL_SECONDS = "DATA_POINTS_ROLLUP_INTERVAL_SECONDS";
+    public static final int DATA_POINTS_ROLLUP_INTERVAL_SECONDS_DEFAULT = 60;
+    protected static final int ROLLUP_STARTUP_HOURS = 24;
+    public static final String DATA_POINTS_CACHE_MAX_POINTS = "DATA_POINTS_CACHE_MAX_POINTS";
+    public static final int DATA_POINTS_CACHE_MAX_POINTS_DEFAULT = 10000;
+    protected static final String ROLLUP_VALUE_EXPRESSION = "case jsonb_typeof(VALUE) when 'boolean' then (case when VALUE::text::boolean then 1 else 0 end) else VALUE::text::float8 end";
+    /**
+     * Number of points returned by {@link DatapointDownsampling#MIN_MAX} and {@link DatapointDownsampling#LTTB} when
+     * neither a point count nor an interval is specified.
+     */
+    public static final int DOWNSAMPLE_POINTS_DEFAULT = 1000;
+    public static final int DOWNSAMPLE_POINTS_MAX = 100000;
+    /**
+     * LTTB runs in memory over a min/max pre-decimated series with this many buckets per requested point; this bounds
+     * the rows transferred from the DB regardless of how many raw datapoints are in the range.
+     */
+    protected static final int LTTB_BUCKETS_PER_POINT = 8;
     protected PersistenceService persistenceService;
     protected AssetStorageService assetStorageService;
     protected TimerService timerService;
     protected ScheduledExecutorService executorService;
     protected ScheduledFuture<?> dataPointsPurgeScheduledFuture;
+    protected ScheduledFuture<?> partitionsScheduledFuture;
+    protected ScheduledFuture<?> rollupScheduledFuture;
+    protected ScheduledFuture<?> cachePurgeScheduledFuture;
+    protected DatapointCache datapointCache;
+    protected int partitionDaysAhead;
+    protected int rollupIntervalSeconds;
+    /**
+     * Hours (truncated data point timestamps) of each attribute that need their rollups recomputing.
+     */
+    protected final Map<AttributeRef, Set<LocalDateTime>> rollupDirtyHours = new ConcurrentHashMap<>();
+    /**
+     * Can be disabled to always aggregate the raw data points.
+     */
+    protected boolean queryRollups = true;
+
+    protected enum DatapointRollup {
+        HOURLY("hour", "_hourly"),
+        DAILY("day", "_daily");
+
+        protected final String unit;
+        protected final String tableSuffix;
+
+        DatapointRollup(String unit, String tableSuffix) {
+            this.unit = unit;
+            this.tableSuffix = tableSuffix;
+        }
+    }
+
+    /**
+     * A daily partition of the datapoint table; {@link #from} is <code>null</code> for the partition holding the data
+     * stored before the table was partitioned.
+     */
+    protected static class DatapointPartition {
+        protected final String name;
+        protected final boolean isDefault;
+        protected final LocalDateTime from;
+        protected final LocalDateTime to;
+        protected final boolean purged;
+
+        protected DatapointPartition(String name, boolean isDefault, LocalDateTime from, LocalDateTime to, boolean purged) {
+            this.name = name;
+            this.isDefault = isDefault;
+            this.from = from;
+            this.to = to;
+            this.purged = purged;
+        }
+
+        @Override
+        public String toString() {
+            return DatapointPartition.class.getSimpleName() + "{" +
+                "name='" + name + '\'' +
+                ", isDefault=" + isDefault +
+                ", from=" + from +
+                ", to=" + to +
+                ", purged=" + purged +
+                '}';
+        }
+    }
 
     @Override
     public int getPriority() {
@@ -59,7 +175,44 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         persistenceService = container.getService(PersistenceService.class);
         assetStorageService = container.getService(AssetStorageService.class);
         timerService = container.getService(TimerService.class);
-        executorService = container.getExecutorService();
+        executorService = container.getExecutorService(Container.EXECUTOR_PERSISTENCE);
+        partitionDaysAhead = Math.max(1, getInteger(container.getConfig(), DATA_POINTS_PARTITION_DAYS_AHEAD, DATA_POINTS_PARTITION_DAYS_AHEAD_DEFAULT));
+        rollupIntervalSeconds = Math.max(1, getInteger(container.getConfig(), DATA_POINTS_ROLLUP_INTERVAL_SECONDS, DATA_POINTS_ROLLUP_INTERVAL_SECONDS_DEFAULT));
+        datapointCache = new DatapointCache(getInteger(container.getConfig(), DATA_POINTS_CACHE_MAX_POINTS, DATA_POINTS_CACHE_MAX_POINTS_DEFAULT));
+    }
+
+    @Override
+    public void start(Container container) throws Exception {
+        createPartitions();
+        partitionsScheduledFuture = executorService.scheduleAtFixedRate(
+            this::createPartitions,
+            Duration.ofHours(6).toMillis(),
+            Duration.ofHours(6).toMillis(), TimeUnit.MILLISECONDS
+        );
+
+        if (isRollupSupported()) {
+            LocalDateTime hour = LocalDateTime.ofInstant(timerService.getNow(), ZoneId.systemDefault()).truncatedTo(HOURS);
+            executorService.execute(() -> {
+                try {
+                    rollup(null, hour.minusHours(ROLLUP_STARTUP_HOURS), hour.plusHours(1));
+                } catch (Exception e) {
+                    getLogger().log(Level.WARNING, "Failed to recompute recent data point rollups", e);
+                }
+            });
+            rollupScheduledFuture = executorService.scheduleWithFixedDelay(
+                this::rollupDirty,
+                rollupIntervalSeconds,
+                rollupIntervalSeconds, TimeUnit.SECONDS
+            );
+        }
+
+        if (datapointCache.isEnabled()) {
+            cachePurgeScheduledFuture = executorService.scheduleWithFixedDelay(
+                () -> datapointCache.purgeIdle(timerService.getCurrentTimeMillis()),
+                1,
+                1, TimeUnit.MINUTES
+            );
+        }
     }
 
     @Override
@@ -67,6 +220,16 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         if (dataPointsPurgeScheduledFuture != null) {
             dataPointsPurgeScheduledFuture.cancel(true);
         }
+        if (partitionsScheduledFuture != null) {
+            partitionsScheduledFuture.cancel(true);
+        }
+        if (rollupScheduledFuture != null) {
+            rollupScheduledFuture.cancel(true);
+        }
+        if (cachePurgeScheduledFuture != null) {
+            cachePurgeScheduledFuture.cancel(true);
+        }
+        datapointCache.clear();
     }
 
     public void upsertValue(String assetId, String attributeName, Object value, LocalDateTime timestamp) throws IllegalStateException {
@@ -86,6 +249,8 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                         throw new IllegalStateException(msg, e);
                     }
                 }));
+        markRollupDirty(assetId, attributeName, List.of(timestamp));
+        datapointCache.update(new AttributeRef(assetId, attributeName), DatapointCache.toMillis(timestamp), value, timerService.getCurrentTimeMillis());
     }
 
     public void upsertValues(String assetId, String attributeName, List<Pair<?, LocalDateTime>> valuesAndTimestamps) throws IllegalStateException {
@@ -109,6 +274,12 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                         throw new IllegalStateException(msg, e);
                     }
                 }));
+        markRollupDirty(assetId, attributeName, valuesAndTimestamps.stream().map(valueAndTimestamp -> valueAndTimestamp.value).collect(Collectors.toList()));
+        AttributeRef attributeRef = new AttributeRef(assetId, attributeName);
+        long nowMillis = timerService.getCurrentTimeMillis();
+        for (Pair<?, LocalDateTime> valueAndTimestamp : valuesAndTimestamps) {
+            datapointCache.update(attributeRef, DatapointCache.toMillis(valueAndTimestamp.value), valueAndTimestamp.key, nowMillis);
+        }
     }
 
     public List<T> getDatapoints(AttributeRef attributeRef) {
@@ -155,6 +326,11 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                                                   LocalDateTime fromTimestamp,
                                                   LocalDateTime toTimestamp) {
 
+        ValueDatapoint<?>[] cachedDatapoints = datapointCache.getValueDatapoints(attributeRef, datapointInterval, stepSize, fromTimestamp, toTimestamp, timerService.getCurrentTimeMillis());
+        if (cachedDatapoints != null) {
+            return cachedDatapoints;
+        }
+
         Asset<?> asset = assetStorageService.find(attributeRef.getId());
         if (asset == null) {
             throw new IllegalStateException("Asset not found: " + attributeRef.getId());
@@ -163,9 +339,79 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         Attribute<?> assetAttribute = asset.getAttribute(attributeRef.getName())
                 .orElseThrow(() -> new IllegalStateException("Attribute not found: " + attributeRef.getName()));
 
+        assetAttribute.getMetaValue(MetaItemType.DATA_POINTS_CACHE_MINUTES).ifPresent(minutes ->
+            cacheDatapoints(attributeRef, assetAttribute, minutes));
+
         return getValueDatapoints(asset.getId(), assetAttribute, datapointInterval, stepSize, fromTimestamp, toTimestamp);
     }
 
+    /**
+     * Starts buffering the recent data points of the attribute in the {@link DatapointCache} (if not already) by
+     * reading the data points within the window from the DB; only number and boolean attributes can be cached.
+     */
+    protected void cacheDatapoints(AttributeRef attributeRef, Attribute<?> attribute, int minutes) {
+        Class<?> attributeType = attribute.getType().getType();
+        if (!Number.class.isAssignableFrom(attributeType) && !Boolean.class.isAssignableFrom(attributeType)) {
+            return;
+        }
+
+        long nowMillis = timerService.getCurrentTimeMillis();
+        long windowMillis = TimeUnit.MINUTES.toMillis(minutes);
+
+        if (datapointCache.contains(attributeRef)) {
+            if (datapointCache.getWindowMillis(attributeRef) == windowMillis) {
+                return;
+            }
+            // Window has changed so start again
+            datapointCache.remove(attributeRef);
+        }
+
+        if (!datapointCache.add(attributeRef, windowMillis, nowMillis)) {
+            return;
+        }
+
+        long fromMillis = nowMillis - windowMillis;
+
+        try {
+            persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement st = connection.prepareStatement(
+                    "select TIMESTAMP, " + ROLLUP_VALUE_EXPRESSION + " from " + getDatapointTableName() +
+                        " where TIMESTAMP >= ? and ENTITY_ID = ? and ATTRIBUTE_NAME = ? and jsonb_typeof(VALUE) in ('number', 'boolean')" +
+                        " order by TIMESTAMP desc limit ?")) {
+
+                    st.setObject(1, DatapointCache.toLocalDateTime(fromMillis));
+                    st.setString(2, attributeRef.getId());
+                    st.setString(3, attributeRef.getName());
+                    st.setInt(4, datapointCache.capacity);
+
+                    List<Long> timestamps = new ArrayList<>();
+                    List<Double> values = new ArrayList<>();
+                    try (ResultSet rs = st.executeQuery()) {
+                        while (rs.next()) {
+                            timestamps.add(rs.getTimestamp(1).getTime());
+                            values.add(rs.getDouble(2));
+                        }
+                    }
+
+                    datapointCache.seed(
+                        attributeRef,
+                        fromMillis,
+                        timestamps.stream().mapToLong(Long::longValue).toArray(),
+                        values.stream().mapToDouble(Double::doubleValue).toArray(),
+                        timerService.getCurrentTimeMillis());
+                }
+            }));
+            getLogger().fine("Caching data points of the last " + minutes + " minute(s) for: " + attributeRef);
+        } catch (Exception e) {
+            datapointCache.remove(attributeRef);
+            getLogger().log(Level.WARNING, "Failed to cache data points for: " + attributeRef, e);
+        }
+    }
+
+    public DatapointCache getDatapointCache() {
+        return datapointCache;
+    }
+
     public ValueDatapoint<?>[] getValueDatapoints(String assetId,
                                                   Attribute<?> attribute,
                                                   DatapointInterval datapointInterval,
@@ -174,8 +420,14 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                                                   LocalDateTime toTimestamp) {
 
         AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
+        DatapointRollup rollup = getQueryRollup(attribute, datapointInterval);
+
+        getLogger().finer("Getting datapoints for: " + attributeRef + (rollup != null ? ", rollup=" + rollup : ""));
 
-        getLogger().finer("Getting datapoints for: " + attributeRef);
+        if (rollup != null) {
+            // Make sure the rollups include everything stored so far
+            rollupDirty(attributeRef);
+        }
 
         return persistenceService.doReturningTransaction(entityManager ->
 
@@ -245,18 +497,20 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                             }
                             stepStr = step + " " + interval;
 
-                            // TODO: Change this to use something like this max min decimation algorithm https://knowledge.ni.com/KnowledgeArticleDetails?id=kA00Z0000019YLKSA2&l=en-GB)
+                            // Peak preserving alternatives are available through DatapointDownsampling MIN_MAX and LTTB
                             query.append("select PERIOD as X, AVG_VALUE as Y " +
                                     "from generate_series(date_trunc(?, ?) + " + partQuery + " / ? * ?, date_trunc(?, ?) + " + partQuery + " / ? * ?, ?) PERIOD left join ( " +
                                     "select (date_trunc(?, TIMESTAMP) + " + partQuery2 + " / ? * ?)::timestamp as TS, ");
 
-                            if (isNumber) {
+                            if (rollup != null) {
+                                query.append(" SUM(AVG_VALUE * VALUE_COUNT) / SUM(VALUE_COUNT) as AVG_VALUE ");
+                            } else if (isNumber) {
                                 query.append(" AVG(VALUE::text::numeric) as AVG_VALUE ");
                             } else {
                                 query.append(" AVG(case when VALUE::text::boolean is true then 1 else 0 end) as AVG_VALUE ");
                             }
 
-                            query.append("from " + getDatapointTableName() +
+                            query.append("from " + (rollup != null ? getRollupTableName(rollup) : getDatapointTableName()) +
                                     " where TIMESTAMP >= date_trunc(?, ?) and TIMESTAMP < (date_trunc(?, ?) + ?) and ENTITY_ID = ? and ATTRIBUTE_NAME = ? group by TS) DP on DP.TS = PERIOD order by PERIOD asc");
 
                         } else {
@@ -338,26 +592,282 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         );
     }
 
+    /**
+     * Returns the coarsest rollup that can be used to aggregate the attribute's data points for the interval (if any).
+     */
+    protected DatapointRollup getQueryRollup(Attribute<?> attribute, DatapointInterval datapointInterval) {
+        if (!queryRollups || !isRollupSupported() || datapointInterval == null || datapointInterval == DatapointInterval.MINUTE) {
+            return null;
+        }
+
+        Class<?> attributeType = attribute.getType().getType();
+        if (!Number.class.isAssignableFrom(attributeType) && !Boolean.class.isAssignableFrom(attributeType)) {
+            return null;
+        }
+
+        return datapointInterval == DatapointInterval.HOUR ? DatapointRollup.HOURLY : DatapointRollup.DAILY;
+    }
+
+    /**
+     * Get datapoints downsampled with the specified {@link DatapointDownsampling} algorithm; {@link
+     * DatapointDownsampling#AVERAGE} (or <code>null</code>) uses the {@link DatapointInterval} buckets of {@link
+     * #getValueDatapoints(String, Attribute, DatapointInterval, Integer, LocalDateTime, LocalDateTime)} whilst the
+     * other algorithms return at most <code>maxPoints</code> points (if not specified then the number of interval
+     * buckets in the period is used). Non numeric/boolean attributes are never downsampled.
+     */
+    public ValueDatapoint<?>[] getValueDatapoints(String assetId,
+                                                  Attribute<?> attribute,
+                                                  DatapointInterval datapointInterval,
+                                                  Integer stepSize,
+                                                  LocalDateTime fromTimestamp,
+                                                  LocalDateTime toTimestamp,
+                                                  DatapointDownsampling downsampling,
+                                                  Integer maxPoints) {
+
+        Class<?> attributeType = attribute.getType().getType();
+        boolean isNumber = Number.class.isAssignableFrom(attributeType);
+        boolean isBoolean = Boolean.class.isAssignableFrom(attributeType);
+
+        if (downsampling == null || downsampling == DatapointDownsampling.AVERAGE || (!isNumber && !isBoolean)) {
+            return getValueDatapoints(assetId, attribute, datapointInterval, stepSize, fromTimestamp, toTimestamp);
+        }
+
+        int points = maxPoints != null
+            ? Math.max(3, Math.min(DOWNSAMPLE_POINTS_MAX, maxPoints))
+            : getIntervalPointCount(datapointInterval, stepSize, fromTimestamp, toTimestamp);
+        AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
+
+        if (downsampling == DatapointDownsampling.MIN_MAX) {
+            // Each bucket contributes its min and max
+            return getMinMaxValueDatapoints(attributeRef, isBoolean, Math.max(1, points / 2), fromTimestamp, toTimestamp);
+        }
+
+        ValueDatapoint<?>[] decimated = getMinMaxValueDatapoints(attributeRef, isBoolean, points * LTTB_BUCKETS_PER_POINT, fromTimestamp, toTimestamp);
+        return largestTriangleThreeBuckets(decimated, points);
+    }
+
+    /**
+     * Returns the min and max value of each of the equal width time buckets in the period; where min and max are the
+     * same datapoint only a single point is returned for the bucket and empty buckets return nothing.
+     */
+    protected ValueDatapoint<?>[] getMinMaxValueDatapoints(AttributeRef attributeRef,
+                                                           boolean isBoolean,
+                                                           int buckets,
+                                                           LocalDateTime fromTimestamp,
+                                                           LocalDateTime toTimestamp) {
+
+        getLogger().finer("Getting min/max datapoints for: " + attributeRef + ", buckets=" + buckets);
+
+        double bucketSeconds = Math.max(0.001d, (ChronoUnit.MILLIS.between(fromTimestamp, toTimestamp) / 1000d) / buckets);
+        String valueExpr = isBoolean ? "case when VALUE::text::boolean is true then 1 else 0 end" : "VALUE::text::numeric";
+        String query = "select TS, V from (" +
+            "select TS, V, " +
+            "row_number() over (partition by B order by V asc, TS asc) as RN_MIN, " +
+            "row_number() over (partition by B order by V desc, TS asc) as RN_MAX " +
+            "from (select TIMESTAMP as TS, " + valueExpr + " as V, least(floor(extract(epoch from (TIMESTAMP - ?)) / ?)::bigint, ?) as B " +
+            "from " + getDatapointTableName() + " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ?) D" +
+            ") R where RN_MIN = 1 or RN_MAX = 1 order by TS asc";
+
+        return persistenceService.doReturningTransaction(entityManager ->
+            entityManager.unwrap(Session.class).doReturningWork(new AbstractReturningWork<ValueDatapoint<?>[]>() {
+                @Override
+                public ValueDatapoint<?>[] execute(Connection connection) throws SQLException {
+                    try (PreparedStatement st = connection.prepareStatement(query)) {
+                        st.setObject(1, fromTimestamp);
+                        st.setDouble(2, bucketSeconds);
+                        st.setLong(3, buckets - 1);
+                        st.setString(4, attributeRef.getId());
+                        st.setString(5, attributeRef.getName());
+                        st.setObject(6, fromTimestamp);
+                        st.setObject(7, toTimestamp);
+
+                        try (ResultSet rs = st.executeQuery()) {
+                            List<ValueDatapoint<?>> result = new ArrayList<>();
+                            while (rs.next()) {
+                                result.add(new ValueDatapoint<>(rs.getTimestamp(1).getTime(), rs.getDouble(2)));
+                            }
+                            return result.toArray(new ValueDatapoint<?>[0]);
+                        }
+                    }
+                }
+            })
+        );
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets downsampling (Sveinn Steinarsson, 2013); the first and last points are always
+     * retained and for each bucket in between the point forming the largest triangle with the previously selected
+     * point and the average of the next bucket is selected. Datapoints must be ordered by timestamp and have numeric
+     * values.
+     */
+    public static ValueDatapoint<?>[] largestTriangleThreeBuckets(ValueDatapoint<?>[] datapoints, int threshold) {
+        int length = datapoints.length;
+
+        if (threshold >= length || threshold < 3) {
+            return datapoints;
+        }
+
+        double[] x = new double[length];
+        double[] y = new double[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = datapoints[i].getTimestamp();
+            y[i] = datapoints[i].getValue() instanceof Number ? ((Number) datapoints[i].getValue()).doubleValue() : 0d;
+        }
+
+        ValueDatapoint<?>[] sampled = new ValueDatapoint<?>[threshold];
+        int sampledIndex = 0;
+        double every = (double) (length - 2) / (threshold - 2);
+        int a = 0;
+        sampled[sampledIndex++] = datapoints[a];
+
+        for (int i = 0; i < threshold - 2; i++) {
+
+            // Average of the next bucket
+            int avgRangeStart = (int) Math.floor((i + 1) * every) + 1;
+            int avgRangeEnd = Math.min((int) Math.floor((i + 2) * every) + 1, length);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = avgRangeStart; j < avgRangeEnd; j++) {
+                avgX += x[j];
+                avgY += y[j];
+            }
+            int avgRangeLength = avgRangeEnd - avgRangeStart;
+            avgX /= avgRangeLength;
+            avgY /= avgRangeLength;
+
+            // Point in this bucket with the largest triangle area
+            int rangeOffs = (int) Math.floor(i * every) + 1;
+            int rangeTo = (int) Math.floor((i + 1) * every) + 1;
+            double maxArea = -1;
+            int nextA = rangeOffs;
+            for (int j = rangeOffs; j < rangeTo; j++) {
+                double area = Math.abs((x[a] - avgX) * (y[j] - y[a]) - (x[a] - x[j]) * (avgY - y[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    nextA = j;
+                }
+            }
+
+            sampled[sampledIndex++] = datapoints[nextA];
+            a = nextA;
+        }
+
+        sampled[sampledIndex] = datapoints[length - 1];
+        return sampled;
+    }
+
+    /**
+     * Gets the average number/boolean (true = 1, false = 0) value of each attribute in each of the <code>periodCount</code>
+     * consecutive periods of <code>periodMillis</code> starting at <code>fromTimestamp</code> using a single query and
+     * one pass over the result; periods without any data points are {@link Double#NaN}. Every requested attribute is
+     * included in the returned map.
+     */
+    public Map<AttributeRef, double[]> getAverageValueSeries(Collection<AttributeRef> attributeRefs,
+                                                             LocalDateTime fromTimestamp,
+                                                             long periodMillis,
+                                                             int periodCount) {
+
+        Map<AttributeRef, double[]> series = new HashMap<>(attributeRefs.size() * 2);
+
+        for (AttributeRef attributeRef : attributeRefs) {
+            double[] values = new double[periodCount];
+            Arrays.fill(values, Double.NaN);
+            series.put(attributeRef, values);
+        }
+
+        if (series.isEmpty() || periodCount <= 0 || periodMillis <= 0) {
+            return series;
+        }
+
+        getLogger().finer("Getting average value series for " + series.size() + " attribute(s): from=" + fromTimestamp + ", periodMillis=" + periodMillis + ", periodCount=" + periodCount);
+
+        String[] assetIds = new String[series.size()];
+        String[] attributeNames = new String[series.size()];
+        int i = 0;
+        for (AttributeRef attributeRef : series.keySet()) {
+            assetIds[i] = attributeRef.getId();
+            attributeNames[i++] = attributeRef.getName();
+        }
+
+        LocalDateTime toTimestamp = fromTimestamp.plus(periodMillis * periodCount, ChronoUnit.MILLIS);
+
+        persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement st = connection.prepareStatement(
+                "select D.ENTITY_ID, D.ATTRIBUTE_NAME, floor(extract(epoch from (D.TIMESTAMP - ?::timestamp)) * 1000 / ?)::int as PERIOD, avg(" + ROLLUP_VALUE_EXPRESSION + ")" +
+                    " from " + getDatapointTableName() + " D join unnest(?::varchar[], ?::varchar[]) as R(ENTITY_ID, ATTRIBUTE_NAME) on D.ENTITY_ID = R.ENTITY_ID and D.ATTRIBUTE_NAME = R.ATTRIBUTE_NAME" +
+                    " where D.TIMESTAMP >= ? and D.TIMESTAMP < ? and jsonb_typeof(D.VALUE) in ('number', 'boolean')" +
+                    " group by 1, 2, 3")) {
+
+                st.setObject(1, fromTimestamp);
+                st.setLong(2, periodMillis);
+                st.setArray(3, connection.createArrayOf("varchar", assetIds));
+                st.setArray(4, connection.createArrayOf("varchar", attributeNames));
+                st.setObject(5, fromTimestamp);
+                st.setObject(6, toTimestamp);
+
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        double[] values = series.get(new AttributeRef(rs.getString(1), rs.getString(2)));
+                        int period = rs.getInt(3);
+                        if (values != null && period >= 0 && period < periodCount) {
+                            values[period] = rs.getDouble(4);
+                        }
+                    }
+                }
+            }
+        }));
+
+        return series;
+    }
+
+    /**
+     * Number of {@link DatapointInterval} buckets in the period; used as the default point count for downsampling.
+     */
+    protected static int getIntervalPointCount(DatapointInterval datapointInterval, Integer stepSize, LocalDateTime fromTimestamp, LocalDateTime toTimestamp) {
+        if (datapointInterval == null) {
+            return DOWNSAMPLE_POINTS_DEFAULT;
+        }
+
+        ChronoUnit unit;
+        switch (datapointInterval) {
+            case MINUTE:
+                unit = ChronoUnit.MINUTES;
+                break;
+            case HOUR:
+                unit = ChronoUnit.HOURS;
+                break;
+            case DAY:
+                unit = ChronoUnit.DAYS;
+                break;
+            case WEEK:
+                unit = ChronoUnit.WEEKS;
+                break;
+            case MONTH:
+                unit = ChronoUnit.MONTHS;
+                break;
+            default:
+                unit = ChronoUnit.YEARS;
+                break;
+        }
+
+        long count = unit.between(fromTimestamp, toTimestamp) / Math.max(1, stepSize != null ? stepSize : 1) + 1;
+        return (int) Math.max(3, Math.min(DOWNSAMPLE_POINTS_MAX, count));
+    }
+
     public DatapointPeriod getDatapointPeriod(String assetId, String attributeName) {
         return persistenceService.doReturningTransaction(em ->
                 em.unwrap(Session.class).doReturningWork(new AbstractReturningWork<DatapointPeriod>() {
                     @Override
                     public DatapointPeriod execute(Connection connection) throws SQLException {
-                        String tableName = getDatapointTableName();
-                        String query = "SELECT DISTINCT periods.* FROM " +
-                                "(SELECT entity_id, attribute_name, " +
-                                "MIN(timestamp) AS oldestTimestamp, MAX(timestamp) AS latestTimestamp " +
-                                "FROM " + tableName + " GROUP BY entity_id, attribute_name) AS periods " +
-                                "INNER JOIN " + tableName + " ON " + tableName + ".entity_id = periods.entity_id AND " +
-                                tableName + ".attribute_name = periods.attribute_name " +
-                                "WHERE " + tableName + ".entity_id = ? " +
-                                "AND " + tableName + ".attribute_name = ? ";
+                        // Only aggregate the rows of this attribute rather than grouping the whole table
+                        String query = "SELECT MIN(timestamp) AS oldestTimestamp, MAX(timestamp) AS latestTimestamp " +
+                                "FROM " + getDatapointTableName() + " WHERE entity_id = ? AND attribute_name = ?";
                         try (PreparedStatement st = connection.prepareStatement(query)) {
                             st.setString(1, assetId);
                             st.setString(2, attributeName);
                             try (ResultSet rs = st.executeQuery()) {
-                                if (rs.next()) {
-                                    return new DatapointPeriod(rs.getString(1), rs.getString(2), rs.getTimestamp(3).getTime(), rs.getTimestamp(4).getTime());
+                                if (rs.next() && rs.getTimestamp(1) != null) {
+                                    return new DatapointPeriod(assetId, attributeName, rs.getTimestamp(1).getTime(), rs.getTimestamp(2).getTime());
                                 }
                                 return new DatapointPeriod(assetId, attributeName, null, null);
                             }
@@ -390,10 +900,264 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
 
     protected abstract Logger getLogger();
 
-    protected void doPurge(String whereClause, LocalDateTime dateTime) {
-        persistenceService.doTransaction(em -> em.createQuery(
-                "delete from " + getDatapointClass().getSimpleName() + " dp " + whereClause
-        ).setParameter("dt", dateTime).executeUpdate());
+    /**
+     * Whether hourly and daily rollup tables exist for this data point table.
+     */
+    protected boolean isRollupSupported() {
+        return false;
+    }
+
+    protected String getRollupTableName(DatapointRollup rollup) {
+        return getDatapointTableName() + rollup.tableSuffix;
+    }
+
+    protected void markRollupDirty(String assetId, String attributeName, Collection<LocalDateTime> timestamps) {
+        if (!isRollupSupported() || timestamps.isEmpty()) {
+            return;
+        }
+
+        // Only ever mutate the set inside compute so that it is no longer modified once removed by rollupDirty
+        rollupDirtyHours.compute(new AttributeRef(assetId, attributeName), (attributeRef, hours) -> {
+            if (hours == null) {
+                hours = new HashSet<>();
+            }
+            for (LocalDateTime timestamp : timestamps) {
+                hours.add(timestamp.truncatedTo(HOURS));
+            }
+            return hours;
+        });
+    }
+
+    /**
+     * Recomputes the rollups of all dirty hours.
+     */
+    protected void rollupDirty() {
+        for (AttributeRef attributeRef : rollupDirtyHours.keySet()) {
+            rollupDirty(attributeRef);
+        }
+    }
+
+    /**
+     * Recomputes the rollups of the dirty hours of the attribute; contiguous hours are recomputed as a single range.
+     */
+    protected void rollupDirty(AttributeRef attributeRef) {
+        Set<LocalDateTime> hours = rollupDirtyHours.remove(attributeRef);
+
+        if (hours == null || hours.isEmpty()) {
+            return;
+        }
+
+        List<LocalDateTime> sortedHours = new ArrayList<>(hours);
+        sortedHours.sort(LocalDateTime::compareTo);
+        LocalDateTime from = sortedHours.get(0);
+        LocalDateTime to = from.plusHours(1);
+
+        for (int i = 1; i <= sortedHours.size(); i++) {
+            LocalDateTime hour = i < sortedHours.size() ? sortedHours.get(i) : null;
+
+            if (hour != null && hour.equals(to)) {
+                to = to.plusHours(1);
+                continue;
+            }
+
+            try {
+                rollup(attributeRef, from, to);
+            } catch (Exception e) {
+                getLogger().log(Level.WARNING, "Failed to recompute data point rollups for: " + attributeRef + ", from=" + from + ", to=" + to, e);
+                List<LocalDateTime> failedHours = new ArrayList<>();
+                for (LocalDateTime failedHour = from; failedHour.isBefore(to); failedHour = failedHour.plusHours(1)) {
+                    failedHours.add(failedHour);
+                }
+                markRollupDirty(attributeRef.getId(), attributeRef.getName(), failedHours);
+            }
+
+            if (hour != null) {
+                from = hour;
+                to = hour.plusHours(1);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the hourly rollups in the range (which must be aligned to hours) from the raw data points and then the
+     * daily rollups of the days containing the range from the hourly rollups; if no attribute is specified then all
+     * attributes are recomputed.
+     */
+    protected void rollup(AttributeRef attributeRef, LocalDateTime fromHour, LocalDateTime toHour) {
+        LocalDateTime fromDay = fromHour.truncatedTo(DAYS);
+        LocalDateTime toDay = toHour.truncatedTo(DAYS).equals(toHour) ? toHour : toHour.truncatedTo(DAYS).plusDays(1);
+        String hourlyTable = getRollupTableName(DatapointRollup.HOURLY);
+        String dailyTable = getRollupTableName(DatapointRollup.DAILY);
+        String columns = " (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME, MIN_VALUE, MAX_VALUE, AVG_VALUE, VALUE_COUNT, LATEST_VALUE, LATEST_TIMESTAMP) ";
+        String where = " where TIMESTAMP >= ? and TIMESTAMP < ?" + (attributeRef != null ? " and ENTITY_ID = ? and ATTRIBUTE_NAME = ?" : "");
+
+        persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+            executeRollupStatement(connection, "delete from " + hourlyTable + where, attributeRef, fromHour, toHour);
+            executeRollupStatement(connection, "insert into " + hourlyTable + columns +
+                "select date_trunc('hour', TIMESTAMP), ENTITY_ID, ATTRIBUTE_NAME, min(V), max(V), avg(V), count(V), (array_agg(V order by TIMESTAMP desc))[1], max(TIMESTAMP) " +
+                "from (select TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME, " + ROLLUP_VALUE_EXPRESSION + " as V from " + getDatapointTableName() + where +
+                " and jsonb_typeof(VALUE) in ('number', 'boolean')) D group by 1, 2, 3", attributeRef, fromHour, toHour);
+            executeRollupStatement(connection, "delete from " + dailyTable + where, attributeRef, fromDay, toDay);
+            executeRollupStatement(connection, "insert into " + dailyTable + columns +
+                "select date_trunc('day', TIMESTAMP), ENTITY_ID, ATTRIBUTE_NAME, min(MIN_VALUE), max(MAX_VALUE), sum(AVG_VALUE * VALUE_COUNT) / sum(VALUE_COUNT), sum(VALUE_COUNT), (array_agg(LATEST_VALUE order by TIMESTAMP desc))[1], max(LATEST_TIMESTAMP) " +
+                "from " + hourlyTable + where + " group by 1, 2, 3", attributeRef, fromDay, toDay);
+        }));
+    }
+
+    protected static void executeRollupStatement(Connection connection, String query, AttributeRef attributeRef, LocalDateTime from, LocalDateTime to) throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement(query)) {
+            st.setObject(1, from);
+            st.setObject(2, to);
+            if (attributeRef != null) {
+                st.setString(3, attributeRef.getId());
+                st.setString(4, attributeRef.getName());
+            }
+            st.executeUpdate();
+        }
+    }
+
+    /**
+     * Creates the daily partitions from {@link #getPartitionDaysBehind} days ago until {@link #partitionDaysAhead} days
+     * ahead (if they don't already exist); any data points in the default partition for these days are moved into the
+     * new partition.
+     */
+    public void createPartitions() {
+        LocalDate today = LocalDate.ofInstant(timerService.getNow(), ZoneId.systemDefault());
+
+        for (int i = -getPartitionDaysBehind(); i <= partitionDaysAhead; i++) {
+            LocalDate day = today.plusDays(i);
+            try {
+                boolean created = persistenceService.doReturningTransaction(em ->
+                    em.unwrap(Session.class).doReturningWork(connection -> {
+                        try (PreparedStatement st = connection.prepareStatement("select CREATE_DATAPOINT_PARTITION(?, ?)")) {
+                            st.setString(1, getDatapointTableName());
+                            st.setObject(2, day);
+                            try (ResultSet rs = st.executeQuery()) {
+                                return rs.next() && rs.getBoolean(1);
+                            }
+                        }
+                    }));
+                if (created) {
+                    getLogger().fine("Created " + getDatapointTableName() + " partition for: " + day);
+                }
+            } catch (Exception e) {
+                getLogger().log(Level.WARNING, "Failed to create " + getDatapointTableName() + " partition for: " + day, e);
+            }
+        }
+    }
+
+    /**
+     * How many days before today partitions are created for so late data points still land in a partition; must not
+     * reach past the purge cutoff of the table otherwise {@link #createPartitions} recreates the partitions that
+     * {@link #purgePartitions} drops.
+     */
+    protected int getPartitionDaysBehind() {
+        return 1;
+    }
+
+    protected List<DatapointPartition> getPartitions() {
+        return persistenceService.doReturningTransaction(em ->
+            em.unwrap(Session.class).doReturningWork(connection -> {
+                String query = "select C.RELNAME::text, pg_get_expr(C.RELPARTBOUND, C.OID), obj_description(C.OID, 'pg_class') " +
+                    "from PG_INHERITS I join PG_CLASS C on C.OID = I.INHRELID where I.INHPARENT = ?::regclass";
+                try (PreparedStatement st = connection.prepareStatement(query)) {
+                    st.setString(1, getDatapointTableName().toLowerCase(Locale.ROOT));
+                    try (ResultSet rs = st.executeQuery()) {
+                        List<DatapointPartition> partitions = new ArrayList<>();
+                        while (rs.next()) {
+                            String name = rs.getString(1);
+                            String bound = rs.getString(2);
+                            boolean purged = PARTITION_PURGED_COMMENT.equals(rs.getString(3));
+                            Matcher matcher = bound != null ? PARTITION_BOUND_PATTERN.matcher(bound) : null;
+
+                            if (matcher != null && matcher.find()) {
+                                partitions.add(new DatapointPartition(name, false, parsePartitionBound(matcher.group(1)), parsePartitionBound(matcher.group(2)), purged));
+                            } else {
+                                partitions.add(new DatapointPartition(name, true, null, null, purged));
+                            }
+                        }
+                        return partitions;
+                    }
+                }
+            }));
+    }
+
+    /**
+     * Returns <code>null</code> for <code>MINVALUE</code>/<code>MAXVALUE</code>.
+     */
+    protected static LocalDateTime parsePartitionBound(String bound) {
+        if (!bound.startsWith("'")) {
+            return null;
+        }
+        return LocalDateTime.parse(bound.substring(1, bound.length() - 1).replace(' ', 'T'));
+    }
+
+    /**
+     * Purges data points older than <code>cutoff</code> without bulk deleting across the whole table:
+     * <ul>
+     * <li>Partitions entirely older than <code>dropBefore</code> are dropped</li>
+     * <li>Partitions entirely older than <code>cutoff</code> are dropped if there is no <code>retainCondition</code>
+     * otherwise the rows not matching it are deleted once and the partition is marked as purged</li>
+     * <li>Partitions straddling <code>cutoff</code> (and the default partition) have their older rows deleted</li>
+     * </ul>
+     * The <code>retainCondition</code> is an SQL condition for data points that have a longer max age than
+     * <code>cutoff</code> (but no longer than <code>dropBefore</code>).
+     */
+    protected void purgePartitions(LocalDateTime cutoff, LocalDateTime dropBefore, String retainCondition) {
+        LocalDateTime dropTo = retainCondition == null ? cutoff : dropBefore;
+        String deleteCondition = retainCondition == null ? null : "not (" + retainCondition + ")";
+
+        for (DatapointPartition partition : getPartitions()) {
+            try {
+                if (partition.isDefault) {
+                    deleteDatapoints(partition.name, null, cutoff, deleteCondition);
+                } else if (partition.to != null && !partition.to.isAfter(dropTo)) {
+                    getLogger().fine("Dropping data point partition: " + partition);
+                    persistenceService.doTransaction(em -> em.createNativeQuery("drop table \"" + partition.name + "\"").executeUpdate());
+                } else if (partition.to != null && !partition.to.isAfter(cutoff)) {
+                    if (!partition.purged) {
+                        int deleted = deleteDatapoints(partition.name, null, null, deleteCondition);
+                        persistenceService.doTransaction(em -> em.createNativeQuery("comment on table \"" + partition.name + "\" is '" + PARTITION_PURGED_COMMENT + "'").executeUpdate());
+                        getLogger().fine("Purged " + deleted + " data points from partition: " + partition);
+                    }
+                } else if (partition.from == null || partition.from.isBefore(cutoff)) {
+                    deleteDatapoints(partition.name, null, cutoff, deleteCondition);
+                }
+            } catch (Exception e) {
+                getLogger().log(Level.WARNING, "Failed to purge data point partition: " + partition, e);
+            }
+        }
+    }
+
+    /**
+     * Deletes the data points in the given table (or partition) in the optional time range that match the optional
+     * SQL condition; callers should always bound the time range unless deleting from a single partition.
+     */
+    protected int deleteDatapoints(String tableName, LocalDateTime fromTimestamp, LocalDateTime toTimestamp, String condition) {
+        StringBuilder query = new StringBuilder("delete from \"").append(tableName.toLowerCase(Locale.ROOT)).append("\" where true");
+        if (fromTimestamp != null) {
+            query.append(" and TIMESTAMP >= ?");
+        }
+        if (toTimestamp != null) {
+            query.append(" and TIMESTAMP < ?");
+        }
+        if (condition != null) {
+            query.append(" and ").append(condition);
+        }
+
+        return persistenceService.doReturningTransaction(em ->
+            em.unwrap(Session.class).doReturningWork(connection -> {
+                try (PreparedStatement st = connection.prepareStatement(query.toString())) {
+                    int counter = 1;
+                    if (fromTimestamp != null) {
+                        st.setTimestamp(counter++, Timestamp.valueOf(fromTimestamp));
+                    }
+                    if (toTimestamp != null) {
+                        st.setTimestamp(counter, Timestamp.valueOf(toTimestamp));
+                    }
+                    return st.executeUpdate();
+                }
+            }));
     }
 
     protected long getFirstPurgeMillis(Instant currentTime) {
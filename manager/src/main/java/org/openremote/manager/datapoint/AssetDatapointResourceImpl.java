@@ -29,6 +29,7 @@ import org.openremote.model.asset.Asset;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.datapoint.AssetDatapointResource;
+import org.openremote.model.datapoint.DatapointDownsampling;
 import org.openremote.model.datapoint.DatapointInterval;
 import org.openremote.model.datapoint.DatapointPeriod;
 import org.openremote.model.datapoint.ValueDatapoint;
@@ -80,7 +81,9 @@ public class AssetDatapointResourceImpl extends ManagerWebResource implements As
                                              DatapointInterval interval,
                                              Integer stepSize,
                                              long fromTimestamp,
-                                             long toTimestamp) {
+                                             long toTimestamp,
+                                             DatapointDownsampling downsampling,
+                                             Integer maxPoints) {
         try {
 
             if (isRestrictedUser() && !assetStorageService.isUserAsset(getUserId(), assetId)) {
@@ -107,7 +110,9 @@ public class AssetDatapointResourceImpl extends ManagerWebResource implements As
                     interval,
                     stepSize,
                     LocalDateTime.ofInstant(Instant.ofEpochMilli(fromTimestamp), ZoneId.systemDefault()),
-                    LocalDateTime.ofInstant(Instant.ofEpochMilli(toTimestamp), ZoneId.systemDefault()));
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(toTimestamp), ZoneId.systemDefault()),
+                    downsampling,
+                    maxPoints);
         } catch (IllegalStateException ex) {
             throw new BadRequestException(ex);
         } catch (UnsupportedOperationException ex) {
@@ -24,21 +24,21 @@ import javax.persistence.EntityManager;
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.sql.Date;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
-import static java.time.temporal.ChronoUnit.DAYS;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
 import static org.openremote.container.util.MapAccess.getInteger;
@@ -60,6 +60,10 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
     private static final Logger LOG = Logger.getLogger(AssetDatapointService.class.getName());
     protected int maxDatapointAgeDays;
     protected Path exportPath;
+    /**
+     * Cutoff of the last successful purge of each attribute with a custom max age.
+     */
+    protected final Map<AttributeRef, LocalDateTime> purgedUntilMap = new ConcurrentHashMap<>();
 
     @Override
     public void init(Container container) throws Exception {
@@ -85,6 +89,8 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
 
     @Override
     public void start(Container container) throws Exception {
+        super.start(container);
+
         if (maxDatapointAgeDays > 0) {
             dataPointsPurgeScheduledFuture = executorService.scheduleAtFixedRate(
                 this::purgeDataPoints,
@@ -111,6 +117,13 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
                 throw new AssetProcessingException(AttributeWriteFailure.STATE_STORAGE_FAILED, "Failed to insert or update asset data point for attribute: " + attribute, e);
             }
         }
+
+        AttributeRef attributeRef = new AttributeRef(asset.getId(), attribute.getName());
+        if (datapointCache.contains(attributeRef)
+            && attribute.getMetaValue(MetaItemType.DATA_POINTS_CACHE_MINUTES).map(TimeUnit.MINUTES::toMillis).orElse(0L) != datapointCache.getWindowMillis(attributeRef)) {
+            // Caching has been disabled or the window changed (it is re-seeded on the next query)
+            datapointCache.remove(attributeRef);
+        }
         return false;
     }
 
@@ -124,6 +137,11 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
         return AssetDatapoint.TABLE_NAME;
     }
 
+    @Override
+    protected boolean isRollupSupported() {
+        return true;
+    }
+
     @Override
     protected Logger getLogger() {
         return LOG;
@@ -133,6 +151,8 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
         LOG.info("Starting data points purge daily task");
 
         try {
+            createPartitions();
+
             // Get list of attributes that have custom durations
             List<Asset<?>> assets = assetStorageService.findAll(
                 new AssetQuery()
@@ -151,35 +171,55 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
                 .flatMap(List::stream)
                 .collect(toList());
 
-            // Purge data points not in the above list using default duration
+            Map<Integer, List<Pair<String, Attribute<?>>>> ageAttributeRefMap = attributes.stream()
+                .collect(groupingBy(attributeRef ->
+                    attributeRef.value
+                        .getMetaValue(MetaItemType.DATA_POINTS_MAX_AGE_DAYS)
+                        .orElse(maxDatapointAgeDays)));
+
+            LocalDateTime today = LocalDate.ofInstant(timerService.getNow(), ZoneId.systemDefault()).atStartOfDay();
+            int maxAgeDays = ageAttributeRefMap.keySet().stream().reduce(maxDatapointAgeDays, Integer::max);
+            List<Pair<String, Attribute<?>>> retainedAttributes = ageAttributeRefMap.entrySet().stream()
+                .filter(ageAttributes -> ageAttributes.getKey() > maxDatapointAgeDays)
+                .flatMap(ageAttributes -> ageAttributes.getValue().stream())
+                .collect(toList());
+
+            // Purge data points of attributes using default duration by dropping partitions, data points of attributes
+            // with a longer max age are retained until their partition is older than the longest max age
             LOG.fine("Purging data points of attributes that use default max age days of " + maxDatapointAgeDays);
+            String retainCondition = retainedAttributes.isEmpty() ? null : buildAttributeCondition(retainedAttributes);
+            purgePartitions(today.minusDays(maxDatapointAgeDays), today.minusDays(maxAgeDays), retainCondition);
+            purgeRollups(null, today.minusDays(maxDatapointAgeDays), retainCondition == null ? null : "not (" + retainCondition + ")");
+            if (retainCondition != null) {
+                purgeRollups(null, today.minusDays(maxAgeDays), null);
+            }
 
-            persistenceService.doTransaction(em -> em.createQuery(
-                "delete from AssetDatapoint dp " +
-                    "where dp.timestamp < :dt" + buildWhereClause(attributes, true)
-            ).setParameter("dt", Date.from(timerService.getNow().truncatedTo(DAYS).minus(maxDatapointAgeDays, DAYS))).executeUpdate());
-
-            if (!attributes.isEmpty()) {
-                // Purge data points that have specific age constraints
-                Map<Integer, List<Pair<String, Attribute<?>>>> ageAttributeRefMap = attributes.stream()
-                    .collect(groupingBy(attributeRef ->
-                        attributeRef.value
-                            .getMetaValue(MetaItemType.DATA_POINTS_MAX_AGE_DAYS)
-                            .orElse(maxDatapointAgeDays)));
-
-                ageAttributeRefMap.forEach((age, attrs) -> {
-                    LOG.fine("Purging data points of " + attrs.size() + " attributes that use a max age of " + age);
-
-                    try {
-                        persistenceService.doTransaction(em -> em.createQuery(
-                            "delete from AssetDatapoint dp " +
-                                "where dp.timestamp < :dt" + buildWhereClause(attrs, false)
-                        ).setParameter("dt", Date.from(timerService.getNow().truncatedTo(DAYS).minus(age, DAYS))).executeUpdate());
-                    } catch (Exception e) {
-                        LOG.log(Level.SEVERE, "An error occurred whilst deleting data points, this should not happen", e);
+            // Purge data points that have specific age constraints; only the partitions between the previous and
+            // current cutoff for each attribute need to be visited
+            purgedUntilMap.keySet().retainAll(attributes.stream().map(attributeRef -> new AttributeRef(attributeRef.key, attributeRef.value.getName())).collect(toList()));
+
+            ageAttributeRefMap.forEach((age, attrs) -> {
+                if (age == maxDatapointAgeDays) {
+                    return;
+                }
+
+                LOG.fine("Purging data points of " + attrs.size() + " attributes that use a max age of " + age);
+                LocalDateTime cutoff = today.minusDays(age);
+                List<AttributeRef> attributeRefs = attrs.stream().map(attributeRef -> new AttributeRef(attributeRef.key, attributeRef.value.getName())).collect(toList());
+                LocalDateTime from = attributeRefs.stream().allMatch(purgedUntilMap::containsKey)
+                    ? attributeRefs.stream().map(purgedUntilMap::get).min(LocalDateTime::compareTo).orElse(null)
+                    : null;
+
+                try {
+                    if (from == null || from.isBefore(cutoff)) {
+                        deleteDatapoints(getDatapointTableName(), from, cutoff, buildAttributeCondition(attrs));
+                        purgeRollups(from, cutoff, buildAttributeCondition(attrs));
                     }
-                });
-            }
+                    attributeRefs.forEach(attributeRef -> purgedUntilMap.put(attributeRef, cutoff));
+                } catch (Exception e) {
+                    LOG.log(Level.SEVERE, "An error occurred whilst deleting data points, this should not happen", e);
+                }
+            });
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Failed to run data points purge", e);
         }
@@ -187,17 +227,18 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
         LOG.info("Finished data points purge daily task");
     }
 
-    protected String buildWhereClause(List<Pair<String, Attribute<?>>> attributes, boolean negate) {
-
-        if (attributes.isEmpty()) {
-            return "";
+    protected void purgeRollups(LocalDateTime fromTimestamp, LocalDateTime toTimestamp, String condition) {
+        for (DatapointRollup rollup : DatapointRollup.values()) {
+            deleteDatapoints(getRollupTableName(rollup), fromTimestamp, toTimestamp, condition);
         }
+    }
 
+    protected String buildAttributeCondition(List<Pair<String, Attribute<?>>> attributes) {
         String whereStr = attributes.stream()
-            .map(attributeRef -> "('" + attributeRef.key + "','" + attributeRef.value.getName() + "')")
+            .map(attributeRef -> "('" + attributeRef.key.replace("'", "''") + "','" + attributeRef.value.getName().replace("'", "''") + "')")
             .collect(Collectors.joining(","));
 
-        return " and (dp.assetId, dp.attributeName) " + (negate ? "not " : "") + "in (" + whereStr + ")";
+        return "(ENTITY_ID, ATTRIBUTE_NAME) in (" + whereStr + ")";
     }
 
     public ScheduledFuture<File> exportDatapoints(AttributeRef[] attributeRefs,
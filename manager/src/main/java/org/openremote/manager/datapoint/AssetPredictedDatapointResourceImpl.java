@@ -26,6 +26,7 @@ import org.openremote.manager.web.ManagerWebResource;
 import org.openremote.model.asset.Asset;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.datapoint.AssetPredictedDatapointResource;
+import org.openremote.model.datapoint.DatapointDownsampling;
 import org.openremote.model.datapoint.DatapointInterval;
 import org.openremote.model.datapoint.ValueDatapoint;
 import org.openremote.model.http.RequestParams;
@@ -61,7 +62,9 @@ public class AssetPredictedDatapointResourceImpl extends ManagerWebResource impl
                                                       DatapointInterval interval,
                                                       Integer stepSize,
                                                       long fromTimestamp,
-                                                      long toTimestamp) {
+                                                      long toTimestamp,
+                                                      DatapointDownsampling downsampling,
+                                                      Integer maxPoints) {
         try {
 
             if (isRestrictedUser() && !assetStorageService.isUserAsset(getUserId(), assetId)) {
@@ -88,7 +91,9 @@ public class AssetPredictedDatapointResourceImpl extends ManagerWebResource impl
                 interval,
                 stepSize,
                 LocalDateTime.ofInstant(Instant.ofEpochMilli(fromTimestamp), ZoneId.systemDefault()),
-                LocalDateTime.ofInstant(Instant.ofEpochMilli(toTimestamp), ZoneId.systemDefault()));
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(toTimestamp), ZoneId.systemDefault()),
+                downsampling,
+                maxPoints);
         } catch (IllegalStateException ex) {
             throw new WebApplicationException(ex, Response.Status.BAD_REQUEST);
         }
@@ -66,6 +66,7 @@ public class AssetPredictedDatapointService extends AbstractDatapointService<Ass
 
     @Override
     public void start(Container container) throws Exception {
+        super.start(container);
         dataPointsPurgeScheduledFuture = executorService.scheduleAtFixedRate(
             this::purgeDataPoints,
             getFirstPurgeMillis(timerService.getNow()),
@@ -100,6 +101,14 @@ public class AssetPredictedDatapointService extends AbstractDatapointService<Ass
         return LOG;
     }
 
+    /**
+     * Predicted data points older than the current hour are purged so yesterday's partition would only be dropped again.
+     */
+    @Override
+    protected int getPartitionDaysBehind() {
+        return 0;
+    }
+
     @Override
     protected long getFirstPurgeMillis(Instant currentTime) {
         return super.getFirstPurgeMillis(currentTime) - 1800000; // Run half hour before default
@@ -107,9 +116,10 @@ public class AssetPredictedDatapointService extends AbstractDatapointService<Ass
 
     protected void purgeDataPoints() {
         try {
-            // Purge data points not in the above list using default duration
             LOG.finer("Purging predicted data points older than now");
-            doPurge("where dp.timestamp < :dt", LocalDateTime.ofInstant(timerService.getNow().truncatedTo(HOURS), ZoneId.systemDefault()));
+            createPartitions();
+            LocalDateTime cutoff = LocalDateTime.ofInstant(timerService.getNow().truncatedTo(HOURS), ZoneId.systemDefault());
+            purgePartitions(cutoff, cutoff, null);
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Failed to run data points purge", e);
         }
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.datapoint;
+
+import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.datapoint.DatapointInterval;
+import org.openremote.model.datapoint.ValueDatapoint;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the recent numeric/boolean (true = 1, false = 0) data points of opted in attributes in a fixed size ring
+ * buffer per attribute so that {@link DatapointInterval#MINUTE} and {@link DatapointInterval#HOUR} queries whose
+ * period falls within the buffer can be answered without querying the DB (e.g. rules computing the average of the
+ * last hour on every firing).
+ * <p>
+ * Each buffer tracks the timestamp from which it holds every stored data point of the attribute; this moves forward
+ * as the window slides and when the oldest data point is evicted to make room, queries starting before it return
+ * <code>null</code> and must fall back to the DB. Buffers are seeded from the DB by the owning
+ * {@link AbstractDatapointService} and kept up to date as data points are stored; they are dropped when not queried
+ * for {@link #IDLE_MILLIS_MIN} (or the window if longer).
+ */
+public class DatapointCache {
+
+    public static final long IDLE_MILLIS_MIN = TimeUnit.MINUTES.toMillis(15);
+
+    protected static class Entry {
+        protected final long windowMillis;
+        protected final long[] timestamps;
+        protected final double[] values;
+        protected int head;
+        protected int size;
+        /**
+         * Every data point with a timestamp at or after this is in the buffer (once seeded).
+         */
+        protected long coverageFrom = Long.MIN_VALUE;
+        protected boolean seeding = true;
+        protected volatile long lastAccessMillis;
+
+        protected Entry(int capacity, long windowMillis, long nowMillis) {
+            this.windowMillis = windowMillis;
+            this.timestamps = new long[capacity];
+            this.values = new double[capacity];
+            this.lastAccessMillis = nowMillis;
+        }
+
+        protected long timestampAt(int index) {
+            return timestamps[(head + index) % timestamps.length];
+        }
+
+        protected double valueAt(int index) {
+            return values[(head + index) % values.length];
+        }
+
+        /**
+         * Returns the index of the data point with the timestamp or <code>-(insertion index) - 1</code>.
+         */
+        protected int indexOf(long timestamp) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midTimestamp = timestampAt(mid);
+                if (midTimestamp < timestamp) {
+                    low = mid + 1;
+                } else if (midTimestamp > timestamp) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        protected void evictOldest() {
+            coverageFrom = Math.max(coverageFrom, timestamps[head] + 1);
+            head = (head + 1) % timestamps.length;
+            size--;
+        }
+
+        protected void slide(long nowMillis) {
+            long cutoff = nowMillis - windowMillis;
+            while (size > 0 && timestamps[head] < cutoff) {
+                head = (head + 1) % timestamps.length;
+                size--;
+            }
+            coverageFrom = Math.max(coverageFrom, cutoff);
+        }
+
+        protected void put(long timestamp, double value, boolean replace) {
+            if (timestamp < coverageFrom) {
+                // Older data is only in the DB
+                return;
+            }
+
+            int index = indexOf(timestamp);
+            if (index >= 0) {
+                if (replace) {
+                    values[(head + index) % values.length] = value;
+                }
+                return;
+            }
+
+            index = -index - 1;
+            if (size == timestamps.length) {
+                if (index == 0) {
+                    // Would be evicted straight away
+                    coverageFrom = Math.max(coverageFrom, timestamp + 1);
+                    return;
+                }
+                evictOldest();
+                index--;
+            }
+
+            // Shift the newer data points along (appending is the common case so usually nothing to move)
+            for (int i = size; i > index; i--) {
+                int to = (head + i) % timestamps.length;
+                int from = (head + i - 1) % timestamps.length;
+                timestamps[to] = timestamps[from];
+                values[to] = values[from];
+            }
+            int slot = (head + index) % timestamps.length;
+            timestamps[slot] = timestamp;
+            values[slot] = value;
+            size++;
+        }
+    }
+
+    protected final int capacity;
+    protected final Map<AttributeRef, Entry> entries = new ConcurrentHashMap<>();
+
+    // Metrics
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param capacity the maximum number of data points buffered per attribute; 0 disables the cache.
+     */
+    public DatapointCache(int capacity) {
+        this.capacity = Math.max(0, capacity);
+    }
+
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    public boolean contains(AttributeRef attributeRef) {
+        return entries.containsKey(attributeRef);
+    }
+
+    /**
+     * Starts buffering the attribute's data points; this must be followed by {@link #seed} once the data points
+     * within the window have been read from the DB (data points stored in the meantime are kept). Returns false if
+     * the attribute is already buffered or the cache is disabled.
+     */
+    public boolean add(AttributeRef attributeRef, long windowMillis, long nowMillis) {
+        if (!isEnabled() || windowMillis <= 0) {
+            return false;
+        }
+        boolean[] added = new boolean[1];
+        entries.computeIfAbsent(attributeRef, ref -> {
+            added[0] = true;
+            return new Entry(capacity, windowMillis, nowMillis);
+        });
+        if (added[0]) {
+            misses.incrementAndGet();
+        }
+        return added[0];
+    }
+
+    /**
+     * Completes {@link #add}ing an attribute with the newest data points read from the DB at or after
+     * <code>fromMillis</code>; if as many data points as the capacity were read then only those are known to be
+     * complete.
+     */
+    public void seed(AttributeRef attributeRef, long fromMillis, long[] timestamps, double[] values, long nowMillis) {
+        Entry entry = entries.get(attributeRef);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            long coverageFrom = fromMillis;
+            if (timestamps.length >= capacity) {
+                // Only the newest data points were read
+                long oldest = Long.MAX_VALUE;
+                for (long timestamp : timestamps) {
+                    oldest = Math.min(oldest, timestamp);
+                }
+                coverageFrom = Math.max(coverageFrom, oldest);
+            }
+            for (int i = 0; i < timestamps.length; i++) {
+                entry.put(timestamps[i], values[i], false);
+            }
+            entry.coverageFrom = Math.max(entry.coverageFrom, coverageFrom);
+            entry.seeding = false;
+            entry.slide(nowMillis);
+        }
+    }
+
+    public void remove(AttributeRef attributeRef) {
+        entries.remove(attributeRef);
+    }
+
+    public long getWindowMillis(AttributeRef attributeRef) {
+        Entry entry = entries.get(attributeRef);
+        return entry != null ? entry.windowMillis : 0L;
+    }
+
+    /**
+     * Adds or replaces a stored data point of a buffered attribute; values that aren't numbers or booleans drop the
+     * attribute from the cache as they can't be aggregated.
+     */
+    public void update(AttributeRef attributeRef, long timestamp, Object value, long nowMillis) {
+        Entry entry = entries.get(attributeRef);
+        if (entry == null) {
+            return;
+        }
+
+        double doubleValue;
+        if (value instanceof Number) {
+            doubleValue = ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            doubleValue = (Boolean) value ? 1d : 0d;
+        } else {
+            entries.remove(attributeRef);
+            return;
+        }
+
+        synchronized (entry) {
+            entry.slide(nowMillis);
+            entry.put(timestamp, doubleValue, true);
+        }
+    }
+
+    /**
+     * Returns the data points aggregated in the same way as {@link
+     * AbstractDatapointService#getValueDatapoints(String, org.openremote.model.attribute.Attribute, DatapointInterval,
+     * Integer, LocalDateTime, LocalDateTime)} or <code>null</code> if the attribute isn't buffered, the interval isn't
+     * supported or the period isn't covered by the buffer.
+     */
+    public ValueDatapoint<?>[] getValueDatapoints(AttributeRef attributeRef,
+                                                  DatapointInterval datapointInterval,
+                                                  Integer stepSize,
+                                                  LocalDateTime fromTimestamp,
+                                                  LocalDateTime toTimestamp,
+                                                  long nowMillis) {
+        Entry entry = entries.get(attributeRef);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastAccessMillis = nowMillis;
+
+        ChronoUnit unit;
+        int step;
+
+        if (datapointInterval == DatapointInterval.MINUTE) {
+            unit = ChronoUnit.MINUTES;
+            step = stepSize == null ? 1 : Math.max(1, Math.min(1440, stepSize));
+        } else if (datapointInterval == DatapointInterval.HOUR) {
+            unit = ChronoUnit.HOURS;
+            step = stepSize == null ? 1 : Math.max(1, Math.min(24, stepSize));
+        } else {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        LocalDateTime dataFrom = fromTimestamp.truncatedTo(unit);
+        LocalDateTime dataTo = toTimestamp.truncatedTo(unit).plus(step, unit);
+        long dataFromMillis = toMillis(dataFrom);
+        long dataToMillis = toMillis(dataTo);
+
+        // Generate the periods (the period of the end timestamp may not be reached when stepping over midnight)
+        Map<Long, Integer> periodIndexes = new HashMap<>();
+        LocalDateTime lastPeriod = getPeriod(toTimestamp, unit, step);
+        for (LocalDateTime period = getPeriod(fromTimestamp, unit, step); !period.isAfter(lastPeriod); period = period.plus(step, unit)) {
+            periodIndexes.put(toMillis(period), periodIndexes.size());
+        }
+        long[] periods = new long[periodIndexes.size()];
+        periodIndexes.forEach((period, index) -> periods[index] = period);
+        double[] sums = new double[periods.length];
+        int[] counts = new int[periods.length];
+
+        synchronized (entry) {
+            entry.slide(nowMillis);
+            if (entry.seeding || dataFromMillis < entry.coverageFrom) {
+                misses.incrementAndGet();
+                return null;
+            }
+
+            int index = entry.indexOf(dataFromMillis);
+            for (int i = index >= 0 ? index : -index - 1; i < entry.size; i++) {
+                long timestamp = entry.timestampAt(i);
+                if (timestamp >= dataToMillis) {
+                    break;
+                }
+                Integer periodIndex = periodIndexes.get(toMillis(getPeriod(toLocalDateTime(timestamp), unit, step)));
+                if (periodIndex != null) {
+                    sums[periodIndex] += entry.valueAt(i);
+                    counts[periodIndex]++;
+                }
+            }
+        }
+
+        hits.incrementAndGet();
+        ValueDatapoint<?>[] result = new ValueDatapoint<?>[periods.length];
+        for (int i = 0; i < periods.length; i++) {
+            result[i] = new ValueDatapoint<>(periods[i], counts[i] > 0 ? sums[i] / counts[i] : null);
+        }
+        return result;
+    }
+
+    /**
+     * Drops the buffers that haven't been queried recently.
+     */
+    public void purgeIdle(long nowMillis) {
+        entries.entrySet().removeIf(attributeEntry ->
+            nowMillis - attributeEntry.getValue().lastAccessMillis > Math.max(IDLE_MILLIS_MIN, attributeEntry.getValue().windowMillis));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Mirrors the period calculation of the DB query, i.e. the start of the day plus the unit of the day rounded down
+     * to the step.
+     */
+    protected static LocalDateTime getPeriod(LocalDateTime timestamp, ChronoUnit unit, int step) {
+        long unitOfDay = unit == ChronoUnit.MINUTES ? timestamp.getHour() * 60L + timestamp.getMinute() : timestamp.getHour();
+        return timestamp.truncatedTo(ChronoUnit.DAYS).plus(unitOfDay / step * step, unit);
+    }
+
+    protected static long toMillis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    protected static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "capacity=" + capacity +
+            ", size=" + getSize() +
+            ", hits=" + getHits() +
+            ", misses=" + getMisses() +
+            '}';
+    }
+}
@@ -22,11 +22,13 @@ package org.openremote.manager.energy;
 import org.apache.camel.builder.RouteBuilder;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceEvent;
+import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetProcessingService;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.manager.datapoint.AssetPredictedDatapointService;
 import org.openremote.manager.event.ClientEventService;
+import org.openremote.manager.event.InternalEventSubscriber;
 import org.openremote.manager.gateway.GatewayService;
 import org.openremote.model.Container;
 import org.openremote.model.ContainerService;
@@ -38,7 +40,6 @@ import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.AttributeExecuteStatus;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.datapoint.DatapointInterval;
-import org.openremote.model.datapoint.ValueDatapoint;
 import org.openremote.model.query.AssetQuery;
 import org.openremote.model.query.LogicGroup;
 import org.openremote.model.query.filter.AttributePredicate;
@@ -56,16 +57,12 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.BiFunction;
-import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static java.time.temporal.ChronoUnit.HOURS;
-import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
-import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
 import static org.openremote.manager.gateway.GatewayService.isNotForGateway;
 
 /**
@@ -100,6 +97,7 @@ public class EnergyOptimisationService extends RouteBuilder implements Container
     protected MessageBrokerService messageBrokerService;
     protected ClientEventService clientEventService;
     protected GatewayService gatewayService;
+    protected PersistenceService persistenceService;
     protected ScheduledExecutorService executorService;
     protected final Map<String, OptimisationInstance> assetOptimisationInstanceMap = new HashMap<>();
     protected List<String> forceChargeAssetIds = new ArrayList<>();
@@ -112,6 +110,7 @@ public class EnergyOptimisationService extends RouteBuilder implements Container
         assetStorageService = container.getService(AssetStorageService.class);
         messageBrokerService = container.getService(MessageBrokerService.class);
         clientEventService = container.getService(ClientEventService.class);
+        persistenceService = container.getService(PersistenceService.class);
         gatewayService = container.getService(GatewayService.class);
         executorService = container.getExecutorService();
     }
@@ -137,18 +136,19 @@ public class EnergyOptimisationService extends RouteBuilder implements Container
 
         energyOptimisationAssets.forEach(this::startOptimisation);
 
+        // Starting/stopping optimisations writes attributes so this mustn't hold up the event publisher
         clientEventService.addInternalSubscription(
             AttributeEvent.class,
             null,
-            this::processAttributeEvent);
+            this::processAttributeEvent,
+            InternalEventSubscriber.OverflowPolicy.DROP_OLDEST);
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public void configure() throws Exception {
-        from(PERSISTENCE_TOPIC)
+        from(persistenceService.subscribePersistenceEvents("EnergyOptimisationAssetPersistenceChanges", EnergyOptimisationAsset.class))
             .routeId("EnergyOptimisationAssetPersistenceChanges")
-            .filter(isPersistenceEventForEntityType(EnergyOptimisationAsset.class))
             .filter(isNotForGateway(gatewayService))
             .process(exchange -> processAssetChange((PersistenceEvent<EnergyOptimisationAsset>) exchange.getIn().getBody(PersistenceEvent.class)));
     }
@@ -428,6 +428,45 @@ public class EnergyOptimisationService extends RouteBuilder implements Container
             .map(asset -> (ElectricityStorageAsset)asset)
             .collect(Collectors.toList());
 
+        LOG.finest(getLogPrefix(optimisationAssetId) + "Fetching plain consumer and producer child assets of type '" + ElectricityProducerAsset.class.getSimpleName() + "', '" + ElectricityConsumerAsset.class.getSimpleName() + "', '" + ElectricityStorageAsset.class.getSimpleName() + "'");
+
+        List<Asset<?>> consumerProducerAssets = assetStorageService.findAll(
+            new AssetQuery()
+                .select(new AssetQuery.Select().excludePath(true).excludeParentInfo(true))
+                .recursive(true)
+                .parents(optimisationAssetId)
+                .types(ElectricityConsumerAsset.class, ElectricityProducerAsset.class)
+                .attributes(new AttributePredicate().name(new StringPredicate(ElectricityAsset.POWER.getName())))
+        );
+
+        // Get power of storage assets that don't support neither import or export (treat them as plain consumers/producers)
+        List<ElectricityStorageAsset> plainStorageAssets = assetStorageService.findAll(
+            new AssetQuery()
+                .select(new AssetQuery.Select().excludePath(true).excludeParentInfo(true))
+                .recursive(true)
+                .parents(optimisationAssetId)
+                .types(ElectricityStorageAsset.class)
+                .attributes(
+                    new AttributePredicate().name(new StringPredicate(ElectricityAsset.POWER.getName())),
+                    new AttributePredicate(ElectricityStorageAsset.SUPPORTS_IMPORT.getName(), new BooleanPredicate(true), true, null),
+                    new AttributePredicate(ElectricityStorageAsset.SUPPORTS_EXPORT.getName(), new BooleanPredicate(true), true, null)
+                )
+        )
+            .stream()
+            .map(asset -> (ElectricityStorageAsset)asset)
+            .collect(Collectors.toList());
+
+        // Load the predicted values of every attribute used in this run with a single query
+        List<Pair<String, Attribute<?>>> predictedAttributes = new ArrayList<>();
+        optimisableStorageAssets.stream()
+            .filter(asset -> forceChargeAssetIds.contains(asset.getId()))
+            .forEach(asset -> asset.getAttribute(ElectricityAsset.POWER).ifPresent(attribute -> predictedAttributes.add(new Pair<>(asset.getId(), attribute))));
+        consumerProducerAssets.forEach(asset -> asset.getAttribute(ElectricityAsset.POWER).ifPresent(attribute -> predictedAttributes.add(new Pair<>(asset.getId(), attribute))));
+        plainStorageAssets.forEach(asset -> asset.getAttribute(ElectricityAsset.POWER).ifPresent(attribute -> predictedAttributes.add(new Pair<>(asset.getId(), attribute))));
+        Arrays.asList(ElectricitySupplierAsset.TARIFF_IMPORT, ElectricitySupplierAsset.TARIFF_EXPORT, ElectricitySupplierAsset.CARBON_IMPORT, ElectricitySupplierAsset.CARBON_EXPORT)
+            .forEach(descriptor -> supplierAsset.getAttribute(descriptor).ifPresent(attribute -> predictedAttributes.add(new Pair<>(supplierAsset.getId(), attribute))));
+        Map<AttributeRef, double[]> predictedValues = get24HPredictedValues(predictedAttributes, optimiser.getIntervalSize(), intervalCount, optimisationTime);
+
         List<ElectricityStorageAsset> finalOptimisableStorageAssets = optimisableStorageAssets;
         optimisableStorageAssets = optimisableStorageAssets
             .stream()
@@ -438,7 +477,7 @@ public class EnergyOptimisationService extends RouteBuilder implements Container
                     LOG.finest("Optimisable asset was requested to force charge so it won't be optimised: " + asset.getId());
                     @SuppressWarnings("OptionalGetWithoutIsPresent")
                     Attribute<Double> powerAttribute = asset.getAttribute(ElectricityAsset.POWER).get();
-                    double[] powerLevels = get24HAttributeValues(asset.getId(), powerAttribute, optimiser.getIntervalSize(), intervalCount, optimisationTime);
+                    double[] powerLevels = get24HAttributeValues(asset.getId(), powerAttribute, intervalCount, predictedValues);
                     IntStream.range(0, intervalCount).forEach(i -> powerNets[i] += powerLevels[i]);
 
                     double currentEnergyLevel = asset.getEnergyLevel().orElse(0d);
@@ -495,44 +534,18 @@ public class EnergyOptimisationService extends RouteBuilder implements Container
             LOG.finest(getLogPrefix(optimisationAssetId) + "Found optimisable child assets of type '" + ElectricityStorageAsset.class.getSimpleName() + "': " + optimisableStorageAssets.stream().map(Asset::getId).collect(Collectors.joining(", ")));
         }
 
-        LOG.finest(getLogPrefix(optimisationAssetId) + "Fetching plain consumer and producer child assets of type '" + ElectricityProducerAsset.class.getSimpleName() + "', '" + ElectricityConsumerAsset.class.getSimpleName() + "', '" + ElectricityStorageAsset.class.getSimpleName() + "'");
-
         AtomicInteger count = new AtomicInteger(0);
-        assetStorageService.findAll(
-            new AssetQuery()
-                .select(new AssetQuery.Select().excludePath(true).excludeParentInfo(true))
-                .recursive(true)
-                .parents(optimisationAssetId)
-                .types(ElectricityConsumerAsset.class, ElectricityProducerAsset.class)
-                .attributes(new AttributePredicate().name(new StringPredicate(ElectricityAsset.POWER.getName())))
-        )
+        consumerProducerAssets
             //.stream()
             //.filter(asset -> !(asset instanceof GroupAsset) || isElectricityGroupAsset(asset))
             .forEach(asset -> {
                 @SuppressWarnings("OptionalGetWithoutIsPresent")
                 Attribute<Double> powerAttribute = asset.getAttribute(ElectricityAsset.POWER).get();
-                double[] powerLevels = get24HAttributeValues(asset.getId(), powerAttribute, optimiser.getIntervalSize(), intervalCount, optimisationTime);
+                double[] powerLevels = get24HAttributeValues(asset.getId(), powerAttribute, intervalCount, predictedValues);
                 IntStream.range(0, intervalCount).forEach(i -> powerNets[i] += powerLevels[i]);
                 count.incrementAndGet();
             });
 
-        // Get power of storage assets that don't support neither import or export (treat them as plain consumers/producers)
-        List<ElectricityStorageAsset> plainStorageAssets = assetStorageService.findAll(
-            new AssetQuery()
-                .select(new AssetQuery.Select().excludePath(true).excludeParentInfo(true))
-                .recursive(true)
-                .parents(optimisationAssetId)
-                .types(ElectricityStorageAsset.class)
-                .attributes(
-                    new AttributePredicate().name(new StringPredicate(ElectricityAsset.POWER.getName())),
-                    new AttributePredicate(ElectricityStorageAsset.SUPPORTS_IMPORT.getName(), new BooleanPredicate(true), true, null),
-                    new AttributePredicate(ElectricityStorageAsset.SUPPORTS_EXPORT.getName(), new BooleanPredicate(true), true, null)
-                )
-        )
-            .stream()
-            .map(asset -> (ElectricityStorageAsset)asset)
-            .collect(Collectors.toList());
-
         // Exclude chargers with a power value != 0 and a child vehicle with a power value != 0 (avoid double counting - vehicle takes priority)
         plainStorageAssets
             .stream()
@@ -560,7 +573,7 @@ public class EnergyOptimisationService extends RouteBuilder implements Container
             .forEach(asset -> {
                 @SuppressWarnings("OptionalGetWithoutIsPresent")
                 Attribute<Double> powerAttribute = asset.getAttribute(ElectricityAsset.POWER).get();
-                double[] powerLevels = get24HAttributeValues(asset.getId(), powerAttribute, optimiser.getIntervalSize(), intervalCount, optimisationTime);
+                double[] powerLevels = get24HAttributeValues(asset.getId(), powerAttribute, intervalCount, predictedValues);
                 IntStream.range(0, intervalCount).forEach(i -> powerNets[i] += powerLevels[i]);
                 count.incrementAndGet();
             });
@@ -582,12 +595,12 @@ public class EnergyOptimisationService extends RouteBuilder implements Container
             financialWeightingExport = 1d;
         }
 
-        double[] costsImport = get24HAttributeValues(supplierAsset.getId(), supplierAsset.getAttribute(ElectricitySupplierAsset.TARIFF_IMPORT).orElse(null), optimiser.getIntervalSize(), intervalCount, optimisationTime);
-        double[] costsExport = get24HAttributeValues(supplierAsset.getId(), supplierAsset.getAttribute(ElectricitySupplierAsset.TARIFF_EXPORT).orElse(null), optimiser.getIntervalSize(), intervalCount, optimisationTime);
+        double[] costsImport = get24HAttributeValues(supplierAsset.getId(), supplierAsset.getAttribute(ElectricitySupplierAsset.TARIFF_IMPORT).orElse(null), intervalCount, predictedValues);
+        double[] costsExport = get24HAttributeValues(supplierAsset.getId(), supplierAsset.getAttribute(ElectricitySupplierAsset.TARIFF_EXPORT).orElse(null), intervalCount, predictedValues);
 
         if (financialWeightingImport < 1d || financialWeightingExport < 1d) {
-            double[] carbonImport = get24HAttributeValues(supplierAsset.getId(), supplierAsset.getAttribute(ElectricitySupplierAsset.CARBON_IMPORT).orElse(null), optimiser.getIntervalSize(), intervalCount, optimisationTime);
-            double[] carbonExport = get24HAttributeValues(supplierAsset.getId(), supplierAsset.getAttribute(ElectricitySupplierAsset.CARBON_EXPORT).orElse(null), optimiser.getIntervalSize(), intervalCount, optimisationTime);
+            double[] carbonImport = get24HAttributeValues(supplierAsset.getId(), supplierAsset.getAttribute(ElectricitySupplierAsset.CARBON_IMPORT).orElse(null), intervalCount, predictedValues);
+            double[] carbonExport = get24HAttributeValues(supplierAsset.getId(), supplierAsset.getAttribute(ElectricitySupplierAsset.CARBON_EXPORT).orElse(null), intervalCount, predictedValues);
 
             LOG.finer(getLogPrefix(optimisationAssetId) + "Adjusting costs to include some carbon weighting, financialWeightingImport=" + financialWeightingImport + ", financialWeightingExport=" + financialWeightingExport);
 
@@ -667,8 +680,8 @@ public class EnergyOptimisationService extends RouteBuilder implements Container
             boolean isConnected = storageAssetConnected(storageAsset);
 
             // TODO: Make these a function of energy level
-            Function<Integer, Double> powerImportMaxCalculator = interval -> interval == 0 && !isConnected ? 0 : powerImportMax;
-            Function<Integer, Double> powerExportMaxCalculator = interval -> interval == 0 && !isConnected ? 0 : powerExportMax;
+            IntToDoubleFunction powerImportMaxCalculator = interval -> interval == 0 && !isConnected ? 0 : powerImportMax;
+            IntToDoubleFunction powerExportMaxCalculator = interval -> interval == 0 && !isConnected ? 0 : powerExportMax;
 
             if (hasEnergyMinRequirement) {
                 LOG.finer(getLogPrefix(optimisationAssetId) + "Normalising min energy requirements for storage asset: " + storageAsset.getId());
@@ -763,7 +776,32 @@ public class EnergyOptimisationService extends RouteBuilder implements Container
             ElectricityAsset.class.isAssignableFrom(assetClass);
     }
 
-    protected double[] get24HAttributeValues(String assetId, Attribute<Double> attribute, double intervalSize, int intervalCount, Instant optimisationTime) {
+    /**
+     * Gets the predicted values of the next 24 hours (one per optimisation interval) of all the attributes that have
+     * predicted data points using a single query; the intervals are aligned in the same way as {@link
+     * DatapointInterval#MINUTE} data point queries.
+     */
+    protected Map<AttributeRef, double[]> get24HPredictedValues(List<Pair<String, Attribute<?>>> attributes, double intervalSize, int intervalCount, Instant optimisationTime) {
+        List<AttributeRef> refs = attributes.stream()
+            .filter(assetIdAndAttribute -> assetIdAndAttribute.value.hasMeta(MetaItemType.HAS_PREDICTED_DATA_POINTS))
+            .map(assetIdAndAttribute -> new AttributeRef(assetIdAndAttribute.key, assetIdAndAttribute.value.getName()))
+            .distinct()
+            .collect(Collectors.toList());
+
+        if (refs.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        int stepMinutes = Math.max(1, (int)(intervalSize * 60));
+        LocalDateTime timestamp = LocalDateTime.ofInstant(optimisationTime, ZoneId.systemDefault());
+        LocalDateTime day = timestamp.truncatedTo(ChronoUnit.DAYS);
+        int minuteOfDay = timestamp.getHour() * 60 + timestamp.getMinute();
+        LocalDateTime from = day.plusMinutes((long) minuteOfDay / stepMinutes * stepMinutes);
+
+        return assetPredictedDatapointService.getAverageValueSeries(refs, from, TimeUnit.MINUTES.toMillis(stepMinutes), intervalCount);
+    }
+
+    protected double[] get24HAttributeValues(String assetId, Attribute<Double> attribute, int intervalCount, Map<AttributeRef, double[]> predictedValues) {
 
         double[] values = new double[intervalCount];
 
@@ -771,50 +809,33 @@ public class EnergyOptimisationService extends RouteBuilder implements Container
             return values;
         }
 
-        AttributeRef ref = new AttributeRef(assetId, attribute.getName());
-
-        if (attribute.hasMeta(MetaItemType.HAS_PREDICTED_DATA_POINTS)) {
-            LocalDateTime timestamp = LocalDateTime.ofInstant(optimisationTime, ZoneId.systemDefault());
-            ValueDatapoint<?>[] predictedData = assetPredictedDatapointService.getValueDatapoints(
-                ref,
-                DatapointInterval.MINUTE,
-                (int)(intervalSize * 60),
-                timestamp,
-                timestamp.plus(24, HOURS).minus((long)(intervalSize * 60), ChronoUnit.MINUTES)
-            );
-            if (predictedData.length != values.length) {
-                LOG.warning("Returned predicted data point count does not match interval count: Ref=" + ref + ", expected=" + values.length + ", actual=" + predictedData.length);
-            } else {
-
-                IntStream.range(0, predictedData.length).forEach(i -> {
-                    if (predictedData[i].getValue() != null) {
-                        values[i] = (double) (Object) predictedData[i].getValue();
-                    } else {
-                        // Average previous and next values to fill in gaps (goes up to 5 back and forward) - this fixes
-                        // issues with resolution differences between stored predicted data and optimisation interval
-                        Double previous = null;
-                        Double next = null;
-                        int j = i-1;
-                        while (previous == null && j >= 0) {
-                           previous = (Double) predictedData[j].getValue();
-                           j--;
-                        }
-                        j = i+1;
-                        while (next == null && j < predictedData.length) {
-                            next = (Double) predictedData[j].getValue();
-                            j++;
-                        }
-                        if (next == null) {
-                            next = previous;
-                        }
-                        if (previous == null) {
-                            previous = next;
-                        }
-                        if (next != null) {
-                            values[i] = (previous + next) / 2;
-                        }
+        double[] predictedData = predictedValues.get(new AttributeRef(assetId, attribute.getName()));
+
+        if (predictedData != null) {
+            for (int i = 0; i < predictedData.length && i < values.length; i++) {
+                if (!Double.isNaN(predictedData[i])) {
+                    values[i] = predictedData[i];
+                } else {
+                    // Average previous and next values to fill in gaps - this fixes issues with resolution
+                    // differences between stored predicted data and optimisation interval
+                    double previous = Double.NaN;
+                    double next = Double.NaN;
+                    for (int j = i - 1; j >= 0 && Double.isNaN(previous); j--) {
+                        previous = predictedData[j];
+                    }
+                    for (int j = i + 1; j < predictedData.length && Double.isNaN(next); j++) {
+                        next = predictedData[j];
+                    }
+                    if (Double.isNaN(next)) {
+                        next = previous;
+                    }
+                    if (Double.isNaN(previous)) {
+                        previous = next;
                     }
-                });
+                    if (!Double.isNaN(next)) {
+                        values[i] = (previous + next) / 2;
+                    }
+                }
             }
         }
 
@@ -855,24 +876,29 @@ public class EnergyOptimisationService extends RouteBuilder implements Container
         boolean isConnected = storageAssetConnected(storageAsset);
 
         // TODO: Make these a function of energy level
-        Function<Integer, Double> powerImportMaxCalculator = interval -> interval == 0 && !isConnected ? 0 : powerImportMax;
-        Function<Integer, Double> powerExportMaxCalculator = interval -> interval == 0 && !isConnected ? 0 : powerExportMax;
+        IntToDoubleFunction powerImportMaxCalculator = interval -> interval == 0 && !isConnected ? 0 : powerImportMax;
+        IntToDoubleFunction powerExportMaxCalculator = interval -> interval == 0 && !isConnected ? 0 : powerExportMax;
 
         double[][] exportCostAndPower = null;
         double[][] importCostAndPower = null;
         double[] powerSetpoints = new double[intervalCount];
 
-        Function<Integer, Double> energyLevelCalculator = interval ->
-                energyLevel + IntStream.range(0, interval).mapToDouble(j -> powerSetpoints[j] * optimiser.getIntervalSize()).sum();
+        double intervalSize = optimiser.getIntervalSize();
+        IntToDoubleFunction energyLevelCalculator = interval -> {
+            double level = energyLevel;
+            for (int j = 0; j < interval; j++) {
+                level += powerSetpoints[j] * intervalSize;
+            }
+            return level;
+        };
 
         // If asset supports exporting energy (V2G, battery storage, etc.) then need to determine if there are
         // opportunities to export energy to save/earn, taking into consideration the cost of exporting from this asset
         if (supportsExport) {
             LOG.finer(getLogPrefix(optimisationAssetId) + "Storage asset supports export so calculating export cost and power levels for each interval: " + storageAsset.getId());
             // Find intervals that save/earn by exporting energy from this storage asset by looking at power levels
-            BiFunction<Integer, Double, double[]> exportOptimiser = optimiser.getExportOptimiser(powerNets, exportPowerLimits, costImports, costExports, storageAsset.getTariffExport().orElse(0d));
-            exportCostAndPower = IntStream.range(0, intervalCount).mapToObj(it -> exportOptimiser.apply(it, powerExportMax))
-                .toArray(double[][]::new);
+            EnergyOptimiser.IntervalOptimiser exportOptimiser = optimiser.getExportIntervalOptimiser(powerNets, exportPowerLimits, costImports, costExports, storageAsset.getTariffExport().orElse(0d));
+            exportCostAndPower = optimiser.getCostAndPower(exportOptimiser, 0d, powerExportMax);
         }
 
         // If asset supports importing energy then need to determine if there are opportunities to import energy to
@@ -880,9 +906,8 @@ public class EnergyOptimisationService extends RouteBuilder implements Container
         // energy demands are met.
         if (supportsImport) {
             LOG.finer(getLogPrefix(optimisationAssetId) + "Storage asset supports import so calculating export cost and power levels for each interval: " + storageAsset.getId());
-            BiFunction<Integer, double[], double[]> importOptimiser = optimiser.getImportOptimiser(powerNets, importPowerLimits, costImports, costExports, storageAsset.getTariffImport().orElse(0d));
-            importCostAndPower = IntStream.range(0, intervalCount).mapToObj(it -> importOptimiser.apply(it, new double[]{0d, powerImportMax}))
-                .toArray(double[][]::new);
+            EnergyOptimiser.IntervalOptimiser importOptimiser = optimiser.getImportIntervalOptimiser(powerNets, importPowerLimits, costImports, costExports, storageAsset.getTariffImport().orElse(0d));
+            importCostAndPower = optimiser.getCostAndPower(importOptimiser, 0d, powerImportMax);
 
             boolean hasEnergyMinRequirement = Arrays.stream(normalisedEnergyLevelMins).anyMatch(el -> el > 0);
 
@@ -19,29 +19,45 @@
  */
 package org.openremote.manager.energy;
 
-import org.openremote.model.util.Pair;
-
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoField;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import static org.openremote.manager.energy.EnergyOptimisationService.LOG;
 
+/**
+ * Calculates the power setpoints of storage assets for each interval of the next 24 hours.
+ * <p>
+ * The optimisation routines work on primitives ({@link IntToDoubleFunction} calculators and {@link IntervalOptimiser}s
+ * that write into the supplied cost and power arrays) and reuse scratch buffers held by the instance so they don't box
+ * or allocate per interval; an instance must therefore only be used by one optimisation run at a time. The {@link
+ * Function}/{@link BiFunction} variants are kept for convenience and delegate to the primitive ones.
+ */
 public class EnergyOptimiser {
 
+    /**
+     * Calculates the optimum cost (per kWh) and power band needed to achieve it for an interval and writes
+     * [cost, powerMin, powerMax] into the supplied costAndPower array.
+     */
+    @FunctionalInterface
+    public interface IntervalOptimiser {
+        void apply(int interval, double powerMin, double powerMax, double[] costAndPower);
+    }
+
     protected double intervalSize;
     protected double financialWeighting;
+    // Scratch buffers
+    protected int[] opportunityIntervals;
+    protected double[][] opportunityCostAndPower;
+    protected int[] pastOpportunityIntervals;
+    protected int[] deltaIntervals;
+    protected double[] deltaPowers;
 
     /**
      * 24 divided by intervalSize must be a whole number
@@ -234,21 +250,28 @@ public class EnergyOptimiser {
      * rates).
      */
     public void normaliseEnergyMinRequirements(double[] energyLevelMins, Function<Integer, Double> powerImportMaxCalculator, Function<Integer, Double> powerExportMaxCalculator, double energyLevel) {
+        normaliseEnergyMinRequirements(energyLevelMins, toPrimitive(powerImportMaxCalculator), toPrimitive(powerExportMaxCalculator), energyLevel);
+    }
+
+    /**
+     * Adjusts the supplied energyLevelMin values to match the physical characteristics (i.e. the charge and discharge
+     * rates).
+     */
+    public void normaliseEnergyMinRequirements(double[] energyLevelMins, IntToDoubleFunction powerImportMaxCalculator, IntToDoubleFunction powerExportMaxCalculator, double energyLevel) {
 
         int intervalCount = get24HourIntervalCount();
-        Function<Integer, Double> previousEnergyLevelCalculator = i -> (i == 0 ? energyLevel : energyLevelMins[i - 1]);
 
         // Adjust energy min requirements to match physical characteristics (charge/discharge rate)
-        IntStream.range(0, intervalCount).forEach(i -> {
-            double energyDelta = energyLevelMins[i] - previousEnergyLevelCalculator.apply(i);
+        for (int i = 0; i < intervalCount; i++) {
+            double energyDelta = energyLevelMins[i] - (i == 0 ? energyLevel : energyLevelMins[i - 1]);
 
             if (energyDelta > 0) {
 
                 // May need to increase earlier min values until there is no energy deficit with previous interval
                 // If we reach interval 0 and there is still a deficit then need to reduce this energy level
                 for (int j = i; j >= 0; j--) {
-                    double previousMin = energyLevelMins[j] - (powerImportMaxCalculator.apply(j) * intervalSize);
-                    double previous = previousEnergyLevelCalculator.apply(j);
+                    double previousMin = energyLevelMins[j] - (powerImportMaxCalculator.applyAsDouble(j) * intervalSize);
+                    double previous = j == 0 ? energyLevel : energyLevelMins[j - 1];
 
                     if (previous < previousMin) {
                         if (j == 0) {
@@ -272,7 +295,7 @@ public class EnergyOptimiser {
                 // May need to spread discharge over this and later intervals
                 for (int j = i; j < intervalCount; j++) {
 
-                    double min = previousEnergyLevelCalculator.apply(j) + (powerExportMaxCalculator.apply(j) * intervalSize);
+                    double min = (j == 0 ? energyLevel : energyLevelMins[j - 1]) + (powerExportMaxCalculator.applyAsDouble(j) * intervalSize);
 
                     if (min > energyLevelMins[j]) {
                         energyLevelMins[j] = min;
@@ -282,31 +305,40 @@ public class EnergyOptimiser {
                     }
                 }
             }
-        });
+        }
     }
 
     /**
      * Will update the powerSetpoints in order to achieve the energyLevelMin values supplied.
      */
     public void applyEnergyMinImports(double[][] importCostAndPower, double[] energyLevelMins, double[] powerSetpoints, Function<Integer, Double> energyLevelCalculator, BiFunction<Integer, double[], double[]> importOptimiser, Function<Integer, Double> powerImportMaxCalculator) {
+        applyEnergyMinImports(importCostAndPower, energyLevelMins, powerSetpoints, toPrimitive(energyLevelCalculator), toIntervalOptimiser(importOptimiser), toPrimitive(powerImportMaxCalculator));
+    }
+
+    /**
+     * Will update the powerSetpoints in order to achieve the energyLevelMin values supplied.
+     */
+    public void applyEnergyMinImports(double[][] importCostAndPower, double[] energyLevelMins, double[] powerSetpoints, IntToDoubleFunction energyLevelCalculator, IntervalOptimiser importOptimiser, IntToDoubleFunction powerImportMaxCalculator) {
         // Ensure min energy levels are attained by the end of the interval as these have priority
-        AtomicInteger fromInterval = new AtomicInteger(0);
+        int fromInterval = 0;
+        int intervalCount = get24HourIntervalCount();
 
-        IntStream.range(0, get24HourIntervalCount()).forEach(i -> {
-            double intervalEnergyLevel = energyLevelCalculator.apply(i);
+        for (int i = 0; i < intervalCount; i++) {
+            double intervalEnergyLevel = energyLevelCalculator.applyAsDouble(i);
             double energyDeficit = energyLevelMins[i] - intervalEnergyLevel;
 
             if (energyDeficit > 0) {
-                double energyAttainable = powerImportMaxCalculator.apply(i) * intervalSize;
+                double energyAttainable = powerImportMaxCalculator.applyAsDouble(i) * intervalSize;
                 energyAttainable = Math.min(energyDeficit, energyAttainable);
                 powerSetpoints[i] = energyAttainable / intervalSize;
                 energyDeficit -= energyAttainable;
 
                 if (energyDeficit > 0) {
-                    retrospectiveEnergyAllocator(importCostAndPower, energyLevelMins, powerSetpoints, importOptimiser, powerImportMaxCalculator, energyDeficit, fromInterval.getAndSet(i), i);
+                    retrospectiveEnergyAllocator(importCostAndPower, energyLevelMins, powerSetpoints, importOptimiser, powerImportMaxCalculator, energyDeficit, fromInterval, i);
+                    fromInterval = i;
                 }
             }
-        });
+        }
     }
 
     /**
@@ -314,6 +346,14 @@ public class EnergyOptimiser {
      * level requirement at the specified interval based on the provided energy level at the start of fromInterval.
      */
     public void retrospectiveEnergyAllocator(double[][] importCostAndPower, double[] energyLevelMins, double[] powerSetpoints, BiFunction<Integer, double[], double[]> importOptimiser, Function<Integer, Double> powerImportMaxCalculator, double energyLevel, int fromInterval, int toInterval) {
+        retrospectiveEnergyAllocator(importCostAndPower, energyLevelMins, powerSetpoints, toIntervalOptimiser(importOptimiser), toPrimitive(powerImportMaxCalculator), energyLevel, fromInterval, toInterval);
+    }
+
+    /**
+     * Creates earlier imports between fromInterval (inclusive) and toInterval (exclusive) in order to meet min energy
+     * level requirement at the specified interval based on the provided energy level at the start of fromInterval.
+     */
+    public void retrospectiveEnergyAllocator(double[][] importCostAndPower, double[] energyLevelMins, double[] powerSetpoints, IntervalOptimiser importOptimiser, IntToDoubleFunction powerImportMaxCalculator, double energyLevel, int fromInterval, int toInterval) {
 
         double energyDeficit = energyLevelMins[toInterval] - energyLevel;
 
@@ -322,30 +362,28 @@ public class EnergyOptimiser {
         }
 
         // Do import until energy deficit reaches 0 or there are no more intervals
-        boolean canMeetDeficit = IntStream.range(fromInterval, toInterval).mapToDouble(i ->
-            Math.min(powerImportMaxCalculator.apply(i), importCostAndPower[i][2])
-        ).sum() >= energyDeficit;
-        boolean morePowerAvailable = !canMeetDeficit && IntStream.range(fromInterval, toInterval).mapToObj(i -> importCostAndPower[i][2] < powerImportMaxCalculator.apply(i)).anyMatch(b -> b);
+        double powerAvailable = 0d;
+        boolean morePowerAvailable = false;
+        for (int i = fromInterval; i < toInterval; i++) {
+            double powerImportMax = powerImportMaxCalculator.applyAsDouble(i);
+            powerAvailable += Math.min(powerImportMax, importCostAndPower[i][2]);
+            morePowerAvailable = morePowerAvailable || importCostAndPower[i][2] < powerImportMax;
+        }
+        boolean canMeetDeficit = powerAvailable >= energyDeficit;
 
         if (!canMeetDeficit && morePowerAvailable) {
             // Need to push imports beyond optimum to fulfill energy deficit
-            IntStream.range(fromInterval, toInterval).forEach(i -> {
-                double powerImportMax = powerImportMaxCalculator.apply(i);
+            for (int i = fromInterval; i < toInterval; i++) {
+                double powerImportMax = powerImportMaxCalculator.applyAsDouble(i);
                 if (importCostAndPower[i][2] < powerImportMax) {
-                    importCostAndPower[i] = importOptimiser.apply(i, new double[]{0d, powerImportMax});
+                    importOptimiser.apply(i, 0d, powerImportMax, importCostAndPower[i]);
                 }
-            });
+            }
         }
 
-        // Sort import intervals by cost (lowest to highest)
-        List<Pair<Integer, double[]>> sortedImportCostAndPower = IntStream.range(fromInterval, toInterval)
-            .mapToObj(i -> new Pair<>(i, importCostAndPower[i])).sorted(
-                Comparator.comparingDouble(pair -> pair.value[0])
-            ).collect(Collectors.toList());
-
         int i = 0;
-        while (energyDeficit > 0 && i < sortedImportCostAndPower.size()) {
-            double importPower = Math.min(powerImportMaxCalculator.apply(i), importCostAndPower[i][2]);
+        while (energyDeficit > 0 && i < toInterval - fromInterval) {
+            double importPower = Math.min(powerImportMaxCalculator.applyAsDouble(i), importCostAndPower[i][2]);
             double requiredPower = energyDeficit / intervalSize;
             // If we earn by importing then take the maximum power
             importPower = importCostAndPower[i][0] < 0 ? importPower : Math.min(importPower, requiredPower);
@@ -361,41 +399,52 @@ public class EnergyOptimiser {
      * updated as a result.
      */
     public void applyEarningOpportunities(double[][] importCostAndPower, double[][] exportCostAndPower, double[] energyLevelMins, double[] energyLevelMaxs, double[] powerSetpoints, Function<Integer, Double> energyLevelCalculator, Function<Integer, Double> powerImportMaxCalculator, Function<Integer, Double> powerExportMaxCalculator) {
+        applyEarningOpportunities(importCostAndPower, exportCostAndPower, energyLevelMins, energyLevelMaxs, powerSetpoints, toPrimitive(energyLevelCalculator), toPrimitive(powerImportMaxCalculator), toPrimitive(powerExportMaxCalculator));
+    }
+
+    /**
+     * Will find the best earning opportunity for each interval (import or export) and will then try to apply them in
+     * chronological order (reallocating earlier import/exports if it cost beneficial). The powerSetpoints will be
+     * updated as a result.
+     */
+    public void applyEarningOpportunities(double[][] importCostAndPower, double[][] exportCostAndPower, double[] energyLevelMins, double[] energyLevelMaxs, double[] powerSetpoints, IntToDoubleFunction energyLevelCalculator, IntToDoubleFunction powerImportMaxCalculator, IntToDoubleFunction powerExportMaxCalculator) {
         LOG.finer("Applying earning opportunities");
 
         // Look for import and export earning opportunities
         double[][] primary = importCostAndPower != null ? importCostAndPower : exportCostAndPower; // Never null
         double[][] secondary = importCostAndPower != null ? exportCostAndPower : null; // Could be null
-
-        List<Pair<Integer, double[]>> earningOpportunities = IntStream.range(0, primary.length).mapToObj(i -> {
-            if (secondary == null) {
-                return new Pair<>(i, primary[i]);
-            }
-            // Return whichever has the lowest cost
-            if (primary[i][0] < secondary[i][0]) {
-                return new Pair<>(i, primary[i]);
+        ensureScratchCapacity(Math.max(primary.length, powerSetpoints.length));
+        int[] earningOpportunities = opportunityIntervals;
+        double[][] earningCostAndPower = opportunityCostAndPower;
+        int opportunityCount = 0;
+
+        for (int i = 0; i < primary.length; i++) {
+            // Use whichever has the lowest cost
+            double[] costAndPower = secondary == null || primary[i][0] < secondary[i][0] ? primary[i] : secondary[i];
+            if (costAndPower[0] < 0) {
+                earningOpportunities[opportunityCount++] = i;
+                earningCostAndPower[i] = costAndPower;
             }
-            return new Pair<>(i, secondary[i]);
-        })
-            .filter(intervalCostAndPowerBand -> intervalCostAndPowerBand.value[0] < 0)
-            .sorted(Comparator.comparingDouble(optimisedInterval -> optimisedInterval.value[0]))
-            .collect(Collectors.toList());
+        }
 
-        if (earningOpportunities.isEmpty()) {
+        sortByCost(earningOpportunities, opportunityCount, earningCostAndPower);
+
+        if (opportunityCount == 0) {
             LOG.finest("No earning opportunities found");
         }
 
         if (LOG.isLoggable(Level.FINEST)) {
-            earningOpportunities.forEach(op -> LOG.finest("Earning opportunity: interval=" + op.key + ", cost=" + op.value[0] + ", powerMin=" + op.value[1] + ", powerMax=" + op.value[2]));
+            for (int i = 0; i < opportunityCount; i++) {
+                double[] op = earningCostAndPower[earningOpportunities[i]];
+                LOG.finest("Earning opportunity: interval=" + earningOpportunities[i] + ", cost=" + op[0] + ", powerMin=" + op[1] + ", powerMax=" + op[2]);
+            }
         }
 
         // Go through each earning opportunity and determine if it can be utilised without breaching the energy min
         // levels
-        for (Pair<Integer, double[]> earningOpportunity : earningOpportunities) {
-            int interval = earningOpportunity.key;
-            double[] costAndPower = earningOpportunity.value;
-            assert importCostAndPower != null;
-            assert exportCostAndPower != null;
+        for (int i = 0; i < opportunityCount; i++) {
+            int interval = earningOpportunities[i];
+            double[] costAndPower = earningCostAndPower[interval];
 
             if (isImportOpportunity(costAndPower, powerSetpoints[interval], interval, powerImportMaxCalculator)) {
                 // import opportunity and interval still available to import power
@@ -407,12 +456,12 @@ public class EnergyOptimiser {
         }
     }
 
-    protected boolean isImportOpportunity(double[] costAndPower, double powerSetpoint, int interval, Function<Integer, Double> powerImportMaxCalculator) {
-        return costAndPower[2] > 0 && powerSetpoint >= 0 && powerSetpoint < Math.min(powerImportMaxCalculator.apply(interval), costAndPower[2]);
+    protected boolean isImportOpportunity(double[] costAndPower, double powerSetpoint, int interval, IntToDoubleFunction powerImportMaxCalculator) {
+        return costAndPower[2] > 0 && powerSetpoint >= 0 && powerSetpoint < Math.min(powerImportMaxCalculator.applyAsDouble(interval), costAndPower[2]);
     }
 
-    protected boolean isExportOpportunity(double[] costAndPower, double powerSetpoint, int interval, Function<Integer, Double> powerExportMaxCalculator) {
-        return costAndPower[1] < 0 && powerSetpoint <= 0 && powerSetpoint > Math.max(powerExportMaxCalculator.apply(interval), costAndPower[1]);
+    protected boolean isExportOpportunity(double[] costAndPower, double powerSetpoint, int interval, IntToDoubleFunction powerExportMaxCalculator) {
+        return costAndPower[1] < 0 && powerSetpoint <= 0 && powerSetpoint > Math.max(powerExportMaxCalculator.applyAsDouble(interval), costAndPower[1]);
     }
 
     /**
@@ -422,10 +471,20 @@ public class EnergyOptimiser {
      * powerSetpoints will be updated as a result.
      */
     public void applyImportOpportunity(double[][] importCostAndPower, double[][] exportCostAndPower, double[] energyLevelMins, double[] energyLevelMaxs, double[] powerSetpoints, Function<Integer, Double> energyLevelCalculator, Function<Integer, Double> powerImportMaxCalculator, Function<Integer, Double> powerExportMaxCalculator, int interval) {
+        applyImportOpportunity(importCostAndPower, exportCostAndPower, energyLevelMins, energyLevelMaxs, powerSetpoints, toPrimitive(energyLevelCalculator), toPrimitive(powerImportMaxCalculator), toPrimitive(powerExportMaxCalculator), interval);
+    }
+
+    /**
+     * Tries to apply the maximum import power as defined in the importCostAndPower at the specified interval taking
+     * into consideration the maximum power and energy levels; if there is insufficient power or energy capacity at the
+     * interval then an earlier cost effective export opportunity will be attempted to offset the requirement. The
+     * powerSetpoints will be updated as a result.
+     */
+    public void applyImportOpportunity(double[][] importCostAndPower, double[][] exportCostAndPower, double[] energyLevelMins, double[] energyLevelMaxs, double[] powerSetpoints, IntToDoubleFunction energyLevelCalculator, IntToDoubleFunction powerImportMaxCalculator, IntToDoubleFunction powerExportMaxCalculator, int interval) {
         LOG.finest("Applying import earning opportunity: interval=" + interval);
         double[] costAndPower = importCostAndPower[interval];
         double impPowerMin = costAndPower[1];
-        double impPowerMax = Math.min(powerImportMaxCalculator.apply(interval), costAndPower[2]);
+        double impPowerMax = Math.min(powerImportMaxCalculator.applyAsDouble(interval), costAndPower[2]);
         double powerCapacity = impPowerMax - powerSetpoints[interval];
 
         if (impPowerMin > powerCapacity) {
@@ -433,14 +492,17 @@ public class EnergyOptimiser {
             return;
         }
 
-        double energySpace = energyLevelMaxs[interval] - energyLevelCalculator.apply(interval);
+        ensureScratchCapacity(powerSetpoints.length);
+        double energySpace = energyLevelMaxs[interval] - energyLevelCalculator.applyAsDouble(interval);
         double energySpaceMax = powerCapacity * intervalSize;
         double energySpaceMin = impPowerMin * intervalSize;
-        List<Pair<Integer, Double>> pastIntervalPowerDeltas = new ArrayList<>();
+        int[] pastIntervals = deltaIntervals;
+        double[] pastPowerDeltas = deltaPowers;
+        int deltaCount = 0;
 
         int k = interval;
         while (k < powerSetpoints.length && energySpace > 0 && energySpace >= energySpaceMin) {
-            double futureEnergySpace = energyLevelMaxs[k] - energyLevelCalculator.apply(k);
+            double futureEnergySpace = energyLevelMaxs[k] - energyLevelCalculator.applyAsDouble(k);
             energySpace = Math.min(energySpace, futureEnergySpace);
             k++;
         }
@@ -449,32 +511,30 @@ public class EnergyOptimiser {
             // Can't maximise on opportunity without exporting earlier on so can this be done
             // in a cost effective way
             LOG.finest("Looking for earlier export opportunities to maximise on this import opportunity: space=" + energySpace + ", max=" + energySpaceMax);
-            int i = interval - 1;
-            List<Pair<Integer, Double>> pastOpportunities = new ArrayList<>();
+            int[] pastOpportunities = pastOpportunityIntervals;
+            int opportunityCount = 0;
 
-            while (i >= 0) {
+            for (int i = interval - 1; i >= 0; i--) {
                 if (costAndPower[0] + exportCostAndPower[i][0] < 0 && powerSetpoints[i] <= 0) {
                     // We can afford to export earlier and still earn from this import
-                    pastOpportunities.add(new Pair<>(i, exportCostAndPower[i][0]));
+                    pastOpportunities[opportunityCount++] = i;
                 }
-                i--;
             }
 
-            pastOpportunities.sort(Comparator.comparingDouble(op -> op.value));
+            sortByCost(pastOpportunities, opportunityCount, exportCostAndPower);
             int j = 0;
 
-            if (pastOpportunities.isEmpty()) {
+            if (opportunityCount == 0) {
                 LOG.finest("No earlier export opportunities identified");
             }
 
-            while (energySpace < energySpaceMax && j < pastOpportunities.size()) {
+            while (energySpace < energySpaceMax && j < opportunityCount) {
                 // Energy level at this interval must be above energy min to consider exporting
-                Pair<Integer, Double> opportunity = pastOpportunities.get(j);
-                int pastInterval = opportunity.key;
+                int pastInterval = pastOpportunities[j];
 
                 // Power capacity must be within the optimum power band
                 double[] pastCostAndPower = exportCostAndPower[pastInterval];
-                double expPowerMax = Math.max(powerExportMaxCalculator.apply(pastInterval), pastCostAndPower[1]);
+                double expPowerMax = Math.max(powerExportMaxCalculator.applyAsDouble(pastInterval), pastCostAndPower[1]);
                 double expPowerCapacity = expPowerMax - powerSetpoints[pastInterval];
 
                 if (expPowerCapacity >= 0 || expPowerCapacity > pastCostAndPower[2]) {
@@ -484,13 +544,13 @@ public class EnergyOptimiser {
                 }
 
                 double energySurplusMin = pastCostAndPower[2] * intervalSize;
-                double energySurplus = energyLevelMins[pastInterval] - energyLevelCalculator.apply(pastInterval);
+                double energySurplus = energyLevelMins[pastInterval] - energyLevelCalculator.applyAsDouble(pastInterval);
                 energySurplus = Math.max(energySurplus, energySpace - energySpaceMax);
 
                 // We have spare energy capacity and power check if we don't violate energy min for any future exports
                 k = pastInterval;
                 while (k < powerSetpoints.length && energySurplus < 0 && energySurplus <= energySurplusMin) {
-                    double futureEnergySurplus = energyLevelCalculator.apply(k) - energyLevelMins[k];
+                    double futureEnergySurplus = energyLevelCalculator.applyAsDouble(k) - energyLevelMins[k];
                     energySurplus = Math.max(energySurplus, -futureEnergySurplus);
                     if (energySurplus <= 0) {
                         LOG.finest("Earlier export opportunity would violate future energy min level: interval=" + j + ", futureInterval=" + k);
@@ -503,7 +563,8 @@ public class EnergyOptimiser {
                 if (expPowerCapacity < 0 && expPowerCapacity < pastCostAndPower[2]) {
                     // We can export in the optimum range
                     energySpace += (-1d * expPowerCapacity * intervalSize);
-                    pastIntervalPowerDeltas.add(new Pair<>(pastInterval, expPowerCapacity));
+                    pastIntervals[deltaCount] = pastInterval;
+                    pastPowerDeltas[deltaCount++] = expPowerCapacity;
                     LOG.finest("Earlier export opportunity identified: interval=" + pastInterval + ", power=" + expPowerCapacity);
                 }
 
@@ -515,7 +576,9 @@ public class EnergyOptimiser {
         if (energySpace > 0 && energySpace >= energySpaceMin) {
 
             // Adjust past interval set points as required
-            pastIntervalPowerDeltas.forEach(intervalAndDelta -> powerSetpoints[intervalAndDelta.key] += intervalAndDelta.value);
+            for (int i = 0; i < deltaCount; i++) {
+                powerSetpoints[pastIntervals[i]] += pastPowerDeltas[i];
+            }
 
             energySpaceMax = Math.min(energySpaceMax, energySpace);
             powerCapacity = Math.min(impPowerMax - powerSetpoints[interval], (energySpaceMax / intervalSize));
@@ -531,10 +594,20 @@ public class EnergyOptimiser {
      * powerSetpoints will be updated as a result.
      */
     public void applyExportOpportunity(double[][] importCostAndPower, double[][] exportCostAndPower, double[] energyLevelMins, double[] energyLevelMaxs, double[] powerSetpoints, Function<Integer, Double> energyLevelCalculator, Function<Integer, Double> powerImportMaxCalculator, Function<Integer, Double> powerExportMaxCalculator, int interval) {
+        applyExportOpportunity(importCostAndPower, exportCostAndPower, energyLevelMins, energyLevelMaxs, powerSetpoints, toPrimitive(energyLevelCalculator), toPrimitive(powerImportMaxCalculator), toPrimitive(powerExportMaxCalculator), interval);
+    }
+
+    /**
+     * Tries to apply the maximum export power as defined in the exportCostAndPower at the specified interval taking
+     * into consideration the maximum power and energy levels; if there is insufficient power or energy capacity at the
+     * interval then an earlier cost effective import opportunity will be attempted to offset the requirement. The
+     * powerSetpoints will be updated as a result.
+     */
+    public void applyExportOpportunity(double[][] importCostAndPower, double[][] exportCostAndPower, double[] energyLevelMins, double[] energyLevelMaxs, double[] powerSetpoints, IntToDoubleFunction energyLevelCalculator, IntToDoubleFunction powerImportMaxCalculator, IntToDoubleFunction powerExportMaxCalculator, int interval) {
         LOG.finest("Applying export earning opportunity: interval=" + interval);
         double[] costAndPower = exportCostAndPower[interval];
         double expPowerMin = costAndPower[2];
-        double expPowerMax = Math.max(powerExportMaxCalculator.apply(interval), costAndPower[1]);
+        double expPowerMax = Math.max(powerExportMaxCalculator.applyAsDouble(interval), costAndPower[1]);
         double powerCapacity = expPowerMax - powerSetpoints[interval];
 
         if (expPowerMin < powerCapacity) {
@@ -542,40 +615,18 @@ public class EnergyOptimiser {
             return;
         }
 
-        double energySurplus = energyLevelCalculator.apply(interval) - energyLevelMins[interval];
+        ensureScratchCapacity(powerSetpoints.length);
+        double energySurplus = energyLevelCalculator.applyAsDouble(interval) - energyLevelMins[interval];
         double energySurplusMin = -1d * expPowerMin * intervalSize;
         double energySurplusMax = -1d * powerCapacity * intervalSize;
-        List<Pair<Integer, Double>> pastAndFutureIntervalPowerDeltas = new ArrayList<>();
+        int[] pastIntervals = deltaIntervals;
+        double[] pastPowerDeltas = deltaPowers;
+        int deltaCount = 0;
 
         int k = interval;
         while (k < powerSetpoints.length && energySurplus > 0 && energySurplus >= energySurplusMin) {
 
-            double futureEnergySurplus = energyLevelCalculator.apply(k) - energyLevelMins[k];
-
-            // The following is an attempt to make use of an earning opportunity that would violate future energy limits
-            // by allocating extra imports between 'now' and 'then' - this needs more work
-//            if (futureEnergySurplus < energySurplusMin || futureEnergySurplus <= 0) {
-//                // Try and allocate an import between this future point and the earning opportunity to prevent this deficit
-//                int l = k - 1;
-//                while (futureEnergySurplus < energySurplusMax && l > interval) {
-//                    int finalL = l;
-//                    if (powerSetpoints[l] >= 0 && pastAndFutureIntervalPowerDeltas.stream().noneMatch(delta -> delta.key.equals(finalL))) {
-//
-//                        double surplusDeficit = energySurplusMax - futureEnergySurplus;
-//                        double intermediateEnergyCapacity = energyLevelMax - energyLevelCalculator.apply(l);
-//                        double intermediatePowerCapacity = powerImportMaxCalculator.apply(l) - powerSetpoints[l];
-//                        intermediatePowerCapacity = Math.min(intermediatePowerCapacity, surplusDeficit / intervalSize);
-//                        intermediatePowerCapacity = Math.min(intermediatePowerCapacity, intermediateEnergyCapacity / intervalSize);
-//
-//                        if (intermediatePowerCapacity > 0 && powerSetpoints[l] + intermediatePowerCapacity > importCostAndPower[l][1] && costAndPower[0] + importCostAndPower[l][0] < 0) {
-//                            // There is capacity and it is cost effective to use it
-//                            futureEnergySurplus = intermediatePowerCapacity * intervalSize;
-//                            pastAndFutureIntervalPowerDeltas.add(new Pair<>(l, intermediatePowerCapacity));
-//                        }
-//                    }
-//                    l--;
-//                }
-//            }
+            double futureEnergySurplus = energyLevelCalculator.applyAsDouble(k) - energyLevelMins[k];
 
             energySurplus = Math.min(energySurplus, futureEnergySurplus);
             k++;
@@ -586,33 +637,29 @@ public class EnergyOptimiser {
             // Can't maximise on opportunity without importing earlier on so can this be done
             // in a cost effective way
             LOG.finest("Looking for earlier import opportunities to maximise on this export opportunity: surplus=" + energySurplus + ", max=" + energySurplusMax);
-            int i = interval - 1;
-            List<Pair<Integer, Double>> pastOpportunities = new ArrayList<>();
-
-            while (i >= 0) {
+            int[] pastOpportunities = pastOpportunityIntervals;
+            int opportunityCount = 0;
 
+            for (int i = interval - 1; i >= 0; i--) {
                 if (costAndPower[0] + importCostAndPower[i][0] < 0 && powerSetpoints[i] >= 0) {
                     // We can afford to import and still earn using original export
-                    pastOpportunities.add(new Pair<>(i, importCostAndPower[i][0]));
+                    pastOpportunities[opportunityCount++] = i;
                 }
-
-                i--;
             }
 
-            pastOpportunities.sort(Comparator.comparingDouble(op -> op.value));
+            sortByCost(pastOpportunities, opportunityCount, importCostAndPower);
             int j = 0;
 
-            if (pastOpportunities.isEmpty()) {
+            if (opportunityCount == 0) {
                 LOG.finest("No earlier import opportunities identified");
             }
 
-            while (energySurplus < energySurplusMax && j < pastOpportunities.size()) {
-                Pair<Integer, Double> opportunity = pastOpportunities.get(j);
-                int pastInterval = opportunity.key;
+            while (energySurplus < energySurplusMax && j < opportunityCount) {
+                int pastInterval = pastOpportunities[j];
 
                 // Power capacity must be within the optimum power band
                 double[] pastCostAndPower = importCostAndPower[pastInterval];
-                double impPowerMax = Math.min(powerImportMaxCalculator.apply(interval), pastCostAndPower[2]);
+                double impPowerMax = Math.min(powerImportMaxCalculator.applyAsDouble(interval), pastCostAndPower[2]);
                 double impPowerCapacity = impPowerMax - powerSetpoints[pastInterval];
 
                 if (impPowerCapacity <= 0 || impPowerCapacity < pastCostAndPower[1]) {
@@ -622,14 +669,14 @@ public class EnergyOptimiser {
                 }
 
                 double energySpaceMin = pastCostAndPower[1] * intervalSize;
-                double energySpace = energyLevelMaxs[interval] - energyLevelCalculator.apply(pastInterval);
+                double energySpace = energyLevelMaxs[interval] - energyLevelCalculator.applyAsDouble(pastInterval);
                 energySpace = Math.max(energySpace, energySpace - energySurplusMax);
 
                 // We have spare energy capacity and power check if we don't violate energy max for any future imports
                 k = pastInterval;
                 while (k < powerSetpoints.length && energySpace > 0 && energySpace >= energySpaceMin) {
 
-                    double futureEnergySpace = energyLevelMaxs[k] - energyLevelCalculator.apply(k);
+                    double futureEnergySpace = energyLevelMaxs[k] - energyLevelCalculator.applyAsDouble(k);
                     energySpace = Math.min(energySpace, futureEnergySpace);
                     if (energySpace <= 0) {
                         LOG.finest("Earlier import opportunity would violate future energy max level: interval=" + j + ", futureInterval=" + k);
@@ -643,7 +690,8 @@ public class EnergyOptimiser {
                 if (impPowerCapacity > 0 && impPowerCapacity > pastCostAndPower[1]) {
                     // We can import in the optimum range
                     energySurplus += (impPowerCapacity * intervalSize);
-                    pastAndFutureIntervalPowerDeltas.add(new Pair<>(pastInterval, impPowerCapacity));
+                    pastIntervals[deltaCount] = pastInterval;
+                    pastPowerDeltas[deltaCount++] = impPowerCapacity;
                     LOG.finest("Earlier import opportunity identified: interval=" + pastInterval + ", power=" + impPowerCapacity);
                 }
 
@@ -655,7 +703,9 @@ public class EnergyOptimiser {
         if (energySurplus > 0 && energySurplus >= energySurplusMin) {
 
             // Adjust past interval set points as required
-            pastAndFutureIntervalPowerDeltas.forEach(intervalAndDelta -> powerSetpoints[intervalAndDelta.key] += intervalAndDelta.value);
+            for (int i = 0; i < deltaCount; i++) {
+                powerSetpoints[pastIntervals[i]] += pastPowerDeltas[i];
+            }
 
             energySurplusMax = Math.min(energySurplusMax, energySurplus);
             powerCapacity = Math.max(expPowerMax - powerSetpoints[interval], -1d * (energySurplusMax / intervalSize));
@@ -670,9 +720,22 @@ public class EnergyOptimiser {
      * determine whether there are export opportunities for earning/saving rather than using the grid.
      */
     public BiFunction<Integer, Double, double[]> getExportOptimiser(double[] powerNets, double[] powerNetLimits, double[] tariffImports, double[] tariffExports, double assetExportCost) {
+        IntervalOptimiser exportOptimiser = getExportIntervalOptimiser(powerNets, powerNetLimits, tariffImports, tariffExports, assetExportCost);
 
-        // Power max should be negative as this is export
         return (interval, powerMax) -> {
+            double[] costAndPower = new double[3];
+            exportOptimiser.apply(interval, 0d, powerMax, costAndPower);
+            return costAndPower;
+        };
+    }
+
+    /**
+     * Primitive version of {@link #getExportOptimiser}; the power min passed to the returned optimiser is ignored.
+     */
+    public IntervalOptimiser getExportIntervalOptimiser(double[] powerNets, double[] powerNetLimits, double[] tariffImports, double[] tariffExports, double assetExportCost) {
+
+        // Power max should be negative as this is export
+        return (interval, powerMin, powerMax, costAndPower) -> {
             double powerNet = powerNets[interval];
             double powerNetLimit = powerNetLimits[interval];
             double tariffImport = tariffImports[interval];
@@ -681,17 +744,20 @@ public class EnergyOptimiser {
 
             if (powerMax >= 0) {
                 // No capacity to export
-                return new double[]{Double.MAX_VALUE, 0d, 0d};
+                setCostAndPower(costAndPower, Double.MAX_VALUE, 0d, 0d);
+                return;
             }
 
             if (powerNet <= 0) {
                 // Already net exporting so tariff will not change if we export more
-                return new double[]{tariffExport + assetExportCost, powerMax, 0d};
+                setCostAndPower(costAndPower, tariffExport + assetExportCost, powerMax, 0d);
+                return;
             }
 
             if (powerNet + powerMax > 0d) {
                 // Can't make tariff flip (we're reducing import hence the -1d)
-                return new double[]{(-1d * tariffImport) + assetExportCost, powerMax, 0d};
+                setCostAndPower(costAndPower, (-1d * tariffImport) + assetExportCost, powerMax, 0d);
+                return;
             }
 
             // We can flip tariffs if we export enough power
@@ -714,7 +780,7 @@ public class EnergyOptimiser {
             // Normalise the cost
             cost = cost / (-1d * powerEnd);
 
-            return new double[]{cost, powerEnd, powerStart};
+            setCostAndPower(costAndPower, cost, powerEnd, powerStart);
         };
     }
 
@@ -727,29 +793,44 @@ public class EnergyOptimiser {
      * This is used to determine the best times and power values for importing energy to meet the requirements.
      */
     public BiFunction<Integer, double[], double[]> getImportOptimiser(double[] powerNets, double[] powerNetLimits, double[] tariffImports, double[] tariffExports, double assetImportCost) {
+        IntervalOptimiser importOptimiser = getImportIntervalOptimiser(powerNets, powerNetLimits, tariffImports, tariffExports, assetImportCost);
 
         return (interval, powerRequiredMinMax) -> {
+            double[] costAndPower = new double[3];
+            importOptimiser.apply(interval, powerRequiredMinMax[0], powerRequiredMinMax[1], costAndPower);
+            return costAndPower;
+        };
+    }
+
+    /**
+     * Primitive version of {@link #getImportOptimiser}.
+     */
+    public IntervalOptimiser getImportIntervalOptimiser(double[] powerNets, double[] powerNetLimits, double[] tariffImports, double[] tariffExports, double assetImportCost) {
+
+        return (interval, powerMin, powerRequiredMax, costAndPower) -> {
 
             double powerNet = powerNets[interval];
             double powerNetLimit = powerNetLimits[interval];
             double tariffImport = tariffImports[interval];
             double tariffExport = tariffExports[interval];
-            double powerMin = powerRequiredMinMax[0];
-            double powerMax = Math.min(powerRequiredMinMax[1], powerNetLimit - powerNet);
+            double powerMax = Math.min(powerRequiredMax, powerNetLimit - powerNet);
 
             if (powerMax <= 0d) {
                 // No capacity to import
-                return new double[]{Double.MAX_VALUE, 0d, 0d};
+                setCostAndPower(costAndPower, Double.MAX_VALUE, 0d, 0d);
+                return;
             }
 
             if (powerNet >= 0d) {
                 // Already net importing so tariff will not change if we import more
-                return new double[]{tariffImport + assetImportCost, powerMin, powerMax};
+                setCostAndPower(costAndPower, tariffImport + assetImportCost, powerMin, powerMax);
+                return;
             }
 
             if (powerNet + powerMax < 0d) {
                 // Can't make tariff flip (we're reducing import hence the -1d)
-                return new double[]{(-1d * tariffExport) + assetImportCost, powerMin, powerMax};
+                setCostAndPower(costAndPower, (-1d * tariffExport) + assetImportCost, powerMin, powerMax);
+                return;
             }
 
             // We can flip tariffs if we take enough power
@@ -780,7 +861,63 @@ public class EnergyOptimiser {
             // Normalise the cost
             cost = cost / powerEnd;
 
-            return new double[]{cost, powerStart, powerEnd};
+            setCostAndPower(costAndPower, cost, powerStart, powerEnd);
+        };
+    }
+
+    /**
+     * Calculates the cost and power band of every interval with the supplied optimiser.
+     */
+    public double[][] getCostAndPower(IntervalOptimiser optimiser, double powerMin, double powerMax) {
+        int intervalCount = get24HourIntervalCount();
+        double[][] costAndPower = new double[intervalCount][3];
+        for (int i = 0; i < intervalCount; i++) {
+            optimiser.apply(i, powerMin, powerMax, costAndPower[i]);
+        }
+        return costAndPower;
+    }
+
+    protected static void setCostAndPower(double[] costAndPower, double cost, double power1, double power2) {
+        costAndPower[0] = cost;
+        costAndPower[1] = power1;
+        costAndPower[2] = power2;
+    }
+
+    /**
+     * Stable sort (same order as sorting a list by cost) of the first count intervals by the cost of the interval in
+     * costAndPower; insertion sort as there are at most a few hundred intervals and it doesn't allocate.
+     */
+    protected static void sortByCost(int[] intervals, int count, double[][] costAndPower) {
+        for (int i = 1; i < count; i++) {
+            int interval = intervals[i];
+            double cost = costAndPower[interval][0];
+            int j = i - 1;
+            while (j >= 0 && Double.compare(costAndPower[intervals[j]][0], cost) > 0) {
+                intervals[j + 1] = intervals[j];
+                j--;
+            }
+            intervals[j + 1] = interval;
+        }
+    }
+
+    protected void ensureScratchCapacity(int intervalCount) {
+        if (opportunityIntervals == null || opportunityIntervals.length < intervalCount) {
+            opportunityIntervals = new int[intervalCount];
+            opportunityCostAndPower = new double[intervalCount][];
+            pastOpportunityIntervals = new int[intervalCount];
+            deltaIntervals = new int[intervalCount];
+            deltaPowers = new double[intervalCount];
+        }
+    }
+
+    protected static IntToDoubleFunction toPrimitive(Function<Integer, Double> function) {
+        return function::apply;
+    }
+
+    protected static IntervalOptimiser toIntervalOptimiser(BiFunction<Integer, double[], double[]> optimiser) {
+        return (interval, powerMin, powerMax, costAndPower) -> {
+            double[] result = optimiser.apply(interval, new double[]{powerMin, powerMax});
+            System.arraycopy(result, 0, costAndPower, 0, costAndPower.length);
         };
     }
 }
@@ -6,11 +6,13 @@ import org.jboss.resteasy.client.jaxrs.ResteasyClient;
 import org.jboss.resteasy.client.jaxrs.ResteasyWebTarget;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceEvent;
+import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetProcessingService;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.manager.datapoint.AssetPredictedDatapointService;
 import org.openremote.manager.event.ClientEventService;
+import org.openremote.manager.event.InternalEventSubscriber;
 import org.openremote.manager.gateway.GatewayService;
 import org.openremote.manager.rules.RulesService;
 import org.openremote.model.Container;
@@ -39,8 +41,6 @@ import java.util.logging.Logger;
 
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE;
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_TIME;
-import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
-import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
 import static org.openremote.container.util.MapAccess.getString;
 import static org.openremote.container.web.WebTargetBuilder.createClient;
 import static org.openremote.manager.gateway.GatewayService.isNotForGateway;
@@ -81,6 +81,7 @@ public class ForecastSolarService extends RouteBuilder implements ContainerServi
     protected GatewayService gatewayService;
     protected ClientEventService clientEventService;
     protected RulesService rulesService;
+    protected PersistenceService persistenceService;
     protected TimerService timerService;
 
     protected static final Logger LOG = SyslogCategory.getLogger(DATA, ForecastSolarService.class.getName());
@@ -98,9 +99,8 @@ public class ForecastSolarService extends RouteBuilder implements ContainerServi
     @SuppressWarnings("unchecked")
     @Override
     public void configure() throws Exception {
-        from(PERSISTENCE_TOPIC)
+        from(persistenceService.subscribePersistenceEvents("ForecastSolarAssetPersistenceChanges", ElectricityProducerSolarAsset.class))
                 .routeId("ForecastSolarAssetPersistenceChanges")
-                .filter(isPersistenceEventForEntityType(ElectricityProducerSolarAsset.class))
                 .filter(isNotForGateway(gatewayService))
                 .process(exchange -> processAssetChange((PersistenceEvent<ElectricityProducerSolarAsset>) exchange.getIn().getBody(PersistenceEvent.class)));
     }
@@ -114,6 +114,7 @@ public class ForecastSolarService extends RouteBuilder implements ContainerServi
         clientEventService = container.getService(ClientEventService.class);
         executorService = container.getExecutorService();
         rulesService = container.getService(RulesService.class);
+        persistenceService = container.getService(PersistenceService.class);
         timerService = container.getService(TimerService.class);
 
         forecastSolarApiKey = getString(container.getConfig(), FORECAST_SOLAR_API_KEY, null);
@@ -148,10 +149,12 @@ public class ForecastSolarService extends RouteBuilder implements ContainerServi
 
         electricityProducerSolarAssets.forEach(this::startProcessing);
 
+        // Processing these events updates attributes (publishes events) so must never hold up the publisher
         clientEventService.addInternalSubscription(
                 AttributeEvent.class,
                 null,
-                this::processAttributeEvent);
+                this::processAttributeEvent,
+                InternalEventSubscriber.OverflowPolicy.DROP_OLDEST);
     }
 
     @Override
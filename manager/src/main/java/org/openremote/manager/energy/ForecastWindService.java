@@ -6,10 +6,12 @@ import org.jboss.resteasy.client.jaxrs.ResteasyClient;
 import org.jboss.resteasy.client.jaxrs.ResteasyWebTarget;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceEvent;
+import org.openremote.container.persistence.PersistenceService;
 import org.openremote.manager.asset.AssetProcessingService;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.manager.datapoint.AssetPredictedDatapointService;
 import org.openremote.manager.event.ClientEventService;
+import org.openremote.manager.event.InternalEventSubscriber;
 import org.openremote.manager.gateway.GatewayService;
 import org.openremote.manager.rules.RulesService;
 import org.openremote.model.Container;
@@ -35,8 +37,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
-import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
 import static org.openremote.container.util.MapAccess.getString;
 import static org.openremote.container.web.WebTargetBuilder.createClient;
 import static org.openremote.manager.gateway.GatewayService.isNotForGateway;
@@ -117,6 +117,7 @@ public class ForecastWindService extends RouteBuilder implements ContainerServic
     protected ClientEventService clientEventService;
     protected ScheduledExecutorService executorService;
     protected RulesService rulesService;
+    protected PersistenceService persistenceService;
 
 
     protected static ResteasyClient resteasyClient;
@@ -132,9 +133,8 @@ public class ForecastWindService extends RouteBuilder implements ContainerServic
     @SuppressWarnings("unchecked")
     @Override
     public void configure() throws Exception {
-        from(PERSISTENCE_TOPIC)
+        from(persistenceService.subscribePersistenceEvents("ForecastWindAssetPersistenceChanges", ElectricityProducerWindAsset.class))
                 .routeId("ForecastWindAssetPersistenceChanges")
-                .filter(isPersistenceEventForEntityType(ElectricityProducerWindAsset.class))
                 .filter(isNotForGateway(gatewayService))
                 .process(exchange -> processAssetChange((PersistenceEvent<ElectricityProducerWindAsset>) exchange.getIn().getBody(PersistenceEvent.class)));
     }
@@ -148,6 +148,7 @@ public class ForecastWindService extends RouteBuilder implements ContainerServic
         clientEventService = container.getService(ClientEventService.class);
         executorService = container.getExecutorService();
         rulesService = container.getService(RulesService.class);
+        persistenceService = container.getService(PersistenceService.class);
 
         openWeatherAppId = getString(container.getConfig(), OPEN_WEATHER_API_APP_ID, null);
     }
@@ -185,10 +186,12 @@ public class ForecastWindService extends RouteBuilder implements ContainerServic
 
         electricityProducerWindAssets.forEach(this::startCalculation);
 
+        // Wind forecast calculation updates attributes so drop old events rather than block the event bus
         clientEventService.addInternalSubscription(
                 AttributeEvent.class,
                 null,
-                this::processAttributeEvent);
+                this::processAttributeEvent,
+                InternalEventSubscriber.OverflowPolicy.DROP_OLDEST);
     }
 
     @Override
@@ -19,9 +19,17 @@
  */
 package org.openremote.manager.event;
 
+import org.apache.camel.Endpoint;
 import org.apache.camel.Exchange;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.seda.SedaEndpoint;
+import org.openremote.container.concurrent.ContainerExecutor;
+import org.openremote.container.concurrent.PartitionedExecutor;
 import org.openremote.container.message.MessageBrokerService;
+import org.openremote.container.metrics.CounterMetric;
+import org.openremote.container.metrics.MetricsRegistry;
+import org.openremote.container.metrics.MetricsService;
+import org.openremote.container.metrics.TimerMetric;
 import org.openremote.container.security.AuthContext;
 import org.openremote.container.timer.TimerService;
 import org.openremote.container.web.ConnectionConstants;
@@ -38,13 +46,17 @@ import org.openremote.model.syslog.SyslogEvent;
 import javax.websocket.CloseReason;
 import javax.websocket.Session;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static org.apache.camel.builder.Builder.header;
 import static org.apache.camel.builder.PredicateBuilder.or;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.container.web.ConnectionConstants.SESSION_TERMINATOR;
 
 /**
@@ -88,9 +100,52 @@ import static org.openremote.container.web.ConnectionConstants.SESSION_TERMINATO
  * The payload is an array of {@link SharedEvent}s.
  * </p></dd>
  * </dl>
+ * <p>
+ * Session open/close, subscription and inbound client messages are processed on {@link #CLIENT_EVENT_QUEUE} whilst
+ * events published to clients are processed on {@link #CLIENT_EVENT_OUTBOUND_QUEUE}, so an event storm doesn't delay
+ * control messages. The messages for each subscribed session are then sent by a pool of workers partitioned by session
+ * key, which keeps the order of messages per session.
  */
 public class ClientEventService implements ContainerService {
 
+    /**
+     * Latency (time from the exchange being created to it being processed) of a pipeline.
+     */
+    public static class PipelineMetrics {
+        protected final AtomicLong processed = new AtomicLong();
+        protected final AtomicLong totalLatencyMillis = new AtomicLong();
+        protected final AtomicLong maxLatencyMillis = new AtomicLong();
+
+        protected void record(long latencyMillis) {
+            latencyMillis = Math.max(0L, latencyMillis);
+            processed.incrementAndGet();
+            totalLatencyMillis.addAndGet(latencyMillis);
+            maxLatencyMillis.accumulateAndGet(latencyMillis, Math::max);
+        }
+
+        public long getProcessed() {
+            return processed.get();
+        }
+
+        public long getAverageLatencyMillis() {
+            long count = processed.get();
+            return count > 0 ? totalLatencyMillis.get() / count : 0L;
+        }
+
+        public long getMaxLatencyMillis() {
+            return maxLatencyMillis.get();
+        }
+
+        @Override
+        public String toString() {
+            return "{" +
+                "processed=" + getProcessed() +
+                ", averageLatencyMillis=" + getAverageLatencyMillis() +
+                ", maxLatencyMillis=" + getMaxLatencyMillis() +
+                '}';
+        }
+    }
+
     protected static class SessionInfo {
         String connectionType;
         Runnable closeRunnable;
@@ -106,6 +161,8 @@ public class ClientEventService implements ContainerService {
     public static final String HEADER_CONNECTION_TYPE_WEBSOCKET = ClientEventService.class.getName() + ".HEADER_CONNECTION_TYPE_WEBSOCKET";
     public static final String HEADER_CONNECTION_TYPE_MQTT = ClientEventService.class.getName() + ".HEADER_CONNECTION_TYPE_MQTT";
     public static final String HEADER_REQUEST_RESPONSE_MESSAGE_ID = ClientEventService.class.getName() + ".HEADER_REQUEST_RESPONSE_MESSAGE_ID";
+    protected static final String HEADER_PUBLISHED_MILLIS = ClientEventService.class.getName() + ".HEADER_PUBLISHED_MILLIS";
+    protected static final String HEADER_INTERCEPTED = ClientEventService.class.getName() + ".HEADER_INTERCEPTED";
     private static final Logger LOG = Logger.getLogger(ClientEventService.class.getName());
     public static final String WEBSOCKET_EVENTS = "events";
     protected static final String INTERNAL_SESSION_KEY = "ClientEventServiceInternal";
@@ -115,9 +172,17 @@ public class ClientEventService implements ContainerService {
 
     public static final String CLIENT_EVENT_QUEUE = "seda://ClientEventQueue?multipleConsumers=false&waitForTaskToComplete=NEVER&purgeWhenStopping=true&discardIfNoConsumers=true&size=25000";
 
+    public static final String CLIENT_EVENT_OUTBOUND_QUEUE = "seda://ClientEventOutboundQueue?multipleConsumers=false&waitForTaskToComplete=NEVER&purgeWhenStopping=true&discardIfNoConsumers=true&size=25000";
+
+    public static final String CLIENT_EVENT_FAN_OUT_THREADS = "CLIENT_EVENT_FAN_OUT_THREADS";
+    public static final int CLIENT_EVENT_FAN_OUT_THREADS_DEFAULT = Math.max(Runtime.getRuntime().availableProcessors() / 2, 2);
+    public static final int CLIENT_EVENT_FAN_OUT_PARTITION_QUEUE_SIZE = 25000;
+    public static final String INTERNAL_EVENT_SUBSCRIBER_QUEUE_SIZE = "INTERNAL_EVENT_SUBSCRIBER_QUEUE_SIZE";
+    public static final int INTERNAL_EVENT_SUBSCRIBER_QUEUE_SIZE_DEFAULT = 10000;
+
     final protected Collection<EventSubscriptionAuthorizer> eventSubscriptionAuthorizers = new CopyOnWriteArraySet<>();
     final protected Collection<Consumer<Exchange>> exchangeInterceptors = new CopyOnWriteArraySet<>();
-    protected Map<String, SessionInfo> sessionKeyInfoMap = new HashMap<>();
+    protected Map<String, SessionInfo> sessionKeyInfoMap = new ConcurrentHashMap<>();
     protected TimerService timerService;
     protected MessageBrokerService messageBrokerService;
     protected ManagerIdentityService identityService;
@@ -125,6 +190,15 @@ public class ClientEventService implements ContainerService {
     protected GatewayService gatewayService;
     protected Set<EventSubscription<?>> pendingInternalSubscriptions;
     protected boolean stopped;
+    protected PartitionedExecutor fanOutExecutor;
+    protected final Map<String, InternalEventSubscriber<?>> internalSubscribers = new ConcurrentHashMap<>();
+    protected ContainerExecutor internalSubscriberExecutor = new ContainerExecutor("Internal event subscriber");
+    protected int internalSubscriberQueueSize = INTERNAL_EVENT_SUBSCRIBER_QUEUE_SIZE_DEFAULT;
+    protected final PipelineMetrics controlMetrics = new PipelineMetrics();
+    protected final PipelineMetrics fanOutMetrics = new PipelineMetrics();
+    protected TimerMetric fanOutLatencyTimer;
+    protected CounterMetric websocketEventsSent;
+    protected CounterMetric mqttEventsSent;
 
     /**
      * Method to stop further processing of the exchange
@@ -141,6 +215,11 @@ public class ClientEventService implements ContainerService {
         return exchange.getIn().getHeader(ConnectionConstants.SESSION_KEY, String.class);
     }
 
+    protected static long getCreatedMillis(Exchange exchange) {
+        Date created = exchange.getProperty(Exchange.CREATED_TIMESTAMP, Date.class);
+        return created != null ? created.getTime() : System.currentTimeMillis();
+    }
+
     public static String getClientId(Exchange exchange) {
         AuthContext authContext = exchange.getIn().getHeader(Constants.AUTH_CONTEXT, AuthContext.class);
         if(authContext != null) {
@@ -165,6 +244,23 @@ public class ClientEventService implements ContainerService {
             container.getService(TimerService.class)
         );
 
+        internalSubscriberQueueSize = getInteger(container.getConfig(), INTERNAL_EVENT_SUBSCRIBER_QUEUE_SIZE, INTERNAL_EVENT_SUBSCRIBER_QUEUE_SIZE_DEFAULT);
+
+        fanOutExecutor = new PartitionedExecutor(
+            "Client event fan out",
+            getInteger(container.getConfig(), CLIENT_EVENT_FAN_OUT_THREADS, CLIENT_EVENT_FAN_OUT_THREADS_DEFAULT),
+            CLIENT_EVENT_FAN_OUT_PARTITION_QUEUE_SIZE
+        );
+
+        MetricsRegistry metricsRegistry = MetricsService.getRegistry(container);
+        fanOutLatencyTimer = metricsRegistry.timer("or_client_event_fan_out_latency_seconds", "Time from an event being published to it being sent to a subscribed session");
+        websocketEventsSent = metricsRegistry.counter("or_client_events_sent_total", "Messages sent to client sessions", "transport", "websocket");
+        mqttEventsSent = metricsRegistry.counter("or_client_events_sent_total", "Messages sent to client sessions", "transport", "mqtt");
+        metricsRegistry.gauge("or_client_event_fan_out_queue_depth", "Messages waiting to be sent to client sessions", () -> fanOutExecutor.getQueueDepth());
+        metricsRegistry.gauge("or_client_event_fan_out_dropped", "Messages to client sessions discarded because the session's fan out partition was full", () -> fanOutExecutor.getRejectedTasks());
+        metricsRegistry.gauge("or_internal_event_subscriber_queue_depth", "Events waiting to be passed to internal subscribers", () ->
+            internalSubscribers.values().stream().mapToInt(InternalEventSubscriber::getQueuedEvents).sum());
+
         messageBrokerService.getContext().getTypeConverterRegistry().addTypeConverters(
             new EventTypeConverters()
         );
@@ -182,6 +278,7 @@ public class ClientEventService implements ContainerService {
 
                 from(ClientEventService.CLIENT_EVENT_QUEUE)
                     .routeId("ClientEvents")
+                    .process(exchange -> controlMetrics.record(System.currentTimeMillis() - getCreatedMillis(exchange)))
                     .choice()
                     .when(header(ConnectionConstants.SESSION_OPEN))
                         .process(exchange -> {
@@ -197,7 +294,8 @@ public class ClientEventService implements ContainerService {
                         .process(exchange -> {
                             String sessionKey = getSessionKey(exchange);
                             sessionKeyInfoMap.remove(sessionKey);
-                            eventSubscriptions.cancelAll(sessionKey);
+                            // After any subscription changes still waiting on the session's fan out partition
+                            fanOutExecutor.executeGuaranteed(sessionKey, () -> eventSubscriptions.cancelAll(sessionKey));
                             passToInterceptors(exchange);
                         })
                         .stop()
@@ -249,22 +347,29 @@ public class ClientEventService implements ContainerService {
                             String realm = exchange.getIn().getHeader(Constants.REALM_PARAM_NAME, String.class);
 
                             if (authorizeEventSubscription(realm, authContext, subscription)) {
-                                eventSubscriptions.createOrUpdate(sessionKey, restrictedUser, anonymousUser, subscription);
-                                subscription.setSubscribed(true);
-                                sendToSession(sessionKey, subscription);
+                                // Subscribe on the session's fan out partition so the response is sent before any
+                                // event matching the subscription can be queued for the session
+                                fanOutExecutor.executeGuaranteed(sessionKey, () -> {
+                                    eventSubscriptions.createOrUpdate(sessionKey, restrictedUser, anonymousUser, subscription);
+                                    subscription.setSubscribed(true);
+                                    sendToSession(sessionKey, subscription);
+                                });
                             } else {
                                 LOG.warning("Unauthorized subscription from '"
                                         + username + "' in realm '" + realm
                                         + "': " + subscription
                                 );
-                                sendToSession(sessionKey, new UnauthorizedEventSubscription<>(subscription));
+                                UnauthorizedEventSubscription<?> unauthorized = new UnauthorizedEventSubscription<>(subscription);
+                                fanOutExecutor.executeGuaranteed(sessionKey, () -> sendToSession(sessionKey, unauthorized));
                             }
                         })
                         .stop()
                     .when(body().isInstanceOf(CancelEventSubscription.class))
                         .process(exchange -> {
                             String sessionKey = getSessionKey(exchange);
-                            eventSubscriptions.cancel(sessionKey, exchange.getIn().getBody(CancelEventSubscription.class));
+                            CancelEventSubscription cancelSubscription = exchange.getIn().getBody(CancelEventSubscription.class);
+                            // Keeps the cancellation in order with a subscription still waiting on the partition
+                            fanOutExecutor.executeGuaranteed(sessionKey, () -> eventSubscriptions.cancel(sessionKey, cancelSubscription));
                         })
                         .stop()
                     .when(body().isInstanceOf(SharedEvent.class))
@@ -273,16 +378,47 @@ public class ClientEventService implements ContainerService {
                                 .to(ClientEventService.CLIENT_EVENT_TOPIC)
                                 .stop()
                             .when(header(HEADER_CONNECTION_TYPE).isNull()) // Outbound message to clients
-                                .split(method(eventSubscriptions, "splitForSubscribers"))
-                                .process(exchange -> {
-                                    String sessionKey = getSessionKey(exchange);
-                                    sendToSession(sessionKey, exchange.getIn().getBody());
-                                })
+                                .setHeader(HEADER_INTERCEPTED, constant(true))
+                                .to(ClientEventService.CLIENT_EVENT_OUTBOUND_QUEUE)
                                 .stop()
                         .endChoice()
                     .otherwise()
                         .process(exchange -> LOG.info("Unsupported message body: " + exchange.getIn().getBody()))
                     .end();
+
+                from(ClientEventService.CLIENT_EVENT_OUTBOUND_QUEUE)
+                    .routeId("ClientEventsOutbound")
+                    .filter(body().isInstanceOf(SharedEvent.class))
+                    .process(exchange -> {
+                        SharedEvent event = exchange.getIn().getBody(SharedEvent.class);
+                        // If there is no timestamp in event, set to system time
+                        if (event.getTimestamp() <= 0) {
+                            event.setTimestamp(timerService.getCurrentTimeMillis());
+                        }
+                        // Split messages get the headers of this exchange so use a header to track publish time
+                        exchange.getIn().setHeader(HEADER_PUBLISHED_MILLIS, getCreatedMillis(exchange));
+                    })
+                    .process(exchange -> {
+                        // Events routed here from the control pipeline have already been intercepted
+                        if (exchange.getIn().getHeader(HEADER_INTERCEPTED) == null) {
+                            passToInterceptors(exchange);
+                        }
+                    })
+                    .split(method(eventSubscriptions, "splitForSubscribers"))
+                    .process(exchange -> {
+                        String sessionKey = getSessionKey(exchange);
+                        Object body = exchange.getIn().getBody();
+                        Long publishedMillis = exchange.getIn().getHeader(HEADER_PUBLISHED_MILLIS, Long.class);
+                        fanOutExecutor.execute(sessionKey, () -> {
+                            if (publishedMillis != null) {
+                                long latencyMillis = System.currentTimeMillis() - publishedMillis;
+                                fanOutMetrics.record(latencyMillis);
+                                fanOutLatencyTimer.record(latencyMillis, TimeUnit.MILLISECONDS);
+                            }
+                            sendToSession(sessionKey, body);
+                        });
+                    })
+                    .end();
             }
         });
 
@@ -296,14 +432,29 @@ public class ClientEventService implements ContainerService {
     }
 
     /**
-     * Make an internal subscription to {@link SharedEvent}s sent on the client event bus
+     * Make an internal subscription to {@link SharedEvent}s sent on the client event bus; events are passed to the
+     * consumer asynchronously in order, see {@link InternalEventSubscriber}. Callers should choose the {@link
+     * InternalEventSubscriber.OverflowPolicy} that suits the consumer; without one the oldest events are dropped when
+     * the subscriber falls too far behind so publishing is never held up.
      */
     public <T extends SharedEvent> String addInternalSubscription(Class<T> eventClass, EventFilter<T> filter, Consumer<T> eventConsumer) {
-        return addInternalSubscription(Integer.toString(Objects.hash(eventClass, filter, eventConsumer)), eventClass, filter, eventConsumer);
+        return addInternalSubscription(eventClass, filter, eventConsumer, InternalEventSubscriber.OverflowPolicy.DROP_OLDEST);
+    }
+    public <T extends SharedEvent> String addInternalSubscription(Class<T> eventClass, EventFilter<T> filter, Consumer<T> eventConsumer, InternalEventSubscriber.OverflowPolicy overflowPolicy) {
+        return addInternalSubscription(Integer.toString(Objects.hash(eventClass, filter, eventConsumer)), eventClass, filter, eventConsumer, overflowPolicy);
     }
     public <T extends SharedEvent> String addInternalSubscription(String subscriptionId, Class<T> eventClass, EventFilter<T> filter, Consumer<T> eventConsumer) {
+        return addInternalSubscription(subscriptionId, eventClass, filter, eventConsumer, InternalEventSubscriber.OverflowPolicy.DROP_OLDEST);
+    }
+    public <T extends SharedEvent> String addInternalSubscription(String subscriptionId, Class<T> eventClass, EventFilter<T> filter, Consumer<T> eventConsumer, InternalEventSubscriber.OverflowPolicy overflowPolicy) {
+
+        InternalEventSubscriber<T> subscriber = new InternalEventSubscriber<>(subscriptionId, eventConsumer, internalSubscriberExecutor, internalSubscriberQueueSize, overflowPolicy);
+        InternalEventSubscriber<?> previous = internalSubscribers.put(subscriptionId, subscriber);
+        if (previous != null) {
+            previous.cancel();
+        }
 
-        EventSubscription<T> subscription = new EventSubscription<T>(eventClass, filter, subscriptionId, eventConsumer);
+        EventSubscription<T> subscription = new EventSubscription<T>(eventClass, filter, subscriptionId, subscriber);
         if (eventSubscriptions == null) {
             // Not initialised yet
             if (pendingInternalSubscriptions == null) {
@@ -318,6 +469,17 @@ public class ClientEventService implements ContainerService {
 
     public void cancelInternalSubscription(String subscriptionId) {
         eventSubscriptions.cancel(INTERNAL_SESSION_KEY, new CancelEventSubscription(subscriptionId));
+        InternalEventSubscriber<?> subscriber = internalSubscribers.remove(subscriptionId);
+        if (subscriber != null) {
+            subscriber.cancel();
+        }
+    }
+
+    /**
+     * The internal subscribers with their queue and lag metrics.
+     */
+    public Collection<InternalEventSubscriber<?>> getInternalSubscribers() {
+        return Collections.unmodifiableCollection(internalSubscribers.values());
     }
 
     @Override
@@ -328,6 +490,11 @@ public class ClientEventService implements ContainerService {
     @Override
     public void stop(Container container) {
         stopped = true;
+        if (fanOutExecutor != null) {
+            fanOutExecutor.shutdownNow();
+        }
+        internalSubscribers.values().forEach(InternalEventSubscriber::cancel);
+        internalSubscriberExecutor.shutdownNow();
     }
 
     public void addExchangeInterceptor(Consumer<Exchange> exchangeInterceptor) throws RuntimeException {
@@ -359,7 +526,7 @@ public class ClientEventService implements ContainerService {
                 LOG.finer("Publishing: " + event);
             }
             messageBrokerService.getProducerTemplate()
-                .sendBody(CLIENT_EVENT_QUEUE, event);
+                .sendBody(CLIENT_EVENT_OUTBOUND_QUEUE, event);
         }
     }
 
@@ -377,12 +544,18 @@ public class ClientEventService implements ContainerService {
                         data,
                         ConnectionConstants.SESSION_KEY, sessionKey
                 );
+                if (websocketEventsSent != null) {
+                    websocketEventsSent.increment();
+                }
             } else if (sessionInfo.connectionType.equals(HEADER_CONNECTION_TYPE_MQTT)) {
                 messageBrokerService.getProducerTemplate().sendBodyAndHeader(
                         MqttBrokerService.MQTT_CLIENT_QUEUE,
                         data,
                         ConnectionConstants.SESSION_KEY, sessionKey
                 );
+                if (mqttEventsSent != null) {
+                    mqttEventsSent.increment();
+                }
             }
         }
     }
@@ -410,9 +583,46 @@ public class ClientEventService implements ContainerService {
         }));
     }
 
+    /**
+     * Messages waiting on the control pipeline (session open/close, subscriptions and inbound client events).
+     */
+    public int getControlQueueDepth() {
+        return getQueueSize(CLIENT_EVENT_QUEUE);
+    }
+
+    /**
+     * Events waiting to be split for subscribers plus messages waiting to be sent to sessions.
+     */
+    public int getFanOutQueueDepth() {
+        return getQueueSize(CLIENT_EVENT_OUTBOUND_QUEUE) + (fanOutExecutor != null ? fanOutExecutor.getQueueDepth() : 0);
+    }
+
+    public PipelineMetrics getControlMetrics() {
+        return controlMetrics;
+    }
+
+    /**
+     * Latency is the time from an event being published to it being sent to a subscribed session.
+     */
+    public PipelineMetrics getFanOutMetrics() {
+        return fanOutMetrics;
+    }
+
+    protected int getQueueSize(String endpointUri) {
+        if (messageBrokerService == null || messageBrokerService.getContext() == null) {
+            return 0;
+        }
+        Endpoint endpoint = messageBrokerService.getContext().hasEndpoint(endpointUri);
+        return endpoint instanceof SedaEndpoint ? ((SedaEndpoint) endpoint).getCurrentQueueSize() : 0;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "{" +
+            "controlQueueDepth=" + getControlQueueDepth() +
+            ", control=" + controlMetrics +
+            ", fanOutQueueDepth=" + getFanOutQueueDepth() +
+            ", fanOut=" + fanOutMetrics +
             '}';
     }
 
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.event;
+
+import org.openremote.model.event.shared.SharedEvent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivers the events of an internal subscription (see {@link ClientEventService#addInternalSubscription}) to its
+ * consumer asynchronously so a slow consumer can't hold up delivery to other subscribers. Events are held in a bounded
+ * queue and passed to the consumer one at a time in order on the executor; when the queue is full the {@link
+ * OverflowPolicy} decides whether the publisher waits or which event is dropped.
+ */
+public class InternalEventSubscriber<T extends SharedEvent> implements Consumer<T> {
+
+    public enum OverflowPolicy {
+        /**
+         * Wait for space in the queue so no events are lost; this holds up the publishing thread, and so delivery to
+         * all other subscribers and client sessions, whilst the queue is full. Only for consumers that must see every
+         * event, are quick and never publish events themselves (which would deadlock once the queue is full).
+         */
+        BLOCK,
+        /**
+         * Drop the oldest queued event to make room for the new one (the default).
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the new event.
+         */
+        DROP_NEWEST
+    }
+
+    protected static class QueuedEvent<T> {
+        final T event;
+        final long queuedNanos;
+
+        QueuedEvent(T event, long queuedNanos) {
+            this.event = event;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger(InternalEventSubscriber.class.getName());
+    protected final String subscriptionId;
+    protected final Consumer<T> consumer;
+    protected final Executor executor;
+    protected final int queueSize;
+    protected final OverflowPolicy overflowPolicy;
+    protected final Queue<QueuedEvent<T>> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * Entries in {@link #queue}; whoever increments this from zero is responsible for delivering.
+     */
+    protected final AtomicInteger queuedCount = new AtomicInteger();
+    /**
+     * Free space in {@link #queue} when using {@link OverflowPolicy#BLOCK}.
+     */
+    protected final Semaphore space;
+    protected volatile boolean cancelled;
+
+    // Metrics
+    protected final AtomicLong deliveredEvents = new AtomicLong();
+    protected final AtomicLong droppedEvents = new AtomicLong();
+    protected final AtomicLong lastLagNanos = new AtomicLong();
+    protected final AtomicLong maxLagNanos = new AtomicLong();
+
+    public InternalEventSubscriber(String subscriptionId, Consumer<T> consumer, Executor executor, int queueSize, OverflowPolicy overflowPolicy) {
+        this.subscriptionId = subscriptionId;
+        this.consumer = consumer;
+        this.executor = executor;
+        this.queueSize = Math.max(1, queueSize);
+        this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.DROP_OLDEST;
+        this.space = this.overflowPolicy == OverflowPolicy.BLOCK ? new Semaphore(this.queueSize) : null;
+    }
+
+    @Override
+    public void accept(T event) {
+        if (cancelled) {
+            return;
+        }
+
+        if (overflowPolicy == OverflowPolicy.DROP_NEWEST && queuedCount.get() >= queueSize) {
+            dropped(event);
+            return;
+        }
+
+        if (space != null) {
+            try {
+                space.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped(event);
+                return;
+            }
+            if (cancelled) {
+                space.release();
+                return;
+            }
+        }
+
+        queue.add(new QueuedEvent<>(event, System.nanoTime()));
+        int count = queuedCount.incrementAndGet();
+
+        if (count == 1) {
+            deliverAsync();
+            return;
+        }
+
+        if (count > queueSize) {
+            // Only reachable with DROP_OLDEST (or a DROP_NEWEST race) as BLOCK waits for space so remove the head to get back to size; a
+            // delivery is already running as the count wasn't zero and it keeps going until the count is
+            QueuedEvent<T> oldest = queue.poll();
+            if (oldest != null) {
+                queuedCount.decrementAndGet();
+                dropped(oldest.event);
+            }
+        }
+    }
+
+    protected void dropped(T event) {
+        if (droppedEvents.getAndIncrement() % queueSize == 0) {
+            LOG.warning("Internal event subscriber '" + subscriptionId + "' is too slow so dropping events, last dropped: " + event);
+        }
+    }
+
+    protected void deliverAsync() {
+        try {
+            executor.execute(this::deliver);
+        } catch (RejectedExecutionException e) {
+            LOG.fine("Executor rejected internal event delivery so discarding queued events: " + subscriptionId);
+            clear();
+        }
+    }
+
+    protected void deliver() {
+        int count = queuedCount.get();
+
+        while (count > 0) {
+            QueuedEvent<T> queuedEvent = queue.poll();
+            if (queuedEvent == null) {
+                // Dropped or cleared
+                count = queuedCount.get();
+                continue;
+            }
+
+            long lagNanos = System.nanoTime() - queuedEvent.queuedNanos;
+            lastLagNanos.set(lagNanos);
+            maxLagNanos.accumulateAndGet(lagNanos, Math::max);
+
+            if (!cancelled) {
+                try {
+                    consumer.accept(queuedEvent.event);
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Internal event subscriber '" + subscriptionId + "' failed to consume: " + queuedEvent.event, e);
+                }
+                deliveredEvents.incrementAndGet();
+            }
+
+            count = queuedCount.decrementAndGet();
+            if (space != null) {
+                space.release();
+            }
+        }
+    }
+
+    /**
+     * Stops delivery and discards the queued events.
+     */
+    public void cancel() {
+        cancelled = true;
+        clear();
+    }
+
+    protected void clear() {
+        while (queue.poll() != null) {
+            queuedCount.decrementAndGet();
+            if (space != null) {
+                space.release();
+            }
+        }
+    }
+
+    public String getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getQueuedEvents() {
+        return queuedCount.get();
+    }
+
+    public long getDeliveredEvents() {
+        return deliveredEvents.get();
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * How long the oldest queued event has been waiting, or 0 if nothing is queued.
+     */
+    public long getLagMillis() {
+        QueuedEvent<T> oldest = queue.peek();
+        return oldest != null ? TimeUnit.NANOSECONDS.toMillis(Math.max(0L, System.nanoTime() - oldest.queuedNanos)) : 0L;
+    }
+
+    /**
+     * How long the last delivered event waited in the queue.
+     */
+    public long getLastLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastLagNanos.get());
+    }
+
+    public long getMaxLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "subscriptionId='" + subscriptionId + '\'' +
+            ", queued=" + getQueuedEvents() +
+            ", delivered=" + getDeliveredEvents() +
+            ", dropped=" + getDroppedEvents() +
+            ", lagMillis=" + getLagMillis() +
+            ", maxLagMillis=" + getMaxLagMillis() +
+            '}';
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.gateway;
+
+import org.openremote.container.persistence.PersistenceService;
+import org.openremote.container.timer.TimerService;
+import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.gateway.GatewayBatchEvent;
+import org.openremote.model.syslog.SyslogCategory;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.GATEWAY;
+
+/**
+ * Batches {@link SharedEvent}s destined for a central manager into compressed {@link GatewayBatchEvent}s; a batch is
+ * sent when it reaches {@link #maxBatchEvents} or {@link #maxBatchDelayMillis} after the first event was added
+ * (whichever comes first).
+ * <p>
+ * Whilst the gateway client is not connected batches are written to the <code>GATEWAY_EVENT_BUFFER</code> table
+ * (bounded by {@link #maxBufferedEvents}, oldest batches are dropped first) and they are replayed in order once the
+ * client reconnects; new batches are appended to the buffer until the replay has caught up so ordering is maintained.
+ */
+public class GatewayClientEventForwarder {
+
+    private static final Logger LOG = SyslogCategory.getLogger(GATEWAY, GatewayClientEventForwarder.class.getName());
+    protected static final int REPLAY_BATCH_ROWS = 50;
+    protected final String realm;
+    protected final PersistenceService persistenceService;
+    protected final TimerService timerService;
+    protected final ScheduledExecutorService executorService;
+    protected final BooleanSupplier connectedSupplier;
+    protected final Consumer<GatewayBatchEvent> batchSender;
+    protected final int maxBatchEvents;
+    protected final int maxBatchDelayMillis;
+    protected final long maxBufferedEvents;
+    protected final List<SharedEvent> pendingEvents = new ArrayList<>();
+    protected ScheduledFuture<?> flushFuture;
+    protected boolean replaying;
+    protected boolean stopped;
+    protected long bufferedEvents;
+
+    // Metrics
+    protected final AtomicLong sentEvents = new AtomicLong();
+    protected final AtomicLong sentBatches = new AtomicLong();
+    protected final AtomicLong sentBytes = new AtomicLong();
+    protected final AtomicLong uncompressedBytes = new AtomicLong();
+    protected final AtomicLong droppedEvents = new AtomicLong();
+    protected final long startTimeMillis;
+
+    public GatewayClientEventForwarder(String realm,
+                                       PersistenceService persistenceService,
+                                       TimerService timerService,
+                                       ScheduledExecutorService executorService,
+                                       BooleanSupplier connectedSupplier,
+                                       Consumer<GatewayBatchEvent> batchSender,
+                                       int maxBatchEvents,
+                                       int maxBatchDelayMillis,
+                                       long maxBufferedEvents) {
+        this.realm = realm;
+        this.persistenceService = persistenceService;
+        this.timerService = timerService;
+        this.executorService = executorService;
+        this.connectedSupplier = connectedSupplier;
+        this.batchSender = batchSender;
+        this.maxBatchEvents = Math.max(1, maxBatchEvents);
+        this.maxBatchDelayMillis = Math.max(0, maxBatchDelayMillis);
+        this.maxBufferedEvents = maxBufferedEvents;
+        this.startTimeMillis = timerService.getCurrentTimeMillis();
+        this.bufferedEvents = getStoredEventCount();
+    }
+
+    public void addEvent(SharedEvent event) {
+        boolean batchFull;
+
+        synchronized (pendingEvents) {
+            if (stopped) {
+                return;
+            }
+
+            pendingEvents.add(event);
+            batchFull = pendingEvents.size() >= maxBatchEvents;
+
+            if (!batchFull && flushFuture == null) {
+                flushFuture = executorService.schedule(this::flush, maxBatchDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (batchFull) {
+            flush();
+        }
+    }
+
+    /**
+     * Send or buffer any pending events; batches are created and sent whilst holding this instance's monitor so they
+     * leave in the same order as the events were added.
+     */
+    public synchronized void flush() {
+        List<SharedEvent> events;
+
+        synchronized (pendingEvents) {
+            if (flushFuture != null) {
+                flushFuture.cancel(false);
+                flushFuture = null;
+            }
+            if (pendingEvents.isEmpty()) {
+                return;
+            }
+            events = new ArrayList<>(pendingEvents);
+            pendingEvents.clear();
+        }
+
+        GatewayBatchEvent batch;
+        try {
+            batch = GatewayBatchEvent.create(timerService.getCurrentTimeMillis(), events);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to create gateway event batch so dropping " + events.size() + " event(s): Realm=" + realm, e);
+            droppedEvents.addAndGet(events.size());
+            return;
+        }
+
+        if (!replaying && connectedSupplier.getAsBoolean()) {
+            send(batch, batch.getUncompressedSize());
+        } else {
+            store(batch);
+        }
+    }
+
+    /**
+     * Called when the gateway client connects; replays buffered batches on the executor.
+     */
+    public void onConnected() {
+        synchronized (this) {
+            if (replaying || bufferedEvents <= 0) {
+                return;
+            }
+            LOG.info("Replaying " + bufferedEvents + " buffered gateway event(s) to central manager: Realm=" + realm);
+            replaying = true;
+        }
+        executorService.execute(this::replay);
+    }
+
+    /**
+     * Flushes pending events (buffering them if not connected) and stops accepting new events.
+     */
+    public void stop() {
+        flush();
+        synchronized (pendingEvents) {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Removes any buffered batches for this realm.
+     */
+    public void purge() {
+        synchronized (this) {
+            persistenceService.doTransaction(em ->
+                em.createNativeQuery("delete from GATEWAY_EVENT_BUFFER where LOCAL_REALM = ?")
+                    .setParameter(1, realm)
+                    .executeUpdate());
+            bufferedEvents = 0;
+        }
+    }
+
+    protected void replay() {
+        while (true) {
+            synchronized (this) {
+                if (!connectedSupplier.getAsBoolean()) {
+                    LOG.info("Gateway client disconnected during replay, remaining events stay buffered: Realm=" + realm);
+                    replaying = false;
+                    return;
+                }
+
+                List<Object[]> rows;
+                try {
+                    rows = persistenceService.doReturningTransaction(em -> {
+                        @SuppressWarnings("unchecked")
+                        List<Object[]> result = em.createNativeQuery(
+                            "select ID, TIMESTAMP, EVENT_COUNT, DATA from GATEWAY_EVENT_BUFFER where LOCAL_REALM = ? order by ID")
+                            .setParameter(1, realm)
+                            .setMaxResults(REPLAY_BATCH_ROWS)
+                            .getResultList();
+                        return result;
+                    });
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Failed to read buffered gateway events: Realm=" + realm, e);
+                    replaying = false;
+                    return;
+                }
+
+                if (rows.isEmpty()) {
+                    bufferedEvents = 0;
+                    replaying = false;
+                    LOG.info("Finished replaying buffered gateway events: Realm=" + realm);
+                    return;
+                }
+
+                long lastId = 0;
+                for (Object[] row : rows) {
+                    lastId = ((Number) row[0]).longValue();
+                    int count = ((Number) row[2]).intValue();
+                    GatewayBatchEvent batch = new GatewayBatchEvent(
+                        (Timestamp) row[1],
+                        count,
+                        (byte[]) row[3]);
+                    send(batch, 0);
+                    bufferedEvents = Math.max(0, bufferedEvents - count);
+                }
+
+                long deleteToId = lastId;
+                persistenceService.doTransaction(em ->
+                    em.createNativeQuery("delete from GATEWAY_EVENT_BUFFER where LOCAL_REALM = ? and ID <= ?")
+                        .setParameter(1, realm)
+                        .setParameter(2, deleteToId)
+                        .executeUpdate());
+            }
+        }
+    }
+
+    protected void send(GatewayBatchEvent batch, int uncompressedSize) {
+        batchSender.accept(batch);
+        sentBatches.incrementAndGet();
+        sentEvents.addAndGet(batch.getCount());
+        if (uncompressedSize > 0) {
+            sentBytes.addAndGet(batch.getData().length);
+            uncompressedBytes.addAndGet(uncompressedSize);
+        }
+    }
+
+    protected void store(GatewayBatchEvent batch) {
+        try {
+            persistenceService.doTransaction(em -> {
+                em.createNativeQuery("insert into GATEWAY_EVENT_BUFFER (LOCAL_REALM, TIMESTAMP, EVENT_COUNT, DATA) values (?, ?, ?, ?)")
+                    .setParameter(1, realm)
+                    .setParameter(2, new Timestamp(batch.getTimestamp()))
+                    .setParameter(3, batch.getCount())
+                    .setParameter(4, batch.getData())
+                    .executeUpdate();
+            });
+            bufferedEvents += batch.getCount();
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to buffer gateway event batch so dropping " + batch.getCount() + " event(s): Realm=" + realm, e);
+            droppedEvents.addAndGet(batch.getCount());
+            return;
+        }
+
+        if (maxBufferedEvents > 0 && bufferedEvents > maxBufferedEvents) {
+            trimBuffer();
+        }
+    }
+
+    /**
+     * Drops the oldest buffered batches until the buffer is within {@link #maxBufferedEvents}.
+     */
+    protected void trimBuffer() {
+        try {
+            long[] dropped = persistenceService.doReturningTransaction(em -> {
+                long toDrop = bufferedEvents - maxBufferedEvents;
+                long droppedCount = 0;
+                long droppedRows = 0;
+
+                @SuppressWarnings("unchecked")
+                List<Object[]> rows = em.createNativeQuery(
+                    "select ID, EVENT_COUNT from GATEWAY_EVENT_BUFFER where LOCAL_REALM = ? order by ID")
+                    .setParameter(1, realm)
+                    .setMaxResults(REPLAY_BATCH_ROWS * 10)
+                    .getResultList();
+
+                long lastId = -1;
+                for (Object[] row : rows) {
+                    if (droppedCount >= toDrop) {
+                        break;
+                    }
+                    lastId = ((Number) row[0]).longValue();
+                    droppedCount += ((Number) row[1]).intValue();
+                    droppedRows++;
+                }
+
+                if (lastId >= 0) {
+                    em.createNativeQuery("delete from GATEWAY_EVENT_BUFFER where LOCAL_REALM = ? and ID <= ?")
+                        .setParameter(1, realm)
+                        .setParameter(2, lastId)
+                        .executeUpdate();
+                }
+                return new long[] {droppedCount, droppedRows};
+            });
+
+            bufferedEvents -= dropped[0];
+            droppedEvents.addAndGet(dropped[0]);
+            LOG.fine("Gateway event buffer full so dropped oldest " + dropped[1] + " batch(es) containing " + dropped[0] + " event(s): Realm=" + realm);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to trim gateway event buffer: Realm=" + realm, e);
+        }
+    }
+
+    protected long getStoredEventCount() {
+        try {
+            return persistenceService.doReturningTransaction(em ->
+                ((Number) em.createNativeQuery("select coalesce(sum(EVENT_COUNT), 0) from GATEWAY_EVENT_BUFFER where LOCAL_REALM = ?")
+                    .setParameter(1, realm)
+                    .getSingleResult()).longValue());
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to get buffered gateway event count: Realm=" + realm, e);
+            return 0L;
+        }
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    public synchronized long getBufferedEvents() {
+        return bufferedEvents;
+    }
+
+    public long getSentEvents() {
+        return sentEvents.get();
+    }
+
+    public long getSentBatches() {
+        return sentBatches.get();
+    }
+
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * Ratio of uncompressed to compressed bytes for live (non replayed) batches.
+     */
+    public double getCompressionRatio() {
+        long compressed = sentBytes.get();
+        return compressed > 0 ? (double) uncompressedBytes.get() / compressed : 0d;
+    }
+
+    /**
+     * Average events per second sent to the central manager since this forwarder was created.
+     */
+    public double getUplinkEventsPerSecond() {
+        long elapsed = timerService.getCurrentTimeMillis() - startTimeMillis;
+        return elapsed > 0 ? sentEvents.get() * 1000d / elapsed : 0d;
+    }
+
+    /**
+     * Average compressed bytes per second sent to the central manager since this forwarder was created.
+     */
+    public double getUplinkBytesPerSecond() {
+        long elapsed = timerService.getCurrentTimeMillis() - startTimeMillis;
+        return elapsed > 0 ? sentBytes.get() * 1000d / elapsed : 0d;
+    }
+}
@@ -35,6 +35,7 @@ import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetProcessingService;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.manager.event.ClientEventService;
+import org.openremote.manager.event.InternalEventSubscriber;
 import org.openremote.manager.security.ManagerIdentityService;
 import org.openremote.manager.web.ManagerWebService;
 import org.openremote.model.asset.*;
@@ -44,6 +45,7 @@ import org.openremote.model.event.shared.EventRequestResponseWrapper;
 import org.openremote.model.event.shared.EventSubscription;
 import org.openremote.model.event.shared.SharedEvent;
 import org.openremote.model.event.shared.TenantFilter;
+import org.openremote.model.gateway.GatewayBatchEvent;
 import org.openremote.model.gateway.GatewayConnection;
 import org.openremote.model.gateway.GatewayConnectionStatusEvent;
 import org.openremote.model.gateway.GatewayDisconnectEvent;
@@ -58,18 +60,27 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
-import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
-import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.model.syslog.SyslogCategory.GATEWAY;
 
 /**
- * Handles outbound connections to central managers
+ * Handles outbound connections to central managers.
+ * <p>
+ * Asset and attribute events of the local realm are forwarded to the central manager in compressed
+ * {@link GatewayBatchEvent}s by a {@link GatewayClientEventForwarder}; events produced whilst the connection is down
+ * are buffered in the database and replayed in order after reconnecting.
  */
 public class GatewayClientService extends RouteBuilder implements ContainerService {
 
     public static final int PRIORITY = ManagerWebService.PRIORITY - 300;
     private static final Logger LOG = SyslogCategory.getLogger(GATEWAY, GatewayClientService.class.getName());
     public static final String CLIENT_EVENT_SESSION_PREFIX = GatewayClientService.class.getSimpleName() + ":";
+    public static final String GATEWAY_CLIENT_BATCH_MAX_EVENTS = "GATEWAY_CLIENT_BATCH_MAX_EVENTS";
+    public static final int GATEWAY_CLIENT_BATCH_MAX_EVENTS_DEFAULT = 100;
+    public static final String GATEWAY_CLIENT_BATCH_MAX_DELAY_MILLIS = "GATEWAY_CLIENT_BATCH_MAX_DELAY_MILLIS";
+    public static final int GATEWAY_CLIENT_BATCH_MAX_DELAY_MILLIS_DEFAULT = 500;
+    public static final String GATEWAY_CLIENT_BUFFER_MAX_EVENTS = "GATEWAY_CLIENT_BUFFER_MAX_EVENTS";
+    public static final int GATEWAY_CLIENT_BUFFER_MAX_EVENTS_DEFAULT = 100000;
     protected AssetStorageService assetStorageService;
     protected AssetProcessingService assetProcessingService;
     protected PersistenceService persistenceService;
@@ -79,6 +90,10 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
     protected ManagerIdentityService identityService;
     protected final Map<String, GatewayConnection> connectionRealmMap = new HashMap<>();
     protected final Map<String, WebsocketIOClient<String>> clientRealmMap = new HashMap<>();
+    protected final Map<String, GatewayClientEventForwarder> forwarderRealmMap = new HashMap<>();
+    protected int batchMaxEvents;
+    protected int batchMaxDelayMillis;
+    protected int bufferMaxEvents;
 
     @Override
     public void init(Container container) throws Exception {
@@ -89,6 +104,9 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         clientEventService = container.getService(ClientEventService.class);
         timerService = container.getService(TimerService.class);
         identityService = container.getService(ManagerIdentityService.class);
+        batchMaxEvents = getInteger(container.getConfig(), GATEWAY_CLIENT_BATCH_MAX_EVENTS, GATEWAY_CLIENT_BATCH_MAX_EVENTS_DEFAULT);
+        batchMaxDelayMillis = getInteger(container.getConfig(), GATEWAY_CLIENT_BATCH_MAX_DELAY_MILLIS, GATEWAY_CLIENT_BATCH_MAX_DELAY_MILLIS_DEFAULT);
+        bufferMaxEvents = getInteger(container.getConfig(), GATEWAY_CLIENT_BUFFER_MAX_EVENTS, GATEWAY_CLIENT_BUFFER_MAX_EVENTS_DEFAULT);
 
         container.getService(ManagerWebService.class).addApiSingleton(
             new GatewayClientResourceImpl(timerService, identityService, this)
@@ -142,14 +160,16 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         });
         clientRealmMap.clear();
         connectionRealmMap.clear();
+        synchronized (forwarderRealmMap) {
+            forwarderRealmMap.clear();
+        }
     }
 
     @Override
     public void configure() throws Exception {
 
-        from(PERSISTENCE_TOPIC)
+        from(persistenceService.subscribePersistenceEvents("GatewayServiceConnectionChanges", GatewayConnection.class))
             .routeId("GatewayServiceConnectionChanges")
-            .filter(isPersistenceEventForEntityType(GatewayConnection.class))
             .process(exchange -> {
                 @SuppressWarnings("unchecked")
                 PersistenceEvent<GatewayConnection> persistenceEvent = exchange.getIn().getBody(PersistenceEvent.class);
@@ -182,6 +202,14 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
                     if (client != null) {
                         destroyGatewayClient(connection, client);
                     }
+                    // Buffered events are of no use without a connection
+                    GatewayClientEventForwarder forwarder;
+                    synchronized (forwarderRealmMap) {
+                        forwarder = forwarderRealmMap.remove(connection.getLocalRealm());
+                    }
+                    if (forwarder != null) {
+                        forwarder.purge();
+                    }
                     break;
             }
         }
@@ -221,26 +249,42 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
                 new ChannelHandler[] {new AbstractNettyIOClient.MessageToMessageDecoder<>(String.class, client)}
             );
 
+            GatewayClientEventForwarder forwarder = new GatewayClientEventForwarder(
+                connection.getLocalRealm(),
+                persistenceService,
+                timerService,
+                executorService,
+                () -> client.getConnectionStatus() == ConnectionStatus.CONNECTED,
+                batch -> client.sendMessage(messageToString(SharedEvent.MESSAGE_PREFIX, batch)),
+                batchMaxEvents,
+                batchMaxDelayMillis,
+                bufferMaxEvents);
+
+            synchronized (forwarderRealmMap) {
+                forwarderRealmMap.put(connection.getLocalRealm(), forwarder);
+            }
+
             client.addConnectionStatusConsumer(
                 connectionStatus -> onGatewayClientConnectionStatusChanged(connection, connectionStatus)
             );
 
             client.addMessageConsumer(message -> onCentralManagerMessage(connection, message));
 
-            // Subscribe to Asset<?> and attribute events of local realm and pass through to connected manager
+            // Subscribe to Asset<?> and attribute events of local realm and pass through to connected manager; the central
+            // manager must see every event and the forwarder only buffers them (never publishing locally) so wait for space
             clientEventService.addInternalSubscription(
                 getClientSessionKey(connection)+"Asset",
                 AssetEvent.class,
                 new AssetFilter<AssetEvent>().setRealm(connection.getLocalRealm()),
-                assetEvent ->
-                    sendCentralManagerMessage(connection.getLocalRealm(), messageToString(SharedEvent.MESSAGE_PREFIX, assetEvent)));
+                forwarder::addEvent,
+                InternalEventSubscriber.OverflowPolicy.BLOCK);
 
             clientEventService.addInternalSubscription(
                 getClientSessionKey(connection)+"Attribute",
                 AttributeEvent.class,
                 new AssetFilter<AttributeEvent>().setRealm(connection.getLocalRealm()),
-                attributeEvent ->
-                    sendCentralManagerMessage(connection.getLocalRealm(), messageToString(SharedEvent.MESSAGE_PREFIX, attributeEvent)));
+                forwarder::addEvent,
+                InternalEventSubscriber.OverflowPolicy.BLOCK);
 
             client.connect();
             return client;
@@ -270,11 +314,31 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         if (connection != null) {
             clientEventService.cancelInternalSubscription(getClientSessionKey(connection)+"Asset");
             clientEventService.cancelInternalSubscription(getClientSessionKey(connection)+"Attribute");
+
+            GatewayClientEventForwarder forwarder;
+            synchronized (forwarderRealmMap) {
+                forwarder = forwarderRealmMap.get(connection.getLocalRealm());
+            }
+            if (forwarder != null) {
+                // Any pending events are buffered as the client is now disconnected
+                forwarder.stop();
+            }
         }
     }
 
     protected void onGatewayClientConnectionStatusChanged(GatewayConnection connection, ConnectionStatus connectionStatus) {
         LOG.info("Connection status change for gateway IO client '" + connectionStatus + "': " + connection);
+
+        if (connectionStatus == ConnectionStatus.CONNECTED) {
+            GatewayClientEventForwarder forwarder;
+            synchronized (forwarderRealmMap) {
+                forwarder = forwarderRealmMap.get(connection.getLocalRealm());
+            }
+            if (forwarder != null) {
+                forwarder.onConnected();
+            }
+        }
+
         clientEventService.publishEvent(new GatewayConnectionStatusEvent(timerService.getCurrentTimeMillis(), connection.getLocalRealm(), connectionStatus));
     }
 
@@ -366,6 +430,12 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         }
     }
 
+    protected List<GatewayClientEventForwarder> getEventForwarders() {
+        synchronized (forwarderRealmMap) {
+            return new ArrayList<>(forwarderRealmMap.values());
+        }
+    }
+
     protected String getClientSessionKey(GatewayConnection connection) {
         return CLIENT_EVENT_SESSION_PREFIX + connection.getLocalRealm();
     }
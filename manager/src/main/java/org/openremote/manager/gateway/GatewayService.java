@@ -24,6 +24,7 @@ import org.apache.camel.Predicate;
 import org.apache.camel.builder.RouteBuilder;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceEvent;
+import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.web.ConnectionConstants;
 import org.openremote.manager.asset.AssetProcessingException;
 import org.openremote.manager.asset.AssetProcessingService;
@@ -40,6 +41,7 @@ import org.openremote.model.asset.Asset;
 import org.openremote.model.asset.impl.GatewayAsset;
 import org.openremote.model.attribute.*;
 import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.gateway.GatewayBatchEvent;
 import org.openremote.model.gateway.GatewayDisconnectEvent;
 import org.openremote.model.query.AssetQuery;
 import org.openremote.model.rules.Ruleset;
@@ -60,7 +62,6 @@ import java.util.stream.IntStream;
 
 import static org.apache.camel.builder.PredicateBuilder.and;
 import static org.apache.camel.builder.PredicateBuilder.or;
-import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
 import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
 import static org.openremote.manager.gateway.GatewayConnector.mapAssetId;
 import static org.openremote.model.syslog.SyslogCategory.GATEWAY;
@@ -82,6 +83,7 @@ public class GatewayService extends RouteBuilder implements ContainerService, As
     protected ClientEventService clientEventService;
     protected RulesetStorageService rulesetStorageService;
     protected RulesService rulesService;
+    protected PersistenceService persistenceService;
     protected ScheduledExecutorService executorService;
     /**
      * Maps gateway asset IDs to connections; note that gateway asset IDs are stored lower case so that they can be
@@ -155,6 +157,7 @@ public class GatewayService extends RouteBuilder implements ContainerService, As
         executorService = container.getExecutorService();
         rulesetStorageService = container.getService(RulesetStorageService.class);
         rulesService = container.getService(RulesService.class);
+        persistenceService = container.getService(PersistenceService.class);
 
         if (!identityService.isKeycloakEnabled()) {
             LOG.warning("Incoming edge gateway connections disabled: Not supported when not using Keycloak identity provider");
@@ -226,9 +229,8 @@ public class GatewayService extends RouteBuilder implements ContainerService, As
     public void configure() throws Exception {
 
         if (active) {
-            from(PERSISTENCE_TOPIC)
+            from(persistenceService.subscribePersistenceEvents("GatewayServiceAssetChanges", Asset.class))
                 .routeId("GatewayServiceAssetChanges")
-                .filter(isPersistenceEventForEntityType(Asset.class))
                 .process(exchange -> {
                     @SuppressWarnings("unchecked")
                     PersistenceEvent<Asset<?>> persistenceEvent = exchange.getIn().getBody(PersistenceEvent.class);
@@ -643,8 +645,22 @@ public class GatewayService extends RouteBuilder implements ContainerService, As
 
     protected void onGatewayClientEventReceived(String gatewayId, String messageId, SharedEvent event) {
         GatewayConnector connector = gatewayConnectorMap.get(gatewayId.toLowerCase(Locale.ROOT));
-        if (connector != null) {
-            connector.onGatewayEvent(messageId, event);
+        if (connector == null) {
+            return;
         }
+
+        if (event instanceof GatewayBatchEvent) {
+            // Unpack and process in order as if each event had been received individually
+            try {
+                for (SharedEvent batchedEvent : ((GatewayBatchEvent) event).getEvents()) {
+                    connector.onGatewayEvent(messageId, batchedEvent);
+                }
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Failed to unpack gateway event batch: Gateway ID=" + gatewayId, e);
+            }
+            return;
+        }
+
+        connector.onGatewayEvent(messageId, event);
     }
 }
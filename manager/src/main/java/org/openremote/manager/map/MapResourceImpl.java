@@ -26,6 +26,9 @@ import org.openremote.model.http.RequestParams;
 import org.openremote.model.map.MapResource;
 
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 public class MapResourceImpl extends WebResource implements MapResource {
@@ -55,10 +58,25 @@ public class MapResourceImpl extends WebResource implements MapResource {
     }
 
     @Override
-    public byte[] getTile(int zoom, int column, int row) {
+    public Response getTile(Request request, int zoom, int column, int row) {
+        String eTag = mapService.getMapTileETag(zoom, column, row);
+        if (eTag == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+
+        EntityTag entityTag = new EntityTag(eTag);
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(mapService.getMapTileMaxAgeSeconds());
+
+        // Tile content only changes if the tiles file changes so no need to read the tile to revalidate
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return notModified.tag(entityTag).cacheControl(cacheControl).build();
+        }
+
         byte[] tile = mapService.getMapTile(zoom, column, row);
         if (tile != null) {
-            return tile;
+            return Response.ok(tile).tag(entityTag).cacheControl(cacheControl).build();
         } else {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
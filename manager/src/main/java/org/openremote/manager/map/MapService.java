@@ -38,7 +38,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.HashMap;
@@ -67,9 +66,17 @@ public class MapService implements ContainerService {
     public static final String TILESERVER_TILE_PATH = "/styles/standard";
     public static final String MAP_TILESERVER_REQUEST_TIMEOUT = "MAP_TILESERVER_REQUEST_TIMEOUT";
     public static final int MAP_TILESERVER_REQUEST_TIMEOUT_DEFAULT = 10000;
+    public static final String MAP_TILES_CONNECTIONS = "MAP_TILES_CONNECTIONS";
+    public static final int MAP_TILES_CONNECTIONS_DEFAULT = 4;
+    public static final String MAP_TILES_CACHE_SIZE_MB = "MAP_TILES_CACHE_SIZE_MB";
+    public static final int MAP_TILES_CACHE_SIZE_MB_DEFAULT = 64;
+    public static final String MAP_TILES_MAX_AGE_SECONDS = "MAP_TILES_MAX_AGE_SECONDS";
+    public static final int MAP_TILES_MAX_AGE_SECONDS_DEFAULT = 86400;
     private static final Logger LOG = Logger.getLogger(MapService.class.getName());
-    // Shared SQL connection is fine concurrently in SQLite
-    protected Connection connection;
+    protected MapTileStore tileStore;
+    protected int tileConnections;
+    protected int tileCacheSizeMb;
+    protected int tileMaxAgeSeconds;
     protected Path mapTilesPath;
     protected Path mapSettingsPath;
     protected Metadata metadata;
@@ -182,6 +189,10 @@ public class MapService implements ContainerService {
             }
         }
 
+        tileConnections = getInteger(container.getConfig(), MAP_TILES_CONNECTIONS, MAP_TILES_CONNECTIONS_DEFAULT);
+        tileCacheSizeMb = getInteger(container.getConfig(), MAP_TILES_CACHE_SIZE_MB, MAP_TILES_CACHE_SIZE_MB_DEFAULT);
+        tileMaxAgeSeconds = getInteger(container.getConfig(), MAP_TILES_MAX_AGE_SECONDS, MAP_TILES_MAX_AGE_SECONDS_DEFAULT);
+
         container.getService(ManagerWebService.class).addApiSingleton(
                 new MapResourceImpl(this, container.getService(ManagerIdentityService.class))
         );
@@ -228,9 +239,9 @@ public class MapService implements ContainerService {
 
         LOG.info("Starting map service with tile data: " + mapTilesPath.toAbsolutePath());
         Class.forName(org.sqlite.JDBC.class.getName());
-        connection = DriverManager.getConnection("jdbc:sqlite:" + mapTilesPath.toAbsolutePath());
+        tileStore = new MapTileStore(mapTilesPath, tileConnections, tileCacheSizeMb * 1024L * 1024L);
 
-        metadata = getMetadata(connection);
+        metadata = tileStore.withConnection(MapService::getMetadata);
         if (metadata.isValid()) {
             mapConfig = loadMapSettingsJson(mapSettingsPath);
             if (mapConfig == null) {
@@ -272,8 +283,9 @@ public class MapService implements ContainerService {
 
     @Override
     public void stop(Container container) throws Exception {
-        if (connection != null) {
-            connection.close();
+        if (tileStore != null) {
+            tileStore.close();
+            tileStore = null;
         }
     }
 
@@ -385,33 +397,23 @@ public class MapService implements ContainerService {
     }
 
     public byte[] getMapTile(int zoom, int column, int row) {
-        // Flip y, oh why
-        row = Double.valueOf(Math.pow(2, zoom) - 1 - row).intValue();
-
-        PreparedStatement query = null;
-        ResultSet result = null;
-        try {
-            query = connection.prepareStatement(
-                "select TILE_DATA from TILES where ZOOM_LEVEL = ? and TILE_COLUMN = ? and TILE_ROW = ?"
-            );
+        return tileStore != null ? tileStore.getTile(zoom, column, row) : null;
+    }
 
-            int index = 0;
-            query.setInt(++index, zoom);
-            query.setInt(++index, column);
-            query.setInt(++index, row);
+    /**
+     * Returns the entity tag of the tile (whether it exists or not) so that it can be revalidated without reading the
+     * tile; returns <code>null</code> if no tiles are available.
+     */
+    public String getMapTileETag(int zoom, int column, int row) {
+        return tileStore != null ? tileStore.getVersion() + "-" + zoom + "-" + column + "-" + row : null;
+    }
 
-            result = query.executeQuery();
+    public int getMapTileMaxAgeSeconds() {
+        return tileMaxAgeSeconds;
+    }
 
-            if (result.next()) {
-                return result.getBytes(1);
-            } else {
-                return null;
-            }
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
-        } finally {
-            closeQuietly(query, result);
-        }
+    public MapTileStore getTileStore() {
+        return tileStore;
     }
 
     @Override
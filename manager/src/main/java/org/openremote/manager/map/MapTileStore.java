@@ -0,0 +1,196 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.map;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.sqlite.SQLiteConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Read only access to the tiles of an mbtiles (SQLite) file; tiles are read using a small pool of read only
+ * connections, each with its own prepared tile statement, and recently used tiles (including missing ones) are cached
+ * in memory up to a maximum number of bytes.
+ */
+public class MapTileStore implements AutoCloseable {
+
+    protected static final byte[] MISSING_TILE = new byte[0];
+    /**
+     * Approximate per entry overhead of the cache (key, entry and array header).
+     */
+    protected static final int TILE_WEIGHT_OVERHEAD = 64;
+    protected static final int MAX_ZOOM = 28;
+    private static final Logger LOG = Logger.getLogger(MapTileStore.class.getName());
+    protected final Path path;
+    protected final String version;
+    protected final List<TileConnection> connections = new ArrayList<>();
+    protected final BlockingQueue<TileConnection> availableConnections;
+    protected final Cache<Long, byte[]> tileCache;
+
+    protected static class TileConnection {
+        protected final Connection connection;
+        protected final PreparedStatement tileStatement;
+
+        protected TileConnection(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.tileStatement = connection.prepareStatement(
+                "select TILE_DATA from TILES where ZOOM_LEVEL = ? and TILE_COLUMN = ? and TILE_ROW = ?"
+            );
+        }
+
+        protected void close() {
+            try {
+                tileStatement.close();
+                connection.close();
+            } catch (Exception ex) {
+                LOG.warning("Error closing tile connection: " + ex);
+            }
+        }
+    }
+
+    public MapTileStore(Path path, int connectionCount, long cacheMaxBytes) throws SQLException, IOException {
+        this.path = path;
+        // Tiles are never modified whilst the file is in use so the file's modification time and size identify them
+        this.version = Long.toHexString(Files.getLastModifiedTime(path).toMillis()) + "-" + Long.toHexString(Files.size(path));
+        connectionCount = Math.max(1, connectionCount);
+        availableConnections = new ArrayBlockingQueue<>(connectionCount);
+        tileCache = CacheBuilder.newBuilder()
+            .maximumWeight(Math.max(0, cacheMaxBytes))
+            .weigher((Long key, byte[] tile) -> tile.length + TILE_WEIGHT_OVERHEAD)
+            .recordStats()
+            .build();
+
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+
+        try {
+            for (int i = 0; i < connectionCount; i++) {
+                TileConnection tileConnection = new TileConnection(DriverManager.getConnection("jdbc:sqlite:" + path.toAbsolutePath(), config.toProperties()));
+                connections.add(tileConnection);
+                availableConnections.add(tileConnection);
+            }
+        } catch (SQLException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the tile using XYZ (not TMS) coordinates or <code>null</code> if it doesn't exist.
+     */
+    public byte[] getTile(int zoom, int column, int row) {
+        if (zoom < 0 || zoom > MAX_ZOOM || column < 0 || row < 0 || column >= 1 << zoom || row >= 1 << zoom) {
+            return null;
+        }
+
+        long key = ((long) zoom << 58) | ((long) column << 29) | row;
+
+        try {
+            byte[] tile = tileCache.get(key, () -> loadTile(zoom, column, row));
+            return tile.length == 0 ? null : tile;
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    protected byte[] loadTile(int zoom, int column, int row) throws Exception {
+        // Flip y, oh why
+        int tmsRow = (1 << zoom) - 1 - row;
+        TileConnection tileConnection = availableConnections.take();
+
+        try {
+            PreparedStatement query = tileConnection.tileStatement;
+            query.setInt(1, zoom);
+            query.setInt(2, column);
+            query.setInt(3, tmsRow);
+
+            try (ResultSet result = query.executeQuery()) {
+                byte[] tile = result.next() ? result.getBytes(1) : null;
+                return tile != null ? tile : MISSING_TILE;
+            }
+        } finally {
+            availableConnections.add(tileConnection);
+        }
+    }
+
+    /**
+     * Runs the function with exclusive use of one of the pooled connections.
+     */
+    public <R> R withConnection(Function<Connection, R> function) throws InterruptedException {
+        TileConnection tileConnection = availableConnections.take();
+        try {
+            return function.apply(tileConnection.connection);
+        } finally {
+            availableConnections.add(tileConnection);
+        }
+    }
+
+    /**
+     * Identifies the content of the file; changes if the file is replaced.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public CacheStats getCacheStats() {
+        return tileCache.stats();
+    }
+
+    public long getCachedTileCount() {
+        return tileCache.size();
+    }
+
+    @Override
+    public void close() {
+        tileCache.invalidateAll();
+        connections.forEach(TileConnection::close);
+        connections.clear();
+        availableConnections.clear();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "path=" + path +
+            ", connections=" + connections.size() +
+            '}';
+    }
+}
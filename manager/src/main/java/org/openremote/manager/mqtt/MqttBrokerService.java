@@ -33,6 +33,7 @@ import io.netty.handler.codec.mqtt.MqttQoS;
 import org.apache.camel.builder.RouteBuilder;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceEvent;
+import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.manager.event.ClientEventService;
@@ -57,8 +58,6 @@ import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import static java.util.stream.StreamSupport.stream;
-import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
-import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
 import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.container.util.MapAccess.getString;
 import static org.openremote.model.syslog.SyslogCategory.API;
@@ -78,6 +77,7 @@ public class MqttBrokerService extends RouteBuilder implements ContainerService,
     protected MessageBrokerService messageBrokerService;
     protected ScheduledExecutorService executorService;
     protected TimerService timerService;
+    protected PersistenceService persistenceService;
     protected final Map<String, MqttConnection> clientIdConnectionMap = new HashMap<>();
     protected List<MQTTHandler> customHandlers = new ArrayList<>();
 
@@ -102,6 +102,7 @@ public class MqttBrokerService extends RouteBuilder implements ContainerService,
         messageBrokerService = container.getService(MessageBrokerService.class);
         executorService = container.getExecutorService();
         timerService = container.getService(TimerService.class);
+        persistenceService = container.getService(PersistenceService.class);
 
         if (!identityService.isKeycloakEnabled()) {
             LOG.warning("MQTT connections are not supported when not using Keycloak identity provider");
@@ -146,9 +147,8 @@ public class MqttBrokerService extends RouteBuilder implements ContainerService,
     @SuppressWarnings("unchecked")
     @Override
     public void configure() throws Exception {
-        from(PERSISTENCE_TOPIC)
+        from(persistenceService.subscribePersistenceEvents("UserPersistenceChanges", User.class))
             .routeId("UserPersistenceChanges")
-            .filter(isPersistenceEventForEntityType(User.class))
             .process(exchange -> {
                 PersistenceEvent<User> persistenceEvent = (PersistenceEvent<User>)exchange.getIn().getBody(PersistenceEvent.class);
                 User user = persistenceEvent.getEntity();
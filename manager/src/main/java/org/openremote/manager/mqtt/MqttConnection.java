@@ -11,6 +11,9 @@ import org.openremote.model.auth.OAuthGrant;
 import org.openremote.model.util.TextUtil;
 
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -18,11 +21,17 @@ import java.util.logging.Logger;
 import static org.openremote.model.Constants.KEYCLOAK_CLIENT_ID;
 
 /**
- * Handles access token generation and tracks all subscriptions for the connection
+ * Handles access token generation and tracks all subscriptions for the connection.
+ * <p>
+ * The verified {@link AuthContext} is cached until shortly before the access token expires so that the token isn't
+ * verified for every publish/subscribe check; once three quarters of the token lifetime has passed the auth context is
+ * refreshed in the background (if an executor is provided) whilst the cached one is still returned. A refresh that
+ * started before the credentials were changed is discarded so it can't overwrite the auth context of the new credentials.
  */
 public class MqttConnection {
 
     protected static final Logger LOG = Logger.getLogger(MqttConnection.class.getSimpleName());
+    protected static final long AUTH_CONTEXT_EXPIRY_MARGIN_MILLIS = 10000;
     protected String realm;
     protected String username; // This is OAuth clientId
     protected String password;
@@ -32,12 +41,23 @@ public class MqttConnection {
     protected Supplier<String> tokenSupplier;
     protected ManagerKeycloakIdentityProvider identityProvider;
     protected long connectionTime;
+    protected final Executor executor;
+    protected volatile AuthContext authContext;
+    protected volatile long authContextRefreshMillis;
+    protected volatile long authContextExpiryMillis;
+    protected long credentialsGeneration;
+    protected final AtomicBoolean authContextRefreshing = new AtomicBoolean();
 
     public MqttConnection(ManagerKeycloakIdentityProvider identityProvider, String clientId, String realm, String username, String password, boolean cleanSession, long connectionTime) {
+        this(identityProvider, clientId, realm, username, password, cleanSession, connectionTime, null);
+    }
+
+    public MqttConnection(ManagerKeycloakIdentityProvider identityProvider, String clientId, String realm, String username, String password, boolean cleanSession, long connectionTime, Executor executor) {
         this.cleanSession = cleanSession;
         this.clientId = clientId;
         this.identityProvider = identityProvider;
         this.connectionTime = connectionTime;
+        this.executor = executor;
         setCredentials(realm, username, password);
     }
 
@@ -71,23 +91,84 @@ public class MqttConnection {
     }
 
     public AuthContext getAuthContext() {
-        AuthContext authContext;
-
         if (!credentials) {
             return null;
         }
 
+        AuthContext authContext = this.authContext;
+        long now = System.currentTimeMillis();
+
+        if (authContext == null || now >= authContextExpiryMillis) {
+            return refreshAuthContext();
+        }
+
+        if (now >= authContextRefreshMillis && executor != null && authContextRefreshing.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        refreshAuthContext();
+                    } finally {
+                        authContextRefreshing.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                authContextRefreshing.set(false);
+            }
+        }
+
+        return authContext;
+    }
+
+    /**
+     * Verifies the current access token and caches the resulting {@link AuthContext} (if valid).
+     */
+    protected AuthContext refreshAuthContext() {
+        AuthContext authContext;
+        long generation;
+        String realm;
+        Supplier<String> tokenSupplier;
+        long refreshMillis = 0;
+        long expiryMillis = 0;
+
+        synchronized (this) {
+            generation = credentialsGeneration;
+            realm = this.realm;
+            tokenSupplier = this.tokenSupplier;
+        }
+
         try {
-            AccessToken accessToken = AdapterTokenVerifier.verifyToken(getAccessToken(), identityProvider.getKeycloakDeployment(realm, KEYCLOAK_CLIENT_ID));
+            AccessToken accessToken = verifyAccessToken(realm, tokenSupplier != null ? tokenSupplier.get() : null);
             authContext = accessToken != null ? new AccessTokenAuthContext(realm, accessToken) : null;
+
+            // If it can't be told when the token expires then don't cache
+            if (accessToken != null && accessToken.getExp() != null) {
+                long now = System.currentTimeMillis();
+                long tokenExpiryMillis = accessToken.getExp() * 1000;
+                long lifetimeMillis = Math.max(0, tokenExpiryMillis - now);
+                refreshMillis = now + lifetimeMillis * 3 / 4;
+                expiryMillis = tokenExpiryMillis - Math.min(AUTH_CONTEXT_EXPIRY_MARGIN_MILLIS, lifetimeMillis / 10);
+            }
         } catch (VerificationException e) {
             LOG.log(Level.INFO, "Couldn't verify token: " + this, e);
-            return null;
+            authContext = null;
         }
 
+        synchronized (this) {
+            if (generation != credentialsGeneration) {
+                LOG.finest("Credentials changed whilst verifying token so discarding auth context: " + this);
+                return null;
+            }
+            authContextRefreshMillis = refreshMillis;
+            authContextExpiryMillis = expiryMillis;
+            this.authContext = authContext;
+        }
         return authContext;
     }
 
+    protected AccessToken verifyAccessToken(String realm, String accessToken) throws VerificationException {
+        return AdapterTokenVerifier.verifyToken(accessToken, identityProvider.getKeycloakDeployment(realm, KEYCLOAK_CLIENT_ID));
+    }
+
     /**
      * This is MQTT client ID not to be confused with OAuth client ID
      */
@@ -99,11 +180,15 @@ public class MqttConnection {
         return credentials;
     }
 
-    public void setCredentials(String realm, String username, String password) {
+    public synchronized void setCredentials(String realm, String username, String password) {
 
+        credentialsGeneration++;
         this.realm = realm;
         this.username = username;
         this.password = password;
+        this.authContext = null;
+        authContextRefreshMillis = 0;
+        authContextExpiryMillis = 0;
 
         credentials = !TextUtil.isNullOrEmpty(realm)
             && !TextUtil.isNullOrEmpty(username)
@@ -82,7 +82,7 @@ public class ORInterceptHandler extends AbstractInterceptHandler {
             username = realmAndUsername[1];
         }
 
-        MqttConnection connection = new MqttConnection(identityProvider, msg.getClientID(), realm, username, password, msg.isCleanSession(), timerService.getCurrentTimeMillis());
+        MqttConnection connection = new MqttConnection(identityProvider, msg.getClientID(), realm, username, password, msg.isCleanSession(), timerService.getCurrentTimeMillis(), brokerService.executorService);
         brokerService.addConnection(connection.getClientId(), connection);
 
         // Notify all custom handlers
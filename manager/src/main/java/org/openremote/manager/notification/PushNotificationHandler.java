@@ -28,6 +28,7 @@ import com.google.firebase.messaging.*;
 import org.apache.camel.builder.RouteBuilder;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceEvent;
+import org.openremote.container.persistence.PersistenceService;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.manager.gateway.GatewayService;
 import org.openremote.manager.security.ManagerIdentityService;
@@ -75,6 +76,7 @@ public class PushNotificationHandler extends RouteBuilder implements Notificatio
     protected ManagerIdentityService managerIdentityService;
     protected AssetStorageService assetStorageService;
     protected GatewayService gatewayService;
+    protected PersistenceService persistenceService;
     protected boolean valid;
     protected Map<String, String> consoleFCMTokenMap = new HashMap<>();
     protected List<String> fcmTokenBlacklist = new ArrayList<>();
@@ -88,6 +90,7 @@ public class PushNotificationHandler extends RouteBuilder implements Notificatio
         this.managerIdentityService = container.getService(ManagerIdentityService.class);
         this.assetStorageService = container.getService(AssetStorageService.class);
         this.gatewayService = container.getService(GatewayService.class);
+        this.persistenceService = container.getService(PersistenceService.class);
         container.getService(MessageBrokerService.class).getContext().addRoutes(this);
 
         String firebaseConfigFilePath = container.getConfig().get(FIREBASE_CONFIG_FILE);
@@ -150,9 +153,8 @@ public class PushNotificationHandler extends RouteBuilder implements Notificatio
     @Override
     public void configure() throws Exception {
         // If any console asset was modified in the database, detect push provider changes
-        from(PERSISTENCE_TOPIC)
+        from(persistenceService.subscribePersistenceEvents("PushNotificationAssetChanges", ConsoleAsset.class))
             .routeId("PushNotificationAssetChanges")
-            .filter(isPersistenceEventForEntityType(ConsoleAsset.class))
             .filter(isNotForGateway(gatewayService))
             .process(exchange -> {
                 @SuppressWarnings("unchecked")
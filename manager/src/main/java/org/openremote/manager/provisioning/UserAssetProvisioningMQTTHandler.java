@@ -28,6 +28,7 @@ import io.netty.handler.codec.mqtt.MqttQoS;
 import org.apache.camel.builder.RouteBuilder;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceEvent;
+import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.timer.TimerService;
 import org.openremote.container.util.UniqueIdentifierGenerator;
 import org.openremote.manager.asset.AssetStorageService;
@@ -57,8 +58,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
-import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
-import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
 import static org.openremote.model.Constants.RESTRICTED_USER_REALM_ROLE;
 import static org.openremote.model.syslog.SyslogCategory.API;
 
@@ -80,9 +79,8 @@ public class UserAssetProvisioningMQTTHandler extends MQTTHandler {
         @Override
         public void configure() throws Exception {
 
-            from(PERSISTENCE_TOPIC)
+            from(mqttHandler.persistenceService.subscribePersistenceEvents("ProvisioningConfigPersistenceChanges", ProvisioningConfig.class))
                 .routeId("ProvisioningConfigPersistenceChanges")
-                .filter(isPersistenceEventForEntityType(ProvisioningConfig.class))
                 .process(exchange -> {
                     PersistenceEvent<ProvisioningConfig<?,?>> persistenceEvent = (PersistenceEvent<ProvisioningConfig<?,?>>)exchange.getIn().getBody(PersistenceEvent.class);
 
@@ -113,6 +111,7 @@ public class UserAssetProvisioningMQTTHandler extends MQTTHandler {
     protected TimerService timerService;
     protected MqttBrokerService brokerService;
     protected AssetStorageService assetStorageService;
+    protected PersistenceService persistenceService;
     protected ManagerKeycloakIdentityProvider identityProvider;
     protected boolean isKeycloak;
     protected final Map<Long, Set<MqttConnection>> provisioningConfigAuthenticatedConnectionMap = new HashMap<>();
@@ -124,6 +123,7 @@ public class UserAssetProvisioningMQTTHandler extends MQTTHandler {
         timerService = container.getService(TimerService.class);
         brokerService = container.getService(MqttBrokerService.class);
         assetStorageService = container.getService(AssetStorageService.class);
+        persistenceService = container.getService(PersistenceService.class);
         ManagerIdentityService identityService = container.getService(ManagerIdentityService.class);
 
         if (!identityService.isKeycloakEnabled()) {
@@ -19,11 +19,17 @@
  */
 package org.openremote.manager.rules;
 
-import java.util.List;
+import org.openremote.model.query.filter.GeofencePredicate;
+
+import java.util.Map;
+import java.util.Set;
 
 @FunctionalInterface
 public interface AssetLocationPredicateProcessor {
 
-    void accept(RulesEngine t, List<RulesEngine.AssetStateLocationPredicates> u);
+    /**
+     * Called with only the assets whose location predicates have changed in the specified engine, keyed by asset ID;
+     * an empty set means the engine no longer has any location predicates for that asset.
+     */
+    void accept(RulesEngine<?> rulesEngine, Map<String, Set<GeofencePredicate>> changedLocationPredicates);
 }
-
@@ -21,6 +21,7 @@ package org.openremote.manager.rules;
 
 import org.jeasy.rules.api.RulesEngineParameters;
 import org.jeasy.rules.core.InferenceRulesEngine;
+import org.openremote.container.metrics.MetricsRegistry;
 import org.openremote.container.persistence.PersistenceEvent;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetProcessingService;
@@ -97,6 +98,7 @@ public class RulesEngine<T extends Ruleset> {
 
     // Separate logger for periodic stats printer
     public static final Logger STATS_LOG = Logger.getLogger("org.openremote.rules.RulesEngineStats");
+    public static final String RULES_FIRE_METRIC = "or_rules_fire_seconds";
     protected static BiConsumer<RulesEngine<?>, RulesetDeployment> UNPAUSE_SCHEDULER = RulesEngine::scheduleUnpause;
     // Here to facilitate testing
     protected static BiConsumer<RulesEngine<?>, RulesetDeployment> PAUSE_SCHEDULER = RulesEngine::schedulePause;
@@ -104,6 +106,7 @@ public class RulesEngine<T extends Ruleset> {
     final protected ScheduledExecutorService executorService;
     final protected AssetStorageService assetStorageService;
     final protected ClientEventService clientEventService;
+    final protected MetricsRegistry metricsRegistry;
 
     final protected RulesEngineId<T> id;
     final protected Assets assetsFacade;
@@ -120,6 +123,8 @@ public class RulesEngine<T extends Ruleset> {
     protected boolean running;
     protected long lastFireTimestamp;
     protected boolean trackLocationPredicates;
+    // Last reported location predicates of each asset, used to only report changes
+    protected Map<String, Set<GeofencePredicate>> assetLocationPredicates = Collections.emptyMap();
     protected ScheduledFuture<?> fireTimer;
     protected ScheduledFuture<?> statsTimer;
     protected Map<Long, ScheduledFuture<?>> pauseTimers = new HashMap<>();
@@ -140,12 +145,14 @@ public class RulesEngine<T extends Ruleset> {
                        ClientEventService clientEventService,
                        AssetDatapointService assetDatapointService,
                        AssetPredictedDatapointService assetPredictedDatapointService,
+                       MetricsRegistry metricsRegistry,
                        RulesEngineId<T> id,
                        AssetLocationPredicateProcessor assetLocationPredicatesConsumer) {
         this.timerService = timerService;
         this.executorService = executorService;
         this.assetStorageService = assetStorageService;
         this.clientEventService = clientEventService;
+        this.metricsRegistry = metricsRegistry;
         this.id = id;
         AssetsFacade<T> assetsFacade = new AssetsFacade<>(id, assetStorageService, assetProcessingService::sendAttributeEvent);
         this.assetsFacade = assetsFacade;
@@ -237,6 +244,7 @@ public class RulesEngine<T extends Ruleset> {
         }
 
         deployment = new RulesetDeployment(ruleset, timerService, assetStorageService, executorService, assetsFacade, usersFacade, notificationFacade, historicFacade, predictedFacade);
+        deployment.setFireTimer(metricsRegistry.timer(RULES_FIRE_METRIC, "Time taken to fire the rules of each ruleset deployment", getFireTimerLabels(deployment)));
         boolean compiled;
 
         if (TextUtil.isNullOrEmpty(ruleset.getRules())) {
@@ -291,6 +299,7 @@ public class RulesEngine<T extends Ruleset> {
         deployment.setStatus(REMOVED);
         publishRulesetStatus(deployment);
         deployments.remove(ruleset.getId());
+        metricsRegistry.remove(RULES_FIRE_METRIC, getFireTimerLabels(deployment));
 
         ScheduledFuture<?> timer = pauseTimers.remove(ruleset.getId());
         if (timer != null) timer.cancel(true);
@@ -380,7 +389,7 @@ public class RulesEngine<T extends Ruleset> {
         running = false;
 
         if (!systemShutdownInProgress && assetLocationPredicatesConsumer != null) {
-            assetLocationPredicatesConsumer.accept(this, null);
+            processLocationRules(null);
         }
 
         updateDeploymentInfo();
@@ -501,7 +510,12 @@ public class RulesEngine<T extends Ruleset> {
 
                     long startTimestamp = System.currentTimeMillis();
                     lastFireTimestamp = startTimestamp;
-                    engine.fire(deployment.getRules(), facts);
+                    long startNanos = System.nanoTime();
+                    try {
+                        engine.fire(deployment.getRules(), facts);
+                    } finally {
+                        deployment.getFireTimer().recordSince(startNanos);
+                    }
                     RULES_FIRED_LOG.fine("Rules deployment '" + deployment.getName() + "' executed in: " + (System.currentTimeMillis() - startTimestamp) + "ms");
                 }
 
@@ -577,6 +591,10 @@ public class RulesEngine<T extends Ruleset> {
         );
     }
 
+    protected static String[] getFireTimerLabels(RulesetDeployment deployment) {
+        return new String[] {"ruleset_id", Long.toString(deployment.getId()), "ruleset", String.valueOf(deployment.getName())};
+    }
+
     protected void printSessionStats() {
         withLock(toString() + "::printSessionStats", () -> {
             Collection<AssetState<?>> assetStateFacts = facts.getAssetStates();
@@ -600,11 +618,37 @@ public class RulesEngine<T extends Ruleset> {
     }
 
     /**
-     * This is called with all the asset's that have a location attribute currently loaded into this engine.
+     * This is called with all the asset's that have a location attribute currently loaded into this engine (null means
+     * none); only the assets whose location predicates differ from the last call are passed to the consumer.
      */
-    protected void processLocationRules(List<AssetStateLocationPredicates> assetStateLocationPredicates) {
-        if (assetLocationPredicatesConsumer != null) {
-            assetLocationPredicatesConsumer.accept(this, assetStateLocationPredicates);
+    protected void processLocationRules(Map<String, Set<GeofencePredicate>> newAssetLocationPredicates) {
+        if (assetLocationPredicatesConsumer == null) {
+            return;
+        }
+
+        if (newAssetLocationPredicates == null) {
+            newAssetLocationPredicates = Collections.emptyMap();
+        }
+
+        Map<String, Set<GeofencePredicate>> changedAssetLocationPredicates = new HashMap<>();
+
+        for (Map.Entry<String, Set<GeofencePredicate>> entry : newAssetLocationPredicates.entrySet()) {
+            Set<GeofencePredicate> previous = assetLocationPredicates.get(entry.getKey());
+            if (previous == null ? !entry.getValue().isEmpty() : !previous.equals(entry.getValue())) {
+                changedAssetLocationPredicates.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (Map.Entry<String, Set<GeofencePredicate>> entry : assetLocationPredicates.entrySet()) {
+            if (!entry.getValue().isEmpty() && !newAssetLocationPredicates.containsKey(entry.getKey())) {
+                changedAssetLocationPredicates.put(entry.getKey(), Collections.emptySet());
+            }
+        }
+
+        assetLocationPredicates = newAssetLocationPredicates;
+
+        if (!changedAssetLocationPredicates.isEmpty()) {
+            assetLocationPredicatesConsumer.accept(this, changedAssetLocationPredicates);
         }
     }
 
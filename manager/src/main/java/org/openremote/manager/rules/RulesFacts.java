@@ -91,16 +91,15 @@ public class RulesFacts extends Facts implements RuleListener {
         trackLocationRules = true;
     }
 
-    protected List<RulesEngine.AssetStateLocationPredicates> stopTrackingLocationRules() {
+    /**
+     * Returns the location predicates found for each asset since tracking was started, or null if none were found.
+     */
+    protected Map<String, Set<GeofencePredicate>> stopTrackingLocationRules() {
         LOG.finer("Tracking location predicate rules: stopping");
         trackLocationRules = false;
         Map<String, Set<GeofencePredicate>> assetStateLocationPredicateMap = this.assetStateLocationPredicateMap;
         this.assetStateLocationPredicateMap = null;
-        return assetStateLocationPredicateMap == null ? null : assetStateLocationPredicateMap.entrySet().stream()
-                .map(assetStateSetEntry ->
-                        new RulesEngine.AssetStateLocationPredicates(
-                                assetStateSetEntry.getKey(),
-                                assetStateSetEntry.getValue())).collect(Collectors.toList());
+        return assetStateLocationPredicateMap;
     }
 
     public RulesClock getClock() {
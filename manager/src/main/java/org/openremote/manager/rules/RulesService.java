@@ -21,6 +21,8 @@ package org.openremote.manager.rules;
 
 import org.apache.camel.builder.RouteBuilder;
 import org.openremote.container.message.MessageBrokerService;
+import org.openremote.container.metrics.MetricsRegistry;
+import org.openremote.container.metrics.MetricsService;
 import org.openremote.container.persistence.PersistenceEvent;
 import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.timer.TimerService;
@@ -45,6 +47,7 @@ import org.openremote.model.attribute.AttributeEvent.Source;
 import org.openremote.model.attribute.AttributeMap;
 import org.openremote.model.query.AssetQuery;
 import org.openremote.model.query.RulesetQuery;
+import org.openremote.model.query.filter.GeofencePredicate;
 import org.openremote.model.query.filter.LocationAttributePredicate;
 import org.openremote.model.rules.*;
 import org.openremote.model.rules.geofence.GeofenceDefinition;
@@ -67,8 +70,6 @@ import static java.util.logging.Level.SEVERE;
 import static java.util.stream.Collectors.toList;
 import static org.openremote.container.concurrent.GlobalLock.withLock;
 import static org.openremote.container.concurrent.GlobalLock.withLockReturning;
-import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
-import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
 import static org.openremote.container.util.MapAccess.getString;
 import static org.openremote.manager.gateway.GatewayService.isNotForGateway;
 import static org.openremote.model.attribute.Attribute.getAddedOrModifiedAttributes;
@@ -115,12 +116,17 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     protected AssetDatapointService assetDatapointService;
     protected AssetPredictedDatapointService assetPredictedDatapointService;
     protected ClientEventService clientEventService;
+    protected MetricsRegistry metricsRegistry;
     protected GatewayService gatewayService;
     protected RulesEngine<GlobalRuleset> globalEngine;
     protected Tenant[] tenants;
     protected AssetLocationPredicateProcessor locationPredicateRulesConsumer;
-    protected Map<RulesEngine<?>, List<RulesEngine.AssetStateLocationPredicates>> engineAssetLocationPredicateMap = new HashMap<>();
-    protected Set<String> assetsWithModifiedLocationPredicates = new HashSet<>();
+    // Location predicates of each asset per engine, guarded by itself; only changes are reported by engines
+    protected final Map<String, Map<RulesEngine<?>, Set<GeofencePredicate>>> assetLocationPredicates = new HashMap<>();
+    protected final Set<String> assetsWithModifiedLocationPredicates = new HashSet<>();
+    protected final Object geofenceProcessingLock = new Object();
+    protected boolean geofenceProcessingScheduled;
+    protected ScheduledExecutorService geofenceExecutorService;
     // Keep global list of asset states that have been pushed to any engines
     // The objects are already in memory inside the rule engines but keeping them
     // here means we can quickly insert facts into newly started engines
@@ -137,7 +143,8 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
 
     @Override
     public void init(Container container) throws Exception {
-        executorService = container.getExecutorService();
+        executorService = container.getExecutorService(Container.EXECUTOR_RULES);
+        geofenceExecutorService = container.getExecutorService(Container.EXECUTOR_NOTIFICATION);
         timerService = container.getService(TimerService.class);
         persistenceService = container.getService(PersistenceService.class);
         rulesetStorageService = container.getService(RulesetStorageService.class);
@@ -148,6 +155,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
         assetDatapointService = container.getService(AssetDatapointService.class);
         assetPredictedDatapointService = container.getService(AssetPredictedDatapointService.class);
         clientEventService = container.getService(ClientEventService.class);
+        metricsRegistry = MetricsService.getRegistry(container);
         gatewayService = container.getService(GatewayService.class);
 
         if (initDone) {
@@ -203,9 +211,8 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     @Override
     public void configure() throws Exception {
         // If any ruleset was modified in the database then check its' status and undeploy, deploy, or update it
-        from(PERSISTENCE_TOPIC)
+        from(persistenceService.subscribePersistenceEvents("RulesetPersistenceChanges", Ruleset.class))
             .routeId("RulesetPersistenceChanges")
-            .filter(isPersistenceEventForEntityType(Ruleset.class))
             .filter(isNotForGateway(gatewayService))
             .process(exchange -> {
                 PersistenceEvent<?> persistenceEvent = exchange.getIn().getBody(PersistenceEvent.class);
@@ -214,9 +221,8 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
 
         // If any tenant was modified in the database then check its' status and undeploy, deploy or update any
         // associated rulesets
-        from(PERSISTENCE_TOPIC)
+        from(persistenceService.subscribePersistenceEvents("RuleEngineTenantChanges", Tenant.class))
             .routeId("RuleEngineTenantChanges")
-            .filter(isPersistenceEventForEntityType(Tenant.class))
             .filter(isNotForGateway(gatewayService))
             .process(exchange -> {
                 PersistenceEvent<?> persistenceEvent = exchange.getIn().getBody(PersistenceEvent.class);
@@ -225,13 +231,11 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
             });
 
         // If any asset was modified in the database, detect changed attributes
-        from(PERSISTENCE_TOPIC)
+        from(persistenceService.subscribeAggregatedPersistenceEvents("RuleEngineAssetChanges", Asset.class))
             .routeId("RuleEngineAssetChanges")
-            .filter(isPersistenceEventForEntityType(Asset.class))
             .process(exchange -> {
-                PersistenceEvent<Asset<?>> persistenceEvent = (PersistenceEvent<Asset<?>>) exchange.getIn().getBody(PersistenceEvent.class);
-                final Asset<?> eventAsset = persistenceEvent.getEntity();
-                processAssetChange(eventAsset, persistenceEvent);
+                List<PersistenceEvent<Asset<?>>> persistenceEvents = (List<PersistenceEvent<Asset<?>>>) exchange.getIn().getBody(List.class);
+                persistenceEvents.forEach(persistenceEvent -> processAssetChange(persistenceEvent.getEntity(), persistenceEvent));
             });
     }
 
@@ -330,6 +334,11 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
             assetStates.clear();
         });
 
+        synchronized (assetLocationPredicates) {
+            assetLocationPredicates.clear();
+            assetsWithModifiedLocationPredicates.clear();
+        }
+
         for (GeofenceAssetAdapter geofenceAssetAdapter : geofenceAssetAdapters) {
             geofenceAssetAdapter.stop(container);
         }
@@ -632,6 +641,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
                     clientEventService,
                     assetDatapointService,
                     assetPredictedDatapointService,
+                    metricsRegistry,
                     new RulesEngineId<>(),
                     locationPredicateRulesConsumer
                 );
@@ -673,6 +683,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
                         clientEventService,
                         assetDatapointService,
                         assetPredictedDatapointService,
+                        metricsRegistry,
                         new RulesEngineId<>(realm),
                         locationPredicateRulesConsumer
                     ));
@@ -748,6 +759,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
                         clientEventService,
                         assetDatapointService,
                         assetPredictedDatapointService,
+                        metricsRegistry,
                         new RulesEngineId<>(ruleset.getRealm(), assetId),
                         locationPredicateRulesConsumer
                     ));
@@ -881,132 +893,77 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
 
     /**
      * Called when an engine's rules change identifying assets with location attributes that also have {@link
-     * LocationAttributePredicate} in the rules. The job here is to identify the asset's (via {@link AssetState}) that
-     * have modified {@link LocationAttributePredicate}s and to notify the {@link GeofenceAssetAdapter}s.
+     * LocationAttributePredicate} in the rules; only assets whose predicates have changed in that engine are supplied.
+     * The changes are recorded (O(changed)) and the {@link GeofenceAssetAdapter}s are notified asynchronously without
+     * holding the global lock.
      */
-    protected void onEngineLocationRulesChanged(RulesEngine<?> rulesEngine, List<RulesEngine.AssetStateLocationPredicates> newEngineAssetStateLocationPredicates) {
-        withLock(getClass().getSimpleName() + "::onEngineLocationRulesChanged", () -> {
-            int initialModifiedCount = assetsWithModifiedLocationPredicates.size();
-
-            if (newEngineAssetStateLocationPredicates == null) {
-                engineAssetLocationPredicateMap.computeIfPresent(rulesEngine,
-                    (re, existingAssetStateLocationPredicates) -> {
-                        // All location predicates have been removed so record each asset state as modified
-                        assetsWithModifiedLocationPredicates.addAll(
-                            existingAssetStateLocationPredicates.stream().map(
-                                RulesEngine.AssetStateLocationPredicates::getAssetId).collect(
-                                Collectors.toList()));
-                        // Remove this engine from the map
-                        return null;
-                    });
-            } else {
-                engineAssetLocationPredicateMap.compute(rulesEngine,
-                    (re, existingEngineAssetStateLocationPredicates) -> {
-                        // Check if this not the first time this engine has been seen with location predicates so we can check
-                        // for any removed asset states
-                        if (existingEngineAssetStateLocationPredicates == null) {
-                            // All asset states are new so record them all as modified
-                            assetsWithModifiedLocationPredicates.addAll(
-                                newEngineAssetStateLocationPredicates.stream().map(
-                                    RulesEngine.AssetStateLocationPredicates::getAssetId).collect(
-                                    Collectors.toList()));
-                        } else {
-                            // Find obsolete and modified asset states
-                            existingEngineAssetStateLocationPredicates.forEach(
-                                existingAssetStateLocationPredicates -> {
-                                    // Check if there are no longer any location predicates for this asset
-                                    Optional<RulesEngine.AssetStateLocationPredicates> newAssetStateLocationPredicates = newEngineAssetStateLocationPredicates.stream()
-                                        .filter(assetStateLocationPredicates ->
-                                            assetStateLocationPredicates.getAssetId().equals(
-                                                existingAssetStateLocationPredicates.getAssetId()))
-                                        .findFirst();
-
-                                    if (newAssetStateLocationPredicates.isPresent()) {
-                                        // Compare existing and new location predicate sets if there is any change then record it
-                                        if (!newAssetStateLocationPredicates.get().getLocationPredicates().equals(
-                                            existingAssetStateLocationPredicates.getLocationPredicates())) {
-                                            assetsWithModifiedLocationPredicates.add(
-                                                existingAssetStateLocationPredicates.getAssetId());
-                                        }
-                                    } else {
-                                        // This means that there are no longer any location predicates so old ones are obsolete
-                                        assetsWithModifiedLocationPredicates.add(
-                                            existingAssetStateLocationPredicates.getAssetId());
-                                    }
-                                });
-
-                            // Check for asset states in the new map but not in the old one
-                            newEngineAssetStateLocationPredicates.forEach(
-                                newAssetStateLocationPredicates -> {
-                                    boolean isNewAssetState = existingEngineAssetStateLocationPredicates.stream()
-                                        .noneMatch(assetStateLocationPredicates ->
-                                            assetStateLocationPredicates.getAssetId().equals(
-                                                newAssetStateLocationPredicates.getAssetId()));
-
-                                    if (isNewAssetState) {
-                                        // This means that all predicates for this asset are new
-                                        assetsWithModifiedLocationPredicates.add(
-                                            newAssetStateLocationPredicates.getAssetId());
-                                    }
-                                });
+    protected void onEngineLocationRulesChanged(RulesEngine<?> rulesEngine, Map<String, Set<GeofencePredicate>> changedLocationPredicates) {
+        synchronized (assetLocationPredicates) {
+            changedLocationPredicates.forEach((assetId, locationPredicates) -> {
+                if (locationPredicates.isEmpty()) {
+                    Map<RulesEngine<?>, Set<GeofencePredicate>> engineLocationPredicates = assetLocationPredicates.get(assetId);
+                    if (engineLocationPredicates != null) {
+                        engineLocationPredicates.remove(rulesEngine);
+                        if (engineLocationPredicates.isEmpty()) {
+                            assetLocationPredicates.remove(assetId);
                         }
-                        return newEngineAssetStateLocationPredicates;
-                    });
-            }
+                    }
+                } else {
+                    assetLocationPredicates.computeIfAbsent(assetId, id -> new HashMap<>(2)).put(rulesEngine, locationPredicates);
+                }
+                assetsWithModifiedLocationPredicates.add(assetId);
+            });
 
-            if (assetsWithModifiedLocationPredicates.size() != initialModifiedCount) {
-                processModifiedGeofences();
+            if (!assetsWithModifiedLocationPredicates.isEmpty() && !geofenceProcessingScheduled) {
+                geofenceProcessingScheduled = true;
+                geofenceExecutorService.execute(this::processModifiedGeofences);
             }
-        });
+        }
     }
 
     protected void processModifiedGeofences() {
-        withLock(getClass().getSimpleName() + "::processModifiedGeofences", () -> {
-            LOG.finest("Processing geofence modifications: modified asset geofence count=" + assetsWithModifiedLocationPredicates.size());
+        // Only one batch is passed to the adapters at a time so they see changes in order
+        synchronized (geofenceProcessingLock) {
+            List<RulesEngine.AssetStateLocationPredicates> modifiedAssetLocationPredicates;
+
+            synchronized (assetLocationPredicates) {
+                geofenceProcessingScheduled = false;
+                modifiedAssetLocationPredicates = new ArrayList<>(assetsWithModifiedLocationPredicates.size());
+
+                // Combine the location predicates of all engines for each modified asset
+                for (String assetId : assetsWithModifiedLocationPredicates) {
+                    Set<GeofencePredicate> locationPredicates = new HashSet<>();
+                    Map<RulesEngine<?>, Set<GeofencePredicate>> engineLocationPredicates = assetLocationPredicates.get(assetId);
+                    if (engineLocationPredicates != null) {
+                        engineLocationPredicates.values().forEach(locationPredicates::addAll);
+                    }
+                    modifiedAssetLocationPredicates.add(new RulesEngine.AssetStateLocationPredicates(assetId, locationPredicates));
+                }
 
-            try {
-                // Find all location predicates associated with modified assets and pass through to the geofence adapters
-                List<RulesEngine.AssetStateLocationPredicates> assetLocationPredicates = new ArrayList<>(
-                    assetsWithModifiedLocationPredicates.size());
-
-                assetsWithModifiedLocationPredicates.forEach(assetId -> {
-
-                    RulesEngine.AssetStateLocationPredicates locationPredicates = new RulesEngine.AssetStateLocationPredicates(
-                        assetId,
-                        new HashSet<>());
-
-                    engineAssetLocationPredicateMap.forEach((rulesEngine, engineAssetStateLocationPredicates) ->
-                        engineAssetStateLocationPredicates.stream().filter(
-                            assetStateLocationPredicates ->
-                                assetStateLocationPredicates.getAssetId().equals(
-                                    assetId))
-                            .findFirst()
-                            .ifPresent(
-                                assetStateLocationPredicate -> {
-                                    locationPredicates.getLocationPredicates().addAll(
-                                        assetStateLocationPredicate.getLocationPredicates());
-                                }));
-
-                    assetLocationPredicates.add(locationPredicates);
-                });
+                // Clear modified assets ready for next batch
+                assetsWithModifiedLocationPredicates.clear();
+            }
+
+            if (modifiedAssetLocationPredicates.isEmpty()) {
+                return;
+            }
 
+            LOG.finest("Processing geofence modifications: modified asset geofence count=" + modifiedAssetLocationPredicates.size());
+
+            try {
                 for (GeofenceAssetAdapter geofenceAssetAdapter : geofenceAssetAdapters) {
                     LOG.finest("Passing modified geofences to adapter: " + geofenceAssetAdapter.getName());
-                    geofenceAssetAdapter.processLocationPredicates(assetLocationPredicates);
+                    geofenceAssetAdapter.processLocationPredicates(modifiedAssetLocationPredicates);
 
-                    if (assetLocationPredicates.isEmpty()) {
+                    if (modifiedAssetLocationPredicates.isEmpty()) {
                         LOG.finest("All modified geofences handled");
                         break;
                     }
                 }
-
             } catch (Exception e) {
                 LOG.log(SEVERE, "Exception thrown by geofence adapter whilst processing location predicates", e);
-            } finally {
-                // Clear modified assets ready for next batch
-                assetsWithModifiedLocationPredicates.clear();
             }
-        });
+        }
     }
 
     protected Optional<RulesetDeployment> getRulesetDeployment(Long rulesetId) {
@@ -31,6 +31,7 @@ import org.jeasy.rules.core.RuleBuilder;
 import org.kohsuke.groovy.sandbox.GroovyValueFilter;
 import org.kohsuke.groovy.sandbox.SandboxTransformer;
 import org.openjdk.nashorn.api.scripting.ScriptObjectMirror;
+import org.openremote.container.metrics.TimerMetric;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.model.calendar.CalendarEvent;
@@ -137,6 +138,7 @@ public class RulesetDeployment {
     protected FlowRulesBuilder flowRulesBuilder;
     protected CalendarEvent validity;
     protected Pair<Long, Long> nextValidity;
+    protected TimerMetric fireTimer;
 
     public RulesetDeployment(Ruleset ruleset, TimerService timerService,
                              AssetStorageService assetStorageService, ScheduledExecutorService executorService,
@@ -495,6 +497,17 @@ public class RulesetDeployment {
         this.error = error;
     }
 
+    /**
+     * The timer recording how long firing the rules of this deployment takes, resolved once when deployed.
+     */
+    public TimerMetric getFireTimer() {
+        return fireTimer;
+    }
+
+    public void setFireTimer(TimerMetric fireTimer) {
+        this.fireTimer = fireTimer;
+    }
+
     public String getErrorMessage() {
         return getError() != null ? getError().getMessage() : null;
     }
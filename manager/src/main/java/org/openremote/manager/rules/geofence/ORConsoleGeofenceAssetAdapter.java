@@ -23,6 +23,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.camel.builder.RouteBuilder;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceEvent;
+import org.openremote.container.persistence.PersistenceService;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.manager.gateway.GatewayService;
 import org.openremote.manager.notification.NotificationService;
@@ -42,6 +43,7 @@ import org.openremote.model.syslog.SyslogCategory;
 import org.openremote.model.util.ValueUtil;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -51,8 +53,6 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.openremote.container.concurrent.GlobalLock.withLock;
-import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
-import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
 import static org.openremote.manager.gateway.GatewayService.isNotForGateway;
 import static org.openremote.model.asset.AssetResource.Util.WRITE_ATTRIBUTE_HTTP_METHOD;
 import static org.openremote.model.asset.AssetResource.Util.getWriteAttributeUrl;
@@ -72,10 +72,11 @@ public class ORConsoleGeofenceAssetAdapter extends RouteBuilder implements Geofe
     public static final String NAME = "ORConsole";
     public static int NOTIFY_ASSETS_DEBOUNCE_MILLIS = 60000;
     public static int NOTIFY_ASSETS_BATCH_MILLIS = 10000;
-    protected Map<String, RulesEngine.AssetStateLocationPredicates> assetLocationPredicatesMap = new HashMap<>();
+    protected Map<String, RulesEngine.AssetStateLocationPredicates> assetLocationPredicatesMap = new ConcurrentHashMap<>();
     protected NotificationService notificationService;
     protected AssetStorageService assetStorageService;
     protected GatewayService gatewayService;
+    protected PersistenceService persistenceService;
     protected ManagerIdentityService identityService;
     protected ScheduledExecutorService executorService;
     protected Map<String, String> consoleIdRealmMap;
@@ -92,8 +93,9 @@ public class ORConsoleGeofenceAssetAdapter extends RouteBuilder implements Geofe
         this.assetStorageService = container.getService(AssetStorageService.class);
         this.notificationService = container.getService(NotificationService.class);
         this.identityService = container.getService(ManagerIdentityService.class);
-        executorService = container.getExecutorService();
+        executorService = container.getExecutorService(Container.EXECUTOR_NOTIFICATION);
         gatewayService = container.getService(GatewayService.class);
+        persistenceService = container.getService(PersistenceService.class);
         container.getService(MessageBrokerService.class).getContext().addRoutes(this);
     }
 
@@ -101,7 +103,7 @@ public class ORConsoleGeofenceAssetAdapter extends RouteBuilder implements Geofe
     public void start(Container container) throws Exception {
 
         // Find all console assets that use this adapter
-        consoleIdRealmMap = new HashMap<>();
+        consoleIdRealmMap = new ConcurrentHashMap<>();
 
         assetStorageService.findAll(
             new AssetQuery()
@@ -124,9 +126,8 @@ public class ORConsoleGeofenceAssetAdapter extends RouteBuilder implements Geofe
     public void configure() throws Exception {
 
         // If any console asset was modified in the database, detect geofence provider changes
-        from(PERSISTENCE_TOPIC)
+        from(persistenceService.subscribePersistenceEvents("ORConsoleGeofenceAdapterAssetChanges", ConsoleAsset.class))
             .routeId("ORConsoleGeofenceAdapterAssetChanges")
-            .filter(isPersistenceEventForEntityType(ConsoleAsset.class))
             .filter(isNotForGateway(gatewayService))
             .process(exchange -> {
                 @SuppressWarnings("unchecked")
@@ -140,75 +141,76 @@ public class ORConsoleGeofenceAssetAdapter extends RouteBuilder implements Geofe
         return NAME;
     }
 
+    /**
+     * Only the modified assets are supplied so this is O(modified); synchronized on this adapter rather than the global
+     * lock as all state is local to the adapter.
+     */
     @Override
-    public void processLocationPredicates(List<RulesEngine.AssetStateLocationPredicates> modifiedAssetLocationPredicates) {
+    public synchronized void processLocationPredicates(List<RulesEngine.AssetStateLocationPredicates> modifiedAssetLocationPredicates) {
 
-        withLock(getClass().getSimpleName() + "::processLocationPredicates", () -> {
+        AtomicBoolean notifierDebounce = new AtomicBoolean(false);
 
-            AtomicBoolean notifierDebounce = new AtomicBoolean(false);
+        if (notifyAssets == null) {
+            notifyAssets = new HashSet<>(modifiedAssetLocationPredicates.size());
+        }
 
-            if (notifyAssets == null) {
-                notifyAssets = new HashSet<>(modifiedAssetLocationPredicates.size());
-            }
+        // Remove all entries that relate to consoles that are compatible with this adapter
+        modifiedAssetLocationPredicates.removeIf(assetStateLocationPredicates -> {
+            boolean remove = consoleIdRealmMap.containsKey(assetStateLocationPredicates.getAssetId());
 
-            // Remove all entries that relate to consoles that are compatible with this adapter
-            modifiedAssetLocationPredicates.removeIf(assetStateLocationPredicates -> {
-                boolean remove = consoleIdRealmMap.containsKey(assetStateLocationPredicates.getAssetId());
+            if (remove) {
+                // Keep only radial location predicates (only these are supported on iOS and Android)
+                assetStateLocationPredicates
+                    .getLocationPredicates()
+                    .removeIf(locationPredicate ->
+                        !(locationPredicate instanceof RadialGeofencePredicate));
 
-                if (remove) {
-                    // Keep only radial location predicates (only these are supported on iOS and Android)
-                    assetStateLocationPredicates
-                        .getLocationPredicates()
-                        .removeIf(locationPredicate ->
-                            !(locationPredicate instanceof RadialGeofencePredicate));
 
+                RulesEngine.AssetStateLocationPredicates existingPredicates = assetLocationPredicatesMap.get(
+                    assetStateLocationPredicates.getAssetId());
+                if (existingPredicates == null || !existingPredicates.getLocationPredicates().equals(assetStateLocationPredicates.getLocationPredicates())) {
+                    // We're not comparing before and after state as RulesService has done that although it could be
+                    // that rectangular location predicates have changed but this will do for now
+                    notifyAssets.add(assetStateLocationPredicates.getAssetId());
+                    notifierDebounce.set(true);
+                }
 
-                    RulesEngine.AssetStateLocationPredicates existingPredicates = assetLocationPredicatesMap.get(
-                        assetStateLocationPredicates.getAssetId());
-                    if (existingPredicates == null || !existingPredicates.getLocationPredicates().equals(assetStateLocationPredicates.getLocationPredicates())) {
-                        // We're not comparing before and after state as RulesService has done that although it could be
-                        // that rectangular location predicates have changed but this will do for now
+                if (assetStateLocationPredicates.getLocationPredicates().isEmpty()) {
+                    if (assetLocationPredicatesMap.remove(assetStateLocationPredicates.getAssetId()) != null) {
+                        LOG.info("Clearing location predicates for asset: " + assetStateLocationPredicates.getAssetId());
                         notifyAssets.add(assetStateLocationPredicates.getAssetId());
                         notifierDebounce.set(true);
                     }
+                } else {
+                    LOG.info("Setting "
+                        + assetStateLocationPredicates.getLocationPredicates().size()
+                        + " location predicate(s) for asset: " + assetStateLocationPredicates.getAssetId());
 
-                    if (assetStateLocationPredicates.getLocationPredicates().isEmpty()) {
-                        if (assetLocationPredicatesMap.remove(assetStateLocationPredicates.getAssetId()) != null) {
-                            LOG.info("Clearing location predicates for asset: " + assetStateLocationPredicates.getAssetId());
-                            notifyAssets.add(assetStateLocationPredicates.getAssetId());
-                            notifierDebounce.set(true);
-                        }
-                    } else {
-                        LOG.info("Setting "
-                            + assetStateLocationPredicates.getLocationPredicates().size()
-                            + " location predicate(s) for asset: " + assetStateLocationPredicates.getAssetId());
-
-                        assetLocationPredicatesMap.put(assetStateLocationPredicates.getAssetId(),
-                            assetStateLocationPredicates);
-                    }
-                } else if (assetLocationPredicatesMap.remove(assetStateLocationPredicates.getAssetId()) != null) {
-                    // Used to be in this map so must have been deleted so ask console to delete its geofences also
-                    LOG.info("Clearing location predicates for asset: " + assetStateLocationPredicates.getAssetId());
-                    notifyAssets.add(assetStateLocationPredicates.getAssetId());
-                    notifierDebounce.set(true);
+                    assetLocationPredicatesMap.put(assetStateLocationPredicates.getAssetId(),
+                        assetStateLocationPredicates);
                 }
+            } else if (assetLocationPredicatesMap.remove(assetStateLocationPredicates.getAssetId()) != null) {
+                // Used to be in this map so must have been deleted so ask console to delete its geofences also
+                LOG.info("Clearing location predicates for asset: " + assetStateLocationPredicates.getAssetId());
+                notifyAssets.add(assetStateLocationPredicates.getAssetId());
+                notifierDebounce.set(true);
+            }
 
-                return remove;
-            });
+            return remove;
+        });
 
-            if (notifierDebounce.get()) {
-                if (notifyAssetsScheduledFuture == null || notifyAssetsScheduledFuture.cancel(false)) {
-                    notifyAssetsScheduledFuture = executorService.schedule(() ->
-                            withLock(getClass().getSimpleName() + "::notifyAssets",
-                                () -> {
-                                    notifyAssetGeofencesChanged(notifyAssets);
-                                    notifyAssets = null;
-                                    notifyAssetsScheduledFuture = null;
-                                }),
-                        NOTIFY_ASSETS_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
-                }
+        if (notifierDebounce.get()) {
+            if (notifyAssetsScheduledFuture == null || notifyAssetsScheduledFuture.cancel(false)) {
+                notifyAssetsScheduledFuture = executorService.schedule(() -> {
+                        synchronized (this) {
+                            notifyAssetGeofencesChanged(notifyAssets);
+                            notifyAssets = null;
+                            notifyAssetsScheduledFuture = null;
+                        }
+                    },
+                    NOTIFY_ASSETS_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
             }
-        });
+        }
     }
 
     @Override
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.syslog;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for captured log records; any number of logging threads can {@link #offer} without
+ * blocking each other or the thread that {@link #drainTo}s the buffer. Each slot carries a sequence number that tells
+ * producers and consumers whether it is free or filled for the current lap, so a position claimed with a CAS is then
+ * published with a single ordered write.
+ * <p>
+ * When the buffer is full the {@link OverflowPolicy} decides which record is lost; this never blocks the logging
+ * thread. Nothing in here logs as the buffer sits underneath the JUL handler.
+ */
+public class SyslogBuffer<T> {
+
+    public enum OverflowPolicy {
+        /**
+         * Keep what is buffered and drop the record being offered.
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the oldest buffered record to make room for the record being offered.
+         */
+        DROP_OLDEST
+    }
+
+    protected final int capacity;
+    protected final int mask;
+    protected final OverflowPolicy overflowPolicy;
+    protected final AtomicReferenceArray<T> slots;
+    protected final AtomicLongArray sequences;
+    protected final AtomicLong enqueuePosition = new AtomicLong();
+    protected final AtomicLong dequeuePosition = new AtomicLong();
+
+    // Metrics
+    protected final AtomicLong bufferedRecords = new AtomicLong();
+    protected final AtomicLong droppedRecords = new AtomicLong();
+
+    /**
+     * @param capacity Rounded up to the next power of two.
+     */
+    public SyslogBuffer(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.DROP_NEWEST;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return <code>false</code> if the buffer was full and the record was dropped; with {@link
+     * OverflowPolicy#DROP_OLDEST} this is always <code>true</code> and an older record is dropped instead.
+     */
+    public boolean offer(T record) {
+        while (!tryOffer(record)) {
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                droppedRecords.incrementAndGet();
+                return false;
+            }
+            // A consumer may have made room in the meantime, in which case there is nothing to drop
+            if (poll() != null) {
+                droppedRecords.incrementAndGet();
+            }
+        }
+        bufferedRecords.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return The oldest record or <code>null</code> if the buffer is empty.
+     */
+    public T poll() {
+        long position = dequeuePosition.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (dequeuePosition.compareAndSet(position, position + 1)) {
+                    T record = slots.get(index);
+                    slots.lazySet(index, null);
+                    // Free the slot for the producer of the next lap
+                    sequences.lazySet(index, position + capacity);
+                    return record;
+                }
+                position = dequeuePosition.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = dequeuePosition.get();
+            }
+        }
+    }
+
+    /**
+     * Moves up to <code>maxRecords</code> of the oldest records into the list.
+     *
+     * @return The number of records moved.
+     */
+    public int drainTo(List<? super T> records, int maxRecords) {
+        int drained = 0;
+        T record;
+        while (drained < maxRecords && (record = poll()) != null) {
+            records.add(record);
+            drained++;
+        }
+        return drained;
+    }
+
+    protected boolean tryOffer(T record) {
+        long position = enqueuePosition.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, record);
+                    // Publish the record to consumers
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = enqueuePosition.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Approximate number of buffered records, exact when there are no concurrent offers or polls.
+     */
+    public int size() {
+        long size = enqueuePosition.get() - dequeuePosition.get();
+        return (int) Math.max(0L, Math.min(size, capacity));
+    }
+
+    public long getBufferedRecords() {
+        return bufferedRecords.get();
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "capacity=" + capacity +
+            ", overflowPolicy=" + overflowPolicy +
+            ", size=" + size() +
+            ", bufferedRecords=" + getBufferedRecords() +
+            ", droppedRecords=" + getDroppedRecords() +
+            '}';
+    }
+}
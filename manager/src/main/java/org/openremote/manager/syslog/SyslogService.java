@@ -19,6 +19,9 @@
  */
 package org.openremote.manager.syslog;
 
+import org.hibernate.Session;
+import org.openremote.container.metrics.MetricsRegistry;
+import org.openremote.container.metrics.MetricsService;
 import org.openremote.model.Container;
 import org.openremote.model.ContainerService;
 import org.openremote.container.persistence.PersistenceService;
@@ -32,6 +35,8 @@ import org.openremote.model.syslog.SyslogLevel;
 import org.openremote.model.util.Pair;
 
 import javax.persistence.TypedQuery;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
@@ -44,24 +49,47 @@ import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
+import static org.openremote.container.util.MapAccess.getInteger;
+import static org.openremote.container.util.MapAccess.getString;
+
 /**
  * Act as a JUL handler, publishes (some) log messages on the client event bus, stores
  * (some, depending on {@link SyslogConfig}) log messages in the database.
+ * <p>
+ * Log messages to be stored are captured in a lock-free {@link SyslogBuffer} so logging threads never wait for each
+ * other or for the database; the buffer is periodically flushed with JDBC batch inserts. When logging outpaces the
+ * flush the buffer overflow policy decides which messages are dropped.
  */
 public class SyslogService extends Handler implements ContainerService {
 
     private static final Logger LOG = Logger.getLogger(SyslogService.class.getName());
+    public static final String SYSLOG_BUFFER_SIZE = "SYSLOG_BUFFER_SIZE";
+    public static final int SYSLOG_BUFFER_SIZE_DEFAULT = 16384;
+    public static final String SYSLOG_BUFFER_OVERFLOW_POLICY = "SYSLOG_BUFFER_OVERFLOW_POLICY";
+    public static final String SYSLOG_BUFFER_OVERFLOW_POLICY_DEFAULT = SyslogBuffer.OverflowPolicy.DROP_NEWEST.name();
+    /**
+     * Max events written per database transaction whilst flushing the buffer.
+     */
+    public static final int FLUSH_BATCH_SIZE = 1000;
+    protected static final String INSERT_SQL = "insert into SYSLOG_EVENT (ID, TIMESTAMP, CATEGORY, LEVEL, MESSAGE, SUBCATEGORY) " +
+        "values (nextval('OPENREMOTE_SEQUENCE'), ?, ?, ?, ?, ?)";
 
     protected ScheduledExecutorService executorService;
     protected PersistenceService persistenceService;
     protected ClientEventService clientEventService;
 
-    protected SyslogConfig config;
+    protected volatile SyslogConfig config;
 
-    final protected List<SyslogEvent> batch = new ArrayList<>();
+    protected SyslogBuffer<SyslogEvent> buffer;
     protected ScheduledFuture flushBatchFuture;
     protected ScheduledFuture deleteOldFuture;
 
+    // Metrics
+    protected final AtomicLong flushedRecords = new AtomicLong();
+    protected final AtomicLong failedRecords = new AtomicLong();
+    protected final AtomicLong lastFlushMillis = new AtomicLong();
+    protected long reportedDroppedRecords;
+
     @Override
     public int getPriority() {
         return ContainerService.DEFAULT_PRIORITY;
@@ -69,7 +97,26 @@ public class SyslogService extends Handler implements ContainerService {
 
     @Override
     public void init(Container container) throws Exception {
-        executorService = container.getExecutorService();
+        executorService = container.getExecutorService(Container.EXECUTOR_PERSISTENCE);
+
+        SyslogBuffer.OverflowPolicy overflowPolicy;
+        String overflowPolicyName = getString(container.getConfig(), SYSLOG_BUFFER_OVERFLOW_POLICY, SYSLOG_BUFFER_OVERFLOW_POLICY_DEFAULT);
+        try {
+            overflowPolicy = SyslogBuffer.OverflowPolicy.valueOf(overflowPolicyName.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LOG.warning("Invalid " + SYSLOG_BUFFER_OVERFLOW_POLICY + " '" + overflowPolicyName + "', using: " + SYSLOG_BUFFER_OVERFLOW_POLICY_DEFAULT);
+            overflowPolicy = SyslogBuffer.OverflowPolicy.valueOf(SYSLOG_BUFFER_OVERFLOW_POLICY_DEFAULT);
+        }
+        buffer = new SyslogBuffer<>(
+            Math.max(1, getInteger(container.getConfig(), SYSLOG_BUFFER_SIZE, SYSLOG_BUFFER_SIZE_DEFAULT)),
+            overflowPolicy
+        );
+
+        MetricsRegistry metricsRegistry = MetricsService.getRegistry(container);
+        metricsRegistry.gauge("or_syslog_buffered_events", "Log events waiting to be stored", buffer::size);
+        metricsRegistry.gauge("or_syslog_dropped_events", "Log events dropped because the buffer was full", this::getDroppedRecords);
+        metricsRegistry.gauge("or_syslog_flushed_events", "Log events stored in the database", this::getFlushedRecords);
+        metricsRegistry.gauge("or_syslog_failed_events", "Log events lost because storing them failed", this::getFailedRecords);
 
         if (container.hasService(ClientEventService.class) && container.hasService(PersistenceService.class)) {
             LOG.info("Syslog service enabled");
@@ -107,10 +154,7 @@ public class SyslogService extends Handler implements ContainerService {
                 // Not ready on startup
                 if (persistenceService.getEntityManagerFactory() == null)
                     return;
-                final int maxAgeMinutes;
-                synchronized (batch) {
-                    maxAgeMinutes = config.getStoredMaxAgeMinutes();
-                }
+                final int maxAgeMinutes = config.getStoredMaxAgeMinutes();
                 persistenceService.doTransaction(em -> {
                     em.createQuery(
                         "delete from SyslogEvent e " +
@@ -160,24 +204,18 @@ public class SyslogService extends Handler implements ContainerService {
     }
 
     public void setConfig(SyslogConfig config) {
-        synchronized (batch) {
-            LOG.info("Using: " + config);
-            this.config = config;
-        }
+        LOG.info("Using: " + config);
+        this.config = config;
     }
 
     public SyslogConfig getConfig() {
-        synchronized (batch) {
-            return config;
-        }
+        return config;
     }
 
     public void clearStoredEvents() {
         if (persistenceService == null)
             return;
-        synchronized (batch) {
-            persistenceService.doTransaction(em -> em.createQuery("delete from SyslogEvent e").executeUpdate());
-        }
+        persistenceService.doTransaction(em -> em.createQuery("delete from SyslogEvent e").executeUpdate());
     }
 
     public Pair<Long, List<SyslogEvent>> getEvents(SyslogLevel level, int perPage, int page, Instant from, Instant to, List<SyslogCategory> categories, List<String> subCategories) {
@@ -258,47 +296,96 @@ public class SyslogService extends Handler implements ContainerService {
         if (persistenceService.getEntityManagerFactory() == null) {
             return;
         }
+        SyslogConfig config = this.config;
         boolean isLoggable =
             config.getStoredLevel().isLoggable(syslogEvent)
                 && Arrays.asList(config.getStoredCategories()).contains(syslogEvent.getCategory());
         if (isLoggable) {
-            synchronized (batch) {
-                batch.add(syslogEvent);
-            }
+            buffer.offer(syslogEvent);
         }
     }
 
+    /**
+     * Writes what is currently buffered, a transaction per {@link #FLUSH_BATCH_SIZE} events; events buffered whilst
+     * flushing are left for the next run so a steady stream of logging can't keep this going indefinitely.
+     */
     protected void flushBatch() {
         if (persistenceService == null)
             return;
-        synchronized (batch) {
-            final List<SyslogEvent> transientEvents = new ArrayList<>(batch);
-            batch.clear();
-            if (transientEvents.size() == 0)
-                return;
+
+        long startMillis = System.currentTimeMillis();
+        int remaining = buffer.size();
+        List<SyslogEvent> transientEvents = new ArrayList<>(Math.min(remaining, FLUSH_BATCH_SIZE));
+        int flushed = 0;
+
+        while (remaining > 0 && buffer.drainTo(transientEvents, Math.min(remaining, FLUSH_BATCH_SIZE)) > 0) {
+            remaining -= transientEvents.size();
             LOG.finer("Flushing syslog batch: " + transientEvents.size());
             try {
-                persistenceService.doTransaction(em -> {
-                    try {
+                persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+                    try (PreparedStatement st = connection.prepareStatement(INSERT_SQL)) {
                         for (SyslogEvent e : transientEvents) {
-                            em.persist(e);
+                            st.setTimestamp(1, new Timestamp(e.getTimestamp()));
+                            st.setString(2, e.getCategory().name());
+                            st.setInt(3, e.getLevel().ordinal());
+                            st.setString(4, e.getMessage());
+                            st.setString(5, e.getSubCategory().orElse(null));
+                            st.addBatch();
                         }
-                    } catch (RuntimeException ex) {
-                        // This is not a big problem, it may happen on shutdown of database connections during tests, just inform the user
-                        // TODO Or is it a serious problem and we need to escalate? In any case, just throwing the ex is not good
-                        LOG.info("Error flushing syslog to database, some events are lost: " + ex);
-                    } finally {
-                        em.flush();
+                        st.executeBatch();
                     }
-                });
-            } catch (Exception e) {
-                LOG.log(Level.SEVERE, "Exception occurred whilst flushing the syslog", e);
+                }));
+                flushedRecords.addAndGet(transientEvents.size());
+                flushed += transientEvents.size();
+            } catch (Exception ex) {
+                // This is not a big problem, it may happen on shutdown of database connections during tests, just inform the user
+                failedRecords.addAndGet(transientEvents.size());
+                LOG.info("Error flushing syslog to database, " + transientEvents.size() + " events are lost: " + ex);
             }
+            transientEvents.clear();
         }
+
+        if (flushed > 0) {
+            lastFlushMillis.set(System.currentTimeMillis() - startMillis);
+        }
+
+        long droppedRecords = buffer.getDroppedRecords();
+        if (droppedRecords > reportedDroppedRecords) {
+            LOG.warning("Syslog buffer overflowed, events dropped since last flush: " + (droppedRecords - reportedDroppedRecords) + ", " + buffer);
+            reportedDroppedRecords = droppedRecords;
+        }
+    }
+
+    public SyslogBuffer<SyslogEvent> getBuffer() {
+        return buffer;
+    }
+
+    public long getFlushedRecords() {
+        return flushedRecords.get();
+    }
+
+    /**
+     * Events taken from the buffer that could not be written to the database.
+     */
+    public long getFailedRecords() {
+        return failedRecords.get();
+    }
+
+    public long getDroppedRecords() {
+        return buffer != null ? buffer.getDroppedRecords() : 0L;
+    }
+
+    public long getLastFlushMillis() {
+        return lastFlushMillis.get();
     }
 
     @Override
     public String toString() {
-        return getClass().getSimpleName() + "{}";
+        return getClass().getSimpleName() + "{" +
+            "buffer=" + buffer +
+            ", flushedRecords=" + getFlushedRecords() +
+            ", failedRecords=" + getFailedRecords() +
+            ", lastFlushMillis=" + getLastFlushMillis() +
+            '}';
     }
 }
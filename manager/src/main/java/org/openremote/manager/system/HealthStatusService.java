@@ -19,6 +19,7 @@
  */
 package org.openremote.manager.system;
 
+import org.openremote.container.metrics.MetricsService;
 import org.openremote.model.Container;
 import org.openremote.model.ContainerService;
 import org.openremote.manager.web.ManagerWebService;
@@ -30,7 +31,8 @@ import java.util.List;
 import java.util.ServiceLoader;
 
 /**
- * This service is here to initialise the {@link StatusResource}.
+ * This service is here to initialise the {@link StatusResource}, which also exposes the metrics of the {@link
+ * MetricsService}.
  */
 public class HealthStatusService implements ContainerService {
 
@@ -53,7 +55,7 @@ public class HealthStatusService implements ContainerService {
         }
 
         container.getService(ManagerWebService.class).addApiSingleton(
-                new StatusResourceImpl(healthStatusProviderList)
+                new StatusResourceImpl(healthStatusProviderList, MetricsService.getRegistry(container))
         );
     }
 
@@ -20,6 +20,7 @@
 package org.openremote.manager.system;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openremote.container.metrics.MetricsRegistry;
 import org.openremote.model.system.HealthStatusProvider;
 import org.openremote.model.system.StatusResource;
 import org.openremote.model.util.ValueUtil;
@@ -35,10 +36,12 @@ public class StatusResourceImpl implements StatusResource {
 
     private static final Logger LOG = Logger.getLogger(StatusResourceImpl.class.getName());
     protected List<HealthStatusProvider> healthStatusProviderList;
+    protected MetricsRegistry metricsRegistry;
     protected Properties versionProps = new Properties();
 
-    public StatusResourceImpl(List<HealthStatusProvider> healthStatusProviderList) {
+    public StatusResourceImpl(List<HealthStatusProvider> healthStatusProviderList, MetricsRegistry metricsRegistry) {
         this.healthStatusProviderList = healthStatusProviderList;
+        this.metricsRegistry = metricsRegistry;
 
         try(InputStream resourceStream = StatusResourceImpl.class.getClassLoader().getResourceAsStream("system.properties")) {
             versionProps.load(resourceStream);
@@ -63,6 +66,11 @@ public class StatusResourceImpl implements StatusResource {
         return objectValue;
     }
 
+    @Override
+    public String getMetrics() {
+        return metricsRegistry.toPrometheus();
+    }
+
     @Override
     public ObjectNode getInfo() {
         String version = versionProps.getProperty("version");
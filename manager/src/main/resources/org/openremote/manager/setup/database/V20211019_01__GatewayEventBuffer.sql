@@ -0,0 +1,14 @@
+/*
+  Store and forward buffer used by the gateway client whilst the connection to the central manager is down; each row
+  is a compressed batch of events (see GatewayBatchEvent) and rows are replayed in ID order on reconnect.
+ */
+create table GATEWAY_EVENT_BUFFER (
+  ID          bigserial                not null,
+  LOCAL_REALM varchar(255)             not null,
+  TIMESTAMP   timestamp with time zone not null,
+  EVENT_COUNT int4                     not null,
+  DATA        bytea                    not null,
+  primary key (ID)
+);
+
+create index GATEWAY_EVENT_BUFFER_LOCAL_REALM_ID on GATEWAY_EVENT_BUFFER(LOCAL_REALM, ID);
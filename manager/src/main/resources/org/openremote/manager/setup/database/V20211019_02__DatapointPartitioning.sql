@@ -0,0 +1,88 @@
+/*
+  Convert ASSET_DATAPOINT and ASSET_PREDICTED_DATAPOINT to tables partitioned by day on TIMESTAMP so retention can
+  drop whole partitions instead of bulk deleting rows (see AbstractDatapointService).
+
+  Existing data is not copied: the old table is attached as a single partition covering everything before today and
+  is dropped by the purge once all of its rows are older than the max age. Rows that do not fit any daily partition
+  go into the DEFAULT partition and are moved out when the matching daily partition is created.
+ */
+
+/*
+  Creates the daily partition for the given day unless it already exists or overlaps an existing partition, moving any
+  matching rows out of the default partition; returns true if a partition was created.
+ */
+create or replace function CREATE_DATAPOINT_PARTITION(PARENT_TABLE text, PARTITION_DAY date) returns boolean as
+$$
+declare
+  PARTITION_NAME text := lower(PARENT_TABLE) || '_p' || to_char(PARTITION_DAY, 'YYYYMMDD');
+  DEFAULT_NAME   text := lower(PARENT_TABLE) || '_default';
+  FROM_TS        timestamp := PARTITION_DAY::timestamp;
+  TO_TS          timestamp := (PARTITION_DAY + 1)::timestamp;
+begin
+  if to_regclass(PARTITION_NAME) is not null then
+    return false;
+  end if;
+
+  begin
+    execute format('create table %I (like %I including defaults)', PARTITION_NAME, lower(PARENT_TABLE));
+
+    if to_regclass(DEFAULT_NAME) is not null then
+      -- Block inserts into the default partition until the new partition is attached
+      execute format('lock table %I in share row exclusive mode', DEFAULT_NAME);
+      execute format('with MOVED as (delete from %I where TIMESTAMP >= %L and TIMESTAMP < %L returning *) insert into %I select * from MOVED',
+                     DEFAULT_NAME, FROM_TS, TO_TS, PARTITION_NAME);
+    end if;
+
+    execute format('alter table %I attach partition %I for values from (%L) to (%L)',
+                   lower(PARENT_TABLE), PARTITION_NAME, FROM_TS, TO_TS);
+  exception
+    when invalid_object_definition then
+      -- Overlaps an existing partition (e.g. the pre-partitioning data)
+      return false;
+  end;
+
+  return true;
+end;
+$$ language plpgsql;
+
+/*
+  Converts the given (unpartitioned) datapoint table in place, attaching the existing table as the partition for all
+  data before today.
+ */
+create or replace function PARTITION_DATAPOINT_TABLE(DATAPOINT_TABLE text, ENTITY_ID_LENGTH int) returns void as
+$$
+declare
+  LEGACY_NAME   text := lower(DATAPOINT_TABLE) || '_legacy';
+  TODAY         date := current_date;
+  PARTITION_DAY date;
+begin
+  execute format('alter table %I rename to %I', lower(DATAPOINT_TABLE), LEGACY_NAME);
+  execute format('alter index %I rename to %I', lower(DATAPOINT_TABLE) || '_pkey', LEGACY_NAME || '_pkey');
+  execute format('alter table %I drop constraint if exists %I', LEGACY_NAME, lower(DATAPOINT_TABLE) || '_entity_id_fkey');
+
+  execute format('create table %I (' ||
+                 'TIMESTAMP timestamp not null, ' ||
+                 'ENTITY_ID varchar(%s) not null, ' ||
+                 'ATTRIBUTE_NAME varchar(255) not null, ' ||
+                 'VALUE jsonb not null, ' ||
+                 'primary key (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME)' ||
+                 ') partition by range (TIMESTAMP)', lower(DATAPOINT_TABLE), ENTITY_ID_LENGTH);
+  execute format('create table %I partition of %I default', lower(DATAPOINT_TABLE) || '_default', lower(DATAPOINT_TABLE));
+
+  execute format('insert into %I select * from %I where TIMESTAMP >= %L', lower(DATAPOINT_TABLE), LEGACY_NAME, TODAY::timestamp);
+  execute format('delete from %I where TIMESTAMP >= %L', LEGACY_NAME, TODAY::timestamp);
+  execute format('alter table %I attach partition %I for values from (minvalue) to (%L)', lower(DATAPOINT_TABLE), LEGACY_NAME, TODAY::timestamp);
+
+  for PARTITION_DAY in select generate_series(TODAY, TODAY + 7, interval '1 day')::date loop
+    perform CREATE_DATAPOINT_PARTITION(DATAPOINT_TABLE, PARTITION_DAY);
+  end loop;
+end;
+$$ language plpgsql;
+
+select PARTITION_DATAPOINT_TABLE('ASSET_DATAPOINT', 22);
+select PARTITION_DATAPOINT_TABLE('ASSET_PREDICTED_DATAPOINT', 36);
+
+drop function PARTITION_DATAPOINT_TABLE(text, int);
+
+alter table ASSET_DATAPOINT
+  add foreign key (ENTITY_ID) references ASSET (ID) on delete cascade;
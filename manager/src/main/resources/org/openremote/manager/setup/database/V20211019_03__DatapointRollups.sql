@@ -0,0 +1,54 @@
+/*
+  Hourly and daily rollups of numeric and boolean (true = 1, false = 0) ASSET_DATAPOINT values; maintained by
+  AbstractDatapointService which recomputes the dirty hours of each attribute after data points are stored and used
+  for HOUR and coarser interval queries.
+ */
+create table ASSET_DATAPOINT_HOURLY (
+  TIMESTAMP        timestamp    not null,
+  ENTITY_ID        varchar(22)  not null,
+  ATTRIBUTE_NAME   varchar(255) not null,
+  MIN_VALUE        float8       not null,
+  MAX_VALUE        float8       not null,
+  AVG_VALUE        float8       not null,
+  VALUE_COUNT      int8         not null,
+  LATEST_VALUE     float8       not null,
+  LATEST_TIMESTAMP timestamp    not null,
+  primary key (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP)
+);
+
+create table ASSET_DATAPOINT_DAILY (
+  TIMESTAMP        timestamp    not null,
+  ENTITY_ID        varchar(22)  not null,
+  ATTRIBUTE_NAME   varchar(255) not null,
+  MIN_VALUE        float8       not null,
+  MAX_VALUE        float8       not null,
+  AVG_VALUE        float8       not null,
+  VALUE_COUNT      int8         not null,
+  LATEST_VALUE     float8       not null,
+  LATEST_TIMESTAMP timestamp    not null,
+  primary key (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP)
+);
+
+create index ASSET_DATAPOINT_HOURLY_TIMESTAMP on ASSET_DATAPOINT_HOURLY (TIMESTAMP);
+create index ASSET_DATAPOINT_DAILY_TIMESTAMP on ASSET_DATAPOINT_DAILY (TIMESTAMP);
+
+alter table ASSET_DATAPOINT_HOURLY
+  add foreign key (ENTITY_ID) references ASSET (ID) on delete cascade;
+
+alter table ASSET_DATAPOINT_DAILY
+  add foreign key (ENTITY_ID) references ASSET (ID) on delete cascade;
+
+insert into ASSET_DATAPOINT_HOURLY (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME, MIN_VALUE, MAX_VALUE, AVG_VALUE, VALUE_COUNT, LATEST_VALUE, LATEST_TIMESTAMP)
+select date_trunc('hour', TIMESTAMP), ENTITY_ID, ATTRIBUTE_NAME, min(V), max(V), avg(V), count(V), (array_agg(V order by TIMESTAMP desc))[1], max(TIMESTAMP)
+from (
+  select TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME,
+    case jsonb_typeof(VALUE) when 'boolean' then (case when VALUE::text::boolean then 1 else 0 end) else VALUE::text::float8 end as V
+  from ASSET_DATAPOINT
+  where jsonb_typeof(VALUE) in ('number', 'boolean')
+) D
+group by 1, 2, 3;
+
+insert into ASSET_DATAPOINT_DAILY (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME, MIN_VALUE, MAX_VALUE, AVG_VALUE, VALUE_COUNT, LATEST_VALUE, LATEST_TIMESTAMP)
+select date_trunc('day', TIMESTAMP), ENTITY_ID, ATTRIBUTE_NAME, min(MIN_VALUE), max(MAX_VALUE), sum(AVG_VALUE * VALUE_COUNT) / sum(VALUE_COUNT), sum(VALUE_COUNT), (array_agg(LATEST_VALUE order by TIMESTAMP desc))[1], max(LATEST_TIMESTAMP)
+from ASSET_DATAPOINT_HOURLY
+group by 1, 2, 3;
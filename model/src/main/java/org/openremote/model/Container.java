@@ -31,6 +31,28 @@ public interface Container {
     String DEV_MODE = "DEV_MODE";
     boolean DEV_MODE_DEFAULT = true;
 
+    /**
+     * Names of the executor pools (bulkheads) returned by {@link #getExecutorService(String)}; each pool is sized
+     * separately so e.g. blocking protocol tasks cannot delay rule firing.
+     */
+    String EXECUTOR_RULES = "rules";
+    String EXECUTOR_PROTOCOL = "protocol";
+    /**
+     * Handles the attribute writes queued for each protocol instance; a protocol instance only uses one thread at a
+     * time so a slow device only holds up its own writes until as many devices are blocked as the pool has threads,
+     * then the writes of every other protocol instance wait too. Size the pool (SCHEDULED_TASKS_THREADS_MAX_ACTUATOR)
+     * above the number of devices expected to be unresponsive at the same time.
+     */
+    String EXECUTOR_ACTUATOR = "actuator";
+    String EXECUTOR_PERSISTENCE = "persistence";
+    String EXECUTOR_NOTIFICATION = "notification";
+    /**
+     * A timing wheel for large numbers of delayed/periodic tasks (e.g. attribute polling) whose tasks run on the
+     * {@link #EXECUTOR_PROTOCOL} pool; it has a resolution of tens of milliseconds and spreads the first run of periodic
+     * tasks so they don't all fire together.
+     */
+    String EXECUTOR_PERIODIC = "periodic";
+
     boolean isDevMode();
 
     Map<String, String> getConfig();
@@ -39,6 +61,11 @@ public interface Container {
 
     ScheduledExecutorService getExecutorService();
 
+    /**
+     * Get the named executor pool, falls back to {@link #getExecutorService()} for unknown names.
+     */
+    ScheduledExecutorService getExecutorService(String name);
+
     <T extends ContainerService> Collection<T> getServices(Class<T> type);
 
     <T extends ContainerService> T getService(Class<T> type) throws IllegalStateException;
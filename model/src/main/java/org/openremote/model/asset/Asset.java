@@ -33,6 +33,7 @@ import org.openremote.model.attribute.AttributeMap;
 import org.openremote.model.attribute.MetaMap;
 import org.openremote.model.geo.GeoJSONPoint;
 import org.openremote.model.jackson.AssetTypeIdResolver;
+import org.openremote.model.persistence.AttributeMapType;
 import org.openremote.model.util.TsIgnore;
 import org.openremote.model.validation.AssetValid;
 import org.openremote.model.value.AttributeDescriptor;
@@ -47,7 +48,6 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import static javax.persistence.DiscriminatorType.STRING;
-import static org.openremote.model.Constants.PERSISTENCE_JSON_VALUE_TYPE;
 import static org.openremote.model.Constants.PERSISTENCE_UNIQUE_ID_GENERATOR;
 
 // @formatter:off
@@ -311,7 +311,7 @@ public abstract class Asset<T extends Asset<?>> implements IdentifiableEntity<T>
     protected String[] path;
 
     @Column(name = "ATTRIBUTES", columnDefinition = "jsonb")
-    @org.hibernate.annotations.Type(type = PERSISTENCE_JSON_VALUE_TYPE)
+    @org.hibernate.annotations.Type(type = AttributeMapType.TYPE_NAME)
     @Valid
     protected AttributeMap attributes;
 
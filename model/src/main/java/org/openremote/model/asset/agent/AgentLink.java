@@ -70,6 +70,9 @@ public abstract class AgentLink<T extends AgentLink<?>> implements Serializable
     protected ValueFilter[] messageMatchFilters;
     @JsonPropertyDescription("Don't expect a response from the protocol just update the attribute immediately on write")
     protected Boolean updateOnWrite;
+    @JsonPropertyDescription("When updates arrive faster than they can be processed only keep the latest pending value;" +
+        " suitable for measurements (gauges) but not for counters or events where every value matters")
+    protected Boolean coalesceUpdates;
 
     // For Hydrators
     protected AgentLink() {
@@ -165,4 +168,14 @@ public abstract class AgentLink<T extends AgentLink<?>> implements Serializable
         this.updateOnWrite = updateOnWrite;
         return (T) this;
     }
+
+    public Optional<Boolean> getCoalesceUpdates() {
+        return Optional.ofNullable(coalesceUpdates);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T setCoalesceUpdates(Boolean coalesceUpdates) {
+        this.coalesceUpdates = coalesceUpdates;
+        return (T) this;
+    }
 }
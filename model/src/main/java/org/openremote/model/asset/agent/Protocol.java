@@ -76,9 +76,10 @@ import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
  * #SENSOR_QUEUE_SOURCE_PROTOCOL}.
  * <p>
  * If the user writes a new value into the linked attribute, the protocol translates this value change into a device (or
- * service) action. Write operations on attributes linked to an {@link Agent} can be consumed by the agent's protocol on
- * the {@link #ACTUATOR_TOPIC} where the message body will be an {@link AttributeEvent}. Each message also contains the
- * target protocol name in header {@link #ACTUATOR_TOPIC_TARGET_PROTOCOL}.
+ * service) action. Write operations on attributes linked to an {@link Agent} are published on the {@link
+ * #ACTUATOR_TOPIC} where the message body will be an {@link AttributeEvent}. Each message also contains the target
+ * protocol instance in header {@link #ACTUATOR_TOPIC_TARGET_PROTOCOL}; the agent service passes each message to the
+ * inbox of that protocol instance only.
  * <p>
  * To simplify protocol development some common protocol behaviour is recommended for generic protocols:
  * <h1>Inbound value conversion (Protocol -> Linked Attribute)</h1>
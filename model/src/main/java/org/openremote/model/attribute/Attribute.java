@@ -57,32 +57,49 @@ public class Attribute<T> extends AbstractNameValueHolder<T> implements MetaHold
         @SuppressWarnings({"unchecked", "rawtypes"})
         @Override
         public Attribute<?> deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
-            // Need to find the type field to know how to deserialise the value
-            TokenBuffer tokenBuffer = new TokenBuffer(jp);
-            tokenBuffer.copyCurrentStructure(jp);
-            JsonParser jp2 = tokenBuffer.asParser();
-            JsonParser jp3 = tokenBuffer.asParser();
+            // Single pass over the attribute; the value is only buffered if it appears before the type field
+            Attribute attribute = new Attribute<>();
             String attributeValueType = null;
-            int level = 1;
-            jp2.nextToken();
+            Optional<ValueDescriptor<?>> valueDescriptor = Optional.empty();
+            TokenBuffer valueBuffer = null;
+            JsonToken token = jp.currentToken();
 
-            while (level > 0) {
-                JsonToken nextToken = jp2.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                token = jp.nextToken();
+            }
 
-                if (nextToken == JsonToken.START_OBJECT) {
-                    level++;
-                    continue;
-                }
+            for (; token == JsonToken.FIELD_NAME; token = jp.nextToken()) {
+                String propName = jp.currentName();
+                token = jp.nextToken();
 
-                if (nextToken == JsonToken.END_OBJECT) {
-                    level--;
+                if (token == JsonToken.VALUE_NULL) {
                     continue;
                 }
 
-                if (level == 1 && jp2.currentName().equals("type")) {
-                    jp2.nextToken();
-                    attributeValueType = jp2.getValueAsString();
-                    break;
+                switch (propName) {
+                    case "type":
+                        attributeValueType = jp.getValueAsString();
+                        valueDescriptor = ValueUtil.getValueDescriptor(attributeValueType);
+                        break;
+                    case "meta":
+                        attribute.meta = ctxt.readValue(jp, MetaMap.class);
+                        break;
+                    case "name":
+                        attribute.name = jp.getValueAsString();
+                        break;
+                    case "timestamp":
+                        attribute.timestamp = jp.getValueAsLong();
+                        break;
+                    case "value":
+                        if (attributeValueType != null) {
+                            attribute.value = readValue(jp, ctxt, valueDescriptor);
+                        } else {
+                            valueBuffer = new TokenBuffer(jp, ctxt);
+                            valueBuffer.copyCurrentStructure(jp);
+                        }
+                        break;
+                    default:
+                        jp.skipChildren();
                 }
             }
 
@@ -90,34 +107,10 @@ public class Attribute<T> extends AbstractNameValueHolder<T> implements MetaHold
                 throw new JsonParseException(jp, "Failed to extract attribute type information");
             }
 
-            // Get inner attribute type or fallback to primitive/JSON type
-            Optional<ValueDescriptor<?>> valueDescriptor = ValueUtil.getValueDescriptor(attributeValueType);
-            Attribute attribute = new Attribute<>();
-
-            while (jp3.nextToken() != JsonToken.END_OBJECT) {
-                if (jp3.currentToken() == JsonToken.FIELD_NAME) {
-                    String propName = jp3.currentName();
-                    JsonToken token = jp3.nextToken();
-                    if (token == JsonToken.VALUE_NULL) {
-                        continue;
-                    }
-                    switch (propName) {
-                        case "meta":
-                            attribute.meta = jp3.readValueAs(MetaMap.class);
-                            break;
-                        case "name":
-                            attribute.name = jp3.readValueAs(String.class);
-                            break;
-                        case "timestamp":
-                            attribute.timestamp = jp3.readValueAs(Long.class);
-                            break;
-                        case "value":
-                            @SuppressWarnings("unchecked")
-                            Class valueType = valueDescriptor.map(ValueDescriptor::getType)
-                                .orElseGet(() -> (Class) Object.class);
-                            attribute.value = jp3.readValueAs(valueType);
-                            break;
-                    }
+            if (valueBuffer != null) {
+                try (JsonParser valueParser = valueBuffer.asParser(jp.getCodec())) {
+                    valueParser.nextToken();
+                    attribute.value = readValue(valueParser, ctxt, valueDescriptor);
                 }
             }
 
@@ -132,6 +125,13 @@ public class Attribute<T> extends AbstractNameValueHolder<T> implements MetaHold
 
             return (Attribute<?>) attribute;
         }
+
+        // Get inner attribute type or fallback to primitive/JSON type
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        protected static Object readValue(JsonParser jp, DeserializationContext ctxt, Optional<ValueDescriptor<?>> valueDescriptor) throws IOException {
+            Class valueType = valueDescriptor.map(ValueDescriptor::getType).orElseGet(() -> (Class) Object.class);
+            return ctxt.readValue(jp, valueType);
+        }
     }
 
     @Valid
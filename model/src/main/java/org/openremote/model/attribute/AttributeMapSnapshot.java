@@ -0,0 +1,226 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.attribute;
+
+import org.openremote.model.util.ValueUtil;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A copy of an {@link AttributeMap} that remembers which {@link Attribute} and {@link MetaItem} instances it was taken
+ * from along with their {@link Attribute#getVersion} so that {@link #isModified} only has to deep compare attributes
+ * that have been touched since; immutable values are shared with the source rather than copied. Used as the persistence
+ * snapshot of {@link org.openremote.model.asset.Asset#getAttributes}.
+ */
+public class AttributeMapSnapshot extends AttributeMap {
+
+    protected static class AttributeState {
+        protected final Attribute<?> source;
+        protected final Attribute<?> copy;
+        protected final int version;
+        protected final MetaMap meta;
+        protected final MetaItem<?>[] metaItems;
+        protected final int[] metaVersions;
+        protected final boolean immutable;
+
+        protected AttributeState(Attribute<?> source) {
+            this.source = source;
+            this.copy = copyOf(source);
+            this.version = source.getVersion();
+            this.meta = source.meta;
+
+            boolean immutable = isImmutable(source.getValue().orElse(null));
+
+            if (meta != null) {
+                metaItems = new MetaItem<?>[meta.size()];
+                metaVersions = new int[metaItems.length];
+                int i = 0;
+                for (MetaItem<?> metaItem : meta.delegate.values()) {
+                    metaItems[i] = metaItem;
+                    metaVersions[i] = metaItem.getVersion();
+                    immutable = immutable && isImmutable(metaItem.getValue().orElse(null));
+                    i++;
+                }
+            } else {
+                metaItems = null;
+                metaVersions = null;
+            }
+
+            this.immutable = immutable;
+        }
+
+        protected boolean isModified(Attribute<?> attribute) {
+            return !isUnchanged(attribute) && !copy.deepEquals(attribute);
+        }
+
+        /**
+         * Only true if nothing has been set on the attribute or its meta since the snapshot and all values are
+         * immutable; otherwise the caller must fall back to a deep comparison.
+         */
+        protected boolean isUnchanged(Attribute<?> attribute) {
+            if (!immutable
+                || attribute != source
+                || attribute.getVersion() != version
+                || attribute.timestamp != copy.timestamp
+                || attribute.getType() != copy.getType()
+                || attribute.meta != meta) {
+                return false;
+            }
+
+            if (meta == null) {
+                return true;
+            }
+
+            if (meta.size() != metaItems.length) {
+                return false;
+            }
+
+            for (int i = 0; i < metaItems.length; i++) {
+                MetaItem<?> metaItem = meta.delegate.get(metaItems[i].getName());
+                if (metaItem != metaItems[i] || metaItem.getVersion() != metaVersions[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    protected transient Map<String, AttributeState> attributeStates;
+
+    public AttributeMapSnapshot(AttributeMap source) {
+        attributeStates = new HashMap<>(source.size() * 2);
+        source.delegate.values().forEach(attribute -> {
+            AttributeState state = new AttributeState(attribute);
+            attributeStates.put(attribute.getName(), state);
+            putSilent(state.copy);
+        });
+    }
+
+    /**
+     * Returns true if the supplied map differs from the source map at the time this snapshot was taken.
+     */
+    public boolean isModified(AttributeMap current) {
+        if (current == null) {
+            return true;
+        }
+
+        if (attributeStates == null) {
+            // Java deserialised copy so no tracking information
+            return isModified(this, current);
+        }
+
+        if (current.size() != attributeStates.size()) {
+            return true;
+        }
+
+        for (Map.Entry<String, Attribute<?>> entry : current.delegate.entrySet()) {
+            AttributeState state = attributeStates.get(entry.getKey());
+            if (state == null || state.isModified(entry.getValue())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Compares two attribute maps using {@link Attribute#deepEquals}, using the tracking information when either map
+     * is an {@link AttributeMapSnapshot}.
+     */
+    public static boolean isModified(AttributeMap previous, AttributeMap current) {
+        if (previous == current) {
+            return false;
+        }
+        if (previous == null || current == null) {
+            return true;
+        }
+        if (previous instanceof AttributeMapSnapshot && ((AttributeMapSnapshot) previous).attributeStates != null) {
+            return ((AttributeMapSnapshot) previous).isModified(current);
+        }
+        if (current instanceof AttributeMapSnapshot && ((AttributeMapSnapshot) current).attributeStates != null) {
+            return ((AttributeMapSnapshot) current).isModified(previous);
+        }
+        if (previous.size() != current.size()) {
+            return true;
+        }
+
+        for (Map.Entry<String, Attribute<?>> entry : current.delegate.entrySet()) {
+            Attribute<?> previousAttribute = previous.delegate.get(entry.getKey());
+            if (previousAttribute == null || !previousAttribute.deepEquals(entry.getValue())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns an independent copy of the supplied map, only values that are mutable are cloned.
+     */
+    public static AttributeMap copyOf(AttributeMap source) {
+        AttributeMap copy = new AttributeMap();
+        source.delegate.values().forEach(attribute -> copy.putSilent(copyOf(attribute)));
+        return copy;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected static Attribute<?> copyOf(Attribute<?> attribute) {
+        Attribute copy = new Attribute(attribute.getName(), attribute.getType(), copyValue(attribute.getValue().orElse(null)));
+        copy.timestamp = attribute.timestamp;
+
+        if (attribute.meta != null) {
+            MetaMap meta = new MetaMap();
+            attribute.meta.delegate.values().forEach(metaItem -> {
+                MetaItem metaItemCopy = new MetaItem<>();
+                metaItemCopy.setNameInternal(metaItem.getName());
+                metaItemCopy.setTypeInternal(metaItem.getType());
+                metaItemCopy.setValue(copyValue(metaItem.getValue().orElse(null)));
+                meta.putSilent(metaItemCopy);
+            });
+            copy.meta = meta;
+        }
+
+        return copy;
+    }
+
+    protected static Object copyValue(Object value) {
+        return isImmutable(value) ? value : ValueUtil.clone(value);
+    }
+
+    protected static boolean isImmutable(Object value) {
+        return value == null
+            || value instanceof String
+            || value instanceof Boolean
+            || value instanceof Integer
+            || value instanceof Long
+            || value instanceof Double
+            || value instanceof Float
+            || value instanceof Short
+            || value instanceof Byte
+            || value instanceof Character
+            || value instanceof BigDecimal
+            || value instanceof BigInteger
+            || value instanceof Enum;
+    }
+}
@@ -66,7 +66,8 @@ public class MetaMap extends NamedMap<MetaItem<?>> {
                         .map(MetaItemDescriptor::getType);
 
                     Class valueType = valueDescriptor.map(ValueDescriptor::getType).orElseGet(() -> (Class) Object.class);
-                    metaItem.setValue(jp.readValueAs(valueType));
+                    // Read through the current context rather than the codec to avoid a lookup per value
+                    metaItem.setValue(jp.currentToken() == JsonToken.VALUE_NULL ? null : ctxt.readValue(jp, valueType));
 
                     // Get the value descriptor from the value if it isn't known
                     metaItem.setTypeInternal(valueDescriptor.orElseGet(() -> {
@@ -36,6 +36,10 @@ public interface AssetPredictedDatapointResource {
      * regular user tries to access an asset in a realm different than its authenticated realm, or if the user is
      * restricted and the asset is not linked to the user. A 400 status is returned if the asset attribute does
      * not have datapoint storage enabled.
+     * <p>
+     * Numeric and boolean values are downsampled using the optional {@link DatapointDownsampling} algorithm (defaults
+     * to {@link DatapointDownsampling#AVERAGE} per interval step); the min/max and LTTB algorithms preserve peaks and
+     * return at most <code>points</code> datapoints.
      */
     @GET
     @Path("{assetId}/attribute/{attributeName}")
@@ -47,6 +51,8 @@ public interface AssetPredictedDatapointResource {
                                                @QueryParam("interval") DatapointInterval datapointInterval,
                                                @QueryParam("step") Integer stepSize,
                                                @QueryParam("fromTimestamp") long fromTimestamp,
-                                               @QueryParam("toTimestamp") long toTimestamp);
+                                               @QueryParam("toTimestamp") long toTimestamp,
+                                               @QueryParam("downsampling") DatapointDownsampling downsampling,
+                                               @QueryParam("points") Integer maxPoints);
 
 }
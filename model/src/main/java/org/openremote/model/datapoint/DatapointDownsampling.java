@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.datapoint;
+
+/**
+ * Algorithm used to reduce the number of numeric/boolean datapoints returned by a datapoint query.
+ */
+public enum DatapointDownsampling {
+
+    /**
+     * Average value per {@link DatapointInterval} bucket (one point per bucket, empty buckets return a null value).
+     */
+    AVERAGE,
+
+    /**
+     * The minimum and maximum value (at their original timestamps) of each bucket; returns at most the requested
+     * number of points and preserves peaks.
+     */
+    MIN_MAX,
+
+    /**
+     * Largest-Triangle-Three-Buckets; selects the requested number of points that best preserve the visual shape of
+     * the series.
+     */
+    LTTB
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.gateway;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.util.ValueUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Used by an edge gateway to send several {@link SharedEvent}s to the central manager in a single message; the events
+ * are serialised as a JSON array and GZIP compressed into {@link #data} (which is base64 encoded by Jackson).
+ */
+public class GatewayBatchEvent extends SharedEvent {
+
+    protected int count;
+    protected byte[] data;
+    @JsonIgnore
+    protected int uncompressedSize;
+
+    @JsonCreator
+    public GatewayBatchEvent(@JsonProperty("timestamp") Date timestamp, @JsonProperty("count") int count, @JsonProperty("data") byte[] data) {
+        super(timestamp != null ? timestamp.getTime() : new Date().getTime());
+        this.count = count;
+        this.data = data;
+    }
+
+    protected GatewayBatchEvent(long timestamp, int count, byte[] data, int uncompressedSize) {
+        super(timestamp);
+        this.count = count;
+        this.data = data;
+        this.uncompressedSize = uncompressedSize;
+    }
+
+    /**
+     * Serialise and compress the supplied events into a single batch.
+     */
+    public static GatewayBatchEvent create(long timestamp, List<? extends SharedEvent> events) throws IOException {
+        byte[] json = ValueUtil.JSON.writeValueAsBytes(events.toArray(new SharedEvent[0]));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, json.length / 4));
+        try (OutputStream os = new GZIPOutputStream(bos)) {
+            os.write(json);
+        }
+        return new GatewayBatchEvent(timestamp, events.size(), bos.toByteArray(), json.length);
+    }
+
+    /**
+     * Decompress and deserialise the events contained in this batch; order is preserved.
+     */
+    public List<SharedEvent> getEvents() throws IOException {
+        if (data == null || data.length == 0) {
+            return Collections.emptyList();
+        }
+
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            SharedEvent[] events = ValueUtil.JSON.readValue(is, SharedEvent[].class);
+            return events != null ? Arrays.asList(events) : Collections.emptyList();
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Size of the JSON before compression; only known on the sending side.
+     */
+    public int getUncompressedSize() {
+        return uncompressedSize;
+    }
+
+    @Override
+    public String toString() {
+        return GatewayBatchEvent.class.getSimpleName() + "{" +
+            "timestamp=" + timestamp +
+            ", count=" + count +
+            ", size=" + (data != null ? data.length : 0) +
+            '}';
+    }
+}
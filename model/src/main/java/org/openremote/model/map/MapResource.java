@@ -24,7 +24,10 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.openremote.model.http.RequestParams;
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 
 @Tag(name = "Map")
 @Path("map")
@@ -48,10 +51,11 @@ public interface MapResource {
     ObjectNode getSettingsJs(@BeanParam RequestParams requestParams);
 
     /**
-     * Gets vector tile data for Mapbox GL
+     * Gets vector tile data for Mapbox GL; responses include an ETag and Cache-Control header and a 304 is returned if
+     * the tile hasn't changed (If-None-Match).
      */
     @GET
     @Produces("application/vnd.mapbox-vector-tile")
     @Path("tile/{zoom}/{column}/{row}")
-    byte[] getTile(@PathParam("zoom")int zoom, @PathParam("column")int column, @PathParam("row")int row);
+    Response getTile(@Context Request request, @PathParam("zoom")int zoom, @PathParam("column")int column, @PathParam("row")int row);
 }
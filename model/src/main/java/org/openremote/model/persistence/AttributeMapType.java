@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.persistence;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.usertype.UserType;
+import org.openremote.model.attribute.AttributeMap;
+import org.openremote.model.attribute.AttributeMapSnapshot;
+import org.openremote.model.util.ValueUtil;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Maps an {@link AttributeMap} to a JSONB column; unlike the generic JSON type the dirty checking snapshot is an
+ * {@link AttributeMapSnapshot} so loading an asset doesn't round trip the attributes through JSON and a flush only
+ * deep compares attributes that have actually been set since they were loaded.
+ */
+public class AttributeMapType implements UserType {
+
+    public static final String TYPE_NAME = "attribute-map";
+
+    @Override
+    public int[] sqlTypes() {
+        return new int[] {Types.OTHER};
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public Class returnedClass() {
+        return AttributeMap.class;
+    }
+
+    @Override
+    public boolean equals(Object x, Object y) throws HibernateException {
+        return !AttributeMapSnapshot.isModified((AttributeMap) x, (AttributeMap) y);
+    }
+
+    @Override
+    public int hashCode(Object x) throws HibernateException {
+        return x.hashCode();
+    }
+
+    @Override
+    public Object nullSafeGet(ResultSet rs, String[] names, SharedSessionContractImplementor session, Object owner) throws HibernateException, SQLException {
+        return fromJson(rs.getString(names[0]));
+    }
+
+    @Override
+    public void nullSafeSet(PreparedStatement st, Object value, int index, SharedSessionContractImplementor session) throws HibernateException, SQLException {
+        if (value == null) {
+            st.setNull(index, Types.OTHER);
+        } else {
+            st.setObject(index, toJson(value), Types.OTHER);
+        }
+    }
+
+    @Override
+    public Object deepCopy(Object value) throws HibernateException {
+        return value == null ? null : new AttributeMapSnapshot((AttributeMap) value);
+    }
+
+    @Override
+    public boolean isMutable() {
+        return true;
+    }
+
+    @Override
+    public Serializable disassemble(Object value) throws HibernateException {
+        return value == null ? null : toJson(value);
+    }
+
+    @Override
+    public Object assemble(Serializable cached, Object owner) throws HibernateException {
+        return fromJson((String) cached);
+    }
+
+    @Override
+    public Object replace(Object original, Object target, Object owner) throws HibernateException {
+        // Merged state must not share mutable values with the detached instance
+        return original == null ? null : AttributeMapSnapshot.copyOf((AttributeMap) original);
+    }
+
+    protected static String toJson(Object value) {
+        try {
+            return ValueUtil.JSON.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new HibernateException("Failed to serialise attributes", e);
+        }
+    }
+
+    protected static AttributeMap fromJson(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return ValueUtil.JSON.readValue(json, AttributeMap.class);
+        } catch (IOException e) {
+            throw new HibernateException("Failed to deserialise attributes", e);
+        }
+    }
+}
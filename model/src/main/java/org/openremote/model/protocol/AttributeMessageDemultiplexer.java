@@ -0,0 +1,308 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.protocol;
+
+import org.openremote.model.asset.agent.AgentLink;
+import org.openremote.model.asset.agent.Protocol;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.attribute.AttributeState;
+import org.openremote.model.query.AssetQuery;
+import org.openremote.model.query.filter.StringPredicate;
+import org.openremote.model.query.filter.ValuePredicate;
+import org.openremote.model.util.TextUtil;
+import org.openremote.model.util.ValueUtil;
+import org.openremote.model.value.ValueFilter;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static org.openremote.model.util.ValueUtil.applyValueFilters;
+
+/**
+ * Routes inbound string messages to linked attributes using the same matching rules as
+ * {@link ProtocolUtil#createGenericAttributeMessageConsumer} (agent link message match filters followed by the message
+ * match predicate) but without visiting every link for every message:
+ * <ul>
+ * <li>Links with identical message match filters are grouped so each distinct filter chain is applied once per
+ * message</li>
+ * <li>Within a group, non negated {@link StringPredicate}s with {@link AssetQuery.Match#EXACT} are looked up in a hash
+ * map and those with {@link AssetQuery.Match#BEGIN} in a prefix trie; only the remaining predicates are evaluated one
+ * by one</li>
+ * </ul>
+ * Linking and unlinking is synchronized; matched links are notified outside of the lock.
+ */
+public class AttributeMessageDemultiplexer implements Consumer<String> {
+
+    protected static class Link {
+        protected final AttributeRef attributeRef;
+        protected final ValuePredicate matchPredicate;
+        protected final Predicate<Object> predicate;
+
+        protected Link(AttributeRef attributeRef, ValuePredicate matchPredicate, Predicate<Object> predicate) {
+            this.attributeRef = attributeRef;
+            this.matchPredicate = matchPredicate;
+            this.predicate = predicate;
+        }
+    }
+
+    protected static class PrefixNode {
+        protected Map<Character, PrefixNode> children;
+        protected List<Link> links;
+
+        protected boolean isEmpty() {
+            return (children == null || children.isEmpty()) && (links == null || links.isEmpty());
+        }
+    }
+
+    protected static class FilterGroup {
+        protected final ValueFilter[] matchFilters;
+        protected final Map<String, List<Link>> exactLinks = new HashMap<>();
+        protected final Map<String, List<Link>> exactIgnoreCaseLinks = new HashMap<>();
+        protected final PrefixNode prefixLinks = new PrefixNode();
+        protected final PrefixNode prefixIgnoreCaseLinks = new PrefixNode();
+        protected final List<Link> otherLinks = new ArrayList<>();
+        protected int size;
+
+        protected FilterGroup(ValueFilter[] matchFilters) {
+            this.matchFilters = matchFilters;
+        }
+
+        protected void add(Link link) {
+            StringPredicate stringPredicate = getIndexablePredicate(link.matchPredicate);
+            if (stringPredicate == null) {
+                otherLinks.add(link);
+            } else if (stringPredicate.match == AssetQuery.Match.EXACT) {
+                (stringPredicate.caseSensitive ? exactLinks : exactIgnoreCaseLinks)
+                    .computeIfAbsent(indexKey(stringPredicate), key -> new ArrayList<>(1)).add(link);
+            } else {
+                PrefixNode node = stringPredicate.caseSensitive ? prefixLinks : prefixIgnoreCaseLinks;
+                for (char c : indexKey(stringPredicate).toCharArray()) {
+                    if (node.children == null) {
+                        node.children = new HashMap<>();
+                    }
+                    node = node.children.computeIfAbsent(c, k -> new PrefixNode());
+                }
+                if (node.links == null) {
+                    node.links = new ArrayList<>(1);
+                }
+                node.links.add(link);
+            }
+            size++;
+        }
+
+        protected boolean remove(Link link) {
+            StringPredicate stringPredicate = getIndexablePredicate(link.matchPredicate);
+            boolean removed;
+            if (stringPredicate == null) {
+                removed = otherLinks.remove(link);
+            } else if (stringPredicate.match == AssetQuery.Match.EXACT) {
+                Map<String, List<Link>> index = stringPredicate.caseSensitive ? exactLinks : exactIgnoreCaseLinks;
+                String key = indexKey(stringPredicate);
+                List<Link> links = index.get(key);
+                removed = links != null && links.remove(link);
+                if (links != null && links.isEmpty()) {
+                    index.remove(key);
+                }
+            } else {
+                removed = removePrefix(stringPredicate.caseSensitive ? prefixLinks : prefixIgnoreCaseLinks, indexKey(stringPredicate), 0, link);
+            }
+            if (removed) {
+                size--;
+            }
+            return removed;
+        }
+
+        protected static boolean removePrefix(PrefixNode node, String key, int index, Link link) {
+            if (index == key.length()) {
+                return node.links != null && node.links.remove(link);
+            }
+            PrefixNode child = node.children != null ? node.children.get(key.charAt(index)) : null;
+            if (child == null) {
+                return false;
+            }
+            boolean removed = removePrefix(child, key, index + 1, link);
+            if (child.isEmpty()) {
+                node.children.remove(key.charAt(index));
+            }
+            return removed;
+        }
+
+        protected void match(String message, List<Link> matches) {
+            Object messageFiltered = applyValueFilters(message, matchFilters);
+            if (messageFiltered == null) {
+                return;
+            }
+
+            if (!exactLinks.isEmpty() || !exactIgnoreCaseLinks.isEmpty() || !prefixLinks.isEmpty() || !prefixIgnoreCaseLinks.isEmpty()) {
+                String str = ValueUtil.getValueCoerced(messageFiltered, String.class).orElse(null);
+                if (str != null) {
+                    String upperStr = exactIgnoreCaseLinks.isEmpty() && prefixIgnoreCaseLinks.isEmpty() ? null : str.toUpperCase(Locale.ROOT);
+                    addAll(exactLinks.get(str), matches);
+                    if (upperStr != null) {
+                        addAll(exactIgnoreCaseLinks.get(upperStr), matches);
+                        matchPrefixes(prefixIgnoreCaseLinks, upperStr, matches);
+                    }
+                    matchPrefixes(prefixLinks, str, matches);
+                }
+            }
+
+            for (Link link : otherLinks) {
+                if (link.predicate.test(messageFiltered)) {
+                    matches.add(link);
+                }
+            }
+        }
+
+        protected static void matchPrefixes(PrefixNode node, String str, List<Link> matches) {
+            for (int i = 0; node != null; i++) {
+                addAll(node.links, matches);
+                if (i == str.length() || node.children == null) {
+                    return;
+                }
+                node = node.children.get(str.charAt(i));
+            }
+        }
+
+        protected static void addAll(List<Link> links, List<Link> matches) {
+            if (links != null) {
+                matches.addAll(links);
+            }
+        }
+
+        protected static String indexKey(StringPredicate stringPredicate) {
+            return stringPredicate.caseSensitive ? stringPredicate.value : stringPredicate.value.toUpperCase(Locale.ROOT);
+        }
+
+        protected static StringPredicate getIndexablePredicate(ValuePredicate predicate) {
+            if (!(predicate instanceof StringPredicate)) {
+                return null;
+            }
+            StringPredicate stringPredicate = (StringPredicate) predicate;
+            if (stringPredicate.negate || stringPredicate.value == null) {
+                return null;
+            }
+            return stringPredicate.match == AssetQuery.Match.EXACT || stringPredicate.match == AssetQuery.Match.BEGIN ? stringPredicate : null;
+        }
+    }
+
+    protected static class LinkEntry {
+        protected final String filterKey;
+        protected final Link link;
+
+        protected LinkEntry(String filterKey, Link link) {
+            this.filterKey = filterKey;
+            this.link = link;
+        }
+    }
+
+    protected final Supplier<Long> currentMillisSupplier;
+    protected final Consumer<AttributeState> stateConsumer;
+    protected final Map<String, FilterGroup> filterGroups = new LinkedHashMap<>();
+    protected final Map<AttributeRef, LinkEntry> links = new HashMap<>();
+
+    public AttributeMessageDemultiplexer(Supplier<Long> currentMillisSupplier, Consumer<AttributeState> stateConsumer) {
+        this.currentMillisSupplier = currentMillisSupplier;
+        this.stateConsumer = stateConsumer;
+    }
+
+    /**
+     * Link the attribute if its agent link has a message match predicate; replaces any existing link for the
+     * attribute. Returns false if the attribute was not linked.
+     */
+    public synchronized boolean add(String assetId, Attribute<?> attribute, AgentLink<?> agentLink) {
+        ValuePredicate matchPredicate = agentLink.getMessageMatchPredicate().orElse(null);
+        AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
+        remove(attributeRef);
+
+        if (matchPredicate == null) {
+            return false;
+        }
+
+        ValueFilter[] matchFilters = agentLink.getMessageMatchFilters().orElse(null);
+        String filterKey = matchFilters == null || matchFilters.length == 0 ? "" : ValueUtil.asJSON(matchFilters).orElse(null);
+        if (filterKey == null) {
+            // Can't compare filter chains so give the link a group of its own
+            filterKey = attributeRef.toString();
+        }
+
+        Link link = new Link(attributeRef, matchPredicate, matchPredicate.asPredicate(currentMillisSupplier));
+        filterGroups.computeIfAbsent(filterKey, key -> new FilterGroup(matchFilters)).add(link);
+        links.put(attributeRef, new LinkEntry(filterKey, link));
+        return true;
+    }
+
+    public synchronized boolean remove(AttributeRef attributeRef) {
+        LinkEntry entry = links.remove(attributeRef);
+        if (entry == null) {
+            return false;
+        }
+        FilterGroup group = filterGroups.get(entry.filterKey);
+        if (group != null) {
+            group.remove(entry.link);
+            if (group.size == 0) {
+                filterGroups.remove(entry.filterKey);
+            }
+        }
+        return true;
+    }
+
+    public synchronized void clear() {
+        links.clear();
+        filterGroups.clear();
+    }
+
+    public synchronized int size() {
+        return links.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return links.isEmpty();
+    }
+
+    /**
+     * The number of distinct message match filter chains, each of which is applied once per message.
+     */
+    public synchronized int getFilterGroupCount() {
+        return filterGroups.size();
+    }
+
+    @Override
+    public void accept(String message) {
+        if (TextUtil.isNullOrEmpty(message)) {
+            return;
+        }
+
+        List<Link> matches = new ArrayList<>();
+
+        synchronized (this) {
+            for (FilterGroup group : filterGroups.values()) {
+                group.match(message, matches);
+            }
+        }
+
+        for (Link link : matches) {
+            Protocol.LOG.finest("Inbound message meets attribute matching meta so writing state to state consumer for attribute: asssetId=" + link.attributeRef.getId() + ", attribute=" + link.attributeRef.getName());
+            stateConsumer.accept(new AttributeState(link.attributeRef, message));
+        }
+    }
+}
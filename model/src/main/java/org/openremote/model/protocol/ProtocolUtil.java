@@ -19,6 +19,7 @@
  */
 package org.openremote.model.protocol;
 
+import com.fasterxml.jackson.databind.node.ContainerNode;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.codec.binary.BinaryCodec;
@@ -37,7 +38,9 @@ import org.openremote.model.util.ValueUtil;
 import org.openremote.model.value.ValueFilter;
 import org.openremote.model.value.ValueType;
 
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -51,6 +54,15 @@ import static org.openremote.model.util.ValueUtil.applyValueFilters;
 @TsIgnore
 public final class ProtocolUtil {
 
+    protected static class FilterResultCache {
+        protected String source;
+        protected final Map<String, Object> results = new HashMap<>();
+    }
+
+    protected static final int FILTER_RESULT_CACHE_MAX_SIZE = 256;
+    protected static final Object NULL_FILTER_RESULT = new Object();
+    protected static final ThreadLocal<FilterResultCache> FILTER_RESULT_CACHE = ThreadLocal.withInitial(FilterResultCache::new);
+
     protected ProtocolUtil() {
     }
 
@@ -147,7 +159,7 @@ public final class ProtocolUtil {
         // value filtering
         agentLink.getValueFilters().ifPresent(valueFilters -> {
             Protocol.LOG.finer("Applying attribute value filters to attribute: assetId=" + assetId + ", attribute=" + attribute.getName());
-            Object o = ValueUtil.applyValueFilters(value, valueFilters);
+            Object o = applyValueFiltersShared(value, valueFilters);
             if (o == null) {
                 Protocol.LOG.info("Value filters generated a null value for attribute: assetId=" + assetId + ", attribute=" + attribute.getName());
             }
@@ -186,6 +198,52 @@ public final class ProtocolUtil {
         return new Pair<>(false, valRef.get());
     }
 
+    /**
+     * Applies the {@link ValueFilter}s in the same way as {@link ValueUtil#applyValueFilters} but when the value is a
+     * {@link String} the result of each filter chain prefix is remembered (per thread) whilst the same message instance
+     * is being processed; so an inbound message that is fanned out to many linked attributes is only filtered once for
+     * each distinct filter chain prefix (see {@link ValueFilter#getCacheKey}).
+     */
+    public static Object applyValueFiltersShared(Object value, ValueFilter... filters) {
+        if (!(value instanceof String) || filters == null || filters.length == 0) {
+            return applyValueFilters(value, filters);
+        }
+
+        FilterResultCache cache = FILTER_RESULT_CACHE.get();
+        //noinspection StringEquality
+        if (cache.source != value || cache.results.size() > FILTER_RESULT_CACHE_MAX_SIZE) {
+            cache.source = (String) value;
+            cache.results.clear();
+        }
+
+        StringBuilder prefixKey = new StringBuilder();
+        Object result = value;
+
+        for (ValueFilter filter : filters) {
+            prefixKey.append(filter.getCacheKey()).append('\n');
+            String key = prefixKey.toString();
+            Object cached = cache.results.get(key);
+
+            if (cached == null) {
+                result = filter.filter(result);
+                cache.results.put(key, result != null ? result : NULL_FILTER_RESULT);
+            } else {
+                result = cached != NULL_FILTER_RESULT ? cached : null;
+            }
+
+            if (result == null) {
+                break;
+            }
+        }
+
+        if (result instanceof ContainerNode) {
+            // Cached results are shared so never hand them out
+            result = ((ContainerNode<?>) result).deepCopy();
+        }
+
+        return result;
+    }
+
     @SuppressWarnings("unchecked")
     public static Pair<Boolean, Object> applyValueConverter(Object value, ObjectNode converter) {
 
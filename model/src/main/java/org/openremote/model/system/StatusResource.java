@@ -29,6 +29,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
 
 @Tag(name = "Status")
 @Path("")
@@ -40,6 +41,16 @@ public interface StatusResource {
     @RolesAllowed({Constants.READ_ADMIN_ROLE})
     ObjectNode getHealthStatus();
 
+    /**
+     * Runtime metrics (queue depths and wait times, processing latencies, fan out rates etc.) in the Prometheus text
+     * exposition format.
+     */
+    @Path("metrics")
+    @GET
+    @Produces(TEXT_PLAIN)
+    @RolesAllowed({Constants.READ_ADMIN_ROLE})
+    String getMetrics();
+
     @Path("info")
     @GET
     @Produces(APPLICATION_JSON)
@@ -132,6 +132,10 @@ public class ValueUtil {
     protected static Map<String, Class<? extends AgentLink<?>>> agentLinkMap;
     protected static List<MetaItemDescriptor<?>> metaItemDescriptors;
     protected static List<ValueDescriptor<?>> valueDescriptors;
+    // Name indexes of the above (built once the asset model is initialised) used for hot path lookups
+    protected static Map<String, MetaItemDescriptor<?>> metaItemDescriptorMap;
+    protected static Map<String, ValueDescriptor<?>> valueDescriptorMap;
+    protected static final Map<String, ValueDescriptor<?>> arrayValueDescriptorCache = new ConcurrentHashMap<>();
     protected static Validator validator;
     protected static JsonSchemaGenerator generator;
 
@@ -581,6 +585,10 @@ public class ValueUtil {
 
     public static Optional<MetaItemDescriptor<?>> getMetaItemDescriptor(String name) {
         if (TextUtil.isNullOrEmpty(name)) return Optional.empty();
+        Map<String, MetaItemDescriptor<?>> descriptorMap = metaItemDescriptorMap;
+        if (descriptorMap != null) {
+            return Optional.ofNullable(descriptorMap.get(name));
+        }
         return metaItemDescriptors.stream().filter(mid -> mid.getName().equals(name)).findFirst();
     }
 
@@ -599,16 +607,26 @@ public class ValueUtil {
     public static Optional<ValueDescriptor<?>> getValueDescriptor(String name) {
         if (TextUtil.isNullOrEmpty(name)) return Optional.empty();
 
+        if (!name.endsWith("[]")) {
+            return findValueDescriptor(name);
+        }
+
+        // Array descriptors are created on demand so cache them by full name (e.g. number[][])
+        ValueDescriptor<?> arrayDescriptor = arrayValueDescriptorCache.get(name);
+        if (arrayDescriptor != null) {
+            return Optional.of(arrayDescriptor);
+        }
+
+        String baseName = name;
         int arrayDimensions = 0;
 
-        while(name.endsWith("[]")) {
-            name = name.substring(0, name.length() - 2);
+        while(baseName.endsWith("[]")) {
+            baseName = baseName.substring(0, baseName.length() - 2);
             arrayDimensions++;
         }
 
-        String finalName = name;
         int finalArrayDimensions = arrayDimensions;
-        return valueDescriptors.stream().filter(vd -> vd.getName().equals(finalName)).findFirst().map(vd -> {
+        Optional<ValueDescriptor<?>> valueDescriptor = findValueDescriptor(baseName).map(vd -> {
             int dims = finalArrayDimensions;
             while(dims > 0) {
                 vd = vd.asArray();
@@ -616,6 +634,19 @@ public class ValueUtil {
             }
             return vd;
         });
+
+        if (valueDescriptorMap != null) {
+            valueDescriptor.ifPresent(vd -> arrayValueDescriptorCache.putIfAbsent(name, vd));
+        }
+        return valueDescriptor;
+    }
+
+    protected static Optional<ValueDescriptor<?>> findValueDescriptor(String name) {
+        Map<String, ValueDescriptor<?>> descriptorMap = valueDescriptorMap;
+        if (descriptorMap != null) {
+            return Optional.ofNullable(descriptorMap.get(name));
+        }
+        return valueDescriptors.stream().filter(vd -> vd.getName().equals(name)).findFirst();
     }
 
     public static ValueDescriptor<?> getValueDescriptorForValue(Object value) {
@@ -684,6 +715,9 @@ public class ValueUtil {
         agentLinkMap = new HashMap<>();
         metaItemDescriptors = new ArrayList<>();
         valueDescriptors = new ArrayList<>();
+        metaItemDescriptorMap = null;
+        valueDescriptorMap = null;
+        arrayValueDescriptorCache.clear();
         generator = null;
 
         // Provide basic Object Mapper and enhance once asset model is initialised
@@ -811,6 +845,14 @@ public class ValueUtil {
             throw new IllegalStateException("One or more value types do not implement java.io.Serializable: " + vds);
         }
 
+        // Index descriptors by name, first registration wins (same as the list lookup)
+        Map<String, MetaItemDescriptor<?>> metaMap = new HashMap<>(metaItemDescriptors.size() * 2);
+        metaItemDescriptors.forEach(mid -> metaMap.putIfAbsent(mid.getName(), mid));
+        Map<String, ValueDescriptor<?>> valueMap = new HashMap<>(valueDescriptors.size() * 2);
+        valueDescriptors.forEach(vd -> valueMap.putIfAbsent(vd.getName(), vd));
+        metaItemDescriptorMap = Collections.unmodifiableMap(metaMap);
+        valueDescriptorMap = Collections.unmodifiableMap(valueMap);
+
         // Call on finished on each provider
         assetModelProviders.forEach(AssetModelProvider::onAssetModelFinished);
 
@@ -49,6 +49,9 @@ public abstract class AbstractNameValueHolder<T> implements NameValueHolder<T>,
     @Pattern(regexp = "^\\w+$")
     @JsonIgnore
     protected String name;
+    // Incremented whenever the value is set; used for cheap dirty checking of persisted holders
+    @JsonIgnore
+    protected transient int version;
 
     protected AbstractNameValueHolder() {
     }
@@ -98,6 +101,16 @@ public abstract class AbstractNameValueHolder<T> implements NameValueHolder<T>,
     @JsonProperty
     public void setValue(T value) {
         this.value = value;
+        version++;
+    }
+
+    /**
+     * The number of times the value has been set on this instance; this says nothing about whether the value itself
+     * has been mutated.
+     */
+    @JsonIgnore
+    public int getVersion() {
+        return version;
     }
 
     @JsonProperty
@@ -23,7 +23,9 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ContainerNode;
 import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.Option;
 import com.jayway.jsonpath.ParseContext;
@@ -38,6 +40,11 @@ import javax.validation.constraints.NotNull;
 /**
  * This filter works on any type of data; when applying the filter the data should be converted to JSON representation
  * using a tool like Jackson and then the JSON path expression should be applied to this JSON string.
+ * <p>
+ * The path is compiled once per filter instance and the most recently parsed {@link String} value is remembered per
+ * thread, so a message that is passed through several JSON path filters (e.g. one inbound message fanned out to many
+ * linked attributes) is only parsed once. Object and array results are copied so they are never shared between
+ * callers.
  */
 @JsonSchemaTitle("JSON Path")
 @JsonTypeName(JsonPathFilter.NAME)
@@ -51,8 +58,20 @@ public class JsonPathFilter extends ValueFilter {
                 .addOptions(Option.DEFAULT_PATH_LEAF_TO_NULL)
         );
 
+    protected static final ThreadLocal<ParsedDocument> LAST_PARSED_DOCUMENT = new ThreadLocal<>();
+
     public static final String NAME = "jsonPath";
 
+    protected static class ParsedDocument {
+        protected final String json;
+        protected final DocumentContext document;
+
+        protected ParsedDocument(String json, DocumentContext document) {
+            this.json = json;
+            this.document = document;
+        }
+    }
+
     @NotNull
     @JsonProperty
     public String path;
@@ -63,6 +82,9 @@ public class JsonPathFilter extends ValueFilter {
     @JsonProperty
     public boolean returnLast;
 
+    protected transient JsonPath compiledPath;
+    protected transient String compiledPathSource;
+
     @JsonCreator
     public JsonPathFilter(@JsonProperty("path") String path,
                           @JsonProperty("returnFirst") boolean returnFirst,
@@ -78,18 +100,52 @@ public class JsonPathFilter extends ValueFilter {
             return null;
         }
 
-        String valueStr = ValueUtil.convert(value, String.class);
+        DocumentContext document = getDocument(value);
 
-        if (valueStr == null) {
+        if (document == null) {
             return null;
         }
 
-        Object obj = jsonPathParser.parse(valueStr).read(path);
+        Object obj = document.read(getCompiledPath());
 
         if ((returnFirst || returnLast) && obj != null && ValueUtil.isArray(obj.getClass())) {
             ArrayNode arrayNode = ValueUtil.convert(obj, ArrayNode.class);
             obj = arrayNode.get(returnFirst ? 0 : arrayNode.size() - 1);
         }
+
+        if (obj instanceof ContainerNode) {
+            // Don't hand out nodes of the (possibly shared) parsed document
+            obj = ((ContainerNode<?>) obj).deepCopy();
+        }
         return obj;
     }
+
+    protected JsonPath getCompiledPath() {
+        JsonPath compiledPath = this.compiledPath;
+        if (compiledPath == null || !path.equals(compiledPathSource)) {
+            compiledPath = JsonPath.compile(path);
+            compiledPathSource = path;
+            this.compiledPath = compiledPath;
+        }
+        return compiledPath;
+    }
+
+    protected static DocumentContext getDocument(Object value) {
+        if (value instanceof ContainerNode) {
+            return jsonPathParser.parse(value);
+        }
+
+        String valueStr = ValueUtil.convert(value, String.class);
+
+        if (valueStr == null) {
+            return null;
+        }
+
+        ParsedDocument parsedDocument = LAST_PARSED_DOCUMENT.get();
+        if (parsedDocument == null || parsedDocument.json != valueStr && !parsedDocument.json.equals(valueStr)) {
+            parsedDocument = new ParsedDocument(valueStr, jsonPathParser.parse(valueStr));
+            LAST_PARSED_DOCUMENT.set(parsedDocument);
+        }
+        return parsedDocument.document;
+    }
 }
@@ -94,6 +94,12 @@ public final class MetaItemType {
      */
     public static final MetaItemDescriptor<Integer> DATA_POINTS_MAX_AGE_DAYS = new MetaItemDescriptor<>("dataPointsMaxAgeDays", ValueType.POSITIVE_INTEGER);
 
+    /**
+     * Keep the (predicted) data points of the last N minutes of a number or boolean attribute in memory so that rules
+     * querying historic or predicted data points within that window don't have to query the database
+     */
+    public static final MetaItemDescriptor<Integer> DATA_POINTS_CACHE_MINUTES = new MetaItemDescriptor<>("dataPointsCacheMinutes", ValueType.POSITIVE_INTEGER);
+
     /**
      * Could possibly have predicted data points
      */
@@ -19,8 +19,10 @@
  */
 package org.openremote.model.value;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import org.openremote.model.util.ValueUtil;
 
 import java.io.Serializable;
 
@@ -38,5 +40,21 @@ import java.io.Serializable;
 // TODO: Standardise inbound/outbound value processing as ordered list of filters and/or converters
 public abstract class ValueFilter implements Serializable {
 
+    protected transient String cacheKey;
+
     public abstract Object filter(Object value);
+
+    /**
+     * A key that is equal for filters of the same type and configuration, used to share filter results between
+     * identical filters; filters must not be modified once this has been called.
+     */
+    @JsonIgnore
+    public String getCacheKey() {
+        String cacheKey = this.cacheKey;
+        if (cacheKey == null) {
+            cacheKey = getClass().getName() + ValueUtil.asJSON(this).orElseGet(() -> "@" + System.identityHashCode(this));
+            this.cacheKey = cacheKey;
+        }
+        return cacheKey;
+    }
 }
@@ -44,6 +44,10 @@ public class MockProtocol extends AbstractProtocol<MockAgent, MockAgentLink> imp
     public List<AttributeEvent> protocolWriteAttributeEvents = new ArrayList<>();
     public List<String> protocolMethodCalls = new ArrayList<>();
     public boolean updateSensor = true;
+    /**
+     * Simulates a slow device by blocking attribute writes for this long.
+     */
+    public volatile long writeDelayMillis;
     protected Container container;
 
     public MockProtocol(MockAgent agent) {
@@ -86,6 +90,13 @@ public class MockProtocol extends AbstractProtocol<MockAgent, MockAgentLink> imp
     protected void doLinkedAttributeWrite(Attribute<?> attribute, MockAgentLink agentLink, AttributeEvent event, Object processedValue) {
         protocolMethodCalls.add("WRITE_ATTRIBUTE:" + event.getAssetId() + ":" + attribute.getName());
         protocolWriteAttributeEvents.add(event);
+        if (writeDelayMillis > 0) {
+            try {
+                Thread.sleep(writeDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         if (updateSensor) {
             updateReceived(event.getAttributeState());
         }
@@ -114,7 +125,7 @@ public class MockProtocol extends AbstractProtocol<MockAgent, MockAgentLink> imp
 
     @Override
     public Future<Void> startAssetDiscovery(Consumer<AssetTreeNode[]> assetConsumer) {
-        return container.getExecutorService().submit(() -> {
+        return container.getExecutorService(Container.EXECUTOR_PROTOCOL).submit(() -> {
 
             // Simulate discovery init delay
             Thread.sleep(2000);
@@ -5,9 +5,11 @@ import org.openremote.manager.agent.AgentService
 import org.openremote.manager.asset.AssetProcessingService
 import org.openremote.manager.asset.AssetStorageService
 import org.openremote.manager.datapoint.AssetDatapointService
+import org.openremote.manager.datapoint.AssetPredictedDatapointService
 import org.openremote.manager.setup.SetupService
 import org.openremote.test.setup.ManagerTestSetup
 import org.openremote.model.attribute.AttributeRef
+import org.openremote.model.datapoint.DatapointDownsampling
 import org.openremote.model.datapoint.DatapointInterval
 import org.openremote.model.util.ValueUtil
 import org.openremote.test.ManagerContainerTrait
@@ -15,6 +17,7 @@ import spock.lang.Specification
 import spock.util.concurrent.PollingConditions
 
 import java.time.Instant
+import java.time.LocalDate
 import java.time.LocalDateTime
 import java.time.ZoneId
 import java.time.temporal.ChronoUnit
@@ -23,6 +26,7 @@ import java.util.concurrent.TimeUnit
 import static java.util.concurrent.TimeUnit.DAYS
 import static java.util.concurrent.TimeUnit.MINUTES
 import static java.util.concurrent.TimeUnit.SECONDS
+import static org.openremote.manager.datapoint.AbstractDatapointService.DATA_POINTS_PARTITION_DAYS_AHEAD_DEFAULT
 import static org.openremote.manager.datapoint.AssetDatapointService.DATA_POINTS_MAX_AGE_DAYS_DEFAULT
 import static org.openremote.test.setup.ManagerTestSetup.thingLightToggleAttributeName
 import static spock.util.matcher.HamcrestMatchers.closeTo
@@ -171,6 +175,69 @@ class AssetDatapointTest extends Specification implements ManagerContainerTrait
             assert aggregatedDatapoints[12].value == 14.95
         }
 
+        and: "when min/max downsampling is requested then the peaks should be retained"
+        conditions.eventually {
+            def thing = assetStorageService.find(managerTestSetup.thingId, true)
+            def downsampledDatapoints = assetDatapointService.getValueDatapoints(
+                    thing.getId(),
+                    thing.getAttribute("light1PowerConsumption").orElseThrow({ new RuntimeException("Missing attribute") }),
+                    DatapointInterval.MINUTE,
+                    null,
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault()).minus(1, ChronoUnit.HOURS),
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault()),
+                    DatapointDownsampling.MIN_MAX,
+                    2
+            )
+            assert downsampledDatapoints.size() == 2
+            assert downsampledDatapoints[0].value == 13.3d
+            assert downsampledDatapoints[1].value == 15.5d
+            assert downsampledDatapoints[1].timestamp == datapoint3ExpectedTimestamp
+        }
+
+        and: "when LTTB downsampling is requested then the first and last points should be retained"
+        conditions.eventually {
+            def thing = assetStorageService.find(managerTestSetup.thingId, true)
+            def downsampledDatapoints = assetDatapointService.getValueDatapoints(
+                    thing.getId(),
+                    thing.getAttribute("light1PowerConsumption").orElseThrow({ new RuntimeException("Missing attribute") }),
+                    DatapointInterval.MINUTE,
+                    null,
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault()).minus(1, ChronoUnit.HOURS),
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault()),
+                    DatapointDownsampling.LTTB,
+                    3
+            )
+            assert downsampledDatapoints.size() == 3
+            assert downsampledDatapoints[0].value == 13.3d
+            assert downsampledDatapoints[2].value == 15.5d
+            assert downsampledDatapoints[2].timestamp == datapoint3ExpectedTimestamp
+        }
+
+        and: "hourly and daily aggregation should use the rollups and match the aggregation of the raw data points"
+        conditions.eventually {
+            def thing = assetStorageService.find(managerTestSetup.thingId, true)
+            def attribute = thing.getAttribute("light1PowerConsumption").orElseThrow({ new RuntimeException("Missing attribute") })
+            def now = LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault())
+
+            [DatapointInterval.HOUR, DatapointInterval.DAY].each { interval ->
+                assert assetDatapointService.getQueryRollup(attribute, interval) != null
+                def rollupDatapoints = assetDatapointService.getValueDatapoints(thing.getId(), attribute, interval, null, now.minusDays(2), now)
+                assetDatapointService.queryRollups = false
+                def rawDatapoints = assetDatapointService.getValueDatapoints(thing.getId(), attribute, interval, null, now.minusDays(2), now)
+                assetDatapointService.queryRollups = true
+
+                assert rollupDatapoints.size() == rawDatapoints.size()
+                assert rollupDatapoints.any { it.value != null }
+                rollupDatapoints.eachWithIndex { datapoint, i ->
+                    assert datapoint.timestamp == rawDatapoints[i].timestamp
+                    assert (datapoint.value == null) == (rawDatapoints[i].value == null)
+                    if (datapoint.value != null) {
+                        assert Math.abs((datapoint.value as Double) - (rawDatapoints[i].value as Double)) < 0.0001
+                    }
+                }
+            }
+        }
+
 
         // ------------------------------------
         // Test boolean data point storage
@@ -275,7 +342,14 @@ class AssetDatapointTest extends Specification implements ManagerContainerTrait
         and: "the purge routine runs"
         assetDatapointService.purgeDataPoints()
 
-        then: "data points older than purge days should be purged for the power sensor"
+        then: "daily partitions should exist for the current day and the configured days ahead"
+        def partitionDay = LocalDate.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault()).atStartOfDay()
+        def partitions = assetDatapointService.getPartitions()
+        assert partitions.count { it.isDefault } == 1
+        assert partitions.find { it.from == partitionDay } != null
+        assert partitions.find { it.from == partitionDay.plusDays(DATA_POINTS_PARTITION_DAYS_AHEAD_DEFAULT) } != null
+
+        and: "data points older than purge days should be purged for the power sensor"
         conditions.eventually {
             def datapoints = assetDatapointService.getDatapoints(new AttributeRef(managerTestSetup.thingId, "light1PowerConsumption"))
             assert datapoints.size() == 1
@@ -291,6 +365,16 @@ class AssetDatapointTest extends Specification implements ManagerContainerTrait
             assert datapoints.get(0).timestamp == datapoint4ExpectedTimestamp
         }
 
+        when: "the predicted data points purge routine runs"
+        def assetPredictedDatapointService = container.getService(AssetPredictedDatapointService.class)
+        assetPredictedDatapointService.purgeDataPoints()
+
+        then: "no predicted data point partitions older than the purge cutoff should have been recreated"
+        def predictedCutoff = LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)).truncatedTo(ChronoUnit.HOURS), ZoneId.systemDefault())
+        def predictedPartitions = assetPredictedDatapointService.getPartitions()
+        assert predictedPartitions.every { it.isDefault || it.to.isAfter(predictedCutoff) }
+        assert predictedPartitions.find { it.from == partitionDay } != null
+
         when: "the clock advances 3 times the purge duration"
         advancePseudoClock(3 * datapointPurgeDays, DAYS, container)
 
@@ -325,6 +409,11 @@ class AssetDatapointTest extends Specification implements ManagerContainerTrait
             assert datapoints.get(0).timestamp == datapoint4ExpectedTimestamp
         }
 
+        and: "partitions older than the longest max age should have been dropped"
+        def dropBefore = LocalDate.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault()).atStartOfDay().minusDays(DATA_POINTS_MAX_AGE_DAYS_DEFAULT * 7)
+        assert assetDatapointService.getPartitions().every { it.isDefault || it.to.isAfter(dropBefore) }
+        assert assetDatapointService.getDatapointsCount() > 0
+
         when: "the clock advances by the purge duration"
         advancePseudoClock(datapointPurgeDays, DAYS, container)
 
@@ -0,0 +1,89 @@
+package org.openremote.test.assets
+
+import org.apache.camel.builder.RouteBuilder
+import org.openremote.container.message.MessageBrokerService
+import org.openremote.container.persistence.PersistenceEvent
+import org.openremote.container.persistence.PersistenceService
+import org.openremote.manager.asset.AssetStorageService
+import org.openremote.model.asset.impl.ThingAsset
+import org.openremote.model.security.User
+import org.openremote.test.ManagerContainerTrait
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+import static org.openremote.model.Constants.MASTER_REALM
+
+class AssetPersistenceEventTest extends Specification implements ManagerContainerTrait {
+
+    def "Persistence events are only delivered to matching subscribers"() {
+
+        given: "the container is started"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+        def container = startContainer(defaultConfig(), defaultServices())
+        def persistenceService = container.getService(PersistenceService.class)
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def messageBrokerService = container.getService(MessageBrokerService.class)
+
+        and: "some test subscribers"
+        def aggregatedEvents = new CopyOnWriteArrayList<List<PersistenceEvent<?>>>()
+        def nameEvents = new CopyOnWriteArrayList<PersistenceEvent<?>>()
+        def userEvents = new CopyOnWriteArrayList<PersistenceEvent<?>>()
+        messageBrokerService.getContext().addRoutes(new RouteBuilder() {
+            @Override
+            void configure() throws Exception {
+                from(persistenceService.subscribeAggregatedPersistenceEvents("TestAggregatedThingChanges", ThingAsset.class))
+                    .routeId("TestAggregatedThingChanges")
+                    .process({ aggregatedEvents.add(it.getIn().getBody(List.class)) })
+                from(persistenceService.subscribePersistenceEvents("TestThingNameChanges", ThingAsset.class, "name"))
+                    .routeId("TestThingNameChanges")
+                    .process({ nameEvents.add(it.getIn().getBody(PersistenceEvent.class)) })
+                from(persistenceService.subscribePersistenceEvents("TestUserChanges", User.class))
+                    .routeId("TestUserChanges")
+                    .process({ userEvents.add(it.getIn().getBody(PersistenceEvent.class)) })
+            }
+        })
+
+        when: "several assets are created in a single transaction"
+        def assets = (1..5).collect { new ThingAsset("Bulk thing " + it).setRealm(MASTER_REALM) }
+        persistenceService.doTransaction({ em -> assets.each { em.persist(it) } })
+
+        then: "the aggregated subscriber should receive a single event for the transaction"
+        conditions.eventually {
+            assert aggregatedEvents.size() == 1
+            assert aggregatedEvents[0].size() == 5
+            assert aggregatedEvents[0].every { it.cause == PersistenceEvent.Cause.CREATE }
+            assert aggregatedEvents[0].collect { it.entity.id } == assets.collect { it.id }
+            assert nameEvents.size() == 5
+        }
+
+        when: "an asset attribute is added"
+        def asset = assetStorageService.find(assets[0].id)
+        asset.setNotes("Some notes")
+        asset = assetStorageService.merge(asset)
+
+        then: "only the aggregated subscriber should receive the update"
+        conditions.eventually {
+            assert aggregatedEvents.size() == 2
+            assert aggregatedEvents[1].size() == 1
+            assert aggregatedEvents[1][0].cause == PersistenceEvent.Cause.UPDATE
+        }
+        nameEvents.size() == 5
+
+        when: "the asset name is updated"
+        asset.setName("Renamed thing")
+        assetStorageService.merge(asset)
+
+        then: "the name subscriber should receive the update"
+        conditions.eventually {
+            assert aggregatedEvents.size() == 3
+            assert nameEvents.size() == 6
+            assert nameEvents[5].cause == PersistenceEvent.Cause.UPDATE
+            assert nameEvents[5].getCurrentState("name") == "Renamed thing"
+        }
+
+        and: "the user subscriber should not have received any asset events"
+        userEvents.every { it.entity instanceof User }
+    }
+}
@@ -0,0 +1,133 @@
+package org.openremote.test.assets
+
+import org.openremote.manager.datapoint.DatapointCache
+import org.openremote.model.attribute.AttributeRef
+import org.openremote.model.datapoint.DatapointInterval
+import spock.lang.Specification
+
+import java.time.LocalDateTime
+import java.time.ZoneId
+import java.util.concurrent.TimeUnit
+
+class DatapointCacheTest extends Specification {
+
+    static long millis(LocalDateTime timestamp) {
+        timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+    }
+
+    def "Answer recent data point queries from the sliding window buffer"() {
+
+        given: "a cache and a point in time"
+        def cache = new DatapointCache(100)
+        def ref = new AttributeRef("asset1", "power")
+        def start = LocalDateTime.of(2021, 10, 19, 10, 0)
+        def now = millis(start.plusMinutes(60))
+
+        expect: "attributes that haven't been added to not be cached"
+        cache.getValueDatapoints(ref, DatapointInterval.MINUTE, 10, start, start.plusMinutes(59), now) == null
+        cache.getHits() == 0
+        cache.getMisses() == 0
+
+        when: "the attribute is added with a one hour window and seeded with a data point every minute"
+        assert cache.add(ref, TimeUnit.MINUTES.toMillis(60), now)
+        assert !cache.add(ref, TimeUnit.MINUTES.toMillis(60), now)
+        def timestamps = (0..59).collect { millis(start.plusMinutes(it)) } as long[]
+        def values = (0..59).collect { it as double } as double[]
+        cache.seed(ref, now - TimeUnit.MINUTES.toMillis(60), timestamps, values, now)
+
+        and: "the last hour is queried in 10 minute steps"
+        def datapoints = cache.getValueDatapoints(ref, DatapointInterval.MINUTE, 10, start, start.plusMinutes(59), now)
+
+        then: "the averages of each period should be returned from memory"
+        datapoints.length == 6
+        datapoints.collect { it.timestamp } == (0..5).collect { millis(start.plusMinutes(it * 10)) }
+        datapoints.collect { it.value } == [4.5d, 14.5d, 24.5d, 34.5d, 44.5d, 54.5d]
+        cache.getHits() == 1
+        cache.getMisses() == 1
+
+        when: "a newer data point is stored and an existing one is replaced"
+        cache.update(ref, millis(start.plusMinutes(60)), 100, now)
+        cache.update(ref, millis(start.plusMinutes(59)), true, now)
+        datapoints = cache.getValueDatapoints(ref, DatapointInterval.MINUTE, 10, start.plusMinutes(50), start.plusMinutes(60), now)
+
+        then: "the stored values should be reflected"
+        datapoints.length == 2
+        datapoints[0].value == (50 + 51 + 52 + 53 + 54 + 55 + 56 + 57 + 58 + 1) / 10d
+        datapoints[1].value == 100d
+
+        when: "the hour is queried with no data points in some periods"
+        datapoints = cache.getValueDatapoints(ref, DatapointInterval.HOUR, null, start, start.plusHours(1), now)
+
+        then: "empty periods should have a null value"
+        datapoints.length == 2
+        datapoints[1].value == 100d
+
+        when: "the window slides on"
+        now = millis(start.plusMinutes(90))
+        datapoints = cache.getValueDatapoints(ref, DatapointInterval.MINUTE, 10, start, start.plusMinutes(59), now)
+
+        then: "periods before the window should fall back to the DB"
+        datapoints == null
+        cache.getMisses() == 2
+
+        and: "periods within the window should still be answered from memory"
+        cache.getValueDatapoints(ref, DatapointInterval.MINUTE, 10, start.plusMinutes(30), start.plusMinutes(59), now).length == 3
+
+        and: "unsupported intervals should fall back to the DB"
+        cache.getValueDatapoints(ref, DatapointInterval.DAY, null, start.plusMinutes(30), start.plusMinutes(59), now) == null
+    }
+
+    def "Track the complete period when the buffer is full"() {
+
+        given: "a cache with a small capacity"
+        def cache = new DatapointCache(5)
+        def ref = new AttributeRef("asset1", "temperature")
+        def start = LocalDateTime.of(2021, 10, 19, 10, 0)
+        def now = millis(start.plusMinutes(10))
+
+        when: "the attribute is seeded with as many data points as the capacity"
+        cache.add(ref, TimeUnit.MINUTES.toMillis(60), now)
+        cache.seed(ref, now - TimeUnit.MINUTES.toMillis(60), (5..9).collect { millis(start.plusMinutes(it)) } as long[], (5..9).collect { it as double } as double[], now)
+
+        then: "only the period of the seeded data points should be answered from memory"
+        cache.getValueDatapoints(ref, DatapointInterval.MINUTE, 1, start.plusMinutes(4), start.plusMinutes(9), now) == null
+        cache.getValueDatapoints(ref, DatapointInterval.MINUTE, 1, start.plusMinutes(5), start.plusMinutes(9), now).collect { it.value } == [5d, 6d, 7d, 8d, 9d]
+
+        when: "a newer data point is stored"
+        cache.update(ref, millis(start.plusMinutes(10)), 10, now)
+
+        then: "the oldest data point should be evicted"
+        cache.getValueDatapoints(ref, DatapointInterval.MINUTE, 1, start.plusMinutes(5), start.plusMinutes(10), now) == null
+        cache.getValueDatapoints(ref, DatapointInterval.MINUTE, 1, start.plusMinutes(6), start.plusMinutes(10), now).collect { it.value } == [6d, 7d, 8d, 9d, 10d]
+
+        when: "a value that can't be aggregated is stored"
+        cache.update(ref, millis(start.plusMinutes(11)), "invalid", now)
+
+        then: "the attribute should no longer be cached"
+        !cache.contains(ref)
+    }
+
+    def "Drop buffers that are no longer queried"() {
+
+        given: "a cached attribute"
+        def cache = new DatapointCache(10)
+        def ref = new AttributeRef("asset1", "power")
+        cache.add(ref, TimeUnit.MINUTES.toMillis(5), 0)
+        cache.seed(ref, 0, new long[0], new double[0], 0)
+
+        when: "idle buffers are purged before the idle time"
+        cache.purgeIdle(DatapointCache.IDLE_MILLIS_MIN)
+
+        then: "the attribute should still be cached"
+        cache.contains(ref)
+
+        when: "idle buffers are purged after the idle time"
+        cache.purgeIdle(DatapointCache.IDLE_MILLIS_MIN + 1)
+
+        then: "the attribute should have been dropped"
+        !cache.contains(ref)
+
+        and: "a disabled cache should not add attributes"
+        !new DatapointCache(0).add(ref, 1000, 0)
+    }
+}
@@ -118,6 +118,19 @@ class EnergyOptimisationAssetTest extends Specification implements ManagerContai
             assert (assetStorageService.find(managerTestSetup.electricitySolarAssetId) as ElectricityProducerSolarAsset).getPower().orElse(-1d) == producerPower.get(0)
         }
 
+        and: "the predicted values of all the attributes should be retrieved in a single bulk query"
+        def consumerPowerRef = new AttributeRef(managerTestSetup.electricityConsumerAssetId, ElectricityAsset.POWER.name)
+        def tariffImportRef = new AttributeRef(managerTestSetup.electricitySupplierAssetId, ElectricityAsset.TARIFF_IMPORT.name)
+        def series = assetPredictedDatapointService.getAverageValueSeries(
+            [consumerPowerRef, tariffImportRef],
+            optimisationDateTime,
+            TimeUnit.MINUTES.toMillis((long)(optimiser.intervalSize * 60)),
+            optimiser.get24HourIntervalCount())
+        series.size() == 2
+        series.get(consumerPowerRef).length == optimiser.get24HourIntervalCount()
+        (1..<consumerPower.size()).every { series.get(consumerPowerRef)[it] == consumerPower.get(it) }
+        (1..<tariffImports.size()).every { series.get(tariffImportRef)[it] == tariffImports.get(it) }
+
         when: "the optimisation runs"
         optimisationService.runOptimisation(managerTestSetup.electricityOptimisationAssetId, optimisationTime)
 
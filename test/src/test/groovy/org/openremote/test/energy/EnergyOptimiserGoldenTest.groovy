@@ -0,0 +1,162 @@
+package org.openremote.test.energy
+
+import org.openremote.manager.energy.EnergyOptimiser
+import spock.lang.Specification
+
+import java.util.function.BiFunction
+import java.util.function.Function
+import java.util.function.IntToDoubleFunction
+import java.util.stream.IntStream
+
+import static spock.util.matcher.HamcrestMatchers.closeTo
+
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+class EnergyOptimiserGoldenTest extends Specification {
+
+    static List<Map<String, Object>> loadScenarios() {
+        def scenarios = []
+        Map<String, Object> scenario = null
+        EnergyOptimiserGoldenTest.getResource("/org/openremote/test/energy/EnergyOptimiserGolden.txt").eachLine { line ->
+            if (line.isEmpty() || line.startsWith("#")) {
+                return
+            }
+            def (key, value) = line.split(" ", 2) as List
+            if (key == "scenario") {
+                scenario = [name: value]
+                scenarios.add(scenario)
+            } else if (value == "true" || value == "false") {
+                scenario[key] = Boolean.parseBoolean(value)
+            } else if (value.contains(",") || key.endsWith("s")) {
+                scenario[key] = value.split(",").collect { Double.parseDouble(it) } as double[]
+            } else {
+                scenario[key] = Double.parseDouble(value)
+            }
+        }
+        return scenarios
+    }
+
+    static void assertValues(double[] actual, double[] expected) {
+        assert actual.length == expected.length
+        for (int i = 0; i < expected.length; i++) {
+            assert closeTo(expected[i], 1e-9).matches(actual[i]) : "value at interval " + i + " is " + actual[i] + " but expected " + expected[i]
+        }
+    }
+
+    def "Check primitive optimiser routines produce the same results as before"() {
+
+        expect: "the optimised energy level mins and power setpoints to match the captured outputs"
+        loadScenarios().each { scenario ->
+            double intervalSize = scenario.intervalSize
+            double energyLevel = scenario.energyLevel
+            double powerImportMax = scenario.powerImportMax
+            double powerExportMax = scenario.powerExportMax
+            boolean connected = scenario.connected
+            double[] energyLevelMins = (scenario.energyLevelMins as double[]).clone()
+            double[] energyLevelMaxs = scenario.energyLevelMaxs
+            def optimiser = new EnergyOptimiser(intervalSize, 1d)
+            double[] powerSetpoints = new double[optimiser.get24HourIntervalCount()]
+
+            IntToDoubleFunction powerImportMaxCalculator = { int interval -> interval == 0 && !connected ? 0d : powerImportMax }
+            IntToDoubleFunction powerExportMaxCalculator = { int interval -> interval == 0 && !connected ? 0d : powerExportMax }
+            IntToDoubleFunction energyLevelCalculator = { int interval ->
+                double level = energyLevel
+                for (int j = 0; j < interval; j++) {
+                    level += powerSetpoints[j] * intervalSize
+                }
+                level
+            }
+            boolean hasEnergyMinRequirement = energyLevelMins.any { it > 0 }
+
+            if (hasEnergyMinRequirement) {
+                optimiser.normaliseEnergyMinRequirements(energyLevelMins, powerImportMaxCalculator, powerExportMaxCalculator, energyLevel)
+            }
+
+            double[][] exportCostAndPower = null
+            double[][] importCostAndPower = null
+
+            if (scenario.supportsExport) {
+                def exportOptimiser = optimiser.getExportIntervalOptimiser(scenario.powerNets as double[], scenario.exportPowerLimits as double[], scenario.costImports as double[], scenario.costExports as double[], scenario.exportCost as double)
+                exportCostAndPower = optimiser.getCostAndPower(exportOptimiser, 0d, powerExportMax)
+            }
+            if (scenario.supportsImport) {
+                def importOptimiser = optimiser.getImportIntervalOptimiser(scenario.powerNets as double[], scenario.importPowerLimits as double[], scenario.costImports as double[], scenario.costExports as double[], scenario.importCost as double)
+                importCostAndPower = optimiser.getCostAndPower(importOptimiser, 0d, powerImportMax)
+                if (hasEnergyMinRequirement) {
+                    optimiser.applyEnergyMinImports(importCostAndPower, energyLevelMins, powerSetpoints, energyLevelCalculator, importOptimiser, powerImportMaxCalculator)
+                }
+            }
+
+            optimiser.applyEarningOpportunities(importCostAndPower, exportCostAndPower, energyLevelMins, energyLevelMaxs, powerSetpoints, energyLevelCalculator, powerImportMaxCalculator, powerExportMaxCalculator)
+
+            assertValues(energyLevelMins, scenario.expectedEnergyLevelMins as double[])
+            assertValues(powerSetpoints, scenario.expectedPowerSetpoints as double[])
+        }
+    }
+
+    def "Check boxed optimiser routines produce the same results as before"() {
+
+        expect: "the optimised energy level mins and power setpoints to match the captured outputs"
+        loadScenarios().each { scenario ->
+            double intervalSize = scenario.intervalSize
+            double energyLevel = scenario.energyLevel
+            double powerImportMax = scenario.powerImportMax
+            double powerExportMax = scenario.powerExportMax
+            boolean connected = scenario.connected
+            double[] energyLevelMins = (scenario.energyLevelMins as double[]).clone()
+            double[] energyLevelMaxs = scenario.energyLevelMaxs
+            def optimiser = new EnergyOptimiser(intervalSize, 1d)
+            int intervalCount = optimiser.get24HourIntervalCount()
+            double[] powerSetpoints = new double[intervalCount]
+
+            Function<Integer, Double> powerImportMaxCalculator = { interval -> interval == 0 && !connected ? 0d : powerImportMax }
+            Function<Integer, Double> powerExportMaxCalculator = { interval -> interval == 0 && !connected ? 0d : powerExportMax }
+            Function<Integer, Double> energyLevelCalculator = { int interval ->
+                energyLevel + IntStream.range(0, interval).mapToDouble({ j -> powerSetpoints[j] * intervalSize }).sum()
+            }
+            boolean hasEnergyMinRequirement = energyLevelMins.any { it > 0 }
+
+            if (hasEnergyMinRequirement) {
+                optimiser.normaliseEnergyMinRequirements(energyLevelMins, powerImportMaxCalculator, powerExportMaxCalculator, energyLevel)
+            }
+
+            double[][] exportCostAndPower = null
+            double[][] importCostAndPower = null
+
+            if (scenario.supportsExport) {
+                BiFunction<Integer, Double, double[]> exportOptimiser = optimiser.getExportOptimiser(scenario.powerNets as double[], scenario.exportPowerLimits as double[], scenario.costImports as double[], scenario.costExports as double[], scenario.exportCost as double)
+                exportCostAndPower = IntStream.range(0, intervalCount).mapToObj { exportOptimiser.apply(it, powerExportMax) }.toArray({ new double[it][] })
+            }
+            if (scenario.supportsImport) {
+                BiFunction<Integer, double[], double[]> importOptimiser = optimiser.getImportOptimiser(scenario.powerNets as double[], scenario.importPowerLimits as double[], scenario.costImports as double[], scenario.costExports as double[], scenario.importCost as double)
+                importCostAndPower = IntStream.range(0, intervalCount).mapToObj { importOptimiser.apply(it, [0d, powerImportMax] as double[]) }.toArray({ new double[it][] })
+                if (hasEnergyMinRequirement) {
+                    optimiser.applyEnergyMinImports(importCostAndPower, energyLevelMins, powerSetpoints, energyLevelCalculator, importOptimiser, powerImportMaxCalculator)
+                }
+            }
+
+            optimiser.applyEarningOpportunities(importCostAndPower, exportCostAndPower, energyLevelMins, energyLevelMaxs, powerSetpoints, energyLevelCalculator, powerImportMaxCalculator, powerExportMaxCalculator)
+
+            assertValues(energyLevelMins, scenario.expectedEnergyLevelMins as double[])
+            assertValues(powerSetpoints, scenario.expectedPowerSetpoints as double[])
+        }
+    }
+}
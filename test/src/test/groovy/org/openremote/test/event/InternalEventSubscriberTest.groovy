@@ -0,0 +1,193 @@
+package org.openremote.test.event
+
+import org.openremote.manager.event.InternalEventSubscriber
+import org.openremote.model.attribute.AttributeEvent
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+import static org.openremote.manager.event.InternalEventSubscriber.OverflowPolicy.BLOCK
+import static org.openremote.manager.event.InternalEventSubscriber.OverflowPolicy.DROP_NEWEST
+import static org.openremote.manager.event.InternalEventSubscriber.OverflowPolicy.DROP_OLDEST
+
+class InternalEventSubscriberTest extends Specification {
+
+    def "A slow internal subscriber doesn't hold up other subscribers"() {
+
+        given: "a slow subscriber and a fast subscriber sharing an executor"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.05)
+        def executor = Executors.newCachedThreadPool()
+        def release = new CountDownLatch(1)
+        List<AttributeEvent> slowReceived = new CopyOnWriteArrayList<>()
+        List<AttributeEvent> fastReceived = new CopyOnWriteArrayList<>()
+        def slow = new InternalEventSubscriber<AttributeEvent>("slow", { event ->
+            release.await(10, TimeUnit.SECONDS)
+            slowReceived.add(event)
+        }, executor, 10, DROP_OLDEST)
+        def fast = new InternalEventSubscriber<AttributeEvent>("fast", { event -> fastReceived.add(event) }, executor, 1000, DROP_OLDEST)
+
+        when: "events are published to both from the publishing thread"
+        def start = System.currentTimeMillis()
+        def events = (0..<100).collect { new AttributeEvent("asset" + it, "attribute", it) }
+        events.each {
+            slow.accept(it)
+            fast.accept(it)
+        }
+        def publishMillis = System.currentTimeMillis() - start
+
+        then: "publishing shouldn't block on the slow subscriber"
+        publishMillis < 5000
+
+        and: "the fast subscriber should get every event in order"
+        conditions.eventually {
+            assert fastReceived == events
+            assert fast.getQueuedEvents() == 0
+            assert fast.getDroppedEvents() == 0
+        }
+
+        and: "the slow subscriber should have dropped its oldest events and be lagging"
+        slowReceived.isEmpty()
+        slow.getDroppedEvents() >= 89
+        slow.getQueuedEvents() <= 11
+        slow.getLagMillis() >= 0
+
+        when: "the slow subscriber is released"
+        release.countDown()
+
+        then: "it should get the newest events in order"
+        conditions.eventually {
+            assert slow.getQueuedEvents() == 0
+            assert slowReceived.size() + slow.getDroppedEvents() == 100
+            assert slowReceived.last() == events.last()
+            assert slowReceived == slowReceived.sort(false) { it.value.orElse(0) as int }
+            assert slow.getMaxLagMillis() > 0
+        }
+
+        cleanup: "the executor is stopped"
+        release.countDown()
+        executor.shutdownNow()
+    }
+
+    def "Drop the newest events and stop delivering once cancelled"() {
+
+        given: "a blocked subscriber that drops new events"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.05)
+        def executor = Executors.newCachedThreadPool()
+        def release = new CountDownLatch(1)
+        List<AttributeEvent> received = new CopyOnWriteArrayList<>()
+        def subscriber = new InternalEventSubscriber<AttributeEvent>("blocked", { event ->
+            release.await(10, TimeUnit.SECONDS)
+            received.add(event)
+        }, executor, 5, DROP_NEWEST)
+
+        when: "more events than fit in the queue are published"
+        def events = (0..<20).collect { new AttributeEvent("asset", "attribute", it) }
+        events.each { subscriber.accept(it) }
+        release.countDown()
+
+        then: "the first events should be delivered and the rest dropped"
+        conditions.eventually {
+            assert subscriber.getQueuedEvents() == 0
+            assert received.size() + subscriber.getDroppedEvents() == 20
+            assert received.first() == events.first()
+            assert subscriber.getDroppedEvents() >= 14
+        }
+
+        when: "the subscriber is cancelled"
+        def delivered = received.size()
+        subscriber.cancel()
+        subscriber.accept(new AttributeEvent("asset", "attribute", 100))
+        Thread.sleep(100)
+
+        then: "nothing more should be delivered"
+        received.size() == delivered
+
+        cleanup: "the executor is stopped"
+        executor.shutdownNow()
+    }
+
+    def "A slow internal subscriber with the default overflow policy doesn't hold up other subscribers"() {
+
+        given: "a blocked subscriber with the default overflow policy and a fast subscriber"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.05)
+        def executor = Executors.newCachedThreadPool()
+        def release = new CountDownLatch(1)
+        List<AttributeEvent> fastReceived = new CopyOnWriteArrayList<>()
+        def slow = new InternalEventSubscriber<AttributeEvent>("slow", { event -> release.await(10, TimeUnit.SECONDS) }, executor, 10, null)
+        def fast = new InternalEventSubscriber<AttributeEvent>("fast", { event -> fastReceived.add(event) }, executor, 1000, null)
+
+        expect: "the default policy not to block the publisher"
+        slow.getOverflowPolicy() == DROP_OLDEST
+
+        when: "far more events than the slow subscriber can queue are published to both"
+        def events = (0..<500).collect { new AttributeEvent("asset" + it, "attribute", it) }
+        def published = new CountDownLatch(1)
+        Thread.start {
+            events.each {
+                slow.accept(it)
+                fast.accept(it)
+            }
+            published.countDown()
+        }
+
+        then: "publishing should complete whilst the slow subscriber is still blocked"
+        published.await(5, TimeUnit.SECONDS)
+
+        and: "the fast subscriber should get every event in order"
+        conditions.eventually {
+            assert fastReceived == events
+            assert fast.getDroppedEvents() == 0
+        }
+        slow.getDroppedEvents() > 0
+
+        cleanup: "the executor is stopped"
+        release.countDown()
+        executor.shutdownNow()
+    }
+
+    def "Wait for space rather than drop events when blocking is chosen"() {
+
+        given: "a blocked subscriber with the block overflow policy"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.05)
+        def executor = Executors.newCachedThreadPool()
+        def release = new CountDownLatch(1)
+        List<AttributeEvent> received = new CopyOnWriteArrayList<>()
+        def subscriber = new InternalEventSubscriber<AttributeEvent>("blocked", { event ->
+            release.await(10, TimeUnit.SECONDS)
+            received.add(event)
+        }, executor, 5, BLOCK)
+
+        when: "more events than fit in the queue are published"
+        def events = (0..<20).collect { new AttributeEvent("asset", "attribute", it) }
+        def published = new CountDownLatch(1)
+        Thread.start {
+            events.each { subscriber.accept(it) }
+            published.countDown()
+        }
+
+        then: "the publisher should wait once the queue is full"
+        conditions.eventually {
+            assert subscriber.getQueuedEvents() == 5
+        }
+        !published.await(200, TimeUnit.MILLISECONDS)
+
+        when: "the subscriber is released"
+        release.countDown()
+
+        then: "every event should be delivered in order"
+        published.await(5, TimeUnit.SECONDS)
+        conditions.eventually {
+            assert received == events
+            assert subscriber.getQueuedEvents() == 0
+            assert subscriber.getDroppedEvents() == 0
+        }
+
+        cleanup: "the executor is stopped"
+        release.countDown()
+        executor.shutdownNow()
+    }
+}
@@ -0,0 +1,96 @@
+package org.openremote.test.event
+
+import org.openremote.container.concurrent.PartitionedExecutor
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class PartitionedExecutorTest extends Specification {
+
+    def "Keep task order per partition key whilst other keys run in parallel"() {
+
+        given: "a partitioned executor like the client event fan out with room for all tasks on any partition"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.05)
+        def executor = new PartitionedExecutor("Test", 4, 50000)
+        Map<String, List<Integer>> received = new ConcurrentHashMap<>()
+
+        when: "tasks for lots of sessions are submitted interleaved"
+        1000.times { i ->
+            50.times { s ->
+                def sessionKey = "session" + s
+                executor.execute(sessionKey, {
+                    received.computeIfAbsent(sessionKey, { new CopyOnWriteArrayList<Integer>() }).add(i)
+                })
+            }
+        }
+
+        then: "every session should receive its tasks in submission order"
+        conditions.eventually {
+            assert executor.getExecutedTasks() == 50000
+            assert executor.getRejectedTasks() == 0
+            assert executor.getQueueDepth() == 0
+            assert received.size() == 50
+            received.values().each { assert it == (0..<1000).toList() }
+        }
+
+        when: "one session is blocked"
+        def blocked = new CountDownLatch(1)
+        def blockedKey = "session0"
+        def blockedPartition = executor.getPartition(blockedKey)
+        def otherKey = (1..<50).collect { "session" + it }.find { executor.getPartition(it) != blockedPartition }
+        def otherRan = new CountDownLatch(1)
+        executor.execute(blockedKey, { blocked.await(10, TimeUnit.SECONDS) })
+        executor.execute(otherKey, { otherRan.countDown() })
+
+        then: "sessions on other partitions should still be served"
+        otherRan.await(5, TimeUnit.SECONDS)
+        executor.getMaxLatencyMillis() >= 0
+
+        cleanup: "the executor is stopped"
+        blocked?.countDown()
+        executor.shutdownNow()
+    }
+
+    def "Discard tasks when a partition is full but never guaranteed tasks"() {
+
+        given: "a partitioned executor with a small partition queue"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.05)
+        def executor = new PartitionedExecutor("Test", 2, 10)
+        def received = new CopyOnWriteArrayList<Integer>()
+
+        when: "the partition is blocked and more tasks are submitted than the queue can hold"
+        def blocked = new CountDownLatch(1)
+        def started = new CountDownLatch(1)
+        executor.execute("session", { started.countDown(); blocked.await(10, TimeUnit.SECONDS) })
+        started.await(5, TimeUnit.SECONDS)
+        15.times { i -> executor.execute("session", { received.add(i) }) }
+
+        then: "the tasks that don't fit should be counted as rejected"
+        executor.getRejectedTasks() == 5
+        executor.getQueueDepth() == 10
+
+        when: "a task that must not be lost is submitted whilst the partition is still full"
+        executor.executeGuaranteed("session", { received.add(100) })
+
+        then: "it should be queued straight away beyond the capacity rather than discarded"
+        executor.getQueueDepth() == 11
+        executor.getRejectedTasks() == 5
+
+        when: "the partition is unblocked"
+        blocked.countDown()
+
+        then: "all queued tasks should run in order followed by the guaranteed task"
+        conditions.eventually {
+            assert received == (0..<10).toList() + [100]
+            assert executor.getRejectedTasks() == 5
+        }
+
+        cleanup: "the executor is stopped"
+        blocked?.countDown()
+        executor.shutdownNow()
+    }
+}
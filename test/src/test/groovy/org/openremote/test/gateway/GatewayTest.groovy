@@ -902,6 +902,35 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
             assert mirroredMicrophone2.getAttribute("test").flatMap{it.getValue()}.orElse("") == "newValue"
         }
 
+        and: "the gateway client should have forwarded the events in compressed batches"
+        def eventForwarder = gatewayClientService.forwarderRealmMap.get(managerTestSetup.realmCityTenant)
+        assert eventForwarder != null
+        assert eventForwarder.sentBatches > 0
+        assert eventForwarder.sentEvents >= eventForwarder.sentBatches
+        assert eventForwarder.compressionRatio > 0
+        assert eventForwarder.bufferedEvents == 0
+
+        when: "the gateway client is disconnected and an attribute is updated on the gateway client"
+        gatewayClientService.clientRealmMap.get(managerTestSetup.realmCityTenant).disconnect()
+        advancePseudoClock(1, TimeUnit.SECONDS, container)
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(microphone2.id, "test", "bufferedValue"))
+
+        then: "the event should be buffered"
+        conditions.eventually {
+            assert eventForwarder.bufferedEvents > 0
+        }
+
+        when: "the gateway client reconnects"
+        gatewayClientService.clientRealmMap.get(managerTestSetup.realmCityTenant).connect()
+
+        then: "the buffered event should be replayed and the mirrored asset attribute updated"
+        conditions.eventually {
+            assert eventForwarder.bufferedEvents == 0
+            def mirroredMicrophone2 = assetStorageService.find(mapAssetId(gateway.id, microphone2.id, false))
+            assert mirroredMicrophone2 != null
+            assert mirroredMicrophone2.getAttribute("test").flatMap{it.getValue()}.orElse("") == "bufferedValue"
+        }
+
         when: "time advances"
         advancePseudoClock(1, TimeUnit.SECONDS, container)
 
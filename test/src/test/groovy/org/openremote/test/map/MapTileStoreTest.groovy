@@ -0,0 +1,70 @@
+package org.openremote.test.map
+
+import org.openremote.manager.map.MapTileStore
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.sql.DriverManager
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class MapTileStoreTest extends Specification {
+
+    def "Read tiles concurrently through the pooled connections and cache"() {
+
+        given: "an mbtiles file with some tiles"
+        def path = Files.createTempFile("maptiles", ".mbtiles")
+        def connection = DriverManager.getConnection("jdbc:sqlite:" + path.toAbsolutePath())
+        connection.createStatement().execute("create table TILES (ZOOM_LEVEL integer, TILE_COLUMN integer, TILE_ROW integer, TILE_DATA blob)")
+        def insert = connection.prepareStatement("insert into TILES values (?, ?, ?, ?)")
+        (0..3).each { column ->
+            (0..3).each { tmsRow ->
+                insert.setInt(1, 2)
+                insert.setInt(2, column)
+                insert.setInt(3, tmsRow)
+                insert.setBytes(4, ("tile-" + column + "-" + tmsRow).bytes)
+                insert.executeUpdate()
+            }
+        }
+        connection.close()
+
+        and: "a tile store with two connections"
+        def tileStore = new MapTileStore(path, 2, 1024 * 1024)
+
+        expect: "tiles to be returned using XYZ coordinates"
+        new String(tileStore.getTile(2, 1, 0)) == "tile-1-3"
+        new String(tileStore.getTile(2, 3, 3)) == "tile-3-0"
+
+        and: "missing and out of range tiles to return null"
+        tileStore.getTile(3, 0, 0) == null
+        tileStore.getTile(2, 4, 0) == null
+        tileStore.getTile(2, 0, -1) == null
+
+        when: "the same tiles are requested again"
+        tileStore.getTile(2, 1, 0)
+        tileStore.getTile(3, 0, 0)
+
+        then: "they should be served from the cache"
+        tileStore.cacheStats.hitCount() == 2
+        tileStore.cacheStats.missCount() == 3
+
+        when: "many tiles are requested concurrently"
+        def executor = Executors.newFixedThreadPool(8)
+        def futures = (0..<400).collect { i ->
+            executor.submit({
+                int column = i % 4
+                int row = i.intdiv(4) % 4
+                new String(tileStore.getTile(2, column, row)) == "tile-" + column + "-" + (3 - row)
+            } as Callable<Boolean>)
+        }
+
+        then: "all tiles should be correct"
+        futures.every { it.get() }
+        tileStore.cachedTileCount == 17
+
+        cleanup: "the tile store is closed"
+        executor?.shutdownNow()
+        tileStore?.close()
+        Files.deleteIfExists(path)
+    }
+}
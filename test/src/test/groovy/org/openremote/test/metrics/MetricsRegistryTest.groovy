@@ -0,0 +1,115 @@
+package org.openremote.test.metrics
+
+import org.openremote.container.metrics.MetricsRegistry
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class MetricsRegistryTest extends Specification {
+
+    def "Check metrics registry and Prometheus output"() {
+
+        given: "a metrics registry"
+        def registry = new MetricsRegistry()
+
+        when: "metrics are registered and recorded"
+        def websocketCounter = registry.counter("or_client_events_sent_total", "Messages sent to client sessions", "transport", "websocket")
+        def mqttCounter = registry.counter("or_client_events_sent_total", "Messages sent to client sessions", "transport", "mqtt")
+        def queueSize = 12
+        registry.gauge("or_queue_depth", "Messages waiting in the queue", { queueSize } as java.util.function.DoubleSupplier, "queue", "AssetQueue")
+        def timer = registry.timer("or_db_transaction_seconds", "Duration of database transactions")
+        websocketCounter.increment()
+        websocketCounter.increment(4)
+        mqttCounter.increment()
+        (1..100).each { timer.record(it, TimeUnit.MILLISECONDS) }
+
+        then: "looking up a metric again should return the same instance"
+        registry.counter("or_client_events_sent_total", "Messages sent to client sessions", "transport", "websocket").is(websocketCounter)
+        registry.timer("or_db_transaction_seconds", "Duration of database transactions").is(timer)
+
+        and: "the recorded values should be available"
+        websocketCounter.getCount() == 5
+        timer.getCount() == 100
+        timer.getAverageMicros() == 50500
+        Math.abs(timer.getQuantileMicros(0.99) - 99000) <= 1000
+        Math.abs(timer.getMaxMicros() - 100000) <= 1000
+
+        when: "the metrics are written in Prometheus format"
+        def output = registry.toPrometheus()
+
+        then: "each metric family should be described once and have its samples"
+        output.count("# TYPE or_client_events_sent_total counter") == 1
+        output.contains('or_client_events_sent_total{transport="websocket"} 5\n')
+        output.contains('or_client_events_sent_total{transport="mqtt"} 1\n')
+        output.contains("# TYPE or_queue_depth gauge\n")
+        output.contains('or_queue_depth{queue="AssetQueue"} 12\n')
+        output.contains("# TYPE or_db_transaction_seconds summary\n")
+        output.contains('or_db_transaction_seconds{quantile="0.5"}')
+        output.contains("or_db_transaction_seconds_sum 5.05\n")
+        output.contains("or_db_transaction_seconds_count 100\n")
+
+        when: "a gauge source changes"
+        queueSize = 3
+
+        then: "the new value should be collected"
+        registry.toPrometheus().contains('or_queue_depth{queue="AssetQueue"} 3\n')
+
+        when: "a metric is registered again with another type"
+        registry.timer("or_queue_depth", "Messages waiting in the queue", "queue", "AssetQueue")
+
+        then: "it should be rejected"
+        thrown(IllegalArgumentException)
+
+        when: "a metric is registered with an invalid name"
+        registry.counter("or queue", "Invalid")
+
+        then: "it should be rejected"
+        thrown(IllegalArgumentException)
+
+        when: "metrics are removed"
+        registry.removeAll("or_client_events_sent_total")
+        registry.remove("or_queue_depth", "queue", "AssetQueue")
+
+        then: "they should no longer be written"
+        registry.getMetrics().size() == 1
+        !registry.toPrometheus().contains("or_client_events_sent_total")
+        !registry.toPrometheus().contains("or_queue_depth")
+    }
+
+    def "Check metrics recorded concurrently"() {
+
+        given: "a registry and many recording threads"
+        def registry = new MetricsRegistry()
+        def threads = 16
+        def recordsPerThread = 10000
+        def executor = Executors.newFixedThreadPool(threads)
+        def done = new CountDownLatch(threads)
+
+        when: "the threads record to the same counter and timer whilst the metrics are collected"
+        threads.times {
+            executor.execute {
+                def counter = registry.counter("or_test_total", "Test")
+                def timer = registry.timer("or_test_seconds", "Test")
+                recordsPerThread.times { i ->
+                    counter.increment()
+                    timer.record(i, TimeUnit.MICROSECONDS)
+                }
+                done.countDown()
+            }
+        }
+        while (done.getCount() > 0) {
+            registry.toPrometheus()
+        }
+
+        then: "nothing should be lost"
+        done.await(10, TimeUnit.SECONDS)
+        registry.counter("or_test_total", "Test").getCount() == threads * recordsPerThread
+        registry.timer("or_test_seconds", "Test").getCount() == threads * recordsPerThread
+        registry.toPrometheus().contains("or_test_seconds_count " + (threads * recordsPerThread) + "\n")
+
+        cleanup:
+        executor?.shutdownNow()
+    }
+}
@@ -14,6 +14,7 @@ import org.openremote.model.asset.impl.GroupAsset
 import org.openremote.model.asset.impl.LightAsset
 import org.openremote.model.asset.impl.ThingAsset
 import org.openremote.model.attribute.Attribute
+import org.openremote.model.attribute.AttributeMapSnapshot
 import org.openremote.model.attribute.MetaItem
 import org.openremote.model.rules.AssetState
 import org.openremote.model.asset.AssetTypeInfo
@@ -197,4 +198,89 @@ class AssetModelTest extends Specification implements ManagerContainerTrait {
         assetStateObjectNode.get("value").isTextual()
         assetStateObjectNode.get("value").asText() == "#3264c8"
     }
+
+    def "Deserialize attributes regardless of field order"() {
+        when: "an attribute with the value before the type is deserialized"
+        def attribute = ValueUtil.parse("{\"value\": 100.5, \"meta\": {\"readOnly\": true}, \"name\": \"test\", \"unknown\": {\"a\": [1, 2]}, \"type\": \"bigNumber\"}", Attribute.class).orElse(null)
+
+        then: "it should be typed from the type field"
+        attribute != null
+        attribute.getName() == "test"
+        attribute.getType() == BIG_NUMBER
+        attribute.getValue().orElse(null) == 100.5
+        attribute.getMetaValue(MetaItemType.READ_ONLY).orElse(false)
+
+        when: "an attribute with an array type is deserialized"
+        def arrayAttribute = ValueUtil.parse("{\"type\": \"bigNumber[]\", \"value\": [1.5, 2.5], \"name\": \"test\"}", Attribute.class).orElse(null)
+
+        then: "the cached array descriptor should be used"
+        arrayAttribute.getType() == BIG_NUMBER.asArray()
+        arrayAttribute.getType().is(ValueUtil.getValueDescriptor("bigNumber[]").orElse(null))
+        arrayAttribute.getValue().map{(BigDecimal[])it}.map{it.length}.orElse(0) == 2
+
+        when: "an attribute without a type is deserialized"
+        ValueUtil.JSON.readValue("{\"name\": \"test\", \"value\": 1}", Attribute.class)
+
+        then: "it should fail"
+        thrown(Exception)
+    }
+
+    def "Detect attribute map modifications using snapshots"() {
+        given: "an asset with a mutable attribute value"
+        def asset = new LightAsset("Test light")
+            .setRealm(MASTER_REALM)
+            .setTemperature(100I)
+            .setColourRGB(new ColourRGB(50, 100, 200))
+        def attributes = asset.getAttributes()
+
+        when: "a snapshot is taken"
+        def snapshot = new AttributeMapSnapshot(attributes)
+
+        then: "it should match the source without any deep comparison"
+        !snapshot.isModified(attributes)
+        !AttributeMapSnapshot.isModified(snapshot, attributes)
+        snapshot.get(LightAsset.COLOUR_TEMPERATURE).get() !== attributes.get(LightAsset.COLOUR_TEMPERATURE).get()
+        snapshot.getValue(LightAsset.COLOUR_TEMPERATURE).orElse(null) == 100I
+
+        when: "an attribute value is set to the same value"
+        asset.setTemperature(100I)
+
+        then: "the attributes should not be modified"
+        !snapshot.isModified(attributes)
+
+        when: "an attribute value is changed"
+        asset.setTemperature(200I)
+
+        then: "the attributes should be modified and the snapshot should still hold the old value"
+        snapshot.isModified(attributes)
+        snapshot.getValue(LightAsset.COLOUR_TEMPERATURE).orElse(null) == 100I
+
+        when: "a mutable value is modified in place"
+        snapshot = new AttributeMapSnapshot(attributes)
+        attributes.get(LightAsset.COLOUR_RGB).flatMap{it.getValue()}.map{(ColourRGB)it}.get().r = 10
+
+        then: "the attributes should be modified"
+        snapshot.isModified(attributes)
+
+        when: "meta is added to an attribute"
+        snapshot = new AttributeMapSnapshot(attributes)
+        attributes.get(LightAsset.COLOUR_TEMPERATURE).get().addOrReplaceMeta(new MetaItem<>(MetaItemType.READ_ONLY))
+
+        then: "the attributes should be modified"
+        snapshot.isModified(attributes)
+
+        when: "an attribute is removed"
+        snapshot = new AttributeMapSnapshot(attributes)
+        attributes.remove(LightAsset.COLOUR_TEMPERATURE)
+
+        then: "the attributes should be modified"
+        snapshot.isModified(attributes)
+
+        when: "the attributes are copied"
+        def copy = AttributeMapSnapshot.copyOf(attributes)
+
+        then: "the copy should be equal but independent"
+        !AttributeMapSnapshot.isModified(attributes, copy)
+        copy.get(LightAsset.COLOUR_RGB).flatMap{it.getValue()}.get() !== attributes.get(LightAsset.COLOUR_RGB).flatMap{it.getValue()}.get()
+    }
 }
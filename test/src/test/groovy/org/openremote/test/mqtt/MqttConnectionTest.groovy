@@ -0,0 +1,142 @@
+package org.openremote.test.mqtt
+
+import org.keycloak.common.VerificationException
+import org.keycloak.representations.AccessToken
+import org.openremote.manager.mqtt.MqttConnection
+import org.openremote.manager.security.ManagerKeycloakIdentityProvider
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Supplier
+
+class MqttConnectionTest extends Specification {
+
+    /**
+     * Counts token verifications and issues tokens with the given lifetime instead of verifying against keycloak.
+     */
+    static class TestMqttConnection extends MqttConnection {
+        AtomicInteger verifications = new AtomicInteger()
+        long tokenLifetimeSeconds = 3600
+        CountDownLatch verifyStarted
+        CountDownLatch verifyBlocked
+
+        TestMqttConnection(ManagerKeycloakIdentityProvider identityProvider, Executor executor) {
+            super(identityProvider, "client1", "master", "user1", "secret", true, System.currentTimeMillis(), executor)
+        }
+
+        @Override
+        protected AccessToken verifyAccessToken(String realm, String accessToken) throws VerificationException {
+            verifications.incrementAndGet()
+            verifyStarted?.countDown()
+            verifyBlocked?.await(10, TimeUnit.SECONDS)
+            def token = new AccessToken()
+            token.subject(realm + "-" + accessToken)
+            token.exp(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + tokenLifetimeSeconds)
+            return token
+        }
+    }
+
+    def identityProvider = Stub(ManagerKeycloakIdentityProvider) {
+        getTokenUri(_) >> URI.create("http://localhost/auth/realms/master/protocol/openid-connect/token")
+        getAccessTokenSupplier(_) >> ({ "token" } as Supplier<String>)
+    }
+
+    def executor = Executors.newSingleThreadExecutor()
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "Verify the access token once whilst it is valid"() {
+
+        given: "a connection with credentials"
+        def connection = new TestMqttConnection(identityProvider, executor)
+
+        when: "the auth context is requested many times"
+        def authContexts = (1..1000).collect { connection.getAuthContext() }
+
+        then: "the token should only have been verified once and the same auth context returned every time"
+        connection.verifications.get() == 1
+        authContexts.every { it != null && it.is(authContexts[0]) }
+    }
+
+    def "Refresh the auth context in the background before the token expires"() {
+
+        given: "a connection with credentials"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.1)
+        def connection = new TestMqttConnection(identityProvider, executor)
+        def authContext = connection.getAuthContext()
+
+        expect: "the token to have been verified and refresh to be due before the cached auth context expires"
+        authContext != null
+        connection.verifications.get() == 1
+        connection.authContextRefreshMillis > System.currentTimeMillis()
+        connection.authContextRefreshMillis < connection.authContextExpiryMillis
+
+        when: "the refresh time has passed"
+        connection.authContextRefreshMillis = System.currentTimeMillis() - 1
+        def cachedAuthContext = connection.getAuthContext()
+
+        then: "the cached auth context should still be returned whilst the token is verified again in the background"
+        cachedAuthContext.is(authContext)
+        conditions.eventually {
+            assert connection.verifications.get() == 2
+            assert !connection.getAuthContext().is(authContext)
+        }
+    }
+
+    def "Verify the access token again once the cached auth context has expired"() {
+
+        given: "a connection with no background refresh and a short lived token"
+        def connection = new TestMqttConnection(identityProvider, null)
+        connection.tokenLifetimeSeconds = 2
+        def authContext = connection.getAuthContext()
+
+        expect: "the token to have been verified"
+        authContext != null
+        connection.verifications.get() == 1
+
+        when: "the token has expired"
+        Thread.sleep(2100)
+        def refreshedAuthContext = connection.getAuthContext()
+
+        then: "the token should have been verified again before returning the auth context"
+        connection.verifications.get() == 2
+        refreshedAuthContext != null
+        !refreshedAuthContext.is(authContext)
+    }
+
+    def "Discard a refresh that started before the credentials were changed"() {
+
+        given: "a connection whose token verification is blocked"
+        def connection = new TestMqttConnection(identityProvider, executor)
+        connection.verifyStarted = new CountDownLatch(1)
+        connection.verifyBlocked = new CountDownLatch(1)
+
+        when: "the auth context is refreshed in the background"
+        def refresh = executor.submit({ connection.getAuthContext() } as Callable)
+        connection.verifyStarted.await(5, TimeUnit.SECONDS)
+
+        and: "the credentials are changed whilst the token is being verified"
+        connection.setCredentials("building", "user2", "secret2")
+        connection.verifyBlocked.countDown()
+
+        then: "the refresh result should be discarded"
+        refresh.get(5, TimeUnit.SECONDS) == null
+
+        when: "the auth context is requested with the new credentials"
+        connection.verifyStarted = null
+        connection.verifyBlocked = null
+        def authContext = connection.getAuthContext()
+
+        then: "the token should be verified for the new realm"
+        connection.verifications.get() == 2
+        authContext.authenticatedRealm == "building"
+    }
+}
@@ -0,0 +1,99 @@
+package org.openremote.test.mqtt
+
+import com.sun.management.OperatingSystemMXBean
+import io.moquette.BrokerConstants
+import org.openremote.agent.protocol.mqtt.MQTTMessage
+import org.openremote.agent.protocol.mqtt.MQTT_IOClient
+import org.openremote.container.util.UniqueIdentifierGenerator
+import org.openremote.manager.event.ClientEventService
+import org.openremote.manager.event.InternalEventSubscriber
+import org.openremote.manager.mqtt.DefaultMQTTHandler
+import org.openremote.manager.mqtt.MqttBrokerService
+import org.openremote.manager.setup.SetupService
+import org.openremote.model.asset.agent.ConnectionStatus
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.model.auth.UsernamePassword
+import org.openremote.model.util.ValueUtil
+import org.openremote.test.ManagerContainerTrait
+import org.openremote.test.setup.KeycloakTestSetup
+import org.openremote.test.setup.ManagerTestSetup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Consumer
+import java.util.logging.Logger
+
+import static org.openremote.container.util.MapAccess.getInteger
+import static org.openremote.container.util.MapAccess.getString
+import static org.openremote.manager.mqtt.MqttBrokerService.MQTT_SERVER_LISTEN_HOST
+import static org.openremote.manager.mqtt.MqttBrokerService.MQTT_SERVER_LISTEN_PORT
+
+class MqttLoadTest extends Specification implements ManagerContainerTrait {
+
+    private static final Logger LOG = Logger.getLogger(MqttLoadTest.class.getName())
+    static final int PUBLISH_COUNT = 2000
+
+    def "Process a burst of attribute value writes published to the embedded broker"() {
+
+        given: "the container environment is started"
+        def conditions = new PollingConditions(timeout: 60, initialDelay: 0.1, delay: 0.2)
+        def container = startContainer(defaultConfig(), defaultServices())
+        def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
+        def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
+        def mqttBrokerService = container.getService(MqttBrokerService.class)
+        def clientEventService = container.getService(ClientEventService.class)
+        def mqttClientId = UniqueIdentifierGenerator.generateId()
+        def username = keycloakTestSetup.tenantBuilding.realm + ":" + keycloakTestSetup.serviceUser.username
+        def password = keycloakTestSetup.serviceUser.secret
+        def mqttHost = getString(container.getConfig(), MQTT_SERVER_LISTEN_HOST, BrokerConstants.HOST)
+        def mqttPort = getInteger(container.getConfig(), MQTT_SERVER_LISTEN_PORT, BrokerConstants.PORT)
+
+        and: "the attribute events of the written attribute are counted"
+        def processed = new AtomicInteger()
+        Consumer<AttributeEvent> counter = { ev ->
+            if (ev.assetId == managerTestSetup.apartment1HallwayId && ev.attributeName == "lights") {
+                processed.incrementAndGet()
+            }
+        }
+        // Counting is quick and never publishes so blocking is fine and no events are lost
+        clientEventService.addInternalSubscription(AttributeEvent.class, null, counter, InternalEventSubscriber.OverflowPolicy.BLOCK)
+
+        and: "a mqtt client is connected"
+        def client = new MQTT_IOClient(mqttClientId, mqttHost, mqttPort, false, true, new UsernamePassword(username, password), null)
+        client.connect()
+        conditions.eventually {
+            assert client.getConnectionStatus() == ConnectionStatus.CONNECTED
+            assert mqttBrokerService.clientIdConnectionMap.get(mqttClientId) != null
+        }
+
+        when: "the client publishes a burst of alternating attribute values"
+        def topic = "${keycloakTestSetup.tenantBuilding.realm}/$mqttClientId/$DefaultMQTTHandler.ATTRIBUTE_VALUE_WRITE_TOPIC/lights/$managerTestSetup.apartment1HallwayId".toString()
+        def payloads = [ValueUtil.asJSON(true).orElse(null), ValueUtil.asJSON(false).orElse(null)] // Starts with false as the value is initially true
+        def osBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()
+        def startCpuNanos = osBean.getProcessCpuTime()
+        def startNanos = System.nanoTime()
+        (1..PUBLISH_COUNT).each {
+            client.sendMessage(new MQTTMessage<String>(topic, payloads[it % 2]))
+        }
+
+        then: "every publish should be processed"
+        conditions.eventually {
+            assert processed.get() == PUBLISH_COUNT
+        }
+
+        and: "the throughput and CPU usage are reported"
+        def elapsedNanos = System.nanoTime() - startNanos
+        def cpuNanos = osBean.getProcessCpuTime() - startCpuNanos
+        def publishesPerSecond = PUBLISH_COUNT * TimeUnit.SECONDS.toNanos(1) / elapsedNanos
+        def cpuPercent = 100d * cpuNanos / (elapsedNanos * Runtime.getRuntime().availableProcessors())
+        LOG.info(String.format("Processed %d MQTT publishes in %dms: %.0f publishes/s, %.1f%% process CPU",
+            PUBLISH_COUNT, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), publishesPerSecond, cpuPercent))
+        publishesPerSecond > 0
+
+        cleanup: "the client is disconnected"
+        client?.disconnect()
+    }
+}
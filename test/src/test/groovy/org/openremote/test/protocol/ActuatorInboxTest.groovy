@@ -0,0 +1,179 @@
+package org.openremote.test.protocol
+
+import org.openremote.agent.protocol.ActuatorInbox
+import org.openremote.container.metrics.CounterMetric
+import org.openremote.container.metrics.MetricsRegistry
+import org.openremote.container.metrics.TimerMetric
+import org.openremote.model.attribute.AttributeEvent
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class ActuatorInboxTest extends Specification {
+
+    def "Check actuator inbox ordering, bounding and isolation"() {
+
+        given: "a shared executor and two inboxes, one of which has a slow device"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.1)
+        def executor = Executors.newFixedThreadPool(2)
+        def release = new CountDownLatch(1)
+        List<AttributeEvent> slowWrites = new CopyOnWriteArrayList<>()
+        List<AttributeEvent> fastWrites = new CopyOnWriteArrayList<>()
+        def slowInbox = new ActuatorInbox("slow", { release.await(10, TimeUnit.SECONDS); slowWrites.add(it) }, executor, 5)
+        def fastInbox = new ActuatorInbox("fast", { fastWrites.add(it) }, executor, 1000)
+
+        when: "more writes than the slow inbox can hold are offered to it"
+        def accepted = (1..8).collect { slowInbox.offer(new AttributeEvent("asset1", "target", it)) }
+
+        then: "the writes beyond the capacity should be dropped"
+        conditions.eventually {
+            assert slowInbox.getDroppedWrites() > 0
+        }
+        accepted.count { !it } == slowInbox.getDroppedWrites()
+        slowInbox.getPendingWrites() <= 5
+
+        when: "writes to several attributes are offered to the other inbox"
+        (1..300).each {
+            fastInbox.offer(new AttributeEvent("asset1", "a" + (it % 3), it))
+        }
+
+        then: "they should all be handled whilst the slow device is still blocked, in order for each attribute"
+        conditions.eventually {
+            assert fastWrites.size() == 300
+        }
+        fastInbox.getDroppedWrites() == 0
+        fastInbox.getDispatchedWrites() == 300
+        fastInbox.getPendingWrites() == 0
+        (0..2).every { i ->
+            def values = fastWrites.findAll { it.attributeName == "a" + i }.collect { it.value.orElse(null) as Integer }
+            values == values.toSorted()
+        }
+        slowWrites.isEmpty()
+
+        when: "the slow device is released"
+        release.countDown()
+
+        then: "the accepted writes should be handled in the order they were offered"
+        conditions.eventually {
+            assert slowInbox.getPendingWrites() == 0
+            assert slowWrites.size() == accepted.count { it }
+        }
+        slowWrites.collect { it.value.orElse(null) as Integer } == slowWrites.collect { it.value.orElse(null) as Integer }.toSorted()
+        slowInbox.getMaxLatencyMillis() >= slowInbox.getAverageLatencyMillis()
+
+        cleanup: "the executor is stopped"
+        executor.shutdownNow()
+    }
+
+    def "Discard cleared writes in the drainer whilst a drain is running"() {
+
+        given: "an inbox whose device is blocked handling the first write"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.1)
+        def executor = Executors.newFixedThreadPool(2)
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        List<AttributeEvent> writes = new CopyOnWriteArrayList<>()
+        def inbox = new ActuatorInbox("device", {
+            started.countDown()
+            release.await(10, TimeUnit.SECONDS)
+            writes.add(it)
+        }, executor, 100)
+        inbox.offer(new AttributeEvent("asset1", "target", 0))
+        started.await(5, TimeUnit.SECONDS)
+
+        when: "more writes are queued and then the inbox is cleared"
+        (1..10).each { inbox.offer(new AttributeEvent("asset1", "target", it)) }
+        inbox.clear()
+
+        and: "another write is offered after clearing"
+        inbox.offer(new AttributeEvent("asset1", "target", 11))
+
+        and: "the device is released"
+        release.countDown()
+
+        then: "only the write being handled and the one offered after clearing should be handled"
+        conditions.eventually {
+            assert inbox.getPendingWrites() == 0
+            assert writes.collect { it.value.orElse(null) as Integer } == [0, 11]
+        }
+        inbox.getDispatchedWrites() == 2
+
+        cleanup: "the executor is stopped"
+        executor.shutdownNow()
+    }
+
+    def "Writes of other inboxes wait once slow devices occupy every executor thread"() {
+
+        given: "an executor with two threads and two blocked devices"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.1)
+        def executor = Executors.newFixedThreadPool(2)
+        def release = new CountDownLatch(1)
+        def blockedStarted = new CountDownLatch(2)
+        List<AttributeEvent> fastWrites = new CopyOnWriteArrayList<>()
+        def slowInboxes = (1..2).collect { i ->
+            new ActuatorInbox("slow" + i, { blockedStarted.countDown(); release.await(10, TimeUnit.SECONDS) }, executor, 10)
+        }
+        def fastInbox = new ActuatorInbox("fast", { fastWrites.add(it) }, executor, 10)
+        slowInboxes.each { it.offer(new AttributeEvent("asset1", "target", 1)) }
+        blockedStarted.await(5, TimeUnit.SECONDS)
+
+        when: "a write is offered to a responsive device"
+        fastInbox.offer(new AttributeEvent("asset2", "target", 1))
+        Thread.sleep(200)
+
+        then: "it should wait as the slow devices hold every thread (the documented limit of the isolation)"
+        fastWrites.isEmpty()
+        fastInbox.getPendingWrites() == 1
+
+        when: "one of the slow devices responds"
+        release.countDown()
+
+        then: "the write should be handled"
+        conditions.eventually {
+            assert fastWrites.size() == 1
+        }
+
+        cleanup: "the executor is stopped"
+        release.countDown()
+        executor.shutdownNow()
+    }
+
+    def "Export per inbox metrics until they are removed"() {
+
+        given: "an inbox with registered metrics"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.1)
+        def executor = Executors.newFixedThreadPool(1)
+        def release = new CountDownLatch(1)
+        def registry = new MetricsRegistry()
+        def inbox = new ActuatorInbox("device", { release.await(10, TimeUnit.SECONDS) }, executor, 2)
+        inbox.registerMetrics(registry, "agent_id", "agent1")
+
+        when: "more writes are offered than the inbox can hold and the device is released"
+        (1..5).each { inbox.offer(new AttributeEvent("asset1", "target", it)) }
+        release.countDown()
+
+        then: "the dispatched and dropped counters and latency timer should be labelled with the agent"
+        conditions.eventually {
+            assert inbox.getPendingWrites() == 0
+            assert (registry.get(ActuatorInbox.DISPATCHED_WRITES_METRIC, "agent_id", "agent1").get() as CounterMetric).getCount() == inbox.getDispatchedWrites()
+            assert (registry.get(ActuatorInbox.DROPPED_WRITES_METRIC, "agent_id", "agent1").get() as CounterMetric).getCount() == inbox.getDroppedWrites()
+            assert (registry.get(ActuatorInbox.DISPATCH_LATENCY_METRIC, "agent_id", "agent1").get() as TimerMetric) != null
+        }
+        inbox.getDroppedWrites() > 0
+        registry.toPrometheus().contains('or_actuator_dispatched_writes_total{agent_id="agent1"}')
+
+        when: "the metrics are removed"
+        inbox.removeMetrics()
+
+        then: "none of the inbox metrics should remain"
+        registry.getMetrics().isEmpty()
+
+        cleanup: "the executor is stopped"
+        release.countDown()
+        executor.shutdownNow()
+    }
+}
@@ -0,0 +1,82 @@
+package org.openremote.test.protocol
+
+import org.openremote.model.asset.agent.DefaultAgentLink
+import org.openremote.model.attribute.Attribute
+import org.openremote.model.attribute.AttributeRef
+import org.openremote.model.attribute.AttributeState
+import org.openremote.model.protocol.AttributeMessageDemultiplexer
+import org.openremote.model.query.AssetQuery
+import org.openremote.model.query.filter.NumberPredicate
+import org.openremote.model.query.filter.StringPredicate
+import org.openremote.model.value.RegexValueFilter
+import org.openremote.model.value.SubStringValueFilter
+import org.openremote.model.value.ValueFilter
+import spock.lang.Specification
+
+import static org.openremote.model.value.ValueType.TEXT
+
+class AttributeMessageDemultiplexerTest extends Specification {
+
+    def "Demultiplex inbound messages using grouped filters and indexed predicates"() {
+
+        given: "a demultiplexer that collects the matched attribute states"
+        List<AttributeState> states = []
+        def demux = new AttributeMessageDemultiplexer({ System.currentTimeMillis() }, { states.add(it) })
+
+        and: "a set of links covering exact, prefix, case insensitive and non indexed predicates"
+        def link = { ValueFilter[] filters, predicate ->
+            new DefaultAgentLink("agent").setMessageMatchFilters(filters).setMessageMatchPredicate(predicate)
+        }
+        def prefixFilter = { new ValueFilter[]{new SubStringValueFilter(0, 5)} }
+
+        when: "the links are added"
+        assert demux.add("asset1", new Attribute<>("exact", TEXT), link(null, new StringPredicate(AssetQuery.Match.EXACT, "POWER ON")))
+        assert demux.add("asset1", new Attribute<>("exactIgnoreCase", TEXT), link(null, new StringPredicate(AssetQuery.Match.EXACT, false, "power on")))
+        assert demux.add("asset1", new Attribute<>("begin", TEXT), link(null, new StringPredicate(AssetQuery.Match.BEGIN, "POWER")))
+        assert demux.add("asset1", new Attribute<>("beginShort", TEXT), link(null, new StringPredicate(AssetQuery.Match.BEGIN, "PO")))
+        assert demux.add("asset1", new Attribute<>("negated", TEXT), link(null, new StringPredicate(AssetQuery.Match.EXACT, "POWER ON").negate(true)))
+        assert demux.add("asset1", new Attribute<>("contains", TEXT), link(null, new StringPredicate(AssetQuery.Match.CONTAINS, "OFF")))
+        assert demux.add("asset2", new Attribute<>("volume", TEXT), link(prefixFilter(), new StringPredicate(AssetQuery.Match.EXACT, "VOL:1")))
+        assert demux.add("asset2", new Attribute<>("volume2", TEXT), link(prefixFilter(), new StringPredicate(AssetQuery.Match.EXACT, "VOL:2")))
+        assert demux.add("asset2", new Attribute<>("number", TEXT), link(new ValueFilter[]{new RegexValueFilter("VOL:(\\d+)", true, false).setMatchGroup(1)}, new NumberPredicate(2, AssetQuery.Operator.GREATER_THAN)))
+        assert !demux.add("asset2", new Attribute<>("noPredicate", TEXT), link(null, null))
+
+        then: "links with the same filter chain should share a group"
+        demux.size() == 9
+        demux.getFilterGroupCount() == 3
+
+        when: "messages are received"
+        demux.accept("POWER ON")
+
+        then: "only the matching links should be notified"
+        states.collect { it.ref.name } as Set == ["exact", "exactIgnoreCase", "begin", "beginShort"] as Set
+        states.every { it.value.orElse(null) == "POWER ON" }
+
+        when: "another message is received"
+        states.clear()
+        demux.accept("power OFF")
+
+        then: "only the non indexed predicates that match should be notified"
+        states.collect { it.ref.name } as Set == ["negated", "contains"] as Set
+
+        when: "a message matching the filtered links is received"
+        states.clear()
+        demux.accept("VOL:25")
+
+        then: "the filter chain should be applied before the predicates"
+        states.collect { it.ref.name } as Set == ["volume2", "number", "negated"] as Set
+
+        when: "links are removed"
+        states.clear()
+        assert demux.remove(new AttributeRef("asset1", "beginShort"))
+        assert demux.remove(new AttributeRef("asset2", "volume"))
+        assert demux.remove(new AttributeRef("asset2", "volume2"))
+        assert !demux.remove(new AttributeRef("asset2", "volume2"))
+        demux.accept("POWER ON")
+
+        then: "removed links should no longer be notified and empty groups should be dropped"
+        demux.size() == 6
+        demux.getFilterGroupCount() == 2
+        states.collect { it.ref.name } as Set == ["exact", "exactIgnoreCase", "begin"] as Set
+    }
+}
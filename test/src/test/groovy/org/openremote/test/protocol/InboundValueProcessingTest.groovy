@@ -0,0 +1,57 @@
+package org.openremote.test.protocol
+
+import com.fasterxml.jackson.databind.node.ObjectNode
+import org.openremote.model.protocol.ProtocolUtil
+import org.openremote.model.util.ValueUtil
+import org.openremote.model.value.JsonPathFilter
+import org.openremote.model.value.RegexValueFilter
+import org.openremote.model.value.SubStringValueFilter
+import org.openremote.model.value.ValueFilter
+import spock.lang.Specification
+
+class InboundValueProcessingTest extends Specification {
+
+    def "Share filter results between identical filter chains"() {
+
+        given: "an inbound JSON message"
+        def message = new String("{\"sensors\": [{\"name\": \"temperature\", \"value\": 21.5, \"meta\": {\"unit\": \"C\"}}, {\"name\": \"humidity\", \"value\": 55}]}")
+
+        and: "filter chains as they would be configured on separate agent links"
+        def chains = [
+            [new JsonPathFilter("\$.sensors[0].value", false, false)] as ValueFilter[],
+            [new JsonPathFilter("\$.sensors[1].value", false, false)] as ValueFilter[],
+            [new JsonPathFilter("\$.sensors[?(@.name == \"humidity\")].value", true, false)] as ValueFilter[],
+            [new JsonPathFilter("\$.sensors[0].meta", false, false)] as ValueFilter[],
+            [new JsonPathFilter("\$.sensors[0].name", false, false), new SubStringValueFilter(0, 4)] as ValueFilter[],
+            [new JsonPathFilter("\$.sensors[0].name", false, false), new RegexValueFilter("temp(.*)", true, false).setMatchGroup(1)] as ValueFilter[],
+            [new JsonPathFilter("\$.missing", false, false), new SubStringValueFilter(0, 4)] as ValueFilter[]
+        ]
+
+        expect: "the shared results to match applying each filter chain independently"
+        chains.each { ValueFilter[] chain ->
+            def expected = ValueUtil.applyValueFilters(message, chain)
+            assert ProtocolUtil.applyValueFiltersShared(message, chain) == expected
+            // Second pass is served from the cache
+            assert ProtocolUtil.applyValueFiltersShared(message, chain) == expected
+        }
+
+        and: "identical filters should have the same cache key"
+        new JsonPathFilter("\$.a", true, false).getCacheKey() == new JsonPathFilter("\$.a", true, false).getCacheKey()
+        new JsonPathFilter("\$.a", true, false).getCacheKey() != new JsonPathFilter("\$.a", false, true).getCacheKey()
+
+        when: "an object result is modified"
+        def meta = ProtocolUtil.applyValueFiltersShared(message, chains[3]) as ObjectNode
+        meta.put("unit", "F")
+
+        then: "the cached and parsed results should be unaffected"
+        (ProtocolUtil.applyValueFiltersShared(message, chains[3]) as ObjectNode).get("unit").asText() == "C"
+        (ValueUtil.applyValueFilters(message, chains[3]) as ObjectNode).get("unit").asText() == "C"
+
+        when: "a different message is processed"
+        def message2 = "{\"sensors\": [{\"name\": \"temperature\", \"value\": 19}]}"
+
+        then: "the new message should be used"
+        ProtocolUtil.applyValueFiltersShared(message2, chains[0]).asInt() == 19
+        ProtocolUtil.applyValueFiltersShared(message2, chains[4]) == ValueUtil.applyValueFilters(message2, chains[4])
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.test.protocol
+
+import org.openremote.manager.agent.AgentService
+import org.openremote.manager.asset.AssetProcessingService
+import org.openremote.manager.asset.AssetStorageService
+import org.openremote.model.asset.agent.ConnectionStatus
+import org.openremote.model.asset.impl.ThingAsset
+import org.openremote.model.attribute.Attribute
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.model.attribute.AttributeRef
+import org.openremote.model.attribute.MetaItem
+import org.openremote.test.ManagerContainerTrait
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import static org.openremote.model.Constants.MASTER_REALM
+import static org.openremote.model.value.MetaItemType.AGENT_LINK
+import static org.openremote.model.value.ValueType.NUMBER
+
+class ProtocolWriteLockTest extends Specification implements ManagerContainerTrait {
+
+    def "Check a slow protocol write doesn't stall unrelated asset processing whilst attributes are linked"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, initialDelay: 0.1, delay: 0.1)
+
+        and: "the container is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def agentService = container.getService(AgentService.class)
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+
+        and: "a mock agent"
+        def mockAgent = new MockAgent("Mock agent")
+            .setRealm(MASTER_REALM)
+            .setRequired(true)
+        mockAgent = assetStorageService.merge(mockAgent)
+
+        and: "an asset with a linked attribute and an asset with a plain attribute"
+        def linkedThing = new ThingAsset("Linked thing")
+            .setRealm(MASTER_REALM)
+            .addOrReplaceAttributes(
+                new Attribute<>("target", NUMBER)
+                    .addOrReplaceMeta(new MetaItem<>(AGENT_LINK, new MockAgentLink(mockAgent.id).setRequiredValue("true")))
+            )
+        linkedThing = assetStorageService.merge(linkedThing)
+        def plainThing = new ThingAsset("Plain thing")
+            .setRealm(MASTER_REALM)
+            .addOrReplaceAttributes(new Attribute<>("value", NUMBER))
+        plainThing = assetStorageService.merge(plainThing)
+
+        expect: "the agent to be connected and the attribute linked"
+        conditions.eventually {
+            assert agentService.getAgent(mockAgent.id).getAgentStatus().orElse(null) == ConnectionStatus.CONNECTED
+            assert agentService.getProtocolInstance(mockAgent.id).linkedAttributes.size() == 1
+        }
+        def protocol = (MockProtocol)agentService.getProtocolInstance(mockAgent.id)
+
+        when: "the device becomes slow and the linked attribute is written"
+        protocol.writeDelayMillis = 8000
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(linkedThing.id, "target", 20d))
+
+        then: "the write should reach the protocol"
+        conditions.eventually {
+            assert protocol.protocolWriteAttributeEvents.size() == 1
+        }
+
+        when: "another attribute is linked to the agent whilst the device write is still in progress"
+        def start = System.currentTimeMillis()
+        def otherLinkedThing = new ThingAsset("Other linked thing")
+            .setRealm(MASTER_REALM)
+            .addOrReplaceAttributes(
+                new Attribute<>("target", NUMBER)
+                    .addOrReplaceMeta(new MetaItem<>(AGENT_LINK, new MockAgentLink(mockAgent.id).setRequiredValue("true")))
+            )
+        otherLinkedThing = assetStorageService.merge(otherLinkedThing)
+
+        and: "an unrelated attribute is updated"
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(plainThing.id, "value", 10d))
+
+        then: "the unrelated attribute should be updated without waiting for the device"
+        new PollingConditions(timeout: 4, delay: 0.1).eventually {
+            plainThing = assetStorageService.find(plainThing.id, true) as ThingAsset
+            assert plainThing.getAttribute("value").flatMap { it.getValue() }.orElse(null) == 10d
+        }
+        System.currentTimeMillis() - start < 8000
+
+        and: "the linked attribute should be updated and the other attribute linked once the device write completes"
+        conditions.eventually {
+            linkedThing = assetStorageService.find(linkedThing.id, true) as ThingAsset
+            assert linkedThing.getAttribute("target").flatMap { it.getValue() }.orElse(null) == 20d
+            assert protocol.linkedAttributes.size() == 2
+            assert protocol.linkedAttributes.containsKey(new AttributeRef(otherLinkedThing.id, "target"))
+        }
+
+        cleanup: "the device is no longer slow"
+        if (protocol != null) {
+            protocol.writeDelayMillis = 0
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.openremote.test.protocol
+
+import org.openremote.agent.protocol.SensorIngress
+import org.openremote.model.attribute.AttributeEvent
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+
+class SensorIngressTest extends Specification {
+
+    def "Hold back, coalesce and drain sensor updates whilst the sensor queue is busy"() {
+
+        given: "an ingress with a sink that can be made unavailable"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.05)
+        def executor = Executors.newSingleThreadScheduledExecutor()
+        List<AttributeEvent> sent = new CopyOnWriteArrayList<>()
+        List<Boolean> backpressure = new CopyOnWriteArrayList<>()
+        def available = true
+        def ingress = new SensorIngress({ sent.add(it) }, { available }, executor, { backpressure.add(it) }, 8)
+
+        when: "updates are offered whilst the sink is available"
+        ingress.offer(new AttributeEvent("asset1", "counter", 1), false)
+        ingress.offer(new AttributeEvent("asset1", "temperature", 20), true)
+
+        then: "they should be passed straight through"
+        sent.collect { it.value.orElse(null) } == [1, 20]
+        ingress.getPendingUpdates() == 0
+
+        when: "updates are offered whilst the sink is unavailable"
+        sent.clear()
+        available = false
+        ingress.offer(new AttributeEvent("asset1", "temperature", 21), true)
+        ingress.offer(new AttributeEvent("asset1", "counter", 2), false)
+        ingress.offer(new AttributeEvent("asset1", "temperature", 22), true)
+        ingress.offer(new AttributeEvent("asset1", "counter", 3), false)
+        ingress.offer(new AttributeEvent("asset1", "temperature", 23), true)
+
+        then: "every counter update but only the latest temperature should be pending"
+        ingress.getPendingUpdates() == 3
+        ingress.getCoalescedUpdates() == 2
+        sent.isEmpty()
+        backpressure.isEmpty()
+
+        when: "more counter updates are offered"
+        (4..10).each { ingress.offer(new AttributeEvent("asset1", "counter", it), false) }
+
+        then: "backpressure should be applied and updates beyond the max dropped"
+        backpressure == [true]
+        ingress.isPaused()
+        ingress.getPendingUpdates() == 8
+        ingress.getDroppedUpdates() == 2
+
+        when: "the sink becomes available"
+        available = true
+
+        then: "the pending updates should be drained in order and backpressure released"
+        conditions.eventually {
+            assert ingress.getPendingUpdates() == 0
+            assert sent.collect { it.attributeName + ":" + it.value.orElse(null) } == ["temperature:23", "counter:2", "counter:3", "counter:4", "counter:5", "counter:6", "counter:7", "counter:8"]
+            assert backpressure == [true, false]
+            assert !ingress.isPaused()
+        }
+
+        cleanup: "the executor is stopped"
+        executor.shutdownNow()
+    }
+}
@@ -0,0 +1,122 @@
+package org.openremote.test.protocol
+
+import org.openremote.container.concurrent.TimingWheelScheduler
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class TimingWheelSchedulerTest extends Specification {
+
+    def "Run delayed and periodic tasks from the timing wheel"() {
+
+        given: "a timing wheel with a small wheel so tasks need multiple rounds"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.05)
+        def executor = Executors.newFixedThreadPool(2)
+        def scheduler = new TimingWheelScheduler("Test", executor, 5, 8)
+
+        when: "a one shot task is scheduled beyond a turn of the wheel"
+        def start = System.currentTimeMillis()
+        def ran = new AtomicInteger()
+        def future = scheduler.schedule({ ran.incrementAndGet(); start = System.currentTimeMillis() - start } as Runnable, 100, TimeUnit.MILLISECONDS)
+
+        then: "it should run once after the delay"
+        conditions.eventually {
+            assert future.isDone()
+            assert ran.get() == 1
+            assert start >= 95
+        }
+
+        when: "a periodic task is scheduled"
+        def runs = new AtomicInteger()
+        def periodic = scheduler.scheduleWithFixedDelay({ runs.incrementAndGet() } as Runnable, 0, 20, TimeUnit.MILLISECONDS)
+
+        then: "it should keep running"
+        conditions.eventually {
+            assert runs.get() >= 5
+            assert !periodic.isDone()
+        }
+
+        when: "the periodic task is cancelled"
+        periodic.cancel(false)
+        def cancelledRuns = runs.get()
+        Thread.sleep(100)
+
+        then: "it should not run again (bar one in flight) and be removed from the wheel"
+        runs.get() <= cancelledRuns + 1
+        periodic.isCancelled()
+        conditions.eventually {
+            assert scheduler.getWheelTasks() == 0
+        }
+
+        when: "a periodic task throws an exception"
+        def failures = new AtomicInteger()
+        def failing = scheduler.scheduleAtFixedRate({ failures.incrementAndGet(); throw new IllegalStateException("Failed") } as Runnable, 0, 10, TimeUnit.MILLISECONDS)
+
+        then: "it should not be run again"
+        conditions.eventually {
+            assert failing.isDone()
+        }
+        Thread.sleep(50)
+        failures.get() == 1
+
+        cleanup: "the scheduler is stopped"
+        scheduler.shutdownNow()
+        scheduler.awaitTermination(1, TimeUnit.SECONDS)
+        executor.shutdownNow()
+    }
+
+    def "Spread the first run of periodic tasks with the same period when requested"() {
+
+        given: "a timing wheel"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.05)
+        def executor = Executors.newFixedThreadPool(4)
+        def scheduler = new TimingWheelScheduler("Test", executor, 5, 64)
+
+        when: "lots of tasks with the same period are scheduled together without spreading"
+        def start = System.currentTimeMillis()
+        def immediateRuns = new ConcurrentHashMap<Integer, Long>()
+        def immediateFutures = (0..<100).collect { i ->
+            scheduler.scheduleWithFixedDelay({ immediateRuns.putIfAbsent(i, System.currentTimeMillis() - start) } as Runnable, 0, 5000, TimeUnit.MILLISECONDS)
+        }
+
+        then: "they should all run straight away as no initial delay was given"
+        conditions.eventually {
+            assert immediateRuns.size() == 100
+        }
+        immediateRuns.values().every { it < 1000 }
+
+        when: "lots of tasks with the same period are scheduled together with spreading"
+        immediateFutures.each { it.cancel(false) }
+        start = System.currentTimeMillis()
+        def firstRuns = new ConcurrentHashMap<Integer, Long>()
+        def futures = (0..<1000).collect { i ->
+            scheduler.scheduleWithFixedDelay({ firstRuns.putIfAbsent(i, System.currentTimeMillis() - start) } as Runnable, 0, 500, TimeUnit.MILLISECONDS, true)
+        }
+
+        then: "every task should run"
+        conditions.eventually {
+            assert firstRuns.size() == 1000
+        }
+
+        and: "the first runs should be spread over the period rather than all at once"
+        def firstHalf = firstRuns.values().count { it < 250 }
+        firstHalf > 300
+        firstHalf < 700
+
+        when: "the scheduler is shutdown"
+        scheduler.shutdownNow()
+
+        then: "the tasks should be cancelled"
+        conditions.eventually {
+            assert scheduler.isTerminated()
+            assert futures.every { it.isCancelled() }
+        }
+
+        cleanup: "the executor is stopped"
+        executor.shutdownNow()
+    }
+}
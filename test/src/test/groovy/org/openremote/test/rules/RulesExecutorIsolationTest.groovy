@@ -0,0 +1,72 @@
+package org.openremote.test.rules
+
+import org.openremote.container.concurrent.ContainerScheduledExecutor
+import org.openremote.manager.rules.RulesService
+import org.openremote.model.Container
+import org.openremote.test.ManagerContainerTrait
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicLong
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS
+import static java.util.concurrent.TimeUnit.SECONDS
+
+class RulesExecutorIsolationTest extends Specification implements ManagerContainerTrait {
+
+    def "Blocking protocol tasks should not delay rule firing"() {
+
+        given: "the container is started"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.1)
+        def container = startContainer(defaultConfig(), defaultServices())
+        def rulesService = container.getService(RulesService.class)
+        def protocolExecutor = container.getExecutorService(Container.EXECUTOR_PROTOCOL) as ContainerScheduledExecutor
+        def rulesExecutor = rulesService.executorService as ContainerScheduledExecutor
+
+        expect: "rules and protocols to use separate executor pools"
+        rulesExecutor != protocolExecutor
+        rulesExecutor.is(container.getExecutorService(Container.EXECUTOR_RULES))
+
+        when: "every protocol thread is blocked and more protocol tasks are queued"
+        def release = new CountDownLatch(1)
+        def blockedThreads = new CountDownLatch(protocolExecutor.corePoolSize)
+        protocolExecutor.corePoolSize.times {
+            protocolExecutor.submit {
+                blockedThreads.countDown()
+                release.await()
+            }
+        }
+        def queuedProtocolTaskRan = false
+        protocolExecutor.submit { queuedProtocolTaskRan = true }
+        blockedThreads.await(5, SECONDS)
+
+        and: "a rules task is scheduled"
+        def firedLatenessMillis = new AtomicLong(-1)
+        def dueMillis = System.currentTimeMillis() + 100
+        rulesExecutor.schedule({ firedLatenessMillis.set(System.currentTimeMillis() - dueMillis) }, 100, MILLISECONDS)
+
+        then: "the rules task should run on time"
+        conditions.eventually {
+            assert firedLatenessMillis.get() >= 0
+        }
+        firedLatenessMillis.get() < 1000
+
+        and: "the protocol pool should report the queued task"
+        !queuedProtocolTaskRan
+        protocolExecutor.queueDepth >= 1
+        protocolExecutor.activeCount == protocolExecutor.corePoolSize
+
+        when: "the protocol threads are released"
+        release.countDown()
+
+        then: "the queued protocol task should run and be included in the metrics"
+        conditions.eventually {
+            assert queuedProtocolTaskRan
+            assert protocolExecutor.maxLatencyMillis > 0
+        }
+
+        cleanup: "release any blocked threads"
+        release?.countDown()
+    }
+}
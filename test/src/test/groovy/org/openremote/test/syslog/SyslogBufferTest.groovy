@@ -0,0 +1,90 @@
+package org.openremote.test.syslog
+
+import org.openremote.manager.syslog.SyslogBuffer
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+import static org.openremote.manager.syslog.SyslogBuffer.OverflowPolicy.DROP_NEWEST
+import static org.openremote.manager.syslog.SyslogBuffer.OverflowPolicy.DROP_OLDEST
+
+class SyslogBufferTest extends Specification {
+
+    def "Check syslog buffer overflow policies"() {
+
+        when: "more records are offered than a drop newest buffer can hold"
+        def buffer = new SyslogBuffer<Integer>(3, DROP_NEWEST)
+        def accepted = (1..6).collect { buffer.offer(it) }
+        def records = []
+        buffer.drainTo(records, 10)
+
+        then: "the capacity should be rounded up and the records offered whilst full should be dropped"
+        buffer.getCapacity() == 4
+        accepted == [true, true, true, true, false, false]
+        records == [1, 2, 3, 4]
+        buffer.getBufferedRecords() == 4
+        buffer.getDroppedRecords() == 2
+        buffer.size() == 0
+
+        when: "more records are offered than a drop oldest buffer can hold"
+        buffer = new SyslogBuffer<Integer>(4, DROP_OLDEST)
+        accepted = (1..6).collect { buffer.offer(it) }
+        records = []
+        buffer.drainTo(records, 2)
+
+        then: "the oldest records should have been dropped and draining should respect the max"
+        accepted.every { it }
+        records == [3, 4]
+        buffer.size() == 2
+        buffer.getBufferedRecords() == 6
+        buffer.getDroppedRecords() == 2
+
+        when: "the rest is drained"
+        buffer.drainTo(records, 10)
+
+        then: "the buffer should be empty"
+        records == [3, 4, 5, 6]
+        buffer.poll() == null
+    }
+
+    def "Check syslog buffer with concurrent producers"() {
+
+        given: "a buffer and many logging threads"
+        def threads = 32
+        def recordsPerThread = 10000
+        def buffer = new SyslogBuffer<long[]>(1024, DROP_NEWEST)
+        def executor = Executors.newFixedThreadPool(threads)
+        def done = new CountDownLatch(threads)
+
+        when: "the threads offer records whilst the buffer is being drained"
+        threads.times { thread ->
+            executor.execute {
+                recordsPerThread.times { i -> buffer.offer([thread, i] as long[]) }
+                done.countDown()
+            }
+        }
+        List<long[]> records = []
+        List<long[]> chunk = []
+        while (done.getCount() > 0 || buffer.size() > 0) {
+            chunk.clear()
+            buffer.drainTo(chunk, 500)
+            records.addAll(chunk)
+        }
+
+        then: "every record should be either drained or counted as dropped"
+        done.await(10, TimeUnit.SECONDS)
+        records.size() == buffer.getBufferedRecords()
+        records.size() + buffer.getDroppedRecords() == threads * recordsPerThread
+
+        and: "the records of each thread should be drained in the order they were offered"
+        records.groupBy { it[0] }.values().every { threadRecords ->
+            def sequence = threadRecords.collect { it[1] }
+            sequence == sequence.toSorted()
+        }
+
+        cleanup:
+        executor?.shutdownNow()
+    }
+}